@@ -3,12 +3,18 @@ set -e
 set -u
 
 JAR_PATH="/app/app.jar"
+CDS_ARCHIVE="/app/app.jsa"
 JAVA_OPTS=(
   -server
   "-Xms${XMS:-512m}"
   "-Xmx${XMX:-1024m}"
 )
 
+# Архив AppCDS из образа; при несовпадении JVM просто не используется
+if [[ -f "$CDS_ARCHIVE" ]]; then
+  JAVA_OPTS+=("-XX:SharedArchiveFile=$CDS_ARCHIVE")
+fi
+
 main() {
   echo "[INFO] external args> ${JAVA_OPTS[*]}"
   exec java "${JAVA_OPTS[@]}" -jar "$JAR_PATH"
@@ -0,0 +1,214 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.RAIDMetricsCollector;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.RAIDMetricsCollectorInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.RAIDMetricsCollectorWithCaching;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.RAIDMetricsSnapshotCollector;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.CommandRunnerInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.ReplayCommandRunner;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.SimulatedCommandRunner;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.DeviceTopologyRegistry;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartctlDeviceScanner;
+import io.prometheus.metrics.expositionformats.PrometheusTextFormatWriter;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * End-to-end load test of the smartctl path at a given fleet size, without the hardware.
+ * <p>
+ * Builds the production pipeline (topology scan, {@link SmartCTLReader}, collector, default registry)
+ * on a {@link SimulatedCommandRunner}, or on a {@link ReplayCommandRunner} with {@code --replay},
+ * runs {@code --cycles} collection cycles while another thread scrapes {@code /metrics} in a loop,
+ * and prints cycle time, scrape latency and heap usage. Unlike the JMH benchmarks it measures
+ * wall-clock behaviour, including waiting for slow, hung and failing devices.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec \
+ *     -Djmh.main=io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.LoadHarness \
+ *     -Djmh.args="--disks 500 --latency-ms 300 --hang 0.01 --fail 0.02"
+ * </pre>
+ */
+public class LoadHarness {
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("disks", "500"),
+            Map.entry("cycles", "5"),
+            Map.entry("concurrency", "8"),
+            Map.entry("latency-ms", "200"),
+            Map.entry("sigma", "0.5"),
+            Map.entry("hang", "0"),
+            Map.entry("fail", "0"),
+            Map.entry("timeout-ms", "30000"),
+            Map.entry("collector", "snapshot"),
+            Map.entry("seed", "1"),
+            Map.entry("replay", ""));
+
+    private static final String EXAMPLES = "src/main/java/io/github/byzatic/utility/prometheus/exporter/storage_health_exporter/collector/smartctl/dto/";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int cycles = Integer.parseInt(options.get("cycles"));
+        Duration timeout = Duration.ofMillis(Long.parseLong(options.get("timeout-ms")));
+
+        CommandRunnerInterface runner;
+        long fixtureBytes = 0;
+        String source;
+        if (!options.get("replay").isEmpty()) {
+            runner = new ReplayCommandRunner(Path.of(options.get("replay")), true);
+            source = "replay of " + options.get("replay");
+        } else {
+            SimulatedCommandRunner simulated = new SimulatedCommandRunner.Builder()
+                    .scanTemplate(SimulatedCommandRunner.readExample(Path.of(EXAMPLES + "scan/response_example")))
+                    .readTemplate(SimulatedCommandRunner.readExample(Path.of(EXAMPLES + "read/response_example")))
+                    .devices(Integer.parseInt(options.get("disks")))
+                    .latencyMedian(Duration.ofMillis(Long.parseLong(options.get("latency-ms"))))
+                    .latencySigma(Double.parseDouble(options.get("sigma")))
+                    .hangProbability(Double.parseDouble(options.get("hang")))
+                    .failureProbability(Double.parseDouble(options.get("fail")))
+                    .seed(Long.parseLong(options.get("seed")))
+                    .build();
+            runner = simulated;
+            fixtureBytes = simulated.fixtureBytes();
+            source = String.format(Locale.ROOT, "%d simulated disks, median %s ms, sigma %s, hang %s, fail %s",
+                    simulated.devices(), options.get("latency-ms"), options.get("sigma"), options.get("hang"), options.get("fail"));
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+
+        DeviceTopologyRegistry topology = new DeviceTopologyRegistry(
+                new SmartctlDeviceScanner(timeout, runner), Duration.ZERO, List.of());
+        SmartCTLReader reader = new SmartCTLReader.Builder()
+                .maxConcurrency(Integer.parseInt(options.get("concurrency")))
+                .topology(topology)
+                .deviceTimeout(timeout)
+                .commandRunner(runner)
+                .build();
+        RAIDMetricsCollectorInterface collector;
+        switch (options.get("collector")) {
+            case "plain":
+                collector = new RAIDMetricsCollector(reader);
+                break;
+            case "caching":
+                collector = new RAIDMetricsCollectorWithCaching(reader);
+                break;
+            case "snapshot":
+                collector = new RAIDMetricsSnapshotCollector(reader);
+                break;
+            default:
+                throw new IllegalArgumentException("--collector must be plain, caching or snapshot");
+        }
+
+        Scraper scraper = new Scraper();
+        Thread scrapeThread = new Thread(scraper, "load-harness-scrape");
+        scrapeThread.setDaemon(true);
+        scrapeThread.start();
+
+        long[] cycleNanos = new long[cycles];
+        long peakHeap = 0;
+        for (int i = 0; i < cycles; i++) {
+            long start = System.nanoTime();
+            collector.updateMetrics();
+            cycleNanos[i] = System.nanoTime() - start;
+            peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+            System.out.printf(Locale.ROOT, "cycle %d: %.1f ms%n", i + 1, cycleNanos[i] / 1e6);
+        }
+        scraper.stop();
+        scrapeThread.join();
+
+        System.gc();
+        long retainedHeap = memory.getHeapMemoryUsage().getUsed() - baselineHeap;
+        long[] scrapeNanos = scraper.latencies();
+
+        System.out.println();
+        System.out.println("source:           " + source);
+        System.out.println("collector:        " + options.get("collector") + ", concurrency " + options.get("concurrency")
+                + ", device timeout " + timeout.toMillis() + " ms");
+        System.out.printf(Locale.ROOT, "cycle time:       p50 %.1f ms, max %.1f ms (%d cycles; the first includes the scan)%n",
+                percentile(cycleNanos, 0.5) / 1e6, percentile(cycleNanos, 1.0) / 1e6, cycles);
+        System.out.printf(Locale.ROOT, "scrape latency:   p50 %.2f ms, p99 %.2f ms, max %.2f ms (%d scrapes, last %d bytes)%n",
+                percentile(scrapeNanos, 0.5) / 1e6, percentile(scrapeNanos, 0.99) / 1e6, percentile(scrapeNanos, 1.0) / 1e6,
+                scrapeNanos.length, scraper.lastSize);
+        System.out.printf(Locale.ROOT, "heap:             peak used %.1f MiB, retained after GC %.1f MiB (incl. %.1f MiB simulator fixtures)%n",
+                peakHeap / 1048576.0, retainedHeap / 1048576.0, fixtureBytes / 1048576.0);
+
+        topology.close();
+        System.exit(0);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (int i = 0; i < args.length; i++) {
+            String key = args[i].startsWith("--") ? args[i].substring(2) : null;
+            if (key == null || !DEFAULTS.containsKey(key) || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Unknown or incomplete option " + args[i] + "; options: " + DEFAULTS.keySet());
+            }
+            options.put(key, args[++i]);
+        }
+        return options;
+    }
+
+    private static long percentile(long[] values, double p) {
+        if (values.length == 0) {
+            return 0;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Serializes the default registry back to back, as a scraper with a very short interval would.
+     */
+    private static final class Scraper implements Runnable {
+        private final PrometheusTextFormatWriter writer = PrometheusTextFormatWriter.create();
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+        private final List<Long> latencies = new ArrayList<>();
+        private volatile boolean running = true;
+        volatile int lastSize;
+
+        @Override
+        public void run() {
+            while (running) {
+                long start = System.nanoTime();
+                try {
+                    out.reset();
+                    writer.write(out, PrometheusRegistry.defaultRegistry.scrape());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                synchronized (latencies) {
+                    latencies.add(System.nanoTime() - start);
+                }
+                lastSize = out.size();
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        void stop() {
+            running = false;
+        }
+
+        long[] latencies() {
+            synchronized (latencies) {
+                return latencies.stream().mapToLong(Long::longValue).toArray();
+            }
+        }
+    }
+}
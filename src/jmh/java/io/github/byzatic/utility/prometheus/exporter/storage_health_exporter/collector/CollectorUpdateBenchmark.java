@@ -0,0 +1,64 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
+
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@code updateMetrics()} cycle of each collector on a synthetic shelf.
+ * The time includes generating the synthetic disk list, which is the same for all collectors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectorUpdateBenchmark {
+
+    @Param({"plain", "caching", "snapshot"})
+    public String collector;
+
+    @Param({"10", "100", "1000"})
+    public int disks;
+
+    @Param({SyntheticDisks.CHURN_NONE, SyntheticDisks.CHURN_MOUNT, SyntheticDisks.CHURN_REPLACE})
+    public String churn;
+
+    private RAIDMetricsCollectorInterface target;
+
+    @Setup
+    public void setup() {
+        SyntheticDisks shelf = new SyntheticDisks(disks, churn);
+        switch (collector) {
+            case "plain":
+                target = new RAIDMetricsCollector(shelf.reader());
+                break;
+            case "caching":
+                target = new RAIDMetricsCollectorWithCaching(shelf.reader());
+                break;
+            case "snapshot":
+                // Отдельный реестр: имена метрик совпадают с RAIDMetricsCollectorWithCaching
+                target = new RAIDMetricsSnapshotCollector(shelf.reader(), new PrometheusRegistry());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown collector " + collector);
+        }
+    }
+
+    @Benchmark
+    public void updateMetrics() {
+        target.updateMetrics();
+    }
+}
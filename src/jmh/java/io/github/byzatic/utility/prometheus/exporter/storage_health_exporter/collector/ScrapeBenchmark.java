@@ -0,0 +1,63 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
+
+import io.prometheus.metrics.expositionformats.PrometheusTextFormatWriter;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full {@code /metrics} serialization (registry scrape + text format) after one collection cycle.
+ * The registry also contains the exporter's own metrics, as in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScrapeBenchmark {
+
+    @Param({"caching", "snapshot"})
+    public String collector;
+
+    @Param({"10", "100", "1000"})
+    public int disks;
+
+    private final PrometheusTextFormatWriter writer = PrometheusTextFormatWriter.create();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+    private PrometheusRegistry registry;
+
+    @Setup
+    public void setup() {
+        SyntheticDisks shelf = new SyntheticDisks(disks, SyntheticDisks.CHURN_NONE);
+        RAIDMetricsCollectorInterface target;
+        if ("snapshot".equals(collector)) {
+            registry = new PrometheusRegistry();
+            target = new RAIDMetricsSnapshotCollector(shelf.reader(), registry);
+        } else {
+            registry = PrometheusRegistry.defaultRegistry;
+            target = new RAIDMetricsCollectorWithCaching(shelf.reader());
+        }
+        target.updateMetrics();
+    }
+
+    @Benchmark
+    public int scrape() throws IOException {
+        out.reset();
+        writer.write(out, registry.scrape());
+        return out.size();
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic shelf of disks for the collector benchmarks.
+ * <p>
+ * Churn scenarios (applied on every {@link #next()}):
+ * <ul>
+ *     <li>{@code none} - identical labels, only values change;</li>
+ *     <li>{@code mount} - every 10th disk alternates its mount point (remove + set in the caching collector);</li>
+ *     <li>{@code replace} - every 10th disk alternates between two serials (a disk swap).</li>
+ * </ul>
+ * Alternating between two label sets keeps the number of series bounded for the non-caching collector.
+ * Both shelves are built once and only their values are updated in place, so the B/op of a
+ * benchmark is what the collector allocates, not the generator.
+ */
+public final class SyntheticDisks {
+    public static final String CHURN_NONE = "none";
+    public static final String CHURN_MOUNT = "mount";
+    public static final String CHURN_REPLACE = "replace";
+
+    private final List<MegaRAIDDiskInfo> even;
+    private final List<MegaRAIDDiskInfo> odd;
+    private long generation;
+
+    public SyntheticDisks(int count, String churn) {
+        this.even = shelf(count, churn, false);
+        this.odd = shelf(count, churn, true);
+    }
+
+    public List<MegaRAIDDiskInfo> next() {
+        long gen = generation++;
+        List<MegaRAIDDiskInfo> disks = (gen & 1) == 1 ? odd : even;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < disks.size(); i++) {
+            MegaRAIDDiskInfo disk = disks.get(i);
+            disk.powerOnHours = (int) (2328 + gen);
+            disk.temperatureCelsius = 28 + (int) (gen % 5);
+            disk.lastReadEpochMillis = now;
+        }
+        return disks;
+    }
+
+    private static List<MegaRAIDDiskInfo> shelf(int count, String churn, boolean odd) {
+        List<MegaRAIDDiskInfo> disks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean churned = i % 10 == 0 && odd;
+            MegaRAIDDiskInfo disk = new MegaRAIDDiskInfo();
+            disk.diskId = i;
+            disk.model = "WDC WD4005FFBX-68CAUN0";
+            disk.serial = churned && CHURN_REPLACE.equals(churn) ? "WD-R" + i : "WD-" + i;
+            disk.deviceName = churned && CHURN_MOUNT.equals(churn) ? "/dev/bus/1" : "/dev/bus/0";
+            disk.smartStatus = "PASSED";
+            disk.reallocatedSectors = 0;
+            disk.currentPendingSectors = 0;
+            disk.offlineUncorrectable = 0;
+            disk.udmaCrcErrors = i % 3;
+            disk.powerState = MegaRAIDDiskInfo.POWER_STATE_ACTIVE;
+            disks.add(disk);
+        }
+        return disks;
+    }
+
+    /**
+     * Reader that returns {@link #next()} instead of running smartctl.
+     */
+    public SmartCTLReader reader() {
+        return new SmartCTLReader(1) {
+            @Override
+            public List<MegaRAIDDiskInfo> readDisks() throws CollectorException {
+                return next();
+            }
+        };
+    }
+}
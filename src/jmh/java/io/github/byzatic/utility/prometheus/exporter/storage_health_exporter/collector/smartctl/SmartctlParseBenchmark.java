@@ -0,0 +1,65 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJson;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJsonTypeAdapter;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.scan.SmartctlScanResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the bundled smartctl fixtures; the configured attributes are extracted while parsing.
+ * Run from the project directory: the fixtures are read from {@code src/main/java}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmartctlParseBenchmark {
+
+    private static final Path DTO = Path.of(
+            "src/main/java/io/github/byzatic/utility/prometheus/exporter/storage_health_exporter/collector/smartctl/dto");
+
+    private byte[] readExample;
+    private byte[] scanExample;
+    private final SmartctlDiskJsonTypeAdapter adapter = new SmartctlDiskJsonTypeAdapter(
+            SmartAttributeTable.compile(SmartCTLReader.BUILT_IN_ATTRIBUTES));
+
+    @Setup
+    public void setup() throws IOException {
+        readExample = loadJson(DTO.resolve("read/response_example"));
+        scanExample = loadJson(DTO.resolve("scan/response_example"));
+    }
+
+    @Benchmark
+    public SmartctlDiskJson parseRead() {
+        return SmartctlJson.read(new ByteArrayInputStream(readExample), adapter);
+    }
+
+    @Benchmark
+    public SmartctlScanResult parseScan() {
+        return SmartctlJson.read(new ByteArrayInputStream(scanExample), SmartctlScanResult.class);
+    }
+
+    // Первая строка примеров — команда smartctl, JSON начинается после нее
+    private static byte[] loadJson(Path path) throws IOException {
+        String text = Files.readString(path, StandardCharsets.UTF_8);
+        return text.substring(text.indexOf('{')).getBytes(StandardCharsets.UTF_8);
+    }
+}
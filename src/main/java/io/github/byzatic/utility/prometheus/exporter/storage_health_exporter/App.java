@@ -1,23 +1,136 @@
 package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter;
 
-import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.RAIDMetricsCollectorInterface;
-import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.SmartctlCollectorFactory;
-import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.SmartctlCollectorFactoryInterface;
-import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.aggregator.AggregatedDisksCollector;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.aggregator.IngestServer;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.aggregator.IngestServerInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.CommandRunnerInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.ProcessCommandRunner;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.RecordingCommandRunner;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.exposition.MetricsResponseCache;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push.MetricsPusher;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push.MetricsPusherInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.service.AdaptiveScheduler;
 import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.service.RAIDMetricsService;
 import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.service.RAIDMetricsServiceInterface;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
 public class App {
     private final static Logger logger = LoggerFactory.getLogger(App.class);
 
+    // Обучающий прогон: старт, один цикл сбора и выход (архив AppCDS, агент native-image)
+    static final String EXIT_AFTER_FIRST_CYCLE = "--exit-after-first-cycle";
+
     public static void main(String[] args) {
         logger.debug("MegaRAID metrics service is running...");
+        boolean exitAfterFirstCycle = false;
+        for (String arg : args) {
+            if (EXIT_AFTER_FIRST_CYCLE.equals(arg)) {
+                exitAfterFirstCycle = true;
+            } else {
+                logger.warn("Unknown argument {} ignored", arg);
+            }
+        }
+
+        ExporterConfiguration configuration;
+        try {
+            configuration = ExporterConfiguration.load(Configuration.CONFIGURATION_PATH);
+        } catch (ConfigurationException ce) {
+            logger.error("Exception : " + ExceptionUtils.getStackTrace(ce));
+            throw new RuntimeException("Error reading configuration", ce);
+        }
+
+        CommandRunnerInterface commandRunner = new ProcessCommandRunner();
+        if (configuration.commandRecordFile != null) {
+            logger.info("Recording smartctl/storcli executions to {}", configuration.commandRecordFile);
+            commandRunner = new RecordingCommandRunner(commandRunner, configuration.commandRecordFile);
+        }
+
+        AdaptiveScheduler adaptive = null;
+        if (configuration.adaptiveScheduleEnabled) {
+            // Параллелизм smartctl передается, когда ридер построен (первый цикл)
+            adaptive = new AdaptiveScheduler.Builder()
+                    .minInterval(configuration.adaptiveMinInterval)
+                    .maxInterval(configuration.adaptiveMaxInterval)
+                    .maxCpuPercent(configuration.adaptiveMaxCpuPercent)
+                    .build();
+        }
 
-        SmartctlCollectorFactoryInterface collectorFactory = new SmartctlCollectorFactory(new SmartCTLReader());
-        RAIDMetricsCollectorInterface collector = collectorFactory.getCollector(Configuration.FEATURE_FLAG_CACHING_COLLECTOR);
-        RAIDMetricsServiceInterface megaRAIDMetricsService = new RAIDMetricsService(Configuration.PROMETHEUS_URL, Configuration.CRON_EXPRESSION_STRING, collector);
+        // Топология, ридеры и история строятся первым циклом, когда /metrics уже отвечает
+        CollectionPipeline pipeline = new CollectionPipeline(configuration, commandRunner, adaptive);
+
+        IngestServerInterface ingestServer = null;
+        if (configuration.aggregatorEnabled) {
+            AggregatedDisksCollector aggregated = new AggregatedDisksCollector(
+                    configuration.smartAttributes, configuration.aggregatorHostTtl);
+            PrometheusRegistry.defaultRegistry.register(aggregated);
+            ingestServer = new IngestServer.Builder()
+                    .address(new InetSocketAddress(configuration.aggregatorIngestUrl.getHost(), configuration.aggregatorIngestUrl.getPort()))
+                    .path(configuration.aggregatorIngestUrl.getPath())
+                    .store(aggregated)
+                    .workers(configuration.aggregatorWorkers)
+                    .queueCapacity(configuration.aggregatorQueueCapacity)
+                    .maxBodyBytes(configuration.aggregatorMaxBodyBytes)
+                    .build();
+        }
+
+        MetricsResponseCache responseCache = null;
+        if (configuration.scrapeCacheEnabled) {
+            responseCache = new MetricsResponseCache(PrometheusRegistry.defaultRegistry, configuration.scrapeCacheMaxAge);
+        } else if (configuration.onDemandEnabled) {
+            // Сбору по запросу нужен собственный /metrics; ответ не старше допустимой давности данных
+            responseCache = new MetricsResponseCache(PrometheusRegistry.defaultRegistry, configuration.onDemandMaxStaleness);
+        }
+
+        MetricsPusherInterface pusher = null;
+        if (configuration.pushEnabled) {
+            pusher = new MetricsPusher.Builder()
+                    .endpoint(configuration.pushUrl)
+                    .protocol(configuration.pushProtocol)
+                    .queueCapacity(configuration.pushQueueCapacity)
+                    .maxBatchesPerSend(configuration.pushMaxBatchesPerSend)
+                    .timeout(configuration.pushTimeout)
+                    .baseBackoff(configuration.pushRetryBaseBackoff)
+                    .maxBackoff(configuration.pushRetryMaxBackoff)
+                    .build();
+        }
+
+        RAIDMetricsService.Builder serviceBuilder = new RAIDMetricsService.Builder()
+                .configuration(configuration)
+                .collectorFactory(() -> pipeline.newCollector(
+                        configuration.featureFlagCachingCollector, configuration.featureFlagSnapshotCollector))
+                .ingestServer(ingestServer)
+                .responseCache(responseCache)
+                .pusher(pusher)
+                .adaptive(adaptive)
+                .singleCycle(exitAfterFirstCycle);
+        RAIDMetricsServiceInterface megaRAIDMetricsService = serviceBuilder.build();
+
+        ConfigurationWatcher configurationWatcher = null;
+        if (configuration.configReloadEnabled) {
+            configurationWatcher = new ConfigurationWatcher(Configuration.CONFIGURATION_PATH, configuration,
+                    configuration.configReloadDebounce, (previous, next) -> {
+                // Остальные изменения требуют перезапуска: о них сообщает ConfigurationWatcher
+                if (!previous.cronExpressionString.equals(next.cronExpressionString)) {
+                    megaRAIDMetricsService.reschedule(next.cronExpressionString);
+                }
+                if (previous.collectorChanged(next)) {
+                    megaRAIDMetricsService.replaceCollector(() -> pipeline.newCollector(
+                            next.featureFlagCachingCollector, next.featureFlagSnapshotCollector));
+                }
+            });
+            try {
+                configurationWatcher.start();
+            } catch (IOException e) {
+                logger.warn("Cannot watch {}, live configuration reload is disabled", Configuration.CONFIGURATION_PATH, e);
+            }
+        }
 
         try {
             megaRAIDMetricsService.run();
@@ -26,6 +139,14 @@ public class App {
             logger.error("An error was occurred: {}", e.getMessage());
             logger.debug("Stacktrace: ", e);
             throw new RuntimeException(e);
+        } finally {
+            if (configurationWatcher != null) {
+                configurationWatcher.close();
+            }
+        }
+        if (exitAfterFirstCycle) {
+            // Не ждем фоновых потоков (hwmon, topology-watcher); архив CDS пишется при выходе из JVM
+            System.exit(0);
         }
 
     }
@@ -0,0 +1,167 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.DiskReaderInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.RAIDMetricsCollectorInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.SmartctlCollectorFactory;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.SmartctlCollectorFactoryInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.CommandRunnerInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.history.DiskHistoryStore;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.history.HistoryRecordingReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.hwmon.HwmonTemperatureSampler;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.risk.DiskRiskScorer;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.risk.RiskScoringReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.DeviceTopologyRegistry;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartctlDeviceScanner;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartd.SmartdAttrlogReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.stale.StaleWhileErrorReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.storcli.StorcliReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.service.AdaptiveScheduler;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * The disk side of the exporter: device topology, hwmon sampler, the reader chain and sample
+ * history, built on the first {@link #newCollector} call.
+ * <p>
+ * App hands {@link #newCollector} to the service as the collector factory, so all of this is
+ * loaded and set up by the first collection cycle, after the metrics endpoint is listening. The
+ * components are constructed before anything is started or registered: a build that fails (the
+ * history directory cannot be created, for example) leaves nothing behind and the next cycle
+ * builds again.
+ */
+final class CollectionPipeline {
+    private final static Logger logger = LoggerFactory.getLogger(CollectionPipeline.class);
+
+    private final ExporterConfiguration configuration;
+    private final CommandRunnerInterface commandRunner;
+    // Получает параллелизм smartctl, когда ридер построен; null — адаптивное расписание выключено
+    private final AdaptiveScheduler adaptive;
+
+    // Под this
+    private SmartctlCollectorFactoryInterface collectorFactory;
+
+    CollectionPipeline(ExporterConfiguration configuration, CommandRunnerInterface commandRunner, AdaptiveScheduler adaptive) {
+        this.configuration = configuration;
+        this.commandRunner = commandRunner;
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * A new collector over the shared reader chain; builds the chain first if this is the first call
+     * or the previous build failed.
+     */
+    synchronized RAIDMetricsCollectorInterface newCollector(boolean caching, boolean snapshot) {
+        if (collectorFactory == null) {
+            long start = System.nanoTime();
+            collectorFactory = build();
+            logger.info("Disk readers set up in {} ms", (System.nanoTime() - start) / 1_000_000);
+        }
+        return collectorFactory.getCollector(caching, snapshot);
+    }
+
+    private SmartctlCollectorFactoryInterface build() {
+        boolean smartdSource = "smartd".equals(configuration.diskSource);
+        boolean storcliSource = "storcli".equals(configuration.diskSource);
+        boolean smartctlReader = "smartctl".equals(configuration.diskSource) || (storcliSource && configuration.storcliJoinSmartctl);
+
+        // Топология нужна smartctl-ридеру и сэмплеру hwmon; без них smartctl не запускается вовсе
+        DeviceTopologyRegistry topology = null;
+        if (smartctlReader || configuration.hwmonEnabled) {
+            topology = new DeviceTopologyRegistry(
+                    new SmartctlDeviceScanner(configuration.smartctlTimeout, commandRunner), configuration.topologyRescanInterval, configuration.topologyWatchPaths);
+        }
+
+        HwmonTemperatureSampler hwmon = null;
+        if (configuration.hwmonEnabled) {
+            hwmon = new HwmonTemperatureSampler(
+                    configuration.sysfsRoot, topology, configuration.hwmonSampleInterval, configuration.hwmonWindow);
+        }
+
+        DiskReaderInterface reader = null;
+        // Его параллелизмом управляет адаптивное расписание; null — smartctl не используется
+        SmartCTLReader smartctl = null;
+        if (smartdSource) {
+            reader = new SmartdAttrlogReader(configuration.smartdStateDir, configuration.smartAttributes);
+        } else if (smartctlReader) {
+            smartctl = new SmartCTLReader.Builder()
+                    .maxConcurrency(configuration.smartctlMaxConcurrency)
+                    .topology(topology)
+                    .fastTierInterval(configuration.fastTierInterval)
+                    .fullTierInterval(configuration.fullTierInterval)
+                    .standbyAware(configuration.standbyAware)
+                    .standbyMaxAge(configuration.standbyMaxAge)
+                    .standbyExitStatus(configuration.standbyExitStatus)
+                    .deviceTimeout(configuration.smartctlTimeout)
+                    .breakerFailureThreshold(configuration.breakerFailureThreshold)
+                    .breakerBaseBackoff(configuration.breakerBaseBackoff)
+                    .breakerMaxBackoff(configuration.breakerMaxBackoff)
+                    .smartAttributes(configuration.smartAttributes)
+                    .commandRunner(commandRunner)
+                    .build();
+            reader = smartctl;
+        }
+        StorcliReader storcli = null;
+        if (storcliSource) {
+            // Один вызов storcli на все диски; smartctl (если включен) добавляет атрибуты SMART по серийнику
+            storcli = new StorcliReader.Builder()
+                    .storcliPath(configuration.storcliPath)
+                    .timeout(configuration.storcliTimeout)
+                    .smartctl(reader)
+                    .smartAttributes(configuration.smartAttributes)
+                    .commandRunner(commandRunner)
+                    .build();
+            reader = storcli;
+        }
+
+        DiskHistoryStore history = null;
+        HistoryRecordingReader recordingReader = null;
+        if (configuration.historyEnabled) {
+            try {
+                history = new DiskHistoryStore(configuration.historyDir, configuration.historyFileBytes,
+                        configuration.historySampleInterval, reader.getAttributeTable());
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot open sample history in " + configuration.historyDir, e);
+            }
+            recordingReader = new HistoryRecordingReader(reader, history, HistoryRecordingReader.DEFAULT_WINDOWS);
+            reader = recordingReader;
+        }
+
+        RiskScoringReader riskReader = null;
+        if (configuration.riskScoringEnabled) {
+            riskReader = new RiskScoringReader(reader, new DiskRiskScorer(
+                    configuration.riskSlopeTauHours, configuration.riskTemperatureTauHours, configuration.riskSectorThreshold));
+            reader = riskReader;
+        }
+
+        // Снаружи истории и оценки риска: они видят только прочитанные в этом цикле диски
+        reader = new StaleWhileErrorReader(reader, configuration.staleMaxAge);
+
+        // Все построено: дальше только запуск и регистрация
+        if (topology != null) {
+            topology.start();
+        }
+        if (hwmon != null) {
+            PrometheusRegistry.defaultRegistry.register(hwmon);
+            hwmon.start();
+        }
+        if (storcli != null) {
+            PrometheusRegistry.defaultRegistry.register(storcli);
+        }
+        if (history != null) {
+            // Сбрасываем отображенные страницы на диск при остановке
+            Runtime.getRuntime().addShutdownHook(new Thread(history::close, "history-close"));
+            PrometheusRegistry.defaultRegistry.register(recordingReader);
+        }
+        if (riskReader != null) {
+            PrometheusRegistry.defaultRegistry.register(riskReader);
+        }
+        if (adaptive != null) {
+            adaptive.setConcurrencyControl(smartctl);
+        }
+        return new SmartctlCollectorFactory(reader);
+    }
+}
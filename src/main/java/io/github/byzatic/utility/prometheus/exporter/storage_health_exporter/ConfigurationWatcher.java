@@ -0,0 +1,188 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter;
+
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Histogram;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the configuration file and hands every valid new version to a listener.
+ * <p>
+ * The parent directory is watched rather than the file itself, so editors that save through a
+ * temporary file and rename still trigger a reload. Events are debounced: the file is read once it
+ * has been quiet for the debounce interval. A file that fails to load or that the listener rejects
+ * is counted as a failed reload and the previous configuration stays in effect.
+ * <p>
+ * Settings outside {@link ExporterConfiguration#RELOADABLE} keep the values the process started
+ * with. They are compared with the configuration given at construction, not with the last loaded
+ * file: a file that changes one of them is applied for its reloadable part and counted as
+ * {@code restart_required} until the change is reverted or the exporter restarts.
+ */
+public class ConfigurationWatcher implements AutoCloseable {
+    private final static Logger logger = LoggerFactory.getLogger(ConfigurationWatcher.class);
+
+    private static final Histogram reloadDuration = Histogram.builder()
+            .name("config_reload_duration_seconds")
+            .help("Duration of one configuration reload: reading, validating and applying the file")
+            .classicOnly()
+            .classicUpperBounds(0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5)
+            .register();
+
+    private static final Counter reloads = Counter.builder()
+            .name("config_reloads_total")
+            .help("Configuration reloads by result (success, restart_required, failure)")
+            .labelNames("result")
+            .register();
+
+    /**
+     * Applies a reloaded configuration; throwing rejects it.
+     */
+    public interface ReloadListener {
+        void onReload(ExporterConfiguration previous, ExporterConfiguration next) throws Exception;
+    }
+
+    private final Path file;
+    private final Duration debounce;
+    private final ReloadListener listener;
+    // Настройки, с которыми процесс запущен: с ними сравниваются требующие перезапуска поля
+    private final ExporterConfiguration running;
+
+    private volatile ExporterConfiguration current;
+    private volatile WatchService watchService;
+    private Thread thread;
+
+    public ConfigurationWatcher(Path file, ExporterConfiguration initial, Duration debounce, ReloadListener listener) {
+        this.file = file.toAbsolutePath();
+        this.running = initial;
+        this.current = initial;
+        this.debounce = debounce;
+        this.listener = listener;
+    }
+
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::watch, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Watching {} for configuration changes", file);
+    }
+
+    /**
+     * The last accepted configuration; its settings outside {@link ExporterConfiguration#RELOADABLE}
+     * may differ from the running ones ({@link #restartRequired()}).
+     */
+    public ExporterConfiguration current() {
+        return current;
+    }
+
+    /**
+     * Names of the settings whose accepted values differ from the running ones.
+     */
+    public List<String> restartRequired() {
+        return running.restartRequiredBy(current);
+    }
+
+    /**
+     * Reads, validates and applies the file now.
+     *
+     * @return {@code true} if the new configuration was accepted
+     */
+    public synchronized boolean reload() {
+        long start = System.nanoTime();
+        try {
+            ExporterConfiguration next = ExporterConfiguration.load(file);
+            listener.onReload(current, next);
+            current = next;
+            List<String> restartRequired = running.restartRequiredBy(next);
+            if (restartRequired.isEmpty()) {
+                reloads.labelValues("success").inc();
+                logger.info("Configuration reloaded from {}", file);
+            } else {
+                reloads.labelValues("restart_required").inc();
+                logger.warn("Configuration reloaded from {}; changes of {} take effect after a restart", file, restartRequired);
+            }
+            return true;
+        } catch (ConfigurationException e) {
+            reloads.labelValues("failure").inc();
+            logger.error("Configuration {} rejected, keeping the previous one: {}", file, e.getMessage());
+            return false;
+        } catch (Exception e) {
+            reloads.labelValues("failure").inc();
+            logger.error("Configuration {} could not be applied, keeping the previous one", file, e);
+            return false;
+        } finally {
+            reloadDuration.observe((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private void watch() {
+        WatchService ws = watchService;
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                boolean relevant = drain(key);
+                // Ждем, пока файл «успокоится»: редакторы пишут его в несколько приемов
+                while (true) {
+                    WatchKey next = ws.poll(debounce.toMillis(), TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    relevant |= drain(next);
+                }
+                if (relevant) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // close()
+        }
+    }
+
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || file.getFileName().equals(event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    @Override
+    public synchronized void close() {
+        WatchService ws = watchService;
+        if (ws != null) {
+            try {
+                ws.close();
+            } catch (IOException e) {
+                logger.warn("Error while closing configuration watcher", e);
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.apache.commons.configuration2.XMLConfiguration;
+import org.apache.commons.configuration2.builder.fluent.Configurations;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.configuration2.tree.ImmutableNode;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * One validated, immutable reading of the configuration file.
+ * <p>
+ * {@link App} loads it from {@link Configuration#CONFIGURATION_PATH} at startup and passes it to the
+ * components it builds; {@link ConfigurationWatcher} loads a fresh one whenever the file changes, so a
+ * broken edit is rejected as a whole and never leaves the exporter with a half-applied configuration.
+ */
+public final class ExporterConfiguration {
+
+    // Поля, которые применяются без перезапуска (App: reschedule и replaceCollector)
+    static final Set<String> RELOADABLE = Set.of(
+            "cronExpressionString", "featureFlagCachingCollector", "featureFlagSnapshotCollector");
+
+    // Scheduler cron syntax.
+    //
+    //Format: 5 or 6 space-separated fields:
+    //  [seconds] minutes hours day-of-month month day-of-week
+    //If only 5 fields are provided, the seconds field defaults to 0.
+    //
+    //Supported tokens per field:
+    //  * (any), exact numbers (e.g., 5), ranges (a-b), lists (a,b,c),
+    //  steps (*/n), and stepped ranges (a-b/n).
+    //Names (JAN–DEC, SUN–SAT) and Quartz-specific tokens (?, L, W, #) are NOT supported.
+    //Day-of-Month AND Day-of-Week must both match (AND semantics).
+    //Day-of-Week uses 0–6, where 0 = Sunday.
+    //
+    //Examples:
+    //  */10 * * * * *    → every 10 seconds
+    //  0 */5 * * * *     → every 5 minutes (on second 0)
+    //  0 15 10 * * *     → 10:15:00 every day
+    //  0 0 12 * * 1-5    → 12:00:00 Monday–Friday (0=Sun…6=Sat)
+    //
+    //NOTE:
+    //  The Quartz-style value "*/10 * * * * ?" is NOT valid here (the "?" token isn’t supported).
+    //  Use the 6-field form "*/10 * * * * *" to run every 10 seconds.
+
+    public final String cronExpressionString;
+    public final URL prometheusUrl;
+
+    public final boolean featureFlagCachingCollector;
+    // Publishes each cycle as one immutable snapshot; takes precedence over featureFlagCachingCollector.
+    public final boolean featureFlagSnapshotCollector;
+
+    // Maximum number of smartctl device reads running at the same time.
+    public final int smartctlMaxConcurrency;
+
+    // Device topology (smartctl --scan) cache: periodic rescan interval and directories
+    // whose changes (hot-plug) trigger an immediate rescan.
+    public final Duration topologyRescanInterval;
+    public final List<Path> topologyWatchPaths;
+
+    // Polling tiers: lightweight `smartctl -A` reads vs. full `smartctl -a` dumps per device.
+    public final Duration fastTierInterval;
+    public final Duration fullTierInterval;
+
+    // Standby-aware collection (`smartctl -n standby`): sleeping disks are served from cache
+    // until their values are older than standbyMaxAge.
+    public final boolean standbyAware;
+    public final Duration standbyMaxAge;
+    public final int standbyExitStatus;
+
+    // Deadline of one smartctl process and per-device circuit breaker (quarantine with exponential backoff).
+    public final Duration smartctlTimeout;
+    public final int breakerFailureThreshold;
+    public final Duration breakerBaseBackoff;
+    public final Duration breakerMaxBackoff;
+
+    // SMART attributes exported through the generic smart_attribute_* families (in addition to the built-in ones).
+    public final List<SmartAttributeSpec> smartAttributes;
+
+    // Zero-fork temperature sampling from sysfs hwmon (drivetemp/nvme).
+    public final boolean hwmonEnabled;
+    public final Path sysfsRoot;
+    public final Duration hwmonSampleInterval;
+    public final Duration hwmonWindow;
+
+    // Where disk values come from: "smartctl" (run smartctl), "smartd" (tail smartd attribute logs)
+    // or "storcli" (one storcli call for all disks behind the controller).
+    public final String diskSource;
+    public final Path smartdStateDir;
+    // diskSource=storcli: binary, process deadline, and whether disks are joined with smartctl data by serial.
+    public final String storcliPath;
+    public final Duration storcliTimeout;
+    public final boolean storcliJoinSmartctl;
+    // Append every smartctl/storcli execution to this file for later replay; null when disabled.
+    public final Path commandRecordFile;
+
+    // Aggregator mode: accept smartctl JSON pushed by other hosts.
+    public final boolean aggregatorEnabled;
+    public final URL aggregatorIngestUrl;
+    public final int aggregatorWorkers;
+    public final int aggregatorQueueCapacity;
+    public final long aggregatorMaxBodyBytes;
+    public final Duration aggregatorHostTtl;
+
+    // Local memory-mapped sample history for smart_attribute_raw_delta.
+    public final boolean historyEnabled;
+    public final Path historyDir;
+    public final int historyFileBytes;
+    public final Duration historySampleInterval;
+
+    // In-process disk failure risk score.
+    public final boolean riskScoringEnabled;
+    public final long riskSectorThreshold;
+    public final double riskSlopeTauHours;
+    public final double riskTemperatureTauHours;
+
+    // Serve the last known values of disks the source failed to return, for at most this long.
+    public final Duration staleMaxAge;
+
+    // Adaptive schedule: cron sets the tick, the interval and smartctl concurrency follow a CPU budget.
+    public final boolean adaptiveScheduleEnabled;
+    public final Duration adaptiveMinInterval;
+    public final Duration adaptiveMaxInterval;
+    public final double adaptiveMaxCpuPercent;
+
+    // Serve /metrics from a response rendered once per collection cycle (and at most scrapeCacheMaxAge old).
+    public final boolean scrapeCacheEnabled;
+    public final Duration scrapeCacheMaxAge;
+
+    // Collect when scraped if the last cycle is older than onDemandMaxStaleness; cron becomes optional.
+    public final boolean onDemandEnabled;
+    public final Duration onDemandMaxStaleness;
+    public final Duration onDemandDeadline;
+    public final boolean backgroundRefreshEnabled;
+
+    // Push every cycle's metrics to a remote-write or OTLP/HTTP receiver.
+    public final boolean pushEnabled;
+    public final String pushProtocol;
+    public final URI pushUrl;
+    public final int pushQueueCapacity;
+    public final int pushMaxBatchesPerSend;
+    public final Duration pushTimeout;
+    public final Duration pushRetryBaseBackoff;
+    public final Duration pushRetryMaxBackoff;
+
+    // Live reload: watch the configuration file and apply schedule/collector changes without a restart.
+    public final boolean configReloadEnabled;
+    public final Duration configReloadDebounce;
+
+    /**
+     * Reads and validates the configuration file.
+     *
+     * @throws ConfigurationException if the file cannot be read or a value is invalid
+     */
+    public static ExporterConfiguration load(Path file) throws ConfigurationException {
+        XMLConfiguration config = new Configurations().xml(file.toFile());
+        try {
+            return new ExporterConfiguration(config);
+        } catch (MalformedURLException | URISyntaxException | IllegalArgumentException e) {
+            throw new ConfigurationException("Invalid configuration " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private ExporterConfiguration(XMLConfiguration config)
+            throws ConfigurationException, MalformedURLException, URISyntaxException {
+        cronExpressionString = config.getString("cronExpressionString");
+        if (cronExpressionString == null || cronExpressionString.isBlank()) {
+            throw new ConfigurationException("cronExpressionString is required");
+        }
+
+        prometheusUrl = new URI(config.getString("prometheusEndpointURL")).toURL();
+
+        featureFlagCachingCollector = config.getBoolean("featureFlagCachingCollector", false);
+        featureFlagSnapshotCollector = config.getBoolean("featureFlagSnapshotCollector", false);
+
+        smartctlMaxConcurrency = config.getInt("smartctlMaxConcurrency", 4);
+        if (smartctlMaxConcurrency < 1) {
+            throw new ConfigurationException("smartctlMaxConcurrency must be >= 1, got " + smartctlMaxConcurrency);
+        }
+
+        topologyRescanInterval = Duration.ofSeconds(config.getLong("topologyRescanIntervalSeconds", 3600L));
+
+        // Пустой <topologyWatchPaths/> отключает наблюдение, отсутствующий — значения по умолчанию
+        List<String> defaultWatchPaths = config.containsKey("topologyWatchPaths") ? List.of() : List.of("/dev");
+        List<Path> watchPaths = new ArrayList<>();
+        for (String path : config.getList(String.class, "topologyWatchPaths.path", defaultWatchPaths)) {
+            watchPaths.add(Path.of(path));
+        }
+        topologyWatchPaths = List.copyOf(watchPaths);
+
+        fastTierInterval = Duration.ofSeconds(config.getLong("fastTierIntervalSeconds", 0L));
+        fullTierInterval = Duration.ofSeconds(config.getLong("fullTierIntervalSeconds", 0L));
+
+        standbyAware = config.getBoolean("standbyAware", false);
+        standbyMaxAge = Duration.ofSeconds(config.getLong("standbyMaxAgeSeconds", 3600L));
+        standbyExitStatus = config.getInt("standbyExitStatus", 2);
+
+        smartctlTimeout = Duration.ofSeconds(config.getLong("smartctlTimeoutSeconds", 30L));
+        breakerFailureThreshold = config.getInt("breakerFailureThreshold", 3);
+        breakerBaseBackoff = Duration.ofSeconds(config.getLong("breakerBaseBackoffSeconds", 60L));
+        breakerMaxBackoff = Duration.ofSeconds(config.getLong("breakerMaxBackoffSeconds", 3600L));
+        if (breakerMaxBackoff.compareTo(breakerBaseBackoff) < 0) {
+            throw new ConfigurationException("breakerMaxBackoffSeconds must be >= breakerBaseBackoffSeconds");
+        }
+
+        List<SmartAttributeSpec> attributes = new ArrayList<>();
+        for (HierarchicalConfiguration<ImmutableNode> attribute : config.configurationsAt("smartAttributes.attribute")) {
+            try {
+                attributes.add(new SmartAttributeSpec(
+                        attribute.getInt("id", SmartAttributeSpec.NO_ID), attribute.getString("name", null)));
+            } catch (IllegalArgumentException e) {
+                throw new ConfigurationException("Invalid smartAttributes entry: " + e.getMessage());
+            }
+        }
+        smartAttributes = List.copyOf(attributes);
+
+        hwmonEnabled = config.getBoolean("hwmonEnabled", false);
+        sysfsRoot = Path.of(config.getString("sysfsRoot", "/sys"));
+        hwmonSampleInterval = Duration.ofMillis(config.getLong("hwmonSampleIntervalMillis", 1000L));
+        hwmonWindow = Duration.ofSeconds(config.getLong("hwmonWindowSeconds", 60L));
+        if (hwmonSampleInterval.toMillis() < 1) {
+            throw new ConfigurationException("hwmonSampleIntervalMillis must be >= 1");
+        }
+
+        diskSource = config.getString("diskSource", "smartctl");
+        if (!diskSource.equals("smartctl") && !diskSource.equals("smartd") && !diskSource.equals("storcli")) {
+            throw new ConfigurationException("diskSource must be 'smartctl', 'smartd' or 'storcli', got " + diskSource);
+        }
+        smartdStateDir = Path.of(config.getString("smartdStateDir", "/var/lib/smartmontools"));
+        storcliPath = config.getString("storcliPath", "storcli");
+        storcliTimeout = Duration.ofSeconds(config.getLong("storcliTimeoutSeconds", 60L));
+        storcliJoinSmartctl = config.getBoolean("storcliJoinSmartctl", false);
+        if (storcliTimeout.isNegative()) {
+            throw new ConfigurationException("storcliTimeoutSeconds must be >= 0");
+        }
+        String recordFile = config.getString("commandRecordFile", "");
+        commandRecordFile = recordFile.isBlank() ? null : Path.of(recordFile);
+
+        aggregatorEnabled = config.getBoolean("aggregatorEnabled", false);
+        aggregatorIngestUrl = new URI(config.getString("aggregatorIngestURL", "http://0.0.0.0:9101/ingest")).toURL();
+        aggregatorWorkers = config.getInt("aggregatorWorkers", 2);
+        aggregatorQueueCapacity = config.getInt("aggregatorQueueCapacity", 8);
+        aggregatorMaxBodyBytes = config.getLong("aggregatorMaxBodyBytes", 4L * 1024 * 1024);
+        aggregatorHostTtl = Duration.ofSeconds(config.getLong("aggregatorHostTtlSeconds", 900L));
+        if (aggregatorWorkers < 1 || aggregatorQueueCapacity < 0 || aggregatorMaxBodyBytes < 1) {
+            throw new ConfigurationException("aggregatorWorkers and aggregatorMaxBodyBytes must be >= 1, aggregatorQueueCapacity >= 0");
+        }
+
+        historyEnabled = config.getBoolean("historyEnabled", false);
+        historyDir = Path.of(config.getString("historyDir", "/var/lib/storage-health-exporter/history"));
+        historyFileBytes = config.getInt("historyFileBytes", 256 * 1024);
+        historySampleInterval = Duration.ofSeconds(config.getLong("historySampleIntervalSeconds", 60L));
+        if (historyFileBytes < 4096) {
+            throw new ConfigurationException("historyFileBytes must be >= 4096, got " + historyFileBytes);
+        }
+
+        riskScoringEnabled = config.getBoolean("riskScoringEnabled", false);
+        riskSectorThreshold = config.getLong("riskSectorThreshold", 100L);
+        riskSlopeTauHours = config.getDouble("riskSlopeTauHours", 24.0);
+        riskTemperatureTauHours = config.getDouble("riskTemperatureTauHours", 1.0);
+        if (riskSectorThreshold < 1 || riskSlopeTauHours <= 0 || riskTemperatureTauHours <= 0) {
+            throw new ConfigurationException("riskSectorThreshold, riskSlopeTauHours and riskTemperatureTauHours must be positive");
+        }
+
+        staleMaxAge = Duration.ofSeconds(config.getLong("staleMaxAgeSeconds", 900L));
+        if (staleMaxAge.isNegative()) {
+            throw new ConfigurationException("staleMaxAgeSeconds must be >= 0");
+        }
+
+        adaptiveScheduleEnabled = config.getBoolean("adaptiveScheduleEnabled", false);
+        adaptiveMinInterval = Duration.ofSeconds(config.getLong("adaptiveMinIntervalSeconds", 5L));
+        adaptiveMaxInterval = Duration.ofSeconds(config.getLong("adaptiveMaxIntervalSeconds", 600L));
+        adaptiveMaxCpuPercent = config.getDouble("adaptiveMaxCpuPercent", 2.0);
+        if (adaptiveMinInterval.isNegative() || adaptiveMaxInterval.compareTo(adaptiveMinInterval) < 0) {
+            throw new ConfigurationException("adaptiveMinIntervalSeconds must be >= 0 and not above adaptiveMaxIntervalSeconds");
+        }
+        if (!(adaptiveMaxCpuPercent > 0)) {
+            throw new ConfigurationException("adaptiveMaxCpuPercent must be > 0, got " + adaptiveMaxCpuPercent);
+        }
+
+        scrapeCacheEnabled = config.getBoolean("scrapeCacheEnabled", false);
+        scrapeCacheMaxAge = Duration.ofSeconds(config.getLong("scrapeCacheMaxAgeSeconds", 15L));
+        if (scrapeCacheMaxAge.isNegative()) {
+            throw new ConfigurationException("scrapeCacheMaxAgeSeconds must be >= 0");
+        }
+
+        onDemandEnabled = config.getBoolean("onDemandEnabled", false);
+        onDemandMaxStaleness = Duration.ofSeconds(config.getLong("onDemandMaxStalenessSeconds", 30L));
+        onDemandDeadline = Duration.ofMillis(config.getLong("onDemandDeadlineMillis", 10_000L));
+        backgroundRefreshEnabled = config.getBoolean("backgroundRefreshEnabled", true);
+        if (onDemandMaxStaleness.isNegative() || onDemandDeadline.isNegative()) {
+            throw new ConfigurationException("onDemandMaxStalenessSeconds and onDemandDeadlineMillis must be >= 0");
+        }
+        if (!backgroundRefreshEnabled && !onDemandEnabled) {
+            throw new ConfigurationException("backgroundRefreshEnabled can only be false together with onDemandEnabled");
+        }
+
+        pushEnabled = config.getBoolean("pushEnabled", false);
+        pushProtocol = config.getString("pushProtocol", "remote_write");
+        if (!pushProtocol.equals("remote_write") && !pushProtocol.equals("otlp")) {
+            throw new ConfigurationException("pushProtocol must be 'remote_write' or 'otlp', got " + pushProtocol);
+        }
+        pushUrl = new URI(config.getString("pushURL", "http://127.0.0.1:9090/api/v1/write"));
+        pushQueueCapacity = config.getInt("pushQueueCapacity", 32);
+        pushMaxBatchesPerSend = config.getInt("pushMaxBatchesPerSend", 16);
+        pushTimeout = Duration.ofSeconds(config.getLong("pushTimeoutSeconds", 10L));
+        pushRetryBaseBackoff = Duration.ofMillis(config.getLong("pushRetryBaseBackoffMillis", 500L));
+        pushRetryMaxBackoff = Duration.ofSeconds(config.getLong("pushRetryMaxBackoffSeconds", 60L));
+        if (pushQueueCapacity < 1 || pushMaxBatchesPerSend < 1 || pushTimeout.isZero() || pushTimeout.isNegative()
+                || pushRetryBaseBackoff.isNegative() || pushRetryMaxBackoff.compareTo(pushRetryBaseBackoff) < 0) {
+            throw new ConfigurationException("pushQueueCapacity, pushMaxBatchesPerSend and pushTimeoutSeconds must be >= 1, "
+                    + "pushRetryMaxBackoffSeconds must not be below pushRetryBaseBackoffMillis");
+        }
+
+        configReloadEnabled = config.getBoolean("configReloadEnabled", false);
+        configReloadDebounce = Duration.ofMillis(config.getLong("configReloadDebounceMillis", 500L));
+        if (configReloadDebounce.isNegative()) {
+            throw new ConfigurationException("configReloadDebounceMillis must be >= 0");
+        }
+    }
+
+    public boolean collectorChanged(ExporterConfiguration next) {
+        return featureFlagCachingCollector != next.featureFlagCachingCollector
+                || featureFlagSnapshotCollector != next.featureFlagSnapshotCollector;
+    }
+
+    /**
+     * Names of the fields that differ from {@code next} and are not in {@link #RELOADABLE}. Every
+     * field is compared, so a value added to this class needs a restart unless it is listed there.
+     */
+    public List<String> restartRequiredBy(ExporterConfiguration next) {
+        List<String> changed = new ArrayList<>();
+        for (Field field : ExporterConfiguration.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || RELOADABLE.contains(field.getName())) {
+                continue;
+            }
+            try {
+                if (!Objects.equals(comparable(field.get(this)), comparable(field.get(next)))) {
+                    changed.add(field.getName());
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot read configuration field " + field.getName(), e);
+            }
+        }
+        return changed;
+    }
+
+    // URL.equals разрешает имена хостов через DNS: сравниваем строки
+    private static Object comparable(Object value) {
+        return value instanceof URL ? value.toString() : value;
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.aggregator;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.DiskMetricsSnapshotBuilder;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartctlDiskMapper;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJson;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.model.registry.MultiCollector;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Disks reported by remote hosts, exported as {@code aggregated_*} families with an extra {@code host} label.
+ * <p>
+ * Every accepted batch replaces the previous disk set of its host. A host that has not reported
+ * for longer than the TTL is dropped together with all its series. Batches only swap a list;
+ * the snapshot is built on scrape, so {@code aggregated_sample_age_seconds} stays current.
+ */
+public class AggregatedDisksCollector implements MultiCollector {
+    private final static Logger logger = LoggerFactory.getLogger(AggregatedDisksCollector.class);
+
+    private static final Gauge hosts = Gauge.builder()
+            .name("aggregator_hosts")
+            .help("Hosts whose last report has not expired yet")
+            .register();
+
+    private static final Counter expiredHosts = Counter.builder()
+            .name("aggregator_hosts_expired_total")
+            .help("Hosts dropped because they stopped reporting")
+            .register();
+
+    private final SmartctlDiskMapper mapper;
+    private final DiskMetricsSnapshotBuilder snapshotBuilder;
+    private final long hostTtlNanos;
+
+    // Отсортировано по имени хоста, чтобы порядок серий в выдаче был стабильным
+    private final Map<String, HostReport> reports = new TreeMap<>();
+
+    /**
+     * @param smartAttributes attributes exported in addition to {@link SmartCTLReader#BUILT_IN_ATTRIBUTES}
+     * @param hostTtl         how long the last report of a silent host is kept
+     */
+    public AggregatedDisksCollector(List<SmartAttributeSpec> smartAttributes, Duration hostTtl) {
+        List<SmartAttributeSpec> attributes = new ArrayList<>(SmartCTLReader.BUILT_IN_ATTRIBUTES);
+        attributes.addAll(smartAttributes);
+        SmartAttributeTable attributeTable = SmartAttributeTable.compile(attributes);
+        this.mapper = new SmartctlDiskMapper(attributeTable);
+        this.snapshotBuilder = new DiskMetricsSnapshotBuilder(attributeTable, "aggregated_", "host");
+        this.hostTtlNanos = hostTtl.toNanos();
+    }
+
+    /**
+     * Layout of the attribute values of accepted documents; they must be read with a
+     * {@code SmartctlDiskJsonTypeAdapter} for this table.
+     */
+    public SmartAttributeTable getAttributeTable() {
+        return mapper.getAttributeTable();
+    }
+
+    /**
+     * Replaces the disks of {@code host}. Documents must already be checked with
+     * {@link SmartctlDiskMapper#isSupportedFormat}.
+     */
+    public void accept(String host, List<SmartctlDiskJson> documents) {
+        accept(host, documents, System.nanoTime());
+    }
+
+    void accept(String host, List<SmartctlDiskJson> documents, long nowNanos) {
+        long receivedMillis = System.currentTimeMillis();
+        List<MegaRAIDDiskInfo> disks = new ArrayList<>(documents.size());
+        for (SmartctlDiskJson json : documents) {
+            String type = json.device != null ? json.device.type : null;
+            MegaRAIDDiskInfo disk = mapper.map(json, SmartctlDiskMapper.megaRAIDIndex(type),
+                    json.device != null ? json.device.name : null);
+            disk.powerState = MegaRAIDDiskInfo.POWER_STATE_ACTIVE;
+            disk.lastReadEpochMillis = receivedMillis;
+            disk.lastSuccessEpochMillis = receivedMillis;
+            disks.add(disk);
+        }
+        HostReport previous;
+        // Под блокировкой только замена списка: разбор и маппинг идут параллельно в потоках приема
+        synchronized (this) {
+            previous = reports.put(host, new HostReport(disks, nowNanos));
+        }
+        if (previous == null) {
+            logger.info("Host {} started reporting ({} disks)", host, disks.size());
+        }
+    }
+
+    @Override
+    public MetricSnapshots collect() {
+        return collect(System.nanoTime());
+    }
+
+    synchronized MetricSnapshots collect(long nowNanos) {
+        Iterator<Map.Entry<String, HostReport>> it = reports.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, HostReport> entry = it.next();
+            if (nowNanos - entry.getValue().receivedNanos > hostTtlNanos) {
+                logger.warn("Host {} stopped reporting, its disks are dropped", entry.getKey());
+                expiredHosts.inc();
+                it.remove();
+            }
+        }
+        hosts.set(reports.size());
+        DiskMetricsSnapshotBuilder.Accumulator snapshot = snapshotBuilder.newSnapshot();
+        for (Map.Entry<String, HostReport> entry : reports.entrySet()) {
+            for (MegaRAIDDiskInfo disk : entry.getValue().disks) {
+                snapshot.add(disk, entry.getKey());
+            }
+        }
+        return snapshot.build();
+    }
+
+    @Override
+    public List<String> getPrometheusNames() {
+        return snapshotBuilder.metricNames();
+    }
+
+    private static class HostReport {
+        final List<MegaRAIDDiskInfo> disks;
+        final long receivedNanos;
+
+        HostReport(List<MegaRAIDDiskInfo> disks, long receivedNanos) {
+            this.disks = disks;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.aggregator;
+
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Presents a stream of concatenated JSON objects or arrays one top-level value at a time, so that each
+ * can be parsed by a strict {@link com.google.gson.stream.JsonReader}, which accepts a single value only.
+ * <p>
+ * After {@link #nextValue()} returns {@code true}, reads return the characters of that value and then
+ * end of stream. Only nesting and string literals are tracked to find where a value ends; everything
+ * else is left to the parser.
+ */
+final class ConcatenatedJsonReader extends Reader {
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    // Конец текущего значения достигнут
+    private boolean valueEnded = true;
+
+    ConcatenatedJsonReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Skips whitespace up to the next value.
+     *
+     * @return {@code false} at the end of the stream
+     * @throws MalformedJsonException if the next value is not an object or an array
+     */
+    boolean nextValue() throws IOException {
+        if (!valueEnded) {
+            throw new IllegalStateException("current value has not been read to the end");
+        }
+        while (true) {
+            if (pos == limit && !fill()) {
+                return false;
+            }
+            char c = buffer[pos];
+            if (c == '{' || c == '[') {
+                depth = 0;
+                inString = false;
+                escaped = false;
+                valueEnded = false;
+                return true;
+            }
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                throw new MalformedJsonException("expected an object or an array, got '" + c + "'");
+            }
+            pos++;
+        }
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (valueEnded || len == 0) {
+            return valueEnded ? -1 : 0;
+        }
+        int n = 0;
+        while (n < len && !valueEnded) {
+            if (pos == limit && !fill()) {
+                break;
+            }
+            char c = buffer[pos++];
+            cbuf[off + n++] = c;
+            track(c);
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    private void track(char c) {
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+            }
+        } else if (c == '"') {
+            inString = true;
+        } else if (c == '{' || c == '[') {
+            depth++;
+        } else if (c == '}' || c == ']') {
+            if (--depth == 0) {
+                valueEnded = true;
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
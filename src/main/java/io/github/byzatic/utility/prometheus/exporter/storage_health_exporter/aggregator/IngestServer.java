@@ -0,0 +1,341 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.aggregator;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartctlDiskMapper;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJson;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJsonTypeAdapter;
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * HTTP endpoint that accepts raw {@code smartctl -a -j} output pushed by remote hosts.
+ * <p>
+ * {@code POST <path>?host=<name>} with one document, a JSON array of documents, or documents simply
+ * concatenated ({@code for d in ...; do smartctl -a -j $d; done | curl --data-binary @- ...}).
+ * Every document is parsed strictly: the body comes from the network, lenient extensions of JSON are rejected.
+ * The batch replaces everything previously reported by that host.
+ * <p>
+ * Bodies are read and parsed on a bounded worker pool with a bounded queue. When both are full the
+ * request is answered with {@code 429} before its body is read, so a burst of agents cannot pile up
+ * unparsed payloads in the heap; bodies above the size limit get {@code 413}.
+ */
+public class IngestServer implements IngestServerInterface {
+    private final static Logger logger = LoggerFactory.getLogger(IngestServer.class);
+
+    // Имя хоста попадает в метку: только безопасные символы
+    private static final Pattern HOST_NAME = Pattern.compile("[A-Za-z0-9._:-]{1,253}");
+
+    private static final Counter requests = Counter.builder()
+            .name("aggregator_ingest_requests_total")
+            .help("Ingestion requests by HTTP response code")
+            .labelNames("code")
+            .register();
+
+    private static final Histogram parseDuration = Histogram.builder()
+            .name("aggregator_ingest_parse_duration_seconds")
+            .help("Time to read and parse one ingested batch")
+            .classicOnly()
+            .classicUpperBounds(0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5)
+            .register();
+
+    private final InetSocketAddress bindAddress;
+    private final String path;
+    private final AggregatedDisksCollector store;
+    // Атрибуты раскладываются сразу по таблице хранилища
+    private final SmartctlDiskJsonTypeAdapter documentAdapter;
+    private final int workers;
+    private final int queueCapacity;
+    private final long maxBodyBytes;
+
+    private HttpServer server;
+    private ThreadPoolExecutor pool;
+
+    private IngestServer(Builder builder) {
+        if (builder.store == null) {
+            throw new IllegalArgumentException("store must be set");
+        }
+        this.bindAddress = builder.address;
+        this.path = builder.path;
+        this.store = builder.store;
+        this.documentAdapter = new SmartctlDiskJsonTypeAdapter(builder.store.getAttributeTable());
+        this.workers = builder.workers;
+        this.queueCapacity = builder.queueCapacity;
+        this.maxBodyBytes = builder.maxBodyBytes;
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+        AtomicInteger threadCounter = new AtomicInteger();
+        pool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, queue, r -> {
+            Thread t = new Thread(r, "ingest-worker-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+
+        server = HttpServer.create(bindAddress, 0);
+        server.createContext(path, this::dispatch);
+        // Без executor обработчик выполняется в потоке-диспетчере: он только ставит запрос в пул
+        server.setExecutor(null);
+        server.start();
+        logger.info("Ingestion endpoint listening on http://{}:{}{}", getAddress().getHostString(), getAddress().getPort(), path);
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        return server != null ? server.getAddress() : bindAddress;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    private void dispatch(HttpExchange exchange) {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            respond(exchange, 405, null);
+            return;
+        }
+        String host = queryParameter(exchange.getRequestURI().getRawQuery(), "host");
+        if (host == null || !HOST_NAME.matcher(host).matches()) {
+            respond(exchange, 400, "query parameter 'host' is missing or invalid\n");
+            return;
+        }
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null && parseLong(contentLength) > maxBodyBytes) {
+            respond(exchange, 413, "body exceeds " + maxBodyBytes + " bytes\n");
+            return;
+        }
+        try {
+            pool.execute(() -> ingest(exchange, host));
+        } catch (RejectedExecutionException e) {
+            // Пул и очередь заняты: тело не читаем, агент повторит позже
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 429, "ingestion queue is full\n");
+        }
+    }
+
+    private void ingest(HttpExchange exchange, String host) {
+        long start = System.nanoTime();
+        List<SmartctlDiskJson> documents;
+        try (InputStream body = new LimitedInputStream(exchange.getRequestBody(), maxBodyBytes)) {
+            documents = readDocuments(body, documentAdapter);
+        } catch (BodyTooLargeException e) {
+            respond(exchange, 413, "body exceeds " + maxBodyBytes + " bytes\n");
+            return;
+        } catch (IOException | RuntimeException e) {
+            // Кроме ошибок синтаксиса: NumberFormatException на "current": 1.5 и т.п. — ответ нужен в любом случае
+            logger.warn("Rejected batch from {}: {}", host, e.getMessage());
+            respond(exchange, 400, "malformed smartctl JSON: " + e.getMessage() + "\n");
+            return;
+        } finally {
+            parseDuration.observe((System.nanoTime() - start) / 1e9);
+        }
+        for (SmartctlDiskJson json : documents) {
+            if (!SmartctlDiskMapper.isSupportedFormat(json)) {
+                respond(exchange, 400, "unsupported smartctl json_format_version\n");
+                return;
+            }
+        }
+        store.accept(host, documents);
+        logger.debug("Accepted {} disks from {}", documents.size(), host);
+        respond(exchange, 204, null);
+    }
+
+    static List<SmartctlDiskJson> readDocuments(InputStream body, SmartctlDiskJsonTypeAdapter documentAdapter) throws IOException {
+        List<SmartctlDiskJson> documents = new ArrayList<>();
+        // Несколько документов подряд без обрамляющего массива: каждый разбирается строгим парсером отдельно
+        ConcatenatedJsonReader values = new ConcatenatedJsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        while (values.nextValue()) {
+            JsonReader reader = new JsonReader(values);
+            reader.setStrictness(Strictness.STRICT);
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    documents.add(readDocument(reader, documentAdapter));
+                }
+                reader.endArray();
+            } else {
+                documents.add(readDocument(reader, documentAdapter));
+            }
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonParseException("unexpected data after a document");
+            }
+        }
+        return documents;
+    }
+
+    private static SmartctlDiskJson readDocument(JsonReader reader, SmartctlDiskJsonTypeAdapter documentAdapter) throws IOException {
+        SmartctlDiskJson json = documentAdapter.read(reader);
+        if (json == null) {
+            throw new JsonParseException("null document");
+        }
+        return json;
+    }
+
+    private static void respond(HttpExchange exchange, int code, String message) {
+        requests.labelValues(String.valueOf(code)).inc();
+        try {
+            if (message == null) {
+                exchange.sendResponseHeaders(code, -1);
+            } else {
+                byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(code, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+        } catch (IOException e) {
+            logger.debug("Cannot send response {}: {}", code, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    static String queryParameter(String rawQuery, String name) {
+        if (rawQuery == null) {
+            return null;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && name.equals(pair.substring(0, eq))) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static long parseLong(String s) {
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BodyTooLargeException() {
+            super("body too large");
+        }
+    }
+
+    // Ограничивает и chunked-тела, у которых нет Content-Length
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0 && --remaining < 0) {
+                throw new BodyTooLargeException();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0 && (remaining -= n) < 0) {
+                throw new BodyTooLargeException();
+            }
+            return n;
+        }
+    }
+
+    public static class Builder {
+        private InetSocketAddress address = new InetSocketAddress(9101);
+        private String path = "/ingest";
+        private AggregatedDisksCollector store;
+        private int workers = 2;
+        private int queueCapacity = 8;
+        private long maxBodyBytes = 4L * 1024 * 1024;
+
+        public Builder address(InetSocketAddress address) {
+            this.address = address;
+            return this;
+        }
+
+        public Builder path(String path) {
+            this.path = path == null || path.isEmpty() ? "/" : path;
+            return this;
+        }
+
+        public Builder store(AggregatedDisksCollector store) {
+            this.store = store;
+            return this;
+        }
+
+        /**
+         * Batches read and parsed at the same time.
+         */
+        public Builder workers(int workers) {
+            if (workers < 1) {
+                throw new IllegalArgumentException("workers must be >= 1, got " + workers);
+            }
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Accepted requests waiting for a worker; beyond that the endpoint answers 429. {@code 0} for no queue.
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            if (queueCapacity < 0) {
+                throw new IllegalArgumentException("queueCapacity must be >= 0, got " + queueCapacity);
+            }
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder maxBodyBytes(long maxBodyBytes) {
+            if (maxBodyBytes < 1) {
+                throw new IllegalArgumentException("maxBodyBytes must be >= 1, got " + maxBodyBytes);
+            }
+            this.maxBodyBytes = maxBodyBytes;
+            return this;
+        }
+
+        public IngestServer build() {
+            return new IngestServer(this);
+        }
+    }
+}
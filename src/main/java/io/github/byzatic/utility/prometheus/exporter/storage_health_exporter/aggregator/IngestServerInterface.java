@@ -0,0 +1,13 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.aggregator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+public interface IngestServerInterface extends AutoCloseable {
+    void start() throws IOException;
+
+    InetSocketAddress getAddress();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,19 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
+
+/**
+ * A reader whose number of concurrent device commands can be changed while it runs.
+ */
+public interface ConcurrencyControlInterface {
+    /**
+     * Upper bound set at construction; {@link #setConcurrency} never goes above it.
+     */
+    int getMaxConcurrency();
+
+    int getConcurrency();
+
+    /**
+     * Takes effect for commands started after the call; commands already running finish normally.
+     * Values are clamped to {@code [1, getMaxConcurrency()]}.
+     */
+    void setConcurrency(int concurrency);
+}
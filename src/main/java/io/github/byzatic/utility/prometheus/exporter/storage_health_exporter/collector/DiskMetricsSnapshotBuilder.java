@@ -0,0 +1,231 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Builds immutable per-disk gauge snapshots with the same names, help texts and labels
+ * as {@link RAIDMetricsCollectorWithCaching}.
+ */
+public final class DiskMetricsSnapshotBuilder {
+
+    private static final String[] MOUNT_POINT_LABELS = {"disk_id", "model", "serial", "mount_point"};
+    private static final String[] DEVICE_NAME_LABELS = {"disk_id", "model", "serial", "device_name"};
+    private static final String[] ATTRIBUTE_LABELS = {"disk_id", "model", "serial", "mount_point", "attribute_id", "attribute_name"};
+
+    // Индекс массива — поле SmartAttributeTable (RAW, NORMALIZED, WORST, THRESHOLD)
+    private static final String[][] ATTRIBUTE_FAMILIES = {
+            {"smart_attribute_raw", "Raw value of a configured SMART attribute"},
+            {"smart_attribute_normalized", "Normalized value of a configured SMART attribute"},
+            {"smart_attribute_worst", "Worst normalized value of a configured SMART attribute"},
+            {"smart_attribute_threshold", "Failure threshold of a configured SMART attribute"}
+    };
+
+    private static final List<DiskMetric> METRICS = List.of(
+            new DiskMetric("reallocated_sectors", "Reallocated sectors count per disk", false,
+                    d -> d.reallocatedSectors),
+            new DiskMetric("power_on_hours", "Power on hours per disk", false,
+                    d -> d.powerOnHours),
+            new DiskMetric("temperature_celsius", "Disk temperature in Celsius", false,
+                    d -> d.temperatureCelsius),
+            new DiskMetric("current_pending_sectors", "Current pending sectors", false,
+                    d -> d.currentPendingSectors),
+            new DiskMetric("offline_uncorrectable", "Offline uncorrectable sectors", false,
+                    d -> d.offlineUncorrectable),
+            new DiskMetric("udma_crc_errors", "UDMA CRC error count", false,
+                    d -> d.udmaCrcErrors),
+            new DiskMetric("power_state", "Disk power state (1=ACTIVE, 0=STANDBY; in standby the values are served from cache)", false,
+                    d -> MegaRAIDDiskInfo.POWER_STATE_STANDBY.equals(d.powerState) ? 0 : 1),
+            new DiskMetric("sample_age_seconds", "Seconds since the disk values were last read from the device", false,
+                    DiskMetricsSnapshotBuilder::sampleAge),
+            new DiskMetric("last_success_timestamp_seconds", "Unix time at which the disk source last returned the disk", false,
+                    d -> d.lastSuccessEpochMillis / 1000.0),
+            new DiskMetric("stale", "1 if the disk source did not return the disk in the last cycle and its last known values are served", false,
+                    d -> d.stale ? 1 : 0),
+            new DiskMetric("smart_passed", "SMART overall health passed status (1=PASSED, 0=FAILED)", true,
+                    d -> d.smartStatus == null ? Double.NaN : "PASSED".equalsIgnoreCase(d.smartStatus) ? 1 : 0)
+    );
+
+    private final SmartAttributeTable attributeTable;
+    private final String namePrefix;
+    private final String[] extraLabelNames;
+
+    public DiskMetricsSnapshotBuilder(String namePrefix, String... extraLabelNames) {
+        this(null, namePrefix, extraLabelNames);
+    }
+
+    /**
+     * @param attributeTable  layout of {@link MegaRAIDDiskInfo#smartAttributes}; {@code null} exports no attribute families
+     * @param namePrefix      prefix prepended to every metric name ("" for the standard names)
+     * @param extraLabelNames label names whose values are passed to {@link Accumulator#add}, appended to the standard labels
+     */
+    public DiskMetricsSnapshotBuilder(SmartAttributeTable attributeTable, String namePrefix, String... extraLabelNames) {
+        this.attributeTable = attributeTable;
+        this.namePrefix = namePrefix;
+        this.extraLabelNames = extraLabelNames.clone();
+    }
+
+    public List<String> metricNames() {
+        List<String> names = new ArrayList<>(METRICS.size() + ATTRIBUTE_FAMILIES.length);
+        for (DiskMetric metric : METRICS) {
+            names.add(namePrefix + metric.name);
+        }
+        if (attributeTable != null) {
+            for (String[] family : ATTRIBUTE_FAMILIES) {
+                names.add(namePrefix + family[0]);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Starts a new snapshot. The returned accumulator is not thread-safe.
+     */
+    public Accumulator newSnapshot() {
+        return new Accumulator();
+    }
+
+    public final class Accumulator {
+        // Одинаковые наборы меток схлопываем (последний диск побеждает), как это делает и Gauge
+        private final Map<Labels, Entry> byLabels = new LinkedHashMap<>();
+
+        private Accumulator() {
+        }
+
+        public Accumulator add(MegaRAIDDiskInfo disk, String... extraLabelValues) {
+            String[] base = {
+                    String.valueOf(disk.diskId),
+                    defaultIfEmpty(disk.model, "unknown"),
+                    defaultIfEmpty(disk.serial, "unknown"),
+                    defaultIfEmpty(disk.deviceName, "<not mounted>")
+            };
+            Labels mountPointLabels = Labels.of(concat(MOUNT_POINT_LABELS, extraLabelNames), concat(base, extraLabelValues));
+            Labels deviceNameLabels = Labels.of(concat(DEVICE_NAME_LABELS, extraLabelNames), concat(base, extraLabelValues));
+            Labels[] attributeLabels = null;
+            if (attributeTable != null && disk.smartAttributes != null) {
+                String[] names = concat(ATTRIBUTE_LABELS, extraLabelNames);
+                attributeLabels = new Labels[attributeTable.size()];
+                for (int slot = 0; slot < attributeLabels.length; slot++) {
+                    SmartAttributeSpec spec = attributeTable.spec(slot);
+                    String[] values = {base[0], base[1], base[2], base[3],
+                            spec.id == SmartAttributeSpec.NO_ID ? "" : String.valueOf(spec.id), spec.name};
+                    attributeLabels[slot] = Labels.of(names, concat(values, extraLabelValues));
+                }
+            }
+            byLabels.put(mountPointLabels, new Entry(disk, mountPointLabels, deviceNameLabels, attributeLabels));
+            return this;
+        }
+
+        public MetricSnapshots build() {
+            List<MetricSnapshot> snapshots = new ArrayList<>(METRICS.size());
+            for (DiskMetric metric : METRICS) {
+                GaugeSnapshot.Builder gauge = GaugeSnapshot.builder()
+                        .name(namePrefix + metric.name)
+                        .help(metric.help);
+                for (Entry entry : byLabels.values()) {
+                    double value = metric.value.applyAsDouble(entry.disk);
+                    // NaN — значение неизвестно источнику, точку не публикуем
+                    if (Double.isNaN(value)) {
+                        continue;
+                    }
+                    gauge.dataPoint(GaugeSnapshot.GaugeDataPointSnapshot.builder()
+                            .labels(metric.deviceNameLabel ? entry.deviceNameLabels : entry.mountPointLabels)
+                            .value(value)
+                            .build());
+                }
+                snapshots.add(gauge.build());
+            }
+            if (attributeTable != null) {
+                for (int field = 0; field < ATTRIBUTE_FAMILIES.length; field++) {
+                    snapshots.add(attributeFamily(field));
+                }
+            }
+            return new MetricSnapshots(snapshots);
+        }
+
+        private GaugeSnapshot attributeFamily(int field) {
+            GaugeSnapshot.Builder gauge = GaugeSnapshot.builder()
+                    .name(namePrefix + ATTRIBUTE_FAMILIES[field][0])
+                    .help(ATTRIBUTE_FAMILIES[field][1]);
+            for (Entry entry : byLabels.values()) {
+                if (entry.attributeLabels == null) {
+                    continue;
+                }
+                for (int slot = 0; slot < entry.attributeLabels.length; slot++) {
+                    long value = SmartAttributeTable.value(entry.disk.smartAttributes, slot, field);
+                    // Атрибута нет в выводе smartctl
+                    if (value < 0) {
+                        continue;
+                    }
+                    gauge.dataPoint(GaugeSnapshot.GaugeDataPointSnapshot.builder()
+                            .labels(entry.attributeLabels[slot])
+                            .value(value)
+                            .build());
+                }
+            }
+            return gauge.build();
+        }
+    }
+
+    static double sampleAge(MegaRAIDDiskInfo d) {
+        if (d.lastReadEpochMillis <= 0) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - d.lastReadEpochMillis) / 1000.0;
+    }
+
+    private static String[] concat(String[] a, String[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        String[] r = new String[a.length + b.length];
+        System.arraycopy(a, 0, r, 0, a.length);
+        System.arraycopy(b, 0, r, a.length, b.length);
+        return r;
+    }
+
+    private static String defaultIfEmpty(String s, String def) {
+        return (s == null || s.isEmpty()) ? def : s;
+    }
+
+    private static final class Entry {
+        final MegaRAIDDiskInfo disk;
+        final Labels mountPointLabels;
+        final Labels deviceNameLabels;
+        // По слотам SmartAttributeTable; null, если атрибутов нет
+        final Labels[] attributeLabels;
+
+        Entry(MegaRAIDDiskInfo disk, Labels mountPointLabels, Labels deviceNameLabels, Labels[] attributeLabels) {
+            this.disk = disk;
+            this.mountPointLabels = mountPointLabels;
+            this.deviceNameLabels = deviceNameLabels;
+            this.attributeLabels = attributeLabels;
+        }
+    }
+
+    private static final class DiskMetric {
+        final String name;
+        final String help;
+        // smart_passed исторически использует device_name вместо mount_point
+        final boolean deviceNameLabel;
+        final ToDoubleFunction<MegaRAIDDiskInfo> value;
+
+        DiskMetric(String name, String help, boolean deviceNameLabel, ToDoubleFunction<MegaRAIDDiskInfo> value) {
+            this.name = name;
+            this.help = help;
+            this.deviceNameLabel = deviceNameLabel;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+
+import java.util.List;
+
+/**
+ * Source of per-disk values for the metrics collectors.
+ */
+public interface DiskReaderInterface {
+    List<MegaRAIDDiskInfo> readDisks() throws CollectorException;
+
+    /**
+     * Layout of {@link MegaRAIDDiskInfo#smartAttributes}; {@code null} if the reader provides no attribute values.
+     */
+    SmartAttributeTable getAttributeTable();
+}
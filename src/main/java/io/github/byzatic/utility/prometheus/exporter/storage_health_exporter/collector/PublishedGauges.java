@@ -0,0 +1,41 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
+
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+
+/**
+ * The gauge families of a collector, registered in the default registry only while a collector
+ * publishes them. Collectors whose families share names (caching and snapshot) can therefore
+ * replace each other at runtime: the old one unregisters before the new one registers. Collectors
+ * register on their first cycle, not on construction, so the replacement can be built first.
+ */
+final class PublishedGauges {
+    private final Gauge[] gauges;
+    private boolean registered;
+
+    PublishedGauges(Gauge... gauges) {
+        this.gauges = gauges;
+    }
+
+    synchronized void register() {
+        if (registered) {
+            return;
+        }
+        for (Gauge gauge : gauges) {
+            PrometheusRegistry.defaultRegistry.register(gauge);
+        }
+        registered = true;
+    }
+
+    synchronized void unregister() {
+        if (!registered) {
+            return;
+        }
+        for (Gauge gauge : gauges) {
+            PrometheusRegistry.defaultRegistry.unregister(gauge);
+            // При повторной регистрации семейство начнется с пустого набора серий
+            gauge.clear();
+        }
+        registered = false;
+    }
+}
@@ -1,87 +1,220 @@
 package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
 
-import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
 import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
 import io.prometheus.metrics.core.metrics.Gauge;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class RAIDMetricsCollector implements RAIDMetricsCollectorInterface {
     private final static Logger logger = LoggerFactory.getLogger(RAIDMetricsCollector.class);
 
-    private final SmartCTLReader reader;
+    private final DiskReaderInterface reader;
 
     private static final Gauge reallocatedSectors = Gauge.builder()
             .name("megaraid_reallocated_sectors")
             .help("Reallocated sectors count per disk")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
 
     private static final Gauge powerOnHours = Gauge.builder()
             .name("megaraid_power_on_hours")
             .help("Power on hours per disk")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
 
     private static final Gauge temperatureCelsius = Gauge.builder()
             .name("megaraid_temperature_celsius")
             .help("Disk temperature in Celsius")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
 
     private static final Gauge currentPendingSectors = Gauge.builder()
             .name("megaraid_current_pending_sectors")
             .help("Current pending sectors")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
 
     private static final Gauge offlineUncorrectable = Gauge.builder()
             .name("megaraid_offline_uncorrectable")
             .help("Offline uncorrectable sectors")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
 
     private static final Gauge udmaCrcErrors = Gauge.builder()
             .name("megaraid_udma_crc_errors")
             .help("UDMA CRC error count")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
+
+    private static final Gauge powerState = Gauge.builder()
+            .name("megaraid_power_state")
+            .help("Disk power state (1=ACTIVE, 0=STANDBY; in standby the values are served from cache)")
+            .labelNames("disk_id", "model", "serial", "mount_point")
+            .build();
+
+    private static final Gauge sampleAgeSeconds = Gauge.builder()
+            .name("megaraid_sample_age_seconds")
+            .help("Seconds since the disk values were last read from the device")
+            .labelNames("disk_id", "model", "serial", "mount_point")
+            .build();
+
+    private static final Gauge lastSuccessTimestamp = Gauge.builder()
+            .name("megaraid_last_success_timestamp_seconds")
+            .help("Unix time at which the disk source last returned the disk")
+            .labelNames("disk_id", "model", "serial", "mount_point")
+            .build();
+
+    private static final Gauge stale = Gauge.builder()
+            .name("megaraid_stale")
+            .help("1 if the disk source did not return the disk in the last cycle and its last known values are served")
+            .labelNames("disk_id", "model", "serial", "mount_point")
+            .build();
 
     private static final Gauge smartPassed = Gauge.builder()
             .name("megaraid_smart_passed")
             .help("SMART overall health passed status (1=PASSED, 0=FAILED)")
             .labelNames("disk_id", "model", "serial", "device_name")
-            .register();
+            .build();
+
+    // Индекс массива — поле SmartAttributeTable (RAW, NORMALIZED, WORST, THRESHOLD)
+    private static final Gauge[] smartAttribute = {
+            attributeGauge("megaraid_smart_attribute_raw", "Raw value of a configured SMART attribute"),
+            attributeGauge("megaraid_smart_attribute_normalized", "Normalized value of a configured SMART attribute"),
+            attributeGauge("megaraid_smart_attribute_worst", "Worst normalized value of a configured SMART attribute"),
+            attributeGauge("megaraid_smart_attribute_threshold", "Failure threshold of a configured SMART attribute")
+    };
 
-    public RAIDMetricsCollector(SmartCTLReader reader) {
+    // Порядок совпадает с DiskValues.fixed
+    private static final Gauge[] FIXED = {
+            reallocatedSectors, powerOnHours, temperatureCelsius, currentPendingSectors, offlineUncorrectable,
+            udmaCrcErrors, powerState, sampleAgeSeconds, lastSuccessTimestamp, stale
+    };
+
+    private static final PublishedGauges published = new PublishedGauges(
+            reallocatedSectors, powerOnHours, temperatureCelsius, currentPendingSectors, offlineUncorrectable,
+            udmaCrcErrors, powerState, sampleAgeSeconds, lastSuccessTimestamp, stale, smartPassed,
+            smartAttribute[0], smartAttribute[1], smartAttribute[2], smartAttribute[3]);
+
+    public RAIDMetricsCollector(DiskReaderInterface reader) {
         this.reader = reader;
     }
 
+    /**
+     * Computes the values of every disk before writing any of them, so a failing reader leaves the
+     * previous cycle's series untouched. A disk whose values cannot be computed is skipped and the
+     * others are still published.
+     */
     @Override
     public void updateMetrics() {
+        // Регистрация с первым циклом; дальше повторный вызов ничего не делает
+        published.register();
+        List<MegaRAIDDiskInfo> disks;
+        SmartAttributeTable attributeTable;
         try {
-            List<MegaRAIDDiskInfo> disks = reader.readDisks();
-            for (MegaRAIDDiskInfo disk : disks) {
-                String[] labels = {
-                        String.valueOf(disk.diskId),
-                        disk.model != null ? disk.model : "unknown",
-                        disk.serial != null ? disk.serial : "unknown",
-                        disk.deviceName != null ? disk.deviceName : "<not mounted>"
-                };
-
-                smartPassed.labelValues(labels).set("PASSED".equalsIgnoreCase(disk.smartStatus) ? 1 : 0);
-                reallocatedSectors.labelValues(labels).set(disk.reallocatedSectors);
-                powerOnHours.labelValues(labels).set(disk.powerOnHours);
-                temperatureCelsius.labelValues(labels).set(disk.temperatureCelsius);
-                currentPendingSectors.labelValues(labels).set(disk.currentPendingSectors);
-                offlineUncorrectable.labelValues(labels).set(disk.offlineUncorrectable);
-                udmaCrcErrors.labelValues(labels).set(disk.udmaCrcErrors);
-            }
+            disks = reader.readDisks();
+            attributeTable = reader.getAttributeTable();
         } catch (Exception e) {
             logger.error("Failed to update RAID metrics", e);
             throw new RuntimeException(e);
         }
+
+        List<DiskValues> values = new ArrayList<>(disks.size());
+        for (MegaRAIDDiskInfo disk : disks) {
+            try {
+                values.add(new DiskValues(disk, attributeTable));
+            } catch (RuntimeException e) {
+                logger.warn("Skipping disk {} ({}): {}", disk.diskId, disk.serial, e.toString());
+            }
+        }
+        for (DiskValues disk : values) {
+            disk.write();
+        }
+    }
+
+    @Override
+    public void retire() {
+        published.unregister();
+    }
+
+    /**
+     * Labels and values of one disk, computed before anything is written.
+     */
+    private static final class DiskValues {
+        final String[] labels;
+        final double passed;
+        final double[] fixed;
+        final String[][] attributeLabels;
+        final long[] attributeValues;
+
+        DiskValues(MegaRAIDDiskInfo disk, SmartAttributeTable attributeTable) {
+            labels = new String[]{
+                    String.valueOf(disk.diskId),
+                    disk.model != null ? disk.model : "unknown",
+                    disk.serial != null ? disk.serial : "unknown",
+                    disk.deviceName != null ? disk.deviceName : "<not mounted>"
+            };
+            passed = disk.smartStatus == null ? Double.NaN : "PASSED".equalsIgnoreCase(disk.smartStatus) ? 1 : 0;
+            fixed = new double[]{
+                    disk.reallocatedSectors, disk.powerOnHours, disk.temperatureCelsius, disk.currentPendingSectors,
+                    disk.offlineUncorrectable, disk.udmaCrcErrors,
+                    MegaRAIDDiskInfo.POWER_STATE_STANDBY.equals(disk.powerState) ? 0 : 1, sampleAge(disk),
+                    disk.lastSuccessEpochMillis / 1000.0, disk.stale ? 1 : 0
+            };
+            if (attributeTable != null && disk.smartAttributes != null) {
+                attributeLabels = new String[attributeTable.size()][];
+                attributeValues = new long[attributeTable.size() * SmartAttributeTable.FIELDS];
+                for (int slot = 0; slot < attributeTable.size(); slot++) {
+                    SmartAttributeSpec spec = attributeTable.spec(slot);
+                    attributeLabels[slot] = new String[]{labels[0], labels[1], labels[2], labels[3],
+                            spec.id == SmartAttributeSpec.NO_ID ? "" : String.valueOf(spec.id), spec.name};
+                    for (int field = 0; field < SmartAttributeTable.FIELDS; field++) {
+                        attributeValues[slot * SmartAttributeTable.FIELDS + field] =
+                                SmartAttributeTable.value(disk.smartAttributes, slot, field);
+                    }
+                }
+            } else {
+                attributeLabels = null;
+                attributeValues = null;
+            }
+        }
+
+        void write() {
+            if (!Double.isNaN(passed)) {
+                smartPassed.labelValues(labels).set(passed);
+            }
+            for (int i = 0; i < FIXED.length; i++) {
+                FIXED[i].labelValues(labels).set(fixed[i]);
+            }
+            if (attributeLabels != null) {
+                for (int slot = 0; slot < attributeLabels.length; slot++) {
+                    for (int field = 0; field < SmartAttributeTable.FIELDS; field++) {
+                        long value = attributeValues[slot * SmartAttributeTable.FIELDS + field];
+                        if (value >= 0) {
+                            smartAttribute[field].labelValues(attributeLabels[slot]).set(value);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static Gauge attributeGauge(String name, String help) {
+        return Gauge.builder()
+                .name(name)
+                .help(help)
+                .labelNames("disk_id", "model", "serial", "mount_point", "attribute_id", "attribute_name")
+                .build();
+    }
+
+    private static double sampleAge(MegaRAIDDiskInfo disk) {
+        if (disk.lastReadEpochMillis <= 0) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - disk.lastReadEpochMillis) / 1000.0;
     }
 }
@@ -1,6 +1,12 @@
 package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
 
 public interface RAIDMetricsCollectorInterface {
-    // Обновление метрик
+    // Обновление метрик; первый вызов регистрирует семейства коллектора, поэтому новый коллектор
+    // можно построить, пока заменяемый еще опубликован
     void updateMetrics();
+
+    // Снятие серий коллектора с публикации перед заменой другим коллектором (перечитывание конфигурации);
+    // после вызова коллектор больше не используется
+    default void retire() {
+    }
 }
@@ -1,122 +1,392 @@
 package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
 
-import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
 import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.prometheus.metrics.core.datapoints.GaugeDataPoint;
 import io.prometheus.metrics.core.metrics.Gauge;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+/**
+ * Keeps one series per disk in the default registry and updates it in place.
+ * <p>
+ * Each disk key (serial, or controller index for disks without one) holds its label arrays, the
+ * data-point handles of every gauge and the last written values. A cycle only compares and writes
+ * changed values; labels and handles are rebuilt only when the disk's labels change. Disks are
+ * evicted by generation: an entry not stamped with the current cycle number is removed together
+ * with its series. In steady state a cycle allocates nothing, and its cost is linear in the number
+ * of disks.
+ */
 public class RAIDMetricsCollectorWithCaching implements RAIDMetricsCollectorInterface {
     private static final Logger logger = LoggerFactory.getLogger(RAIDMetricsCollector.class);
 
-    private final SmartCTLReader reader;
+    private final DiskReaderInterface reader;
 
-    // Храним последние использованные labels по ключу диска (serial или diskId)
-    private final Map<String, String[]> knownLabelsByKey = new ConcurrentHashMap<>();
+    // Состояние дисков по ключу: серийный номер, иначе номер на контроллере и устройство
+    // (у спящих с запуска SATA-дисков номер -1 общий); вложенная карта — без сборки ключа-строки на цикл
+    private final Map<String, DiskSeries> bySerial = new HashMap<>();
+    private final Map<Integer, Map<String, DiskSeries>> byLocation = new HashMap<>();
+    // Те же записи списком: обход по индексу без итераторов
+    private final List<DiskSeries> all = new ArrayList<>();
+    // Записи текущего цикла в порядке дисков; переиспользуется между циклами
+    private final List<DiskSeries> resolved = new ArrayList<>();
+    private long generation = 0;
 
     private static final Gauge reallocatedSectors = Gauge.builder()
             .name("reallocated_sectors")
             .help("Reallocated sectors count per disk")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
 
     private static final Gauge powerOnHours = Gauge.builder()
             .name("power_on_hours")
             .help("Power on hours per disk")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
 
     private static final Gauge temperatureCelsius = Gauge.builder()
             .name("temperature_celsius")
             .help("Disk temperature in Celsius")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
 
     private static final Gauge currentPendingSectors = Gauge.builder()
             .name("current_pending_sectors")
             .help("Current pending sectors")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
 
     private static final Gauge offlineUncorrectable = Gauge.builder()
             .name("offline_uncorrectable")
             .help("Offline uncorrectable sectors")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
 
     private static final Gauge udmaCrcErrors = Gauge.builder()
             .name("udma_crc_errors")
             .help("UDMA CRC error count")
             .labelNames("disk_id", "model", "serial", "mount_point")
-            .register();
+            .build();
+
+    private static final Gauge powerState = Gauge.builder()
+            .name("power_state")
+            .help("Disk power state (1=ACTIVE, 0=STANDBY; in standby the values are served from cache)")
+            .labelNames("disk_id", "model", "serial", "mount_point")
+            .build();
+
+    private static final Gauge sampleAgeSeconds = Gauge.builder()
+            .name("sample_age_seconds")
+            .help("Seconds since the disk values were last read from the device")
+            .labelNames("disk_id", "model", "serial", "mount_point")
+            .build();
+
+    private static final Gauge lastSuccessTimestamp = Gauge.builder()
+            .name("last_success_timestamp_seconds")
+            .help("Unix time at which the disk source last returned the disk")
+            .labelNames("disk_id", "model", "serial", "mount_point")
+            .build();
+
+    private static final Gauge stale = Gauge.builder()
+            .name("stale")
+            .help("1 if the disk source did not return the disk in the last cycle and its last known values are served")
+            .labelNames("disk_id", "model", "serial", "mount_point")
+            .build();
 
     private static final Gauge smartPassed = Gauge.builder()
             .name("smart_passed")
             .help("SMART overall health passed status (1=PASSED, 0=FAILED)")
             .labelNames("disk_id", "model", "serial", "device_name")
-            .register();
+            .build();
+
+    // Все настроенные атрибуты SMART; индекс массива — поле SmartAttributeTable (RAW, NORMALIZED, WORST, THRESHOLD)
+    private static final Gauge[] smartAttribute = {
+            attributeGauge("smart_attribute_raw", "Raw value of a configured SMART attribute"),
+            attributeGauge("smart_attribute_normalized", "Normalized value of a configured SMART attribute"),
+            attributeGauge("smart_attribute_worst", "Worst normalized value of a configured SMART attribute"),
+            attributeGauge("smart_attribute_threshold", "Failure threshold of a configured SMART attribute")
+    };
 
-    public RAIDMetricsCollectorWithCaching(SmartCTLReader reader) {
+    // Индексы в DiskSeries.fixed/fixedValues; порядок совпадает с FIXED
+    private static final int REALLOCATED = 0;
+    private static final int POWER_ON_HOURS = 1;
+    private static final int TEMPERATURE = 2;
+    private static final int PENDING = 3;
+    private static final int OFFLINE_UNCORRECTABLE = 4;
+    private static final int UDMA_CRC = 5;
+    private static final int POWER_STATE = 6;
+    private static final int SAMPLE_AGE = 7;
+    private static final int LAST_SUCCESS = 8;
+    private static final int STALE = 9;
+
+    private static final Gauge[] FIXED = {
+            reallocatedSectors, powerOnHours, temperatureCelsius, currentPendingSectors,
+            offlineUncorrectable, udmaCrcErrors, powerState, sampleAgeSeconds, lastSuccessTimestamp, stale
+    };
+
+    private static final PublishedGauges published = new PublishedGauges(
+            reallocatedSectors, powerOnHours, temperatureCelsius, currentPendingSectors, offlineUncorrectable,
+            udmaCrcErrors, powerState, sampleAgeSeconds, lastSuccessTimestamp, stale, smartPassed,
+            smartAttribute[0], smartAttribute[1], smartAttribute[2], smartAttribute[3]);
+
+    public RAIDMetricsCollectorWithCaching(DiskReaderInterface reader) {
         this.reader = reader;
     }
 
     @Override
-    public synchronized void updateMetrics() {
+    public void updateMetrics() {
+        // Регистрация с первым циклом; дальше повторный вызов ничего не делает
+        published.register();
         try {
+            // Чтение дисков — долгая часть цикла, она идет без блокировки
             List<MegaRAIDDiskInfo> disks = reader.readDisks();
+            SmartAttributeTable attributeTable = reader.getAttributeTable();
+            synchronized (this) {
+                apply(disks, attributeTable);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to update RAID metrics", e);
+            throw new RuntimeException(e);
+        }
+    }
 
-            // Ключи, которые встретились в этом апдейте
-            Set<String> seenKeys = new HashSet<>(disks.size());
+    @Override
+    public void retire() {
+        synchronized (this) {
+            for (int i = 0; i < all.size(); i++) {
+                all.get(i).removeAll();
+            }
+            all.clear();
+            resolved.clear();
+            bySerial.clear();
+            byLocation.clear();
+        }
+        published.unregister();
+    }
+
+    private void apply(List<MegaRAIDDiskInfo> disks, SmartAttributeTable attributeTable) {
+        long current = ++generation;
+
+        // 1) Находим записи и помечаем их поколением
+        resolved.clear();
+        for (int i = 0; i < disks.size(); i++) {
+            DiskSeries series = resolve(disks.get(i));
+            series.generation = current;
+            resolved.add(series);
+        }
+
+        // 2) Удаляем диски, которых больше нет, до записи значений:
+        //    если их метки совпадают с метками нового диска, серии нового не пострадают
+        for (int i = all.size() - 1; i >= 0; i--) {
+            DiskSeries series = all.get(i);
+            if (series.generation != current) {
+                series.removeAll();
+                forget(series);
+                // Удаление перестановкой с последним: O(1)
+                int last = all.size() - 1;
+                all.set(i, all.get(last));
+                all.remove(last);
+            }
+        }
 
-            for (MegaRAIDDiskInfo disk : disks) {
-                String key = buildKey(disk); // приоритет serial, иначе diskId
-                seenKeys.add(key);
+        // 3) Пишем только изменившиеся значения
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < disks.size(); i++) {
+            resolved.get(i).update(disks.get(i), attributeTable, now);
+        }
+    }
 
-                String[] newLabels = buildLabels(disk);
+    private DiskSeries resolve(MegaRAIDDiskInfo disk) {
+        boolean hasSerial = disk.serial != null && !disk.serial.isEmpty();
+        DiskSeries series;
+        if (hasSerial) {
+            series = bySerial.get(disk.serial);
+        } else {
+            Map<String, DiskSeries> byDevice = byLocation.get(disk.diskId);
+            series = byDevice == null ? null : byDevice.get(disk.deviceName);
+        }
+        if (series == null) {
+            series = new DiskSeries(hasSerial ? disk.serial : null, disk.diskId, disk.deviceName);
+            if (hasSerial) {
+                bySerial.put(disk.serial, series);
+            } else {
+                byLocation.computeIfAbsent(disk.diskId, id -> new HashMap<>()).put(disk.deviceName, series);
+            }
+            all.add(series);
+        }
+        return series;
+    }
 
+    private void forget(DiskSeries series) {
+        if (series.serialKey != null) {
+            bySerial.remove(series.serialKey);
+        } else {
+            Map<String, DiskSeries> byDevice = byLocation.get(series.diskIdKey);
+            byDevice.remove(series.deviceNameKey);
+            if (byDevice.isEmpty()) {
+                byLocation.remove(series.diskIdKey);
+            }
+        }
+    }
+
+    /**
+     * Series of one disk: labels, data-point handles and the values last written through them.
+     */
+    private static final class DiskSeries {
+        final String serialKey;
+        final int diskIdKey;
+        final String deviceNameKey;
+        long generation;
+
+        // Значения, из которых построены метки
+        int diskId;
+        String model;
+        String serial;
+        String deviceName;
+        String[] labels;
+
+        final GaugeDataPoint[] fixed = new GaugeDataPoint[FIXED.length];
+        final double[] fixedValues = new double[FIXED.length];
+        GaugeDataPoint passed;
+        double passedValue;
+
+        SmartAttributeTable attributeTable;
+        String[][] attributeLabels;
+        GaugeDataPoint[] attributes;
+        long[] attributeValues;
+
+        DiskSeries(String serialKey, int diskIdKey, String deviceNameKey) {
+            this.serialKey = serialKey;
+            this.diskIdKey = diskIdKey;
+            this.deviceNameKey = deviceNameKey;
+        }
+
+        void update(MegaRAIDDiskInfo disk, SmartAttributeTable table, long now) {
+            if (labels == null || labelsChanged(disk) || table != attributeTable) {
                 // Если раньше были другие labels для этого ключа — удаляем старые с всех метрик
-                String[] oldLabels = knownLabelsByKey.get(key);
-                if (oldLabels != null && !Arrays.equals(oldLabels, newLabels)) {
-                    removeAllMetricsFor(oldLabels);
+                removeAll();
+                bind(disk, table);
+            }
+
+            set(REALLOCATED, disk.reallocatedSectors);
+            set(POWER_ON_HOURS, disk.powerOnHours);
+            set(TEMPERATURE, disk.temperatureCelsius);
+            set(PENDING, disk.currentPendingSectors);
+            set(OFFLINE_UNCORRECTABLE, disk.offlineUncorrectable);
+            set(UDMA_CRC, disk.udmaCrcErrors);
+            set(POWER_STATE, MegaRAIDDiskInfo.POWER_STATE_STANDBY.equals(disk.powerState) ? 0 : 1);
+            set(SAMPLE_AGE, sampleAge(disk, now));
+            set(LAST_SUCCESS, disk.lastSuccessEpochMillis / 1000.0);
+            set(STALE, disk.stale ? 1 : 0);
+
+            // Источник без статуса SMART (smartd attrlog): серию не публикуем
+            if (disk.smartStatus == null) {
+                if (passed != null) {
+                    smartPassed.remove(labels);
+                    passed = null;
+                }
+            } else {
+                double value = "PASSED".equalsIgnoreCase(disk.smartStatus) ? 1 : 0;
+                if (passed == null) {
+                    passed = smartPassed.labelValues(labels);
+                    passed.set(value);
+                    passedValue = value;
+                } else if (value != passedValue) {
+                    passed.set(value);
+                    passedValue = value;
                 }
+            }
 
-                // Апдейтим значения (устанавливаем новые labels/values)
-                smartPassed.labelValues(newLabels)
-                        .set("PASSED".equalsIgnoreCase(nullToEmpty(disk.smartStatus)) ? 1 : 0);
-                reallocatedSectors.labelValues(newLabels).set(disk.reallocatedSectors);
-                powerOnHours.labelValues(newLabels).set(disk.powerOnHours);
-                temperatureCelsius.labelValues(newLabels).set(disk.temperatureCelsius);
-                currentPendingSectors.labelValues(newLabels).set(disk.currentPendingSectors);
-                offlineUncorrectable.labelValues(newLabels).set(disk.offlineUncorrectable);
-                udmaCrcErrors.labelValues(newLabels).set(disk.udmaCrcErrors);
-
-                // Запоминаем актуальные labels для ключа
-                knownLabelsByKey.put(key, newLabels);
+            if (attributes != null) {
+                updateAttributes(disk.smartAttributes);
             }
+        }
 
-            // Удаляем метрики для дисков, которых больше нет
-            Iterator<Map.Entry<String, String[]>> it = knownLabelsByKey.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<String, String[]> entry = it.next();
-                if (!seenKeys.contains(entry.getKey())) {
-                    removeAllMetricsFor(entry.getValue());
-                    it.remove();
+        private void set(int index, double value) {
+            if (value != fixedValues[index]) {
+                fixed[index].set(value);
+                fixedValues[index] = value;
+            }
+        }
+
+        private void updateAttributes(long[] values) {
+            for (int i = 0; i < attributes.length; i++) {
+                int slot = i / SmartAttributeTable.FIELDS;
+                int field = i % SmartAttributeTable.FIELDS;
+                long value = SmartAttributeTable.value(values, slot, field);
+                // Атрибута нет в выводе smartctl — серию не держим
+                if (value < 0) {
+                    if (attributes[i] != null) {
+                        smartAttribute[field].remove(attributeLabels[slot]);
+                        attributes[i] = null;
+                    }
+                } else if (attributes[i] == null) {
+                    attributes[i] = smartAttribute[field].labelValues(attributeLabels[slot]);
+                    attributes[i].set(value);
+                    attributeValues[i] = value;
+                } else if (value != attributeValues[i]) {
+                    attributes[i].set(value);
+                    attributeValues[i] = value;
                 }
             }
+        }
 
-        } catch (Exception e) {
-            logger.error("Failed to update RAID metrics", e);
-            throw new RuntimeException(e);
+        private boolean labelsChanged(MegaRAIDDiskInfo disk) {
+            return disk.diskId != diskId || !Objects.equals(disk.model, model)
+                    || !Objects.equals(disk.serial, serial) || !Objects.equals(disk.deviceName, deviceName);
+        }
+
+        private void bind(MegaRAIDDiskInfo disk, SmartAttributeTable table) {
+            diskId = disk.diskId;
+            model = disk.model;
+            serial = disk.serial;
+            deviceName = disk.deviceName;
+            labels = buildLabels(disk);
+            for (int i = 0; i < FIXED.length; i++) {
+                fixed[i] = FIXED[i].labelValues(labels);
+                fixedValues[i] = Double.NaN;
+            }
+            attributeTable = table;
+            if (table != null) {
+                attributeLabels = new String[table.size()][];
+                for (int slot = 0; slot < table.size(); slot++) {
+                    attributeLabels[slot] = attributeLabels(labels, table.spec(slot));
+                }
+                attributes = new GaugeDataPoint[table.size() * SmartAttributeTable.FIELDS];
+                attributeValues = new long[attributes.length];
+            } else {
+                attributeLabels = null;
+                attributes = null;
+                attributeValues = null;
+            }
         }
-    }
 
-    private static String buildKey(MegaRAIDDiskInfo d) {
-        String serial = nullToEmpty(d.serial);
-        if (!serial.isEmpty()) return "S:" + serial;
-        return "D:" + d.diskId; // fallback
+        void removeAll() {
+            if (labels == null) {
+                return;
+            }
+            // remove не «моргает»: удаляем конкретную комбинацию меток
+            for (Gauge gauge : FIXED) {
+                gauge.remove(labels);
+            }
+            smartPassed.remove(labels);
+            passed = null;
+            if (attributeLabels != null) {
+                for (String[] attribute : attributeLabels) {
+                    for (Gauge gauge : smartAttribute) {
+                        gauge.remove(attribute);
+                    }
+                }
+            }
+            labels = null;
+        }
     }
 
     // Порядок значений должен соответствовать порядку labelNames у всех Gauge
@@ -130,22 +400,29 @@ public class RAIDMetricsCollectorWithCaching implements RAIDMetricsCollectorInte
         };
     }
 
-    private static void removeAllMetricsFor(String[] labels) {
-        // remove не «моргает»: удаляем конкретную комбинацию меток
-        reallocatedSectors.remove(labels);
-        powerOnHours.remove(labels);
-        temperatureCelsius.remove(labels);
-        currentPendingSectors.remove(labels);
-        offlineUncorrectable.remove(labels);
-        udmaCrcErrors.remove(labels);
-        smartPassed.remove(labels);
+    private static String[] attributeLabels(String[] labels, SmartAttributeSpec spec) {
+        String[] result = Arrays.copyOf(labels, labels.length + 2);
+        result[labels.length] = spec.id == SmartAttributeSpec.NO_ID ? "" : String.valueOf(spec.id);
+        result[labels.length + 1] = spec.name;
+        return result;
+    }
+
+    private static Gauge attributeGauge(String name, String help) {
+        return Gauge.builder()
+                .name(name)
+                .help(help)
+                .labelNames("disk_id", "model", "serial", "mount_point", "attribute_id", "attribute_name")
+                .build();
     }
 
-    private static String nullToEmpty(String s) {
-        return s == null ? "" : s;
+    private static double sampleAge(MegaRAIDDiskInfo d, long now) {
+        if (d.lastReadEpochMillis <= 0) {
+            return 0;
+        }
+        return Math.max(0, now - d.lastReadEpochMillis) / 1000.0;
     }
 
     private static String defaultIfEmpty(String s, String def) {
         return (s == null || s.isEmpty()) ? def : s;
     }
-}
\ No newline at end of file
+}
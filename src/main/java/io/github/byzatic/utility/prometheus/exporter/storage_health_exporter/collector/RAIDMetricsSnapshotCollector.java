@@ -0,0 +1,84 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.prometheus.metrics.model.registry.MultiCollector;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Publishes each collection cycle as one immutable snapshot.
+ * <p>
+ * {@link #updateMetrics()} builds the complete set of disk gauges off to the side and swaps it in
+ * with a single volatile write; {@link #collect()} only returns the current reference. A scrape
+ * therefore never sees a half-updated cycle and never blocks on the collector.
+ */
+public class RAIDMetricsSnapshotCollector implements RAIDMetricsCollectorInterface, MultiCollector {
+    private static final Logger logger = LoggerFactory.getLogger(RAIDMetricsSnapshotCollector.class);
+
+    private final DiskReaderInterface reader;
+    private final DiskMetricsSnapshotBuilder snapshotBuilder;
+    private final PrometheusRegistry registry;
+
+    private volatile MetricSnapshots snapshot = MetricSnapshots.of();
+    // Регистрируется первым циклом: до этого имена метрик может занимать заменяемый коллектор
+    private boolean registered;
+
+    public RAIDMetricsSnapshotCollector(DiskReaderInterface reader) {
+        this(reader, PrometheusRegistry.defaultRegistry);
+    }
+
+    public RAIDMetricsSnapshotCollector(DiskReaderInterface reader, PrometheusRegistry registry) {
+        this.reader = reader;
+        this.snapshotBuilder = new DiskMetricsSnapshotBuilder(reader.getAttributeTable(), "");
+        this.registry = registry;
+    }
+
+    @Override
+    public void updateMetrics() {
+        synchronized (this) {
+            if (!registered) {
+                registry.register(this);
+                registered = true;
+            }
+        }
+        try {
+            List<MegaRAIDDiskInfo> disks = reader.readDisks();
+
+            DiskMetricsSnapshotBuilder.Accumulator next = snapshotBuilder.newSnapshot();
+            for (MegaRAIDDiskInfo disk : disks) {
+                next.add(disk);
+            }
+            // Диски, пропавшие из цикла, просто не попадают в новый снимок
+            snapshot = next.build();
+
+        } catch (Exception e) {
+            logger.error("Failed to update RAID metrics", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void retire() {
+        synchronized (this) {
+            if (registered) {
+                registry.unregister(this);
+                registered = false;
+            }
+        }
+        snapshot = MetricSnapshots.of();
+    }
+
+    @Override
+    public MetricSnapshots collect() {
+        return snapshot;
+    }
+
+    @Override
+    public List<String> getPrometheusNames() {
+        return snapshotBuilder.metricNames();
+    }
+}
@@ -1,21 +1,28 @@
 package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
 
-import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
 import org.jetbrains.annotations.NotNull;
 
 public class SmartctlCollectorFactory implements SmartctlCollectorFactoryInterface {
-    private final SmartCTLReader smartCTLReader;
+    private final DiskReaderInterface reader;
 
-    public SmartctlCollectorFactory(@NotNull SmartCTLReader smartCTLReader) {
-        this.smartCTLReader = smartCTLReader;
+    public SmartctlCollectorFactory(@NotNull DiskReaderInterface reader) {
+        this.reader = reader;
     }
 
     @Override
     public @NotNull RAIDMetricsCollectorInterface getCollector(@NotNull Boolean caching) {
         if (caching) {
-            return new RAIDMetricsCollectorWithCaching(smartCTLReader);
+            return new RAIDMetricsCollectorWithCaching(reader);
         } else {
-            return new RAIDMetricsCollector(smartCTLReader);
+            return new RAIDMetricsCollector(reader);
         }
     }
+
+    @Override
+    public @NotNull RAIDMetricsCollectorInterface getCollector(@NotNull Boolean caching, @NotNull Boolean snapshot) {
+        if (snapshot) {
+            return new RAIDMetricsSnapshotCollector(reader);
+        }
+        return getCollector(caching);
+    }
 }
@@ -4,4 +4,6 @@ import org.jetbrains.annotations.NotNull;
 
 public interface SmartctlCollectorFactoryInterface {
     @NotNull RAIDMetricsCollectorInterface getCollector(@NotNull Boolean caching);
+
+    @NotNull RAIDMetricsCollectorInterface getCollector(@NotNull Boolean caching, @NotNull Boolean snapshot);
 }
@@ -0,0 +1,116 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A command whose output is known in advance. Nothing is readable until {@code latency} has passed,
+ * as if the command were still working; a hanging command produces nothing until the deadline,
+ * then reports {@link #timedOut()} and an empty stdout, like a process killed by the watchdog.
+ */
+final class CannedExecution implements CommandExecutionInterface {
+    // Код завершения процесса, убитого SIGKILL
+    private static final int KILLED_EXIT_STATUS = 137;
+
+    private final byte[] stdout;
+    private final int exitStatus;
+    private final String stderr;
+    private final long latencyNanos;
+    private final boolean hang;
+    private final long deadlineNanos;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final InputStream stream;
+
+    private boolean settled;
+    private volatile boolean timedOut;
+    private volatile boolean killed;
+
+    CannedExecution(byte[] stdout, int exitStatus, String stderr, Duration latency, boolean hang, Duration deadline) {
+        this.stdout = stdout;
+        this.exitStatus = exitStatus;
+        this.stderr = stderr;
+        this.latencyNanos = latency.toNanos();
+        this.hang = hang;
+        this.deadlineNanos = deadline.isNegative() ? 0 : deadline.toNanos();
+        this.stream = new SettlingStream();
+    }
+
+    /**
+     * Waits until the command "exits": after its latency, at the deadline, or when closed.
+     */
+    private synchronized void settle() throws InterruptedException {
+        if (settled) {
+            return;
+        }
+        boolean expires = deadlineNanos > 0 && (hang || latencyNanos >= deadlineNanos);
+        if (hang && deadlineNanos == 0) {
+            // Без дедлайна зависшая команда ждет только close()
+            closed.await();
+            killed = true;
+        } else if (closed.await(expires ? deadlineNanos : latencyNanos, TimeUnit.NANOSECONDS)) {
+            killed = true;
+        } else if (expires) {
+            timedOut = true;
+            killed = true;
+        }
+        settled = true;
+    }
+
+    @Override
+    public InputStream stdout() {
+        return stream;
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        settle();
+        return killed ? KILLED_EXIT_STATUS : exitStatus;
+    }
+
+    @Override
+    public boolean timedOut() {
+        return timedOut;
+    }
+
+    @Override
+    public String stderrTail() {
+        return killed ? "" : stderr;
+    }
+
+    @Override
+    public void close() {
+        closed.countDown();
+    }
+
+    private final class SettlingStream extends InputStream {
+        private InputStream delegate;
+
+        private InputStream delegate() throws IOException {
+            if (delegate == null) {
+                try {
+                    settle();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for command output");
+                }
+                delegate = new ByteArrayInputStream(killed ? new byte[0] : stdout);
+            }
+            return delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return delegate().read(b, off, len);
+        }
+    }
+}
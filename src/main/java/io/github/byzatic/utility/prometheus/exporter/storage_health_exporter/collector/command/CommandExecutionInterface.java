@@ -0,0 +1,22 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * One started command: its stdout, exit status and whether it was cut short by the deadline.
+ */
+public interface CommandExecutionInterface extends AutoCloseable {
+    InputStream stdout();
+
+    // Дочитывает то, что не забрал парсер, и ждет завершения команды
+    int waitFor() throws IOException, InterruptedException;
+
+    boolean timedOut();
+
+    // Последние байты stderr; пустая строка, если их нет или они не успели прийти
+    String stderrTail();
+
+    @Override
+    void close();
+}
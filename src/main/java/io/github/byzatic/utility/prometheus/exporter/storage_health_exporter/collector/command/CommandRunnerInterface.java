@@ -0,0 +1,19 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Starts the external commands the collectors read from (smartctl, storcli).
+ * <p>
+ * {@link ProcessCommandRunner} runs them for real; {@link RecordingCommandRunner},
+ * {@link ReplayCommandRunner} and {@link SimulatedCommandRunner} let the exporter be exercised
+ * without the hardware.
+ */
+public interface CommandRunnerInterface {
+    /**
+     * @param deadline maximum lifetime of the command; {@link Duration#ZERO} for none
+     */
+    CommandExecutionInterface start(List<String> command, Duration deadline) throws IOException;
+}
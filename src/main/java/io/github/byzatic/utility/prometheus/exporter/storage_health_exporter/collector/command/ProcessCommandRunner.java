@@ -0,0 +1,16 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Runs commands as child processes.
+ */
+public class ProcessCommandRunner implements CommandRunnerInterface {
+
+    @Override
+    public CommandExecutionInterface start(List<String> command, Duration deadline) throws IOException {
+        return new ProcessExecution(new ProcessBuilder(command).start(), deadline);
+    }
+}
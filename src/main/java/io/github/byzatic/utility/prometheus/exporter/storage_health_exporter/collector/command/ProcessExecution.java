@@ -0,0 +1,126 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.util.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A started child process whose stderr is drained concurrently,
+ * so a chatty device can never fill the pipe and block the child.
+ * <p>
+ * With a deadline, a watchdog kills the process and its descendants when it expires; the blocked
+ * reader then sees end of stream and {@link #timedOut()} returns {@code true}.
+ */
+final class ProcessExecution implements CommandExecutionInterface {
+    private static final int STDERR_TAIL_BYTES = 2048;
+
+    private static final ExecutorService stderrDrainers =
+            Executors.newCachedThreadPool(new DaemonThreadFactory("command-stderr"));
+
+    private static final ScheduledExecutorService watchdog =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("command-watchdog"));
+
+    private final Process process;
+    private final Future<String> stderrTail;
+    private final ScheduledFuture<?> deadlineTask;
+    private volatile boolean timedOut;
+
+    /**
+     * @param deadline maximum lifetime of the process; {@link Duration#ZERO} for none
+     */
+    ProcessExecution(Process process, Duration deadline) {
+        this.process = process;
+        this.stderrTail = stderrDrainers.submit(() -> drainTail(process.getErrorStream()));
+        this.deadlineTask = deadline.isZero() || deadline.isNegative() ? null
+                : watchdog.schedule(this::expire, deadline.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean timedOut() {
+        return timedOut;
+    }
+
+    @Override
+    public InputStream stdout() {
+        return process.getInputStream();
+    }
+
+    @Override
+    public int waitFor() throws IOException, InterruptedException {
+        InputStream out = process.getInputStream();
+        try {
+            while (out.skip(Long.MAX_VALUE) > 0 || out.read() >= 0) {
+                // дочитываем stdout до EOF
+            }
+        } catch (IOException e) {
+            // Убитый сторожем процесс может закрыть поток посреди чтения
+            if (!timedOut) {
+                throw e;
+            }
+        }
+        return process.waitFor();
+    }
+
+    @Override
+    public String stderrTail() {
+        try {
+            return stderrTail.get(100, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return "";
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    @Override
+    public void close() {
+        if (deadlineTask != null) {
+            deadlineTask.cancel(false);
+        }
+        if (process.isAlive()) {
+            destroyTree();
+        }
+    }
+
+    private void expire() {
+        if (process.isAlive()) {
+            timedOut = true;
+            destroyTree();
+        }
+    }
+
+    // Сначала потомки: после смерти родителя их уже не найти через descendants()
+    private void destroyTree() {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    private static String drainTail(InputStream err) throws IOException {
+        byte[] tail = new byte[STDERR_TAIL_BYTES];
+        byte[] buf = new byte[512];
+        int length = 0;
+        int n;
+        while ((n = err.read(buf)) > 0) {
+            if (n >= tail.length) {
+                System.arraycopy(buf, n - tail.length, tail, 0, tail.length);
+                length = tail.length;
+            } else {
+                int keep = Math.min(length, tail.length - n);
+                System.arraycopy(tail, length - keep, tail, 0, keep);
+                System.arraycopy(buf, 0, tail, keep, n);
+                length = keep + n;
+            }
+        }
+        return new String(tail, 0, length, StandardCharsets.UTF_8).trim();
+    }
+}
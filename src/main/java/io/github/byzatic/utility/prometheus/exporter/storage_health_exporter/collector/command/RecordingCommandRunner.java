@@ -0,0 +1,160 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command;
+
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Runs commands through a delegate and appends every execution to a file, one JSON object per line:
+ * {@code command}, {@code exitStatus} ({@code -1} if the caller never waited for it),
+ * {@code latencyMillis}, {@code timedOut}, {@code stdout} and {@code stderr}.
+ * <p>
+ * The file is read back by {@link ReplayCommandRunner}. It contains serial numbers and other device
+ * details, so it is as sensitive as the smartctl output itself.
+ */
+public class RecordingCommandRunner implements CommandRunnerInterface {
+    private final static Logger logger = LoggerFactory.getLogger(RecordingCommandRunner.class);
+
+    private final CommandRunnerInterface delegate;
+    private final Path file;
+
+    public RecordingCommandRunner(CommandRunnerInterface delegate, Path file) {
+        this.delegate = delegate;
+        this.file = file;
+    }
+
+    @Override
+    public CommandExecutionInterface start(List<String> command, Duration deadline) throws IOException {
+        return new RecordedExecution(List.copyOf(command), delegate.start(command, deadline));
+    }
+
+    private void append(List<String> command, int exitStatus, long latencyNanos, boolean timedOut,
+                        byte[] stdout, String stderr) {
+        StringWriter line = new StringWriter(stdout.length + 256);
+        try (JsonWriter json = new JsonWriter(line)) {
+            json.beginObject();
+            json.name("command").beginArray();
+            for (String arg : command) {
+                json.value(arg);
+            }
+            json.endArray();
+            json.name("exitStatus").value(exitStatus);
+            json.name("latencyMillis").value(latencyNanos / 1_000_000);
+            json.name("timedOut").value(timedOut);
+            json.name("stdout").value(new String(stdout, StandardCharsets.UTF_8));
+            json.name("stderr").value(stderr);
+            json.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        line.write('\n');
+        // Команды идут из нескольких потоков; строка должна попасть в файл целиком
+        synchronized (this) {
+            try {
+                Files.writeString(file, line.toString(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                logger.warn("Failed to record {}: {}", command, e.toString());
+            }
+        }
+    }
+
+    private final class RecordedExecution implements CommandExecutionInterface {
+        private final List<String> command;
+        private final CommandExecutionInterface execution;
+        private final long start = System.nanoTime();
+        private final ByteArrayOutputStream captured = new ByteArrayOutputStream(8 * 1024);
+        private final InputStream tee;
+        private int exitStatus = -1;
+        private long latencyNanos = -1;
+        private boolean recorded;
+
+        RecordedExecution(List<String> command, CommandExecutionInterface execution) {
+            this.command = command;
+            this.execution = execution;
+            this.tee = new FilterInputStream(execution.stdout()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        captured.write(b);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0) {
+                        captured.write(b, off, n);
+                    }
+                    return n;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    // Пропущенные байты тоже должны попасть в запись
+                    byte[] buf = new byte[8192];
+                    long skipped = 0;
+                    int r;
+                    while (skipped < n && (r = read(buf, 0, (int) Math.min(buf.length, n - skipped))) > 0) {
+                        skipped += r;
+                    }
+                    return skipped;
+                }
+            };
+        }
+
+        @Override
+        public InputStream stdout() {
+            return tee;
+        }
+
+        @Override
+        public int waitFor() throws IOException, InterruptedException {
+            // Остаток stdout читаем сами, иначе он минует запись
+            try {
+                tee.skip(Long.MAX_VALUE);
+            } catch (IOException e) {
+                if (!execution.timedOut()) {
+                    throw e;
+                }
+            }
+            exitStatus = execution.waitFor();
+            latencyNanos = System.nanoTime() - start;
+            return exitStatus;
+        }
+
+        @Override
+        public boolean timedOut() {
+            return execution.timedOut();
+        }
+
+        @Override
+        public String stderrTail() {
+            return execution.stderrTail();
+        }
+
+        @Override
+        public void close() {
+            execution.close();
+            if (!recorded) {
+                recorded = true;
+                append(command, exitStatus, latencyNanos >= 0 ? latencyNanos : System.nanoTime() - start,
+                        execution.timedOut(), captured.toByteArray(), execution.stderrTail());
+            }
+        }
+    }
+}
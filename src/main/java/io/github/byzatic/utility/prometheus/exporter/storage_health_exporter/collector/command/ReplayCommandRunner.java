@@ -0,0 +1,98 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers commands from a file written by {@link RecordingCommandRunner}.
+ * <p>
+ * Executions are matched by the exact command line. When a command was recorded several times the
+ * recordings are returned in turn, wrapping around, so a recording of a few cycles can be replayed
+ * for any number of them. A recording that timed out hangs until the current deadline, if there is one. With
+ * {@code honourLatency} each answer is delayed by the recorded latency.
+ */
+public class ReplayCommandRunner implements CommandRunnerInterface {
+
+    private final Map<List<String>, Recordings> recordings = new HashMap<>();
+    private final boolean honourLatency;
+
+    public ReplayCommandRunner(Path file, boolean honourLatency) throws IOException {
+        this.honourLatency = honourLatency;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+                    List<String> command = new ArrayList<>();
+                    for (JsonElement arg : json.getAsJsonArray("command")) {
+                        command.add(arg.getAsString());
+                    }
+                    recordings.computeIfAbsent(List.copyOf(command), k -> new Recordings()).list.add(new Recording(
+                            json.get("stdout").getAsString().getBytes(StandardCharsets.UTF_8),
+                            json.get("exitStatus").getAsInt(),
+                            json.has("stderr") ? json.get("stderr").getAsString() : "",
+                            Duration.ofMillis(Math.max(0, json.get("latencyMillis").getAsLong())),
+                            json.get("timedOut").getAsBoolean()));
+                } catch (RuntimeException e) {
+                    throw new IOException("Invalid recording at " + file + ":" + number + ": " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public CommandExecutionInterface start(List<String> command, Duration deadline) throws IOException {
+        Recordings forCommand = recordings.get(command);
+        if (forCommand == null) {
+            throw new IOException("No recording for " + String.join(" ", command));
+        }
+        Recording r = forCommand.next();
+        // Без дедлайна записанный таймаут повис бы навсегда; отвечаем как есть
+        boolean hang = r.timedOut && !deadline.isZero();
+        return new CannedExecution(r.stdout, r.exitStatus, r.stderr,
+                honourLatency ? r.latency : Duration.ZERO, hang, deadline);
+    }
+
+    private static final class Recordings {
+        final List<Recording> list = new ArrayList<>();
+        final AtomicInteger next = new AtomicInteger();
+
+        Recording next() {
+            return list.get(Math.floorMod(next.getAndIncrement(), list.size()));
+        }
+    }
+
+    private static final class Recording {
+        final byte[] stdout;
+        final int exitStatus;
+        final String stderr;
+        final Duration latency;
+        final boolean timedOut;
+
+        Recording(byte[] stdout, int exitStatus, String stderr, Duration latency, boolean timedOut) {
+            this.stdout = stdout;
+            this.exitStatus = exitStatus;
+            this.stderr = stderr;
+            this.latency = latency;
+            this.timedOut = timedOut;
+        }
+    }
+}
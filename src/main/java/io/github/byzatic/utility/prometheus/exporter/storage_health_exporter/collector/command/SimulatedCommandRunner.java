@@ -0,0 +1,243 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A fleet of {@code devices} MegaRAID disks behind {@code /dev/bus/0}, synthesized from one
+ * {@code smartctl --scan -j} and one {@code smartctl -a -j} example.
+ * <p>
+ * Every disk gets its own serial number ({@code SIM00000}, {@code SIM00001}, ...), temperature
+ * and reallocated sector count. Each device read takes a log-normally distributed time around
+ * {@code latencyMedian}, hangs until the deadline with {@code hangProbability}, and fails with
+ * {@code failureProbability}: half of the failures exit with an error and no output, the other half
+ * print truncated JSON. The scan itself never hangs or fails. Runs with the same seed and the same
+ * order of calls make the same decisions.
+ */
+public class SimulatedCommandRunner implements CommandRunnerInterface {
+    private static final String BUS = "/dev/bus/0";
+
+    private final byte[] scan;
+    private final byte[][] reads;
+    private final long latencyMedianNanos;
+    private final double latencySigma;
+    private final double hangProbability;
+    private final double failureProbability;
+    // Под this: решения принимаются в порядке вызовов
+    private final SplittableRandom random;
+
+    private SimulatedCommandRunner(Builder builder) {
+        if (builder.scanTemplate == null || builder.readTemplate == null) {
+            throw new IllegalArgumentException("scanTemplate and readTemplate must be set");
+        }
+        if (builder.devices < 1) {
+            throw new IllegalArgumentException("devices must be >= 1");
+        }
+        this.latencyMedianNanos = builder.latencyMedian.toNanos();
+        this.latencySigma = builder.latencySigma;
+        this.hangProbability = builder.hangProbability;
+        this.failureProbability = builder.failureProbability;
+        this.random = new SplittableRandom(builder.seed);
+
+        JsonObject scanJson = JsonParser.parseString(builder.scanTemplate).getAsJsonObject();
+        JsonArray devices = new JsonArray();
+        for (int i = 0; i < builder.devices; i++) {
+            JsonObject device = new JsonObject();
+            device.addProperty("name", BUS);
+            device.addProperty("info_name", BUS + " [megaraid_disk_" + String.format("%02d", i) + "]");
+            device.addProperty("type", "megaraid," + i);
+            device.addProperty("protocol", "SCSI");
+            devices.add(device);
+        }
+        scanJson.add("devices", devices);
+        this.scan = scanJson.toString().getBytes(StandardCharsets.UTF_8);
+
+        // Выводы дисков готовим заранее: разбор шаблона не должен попадать в замеры
+        JsonObject readJson = JsonParser.parseString(builder.readTemplate).getAsJsonObject();
+        SplittableRandom values = new SplittableRandom(builder.seed);
+        this.reads = new byte[builder.devices][];
+        for (int i = 0; i < builder.devices; i++) {
+            JsonObject disk = readJson.deepCopy();
+            disk.addProperty("serial_number", String.format("SIM%05d", i));
+            JsonObject device = disk.getAsJsonObject("device");
+            if (device != null) {
+                device.addProperty("name", BUS);
+                device.addProperty("info_name", BUS + " [megaraid_disk_" + String.format("%02d", i) + "] [SAT]");
+                device.addProperty("type", "sat+megaraid," + i);
+            }
+            JsonObject temperature = disk.getAsJsonObject("temperature");
+            if (temperature != null) {
+                temperature.addProperty("current", 25 + values.nextInt(25));
+            }
+            // Примерно каждый десятый диск с переназначенными секторами
+            setRaw(disk, 5, values.nextInt(10) == 0 ? 1 + values.nextInt(200) : 0);
+            reads[i] = disk.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void setRaw(JsonObject disk, int id, long value) {
+        JsonObject attributes = disk.getAsJsonObject("ata_smart_attributes");
+        if (attributes == null || !attributes.has("table")) {
+            return;
+        }
+        for (JsonElement element : attributes.getAsJsonArray("table")) {
+            JsonObject attribute = element.getAsJsonObject();
+            if (attribute.has("id") && attribute.get("id").getAsInt() == id && attribute.has("raw")) {
+                JsonObject raw = attribute.getAsJsonObject("raw");
+                raw.addProperty("value", value);
+                raw.addProperty("string", Long.toString(value));
+            }
+        }
+    }
+
+    /**
+     * Reads a recorded example, skipping the shell prompt line that precedes the JSON.
+     */
+    public static String readExample(Path file) throws IOException {
+        String text = Files.readString(file, StandardCharsets.UTF_8);
+        int start = text.indexOf('{');
+        if (start < 0) {
+            throw new IOException("No JSON in " + file);
+        }
+        return text.substring(start);
+    }
+
+    public int devices() {
+        return reads.length;
+    }
+
+    // Объем заранее подготовленных выводов: его стоит вычитать из замеров памяти
+    public long fixtureBytes() {
+        long total = scan.length;
+        for (byte[] read : reads) {
+            total += read.length;
+        }
+        return total;
+    }
+
+    @Override
+    public CommandExecutionInterface start(List<String> command, Duration deadline) throws IOException {
+        if (command.contains("--scan")) {
+            return new CannedExecution(scan, 0, "", latency(), false, deadline);
+        }
+        int d = command.indexOf("-d");
+        String type = d >= 0 && d + 1 < command.size() ? command.get(d + 1) : "";
+        int index = -1;
+        if (type.startsWith("megaraid,")) {
+            try {
+                index = Integer.parseInt(type.substring("megaraid,".length()));
+            } catch (NumberFormatException ignored) {
+                // останется -1
+            }
+        }
+        if (index < 0 || index >= reads.length) {
+            String device = command.isEmpty() ? "" : command.get(command.size() - 1);
+            return new CannedExecution(new byte[0], 2, "Smartctl open device: " + device + " [" + type + "] failed: No such device",
+                    Duration.ZERO, false, deadline);
+        }
+
+        Duration latency;
+        double outcome;
+        boolean truncate;
+        synchronized (this) {
+            latency = latency();
+            outcome = random.nextDouble();
+            truncate = random.nextBoolean();
+        }
+        if (outcome < hangProbability) {
+            return new CannedExecution(new byte[0], 0, "", latency, true, deadline);
+        }
+        if (outcome < hangProbability + failureProbability) {
+            if (truncate) {
+                byte[] half = new byte[reads[index].length / 2];
+                System.arraycopy(reads[index], 0, half, 0, half.length);
+                return new CannedExecution(half, 0, "", latency, false, deadline);
+            }
+            return new CannedExecution(new byte[0], 2,
+                    "Smartctl open device: " + BUS + " [megaraid_disk_" + String.format("%02d", index) + "] failed: INQUIRY failed",
+                    latency, false, deadline);
+        }
+        return new CannedExecution(reads[index], 0, "", latency, false, deadline);
+    }
+
+    private synchronized Duration latency() {
+        if (latencyMedianNanos <= 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos((long) (latencyMedianNanos * Math.exp(latencySigma * random.nextGaussian())));
+    }
+
+    public static class Builder {
+        private int devices = 24;
+        private String scanTemplate;
+        private String readTemplate;
+        private Duration latencyMedian = Duration.ofMillis(200);
+        private double latencySigma = 0.5;
+        private double hangProbability = 0;
+        private double failureProbability = 0;
+        private long seed = 1;
+
+        public Builder devices(int devices) {
+            this.devices = devices;
+            return this;
+        }
+
+        // Вывод smartctl --scan -j; список устройств заменяется синтетическим
+        public Builder scanTemplate(String scanTemplate) {
+            this.scanTemplate = scanTemplate;
+            return this;
+        }
+
+        // Вывод smartctl -a -j одного диска; у копий меняются серийник, температура и сектора
+        public Builder readTemplate(String readTemplate) {
+            this.readTemplate = readTemplate;
+            return this;
+        }
+
+        /**
+         * Median of the log-normal read latency; {@link Duration#ZERO} answers immediately.
+         */
+        public Builder latencyMedian(Duration latencyMedian) {
+            this.latencyMedian = latencyMedian;
+            return this;
+        }
+
+        /**
+         * Standard deviation of the latency's logarithm: 0 is constant, 1 puts the 95th percentile
+         * at about five times the median.
+         */
+        public Builder latencySigma(double latencySigma) {
+            this.latencySigma = latencySigma;
+            return this;
+        }
+
+        public Builder hangProbability(double hangProbability) {
+            this.hangProbability = hangProbability;
+            return this;
+        }
+
+        public Builder failureProbability(double failureProbability) {
+            this.failureProbability = failureProbability;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SimulatedCommandRunner build() {
+            return new SimulatedCommandRunner(this);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions;
+
+/**
+ * smartctl could not open the device or did not get its identity, and returned no device data.
+ */
+public class DeviceOpenException extends CollectorException {
+    private static final long serialVersionUID = 1L;
+
+    public DeviceOpenException(String message) {
+        super(message);
+    }
+}
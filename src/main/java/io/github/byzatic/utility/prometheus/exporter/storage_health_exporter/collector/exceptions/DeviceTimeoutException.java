@@ -0,0 +1,12 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions;
+
+/**
+ * A device read did not finish before its deadline and the smartctl process was killed.
+ */
+public class DeviceTimeoutException extends CollectorException {
+    private static final long serialVersionUID = 1L;
+
+    public DeviceTimeoutException(String message) {
+        super(message);
+    }
+}
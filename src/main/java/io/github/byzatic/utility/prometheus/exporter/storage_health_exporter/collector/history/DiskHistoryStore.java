@@ -0,0 +1,162 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.history;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.core.metrics.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local history of raw SMART attribute values, one {@link SampleRing} file per disk serial.
+ * <p>
+ * Fields of a ring are the raw values of the {@link SmartAttributeTable} slots; a changed table
+ * starts every ring over. Samples closer together than the minimum interval are not stored, which
+ * bounds how much time one file covers: about {@code fileBytes / (fields + 1)} samples.
+ */
+public class DiskHistoryStore implements AutoCloseable {
+    private final static Logger logger = LoggerFactory.getLogger(DiskHistoryStore.class);
+
+    private static final Gauge storeBytes = Gauge.builder()
+            .name("history_store_bytes")
+            .help("Size of all open sample history files")
+            .register();
+
+    private static final Gauge storeFiles = Gauge.builder()
+            .name("history_store_files")
+            .help("Open sample history files (one per disk serial)")
+            .register();
+
+    private static final Histogram writeDuration = Histogram.builder()
+            .name("history_write_duration_seconds")
+            .help("Time to append one sample to a history file")
+            .classicOnly()
+            .classicUpperBounds(0.000001, 0.000005, 0.00001, 0.00005, 0.0001, 0.0005, 0.001, 0.01)
+            .register();
+
+    private static final Counter resets = Counter.builder()
+            .name("history_store_resets_total")
+            .help("History files started over because their layout changed or their header was inconsistent")
+            .register();
+
+    private final Path directory;
+    private final int fileBytes;
+    private final long minIntervalSeconds;
+    private final SmartAttributeTable attributeTable;
+    private final int layout;
+
+    private final Map<String, SampleRing> rings = new HashMap<>();
+    private final long[] scratch;
+
+    /**
+     * @param directory      where the {@code <serial>.hist} files live; created if missing
+     * @param fileBytes      size of one file
+     * @param minInterval    samples closer to the previous one are dropped
+     * @param attributeTable layout of {@code smartAttributes} of the disks passed to {@link #record}
+     */
+    public DiskHistoryStore(Path directory, int fileBytes, Duration minInterval, SmartAttributeTable attributeTable) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.fileBytes = fileBytes;
+        this.minIntervalSeconds = minInterval.getSeconds();
+        this.attributeTable = attributeTable;
+        this.layout = layoutOf(attributeTable);
+        this.scratch = new long[attributeTable.size()];
+    }
+
+    public SmartAttributeTable getAttributeTable() {
+        return attributeTable;
+    }
+
+    /**
+     * Stores the raw attribute values of one disk.
+     *
+     * @return {@code false} if the sample was dropped (too close to the previous one, or no history file)
+     */
+    public synchronized boolean record(String serial, long epochSeconds, long[] smartAttributes) {
+        SampleRing ring = ring(serial);
+        if (ring == null || smartAttributes == null) {
+            return false;
+        }
+        if (ring.count() > 0 && epochSeconds - ring.lastTime() < minIntervalSeconds) {
+            return false;
+        }
+        for (int slot = 0; slot < scratch.length; slot++) {
+            scratch[slot] = SmartAttributeTable.value(smartAttributes, slot, SmartAttributeTable.RAW);
+        }
+        long start = System.nanoTime();
+        ring.append(epochSeconds, scratch);
+        writeDuration.observe((System.nanoTime() - start) / 1e9);
+        return true;
+    }
+
+    /**
+     * Raw values of the newest sample and of the newest sample at or before each cutoff.
+     *
+     * @return {@code false} if there is no history for the serial
+     */
+    public synchronized boolean valuesAt(String serial, long[] cutoffSeconds, long[][] atCutoff, boolean[] found, long[] latest) {
+        SampleRing ring = ring(serial);
+        return ring != null && ring.valuesAt(cutoffSeconds, atCutoff, found, latest);
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Map.Entry<String, SampleRing> entry : rings.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                logger.warn("Cannot close history of {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        rings.clear();
+        updateSize();
+    }
+
+    private SampleRing ring(String serial) {
+        SampleRing ring = rings.get(serial);
+        if (ring != null || serial == null || serial.isEmpty()) {
+            return ring;
+        }
+        Path file = directory.resolve(fileName(serial));
+        try {
+            ring = SampleRing.open(file, attributeTable.size(), layout, fileBytes);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cannot open history file {}: {}", file, e.getMessage());
+            return null;
+        }
+        if (ring.wasReset()) {
+            resets.inc();
+            logger.info("History file {} started over", file);
+        }
+        rings.put(serial, ring);
+        updateSize();
+        return ring;
+    }
+
+    private void updateSize() {
+        storeFiles.set(rings.size());
+        storeBytes.set((double) rings.size() * fileBytes);
+    }
+
+    static String fileName(String serial) {
+        return serial.replaceAll("[^A-Za-z0-9._-]", "_") + ".hist";
+    }
+
+    private static int layoutOf(SmartAttributeTable table) {
+        int hash = 1;
+        for (int slot = 0; slot < table.size(); slot++) {
+            SmartAttributeSpec spec = table.spec(slot);
+            hash = 31 * hash + spec.id;
+            hash = 31 * hash + spec.name.hashCode();
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,137 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.history;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.DiskReaderInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.prometheus.metrics.model.registry.MultiCollector;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reader decorator that appends every disk read to a {@link DiskHistoryStore} and publishes how much
+ * each raw SMART attribute grew over fixed windows ({@code smart_attribute_raw_delta{window="24h"}}).
+ * <p>
+ * A window is published only once the history reaches back that far, so a fresh store shows the
+ * {@code 1h} delta after an hour and the {@code 7d} one after a week. The disks themselves are
+ * passed through unchanged.
+ */
+public class HistoryRecordingReader implements DiskReaderInterface, MultiCollector {
+    public static final List<Duration> DEFAULT_WINDOWS = List.of(Duration.ofHours(1), Duration.ofHours(24), Duration.ofDays(7));
+
+    private static final String DELTA_NAME = "smart_attribute_raw_delta";
+    private static final String[] LABEL_NAMES = {"disk_id", "model", "serial", "mount_point", "attribute_id", "attribute_name", "window"};
+
+    private final DiskReaderInterface delegate;
+    private final DiskHistoryStore store;
+    private final long[] windowSeconds;
+    private final String[] windowLabels;
+
+    // Буферы обхода истории, переиспользуются между дисками
+    private final long[] cutoffs;
+    private final long[][] atCutoff;
+    private final boolean[] found;
+    private final long[] latest;
+
+    private volatile MetricSnapshots snapshot = MetricSnapshots.of();
+
+    public HistoryRecordingReader(DiskReaderInterface delegate, DiskHistoryStore store, List<Duration> windows) {
+        if (store.getAttributeTable() != delegate.getAttributeTable()) {
+            throw new IllegalArgumentException("history store must use the attribute table of the reader");
+        }
+        this.delegate = delegate;
+        this.store = store;
+        this.windowSeconds = new long[windows.size()];
+        this.windowLabels = new String[windows.size()];
+        for (int k = 0; k < windowSeconds.length; k++) {
+            windowSeconds[k] = windows.get(k).getSeconds();
+            windowLabels[k] = windowLabel(windowSeconds[k]);
+        }
+        int fields = delegate.getAttributeTable().size();
+        this.cutoffs = new long[windowSeconds.length];
+        this.atCutoff = new long[windowSeconds.length][fields];
+        this.found = new boolean[windowSeconds.length];
+        this.latest = new long[fields];
+    }
+
+    @Override
+    public SmartAttributeTable getAttributeTable() {
+        return delegate.getAttributeTable();
+    }
+
+    @Override
+    public synchronized List<MegaRAIDDiskInfo> readDisks() throws CollectorException {
+        List<MegaRAIDDiskInfo> disks = delegate.readDisks();
+        SmartAttributeTable table = delegate.getAttributeTable();
+        long now = System.currentTimeMillis() / 1000;
+        for (int k = 0; k < windowSeconds.length; k++) {
+            cutoffs[k] = now - windowSeconds[k];
+        }
+
+        GaugeSnapshot.Builder deltas = GaugeSnapshot.builder()
+                .name(DELTA_NAME)
+                .help("Growth of the raw value of a SMART attribute over the window, from the local sample history");
+        Set<String> seen = new HashSet<>();
+        for (MegaRAIDDiskInfo disk : disks) {
+            if (disk.serial == null || disk.serial.isEmpty() || !seen.add(disk.serial)) {
+                continue;
+            }
+            long sampleTime = disk.lastReadEpochMillis > 0 ? disk.lastReadEpochMillis / 1000 : now;
+            store.record(disk.serial, sampleTime, disk.smartAttributes);
+            if (!store.valuesAt(disk.serial, cutoffs, atCutoff, found, latest)) {
+                continue;
+            }
+            for (int slot = 0; slot < table.size(); slot++) {
+                SmartAttributeSpec spec = table.spec(slot);
+                for (int k = 0; k < windowSeconds.length; k++) {
+                    // -1 — атрибута не было в выводе на одном из концов окна
+                    if (!found[k] || latest[slot] < 0 || atCutoff[k][slot] < 0) {
+                        continue;
+                    }
+                    deltas.dataPoint(GaugeSnapshot.GaugeDataPointSnapshot.builder()
+                            .labels(Labels.of(LABEL_NAMES, new String[]{
+                                    String.valueOf(disk.diskId),
+                                    disk.model != null ? disk.model : "unknown",
+                                    disk.serial,
+                                    disk.deviceName != null ? disk.deviceName : "<not mounted>",
+                                    spec.id == SmartAttributeSpec.NO_ID ? "" : String.valueOf(spec.id),
+                                    spec.name,
+                                    windowLabels[k]}))
+                            .value(latest[slot] - atCutoff[k][slot])
+                            .build());
+                }
+            }
+        }
+        snapshot = new MetricSnapshots(deltas.build());
+        return disks;
+    }
+
+    @Override
+    public MetricSnapshots collect() {
+        return snapshot;
+    }
+
+    @Override
+    public List<String> getPrometheusNames() {
+        return List.of(DELTA_NAME);
+    }
+
+    // 3600 -> "1h", 86400 -> "24h", 604800 -> "7d"
+    static String windowLabel(long seconds) {
+        if (seconds > 86400 && seconds % 86400 == 0) {
+            return seconds / 86400 + "d";
+        } else if (seconds % 3600 == 0) {
+            return seconds / 3600 + "h";
+        } else if (seconds % 60 == 0) {
+            return seconds / 60 + "m";
+        }
+        return seconds + "s";
+    }
+}
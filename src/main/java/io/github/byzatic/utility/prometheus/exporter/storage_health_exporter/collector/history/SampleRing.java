@@ -0,0 +1,298 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.history;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed-size ring of samples in a memory-mapped file.
+ * <p>
+ * A sample is a timestamp (seconds) and a fixed number of {@code long} fields. Each record stores
+ * zigzag varint deltas against the previous sample, so a typical record of slowly changing
+ * counters takes one byte per field. The header keeps the absolute values just before the oldest
+ * record ({@code base}); the values of the newest one ({@code last}) and the record count are
+ * derived by walking the records on open and kept in memory. Appending encodes against
+ * {@code last}; overwriting the oldest record folds its deltas into {@code base}.
+ * <p>
+ * Positions are monotonically increasing byte counters reduced modulo the data size, so a full
+ * ring and an empty ring are never confused. Every header change is committed by a single
+ * {@code long} store: the head is published after the record bytes, and a new {@code base} is
+ * written into the inactive one of two slots before the tail and the slot number are published
+ * together. A process killed mid-append loses at most that sample.
+ * <p>
+ * {@link #append} works on the mapped buffer only and does not allocate. Not thread-safe.
+ */
+final class SampleRing implements AutoCloseable {
+    static final int MAGIC = 0x53485831; // "SHX1"
+    // 2: base в двух слотах, last и count не хранятся
+    static final int VERSION = 2;
+
+    private static final int OFF_MAGIC = 0;
+    private static final int OFF_VERSION = 4;
+    private static final int OFF_FIELDS = 8;
+    private static final int OFF_LAYOUT = 12;
+    private static final int OFF_DATA_SIZE = 16;
+    // Доступна тесту: он откатывает голову, имитируя падение посреди append
+    static final int OFF_HEAD = 24;
+    // tail << 1 | номер слота base
+    private static final int OFF_TAIL = 32;
+    // Два слота base: время и значения полей
+    private static final int OFF_BASE = 40;
+
+    // Максимальная длина varint для long
+    private static final int MAX_VARINT = 10;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int fields;
+    private final int dataOffset;
+    private final int dataSize;
+    private final int maxRecord;
+    private final boolean reset;
+
+    // Производные от заголовка и записей, восстанавливаются при открытии
+    private long tail;
+    private int slot;
+    private int count;
+    private long lastTime;
+    private final long[] last;
+
+    // Рабочие массивы обхода истории, чтобы не выделять память на каждом запросе
+    private final long[] cursor;
+    // Позиция после последнего прочитанного varint: избавляет от возврата пары значений
+    private long varintEnd;
+
+    private SampleRing(FileChannel channel, MappedByteBuffer buffer, int fields, int layout, int fileBytes) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.fields = fields;
+        this.dataOffset = OFF_BASE + 2 * 8 * (fields + 1);
+        this.dataSize = fileBytes - dataOffset;
+        this.maxRecord = MAX_VARINT * (fields + 1);
+        this.last = new long[fields];
+        this.cursor = new long[fields];
+        if (dataSize < 4 * maxRecord) {
+            throw new IllegalArgumentException("ring of " + fileBytes + " bytes is too small for " + fields + " fields");
+        }
+        this.reset = !valid(layout) || !recover();
+        if (reset) {
+            clear(layout);
+            recover();
+        }
+    }
+
+    /**
+     * Opens or creates the ring file. An existing file with a different size, field layout
+     * or an inconsistent header is started over ({@link #wasReset()}).
+     *
+     * @param layout identifies the meaning of the fields; a change discards the history
+     */
+    static SampleRing open(Path file, int fields, int layout, int fileBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() != fileBytes) {
+                channel.truncate(0);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+            return new SampleRing(channel, buffer, fields, layout, fileBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    boolean wasReset() {
+        return reset;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long lastTime() {
+        return lastTime;
+    }
+
+    /**
+     * Appends one sample, overwriting the oldest ones when there is no room.
+     */
+    void append(long time, long[] values) {
+        long head = buffer.getLong(OFF_HEAD);
+        while (dataSize - (head - tail) < maxRecord) {
+            dropOldest();
+        }
+
+        long position = head;
+        position = putVarint(position, zigzag(time - lastTime));
+        for (int f = 0; f < fields; f++) {
+            position = putVarint(position, zigzag(values[f] - last[f]));
+        }
+        // Голову публикуем после байтов записи; last и count меняются только в памяти
+        buffer.putLong(OFF_HEAD, position);
+        System.arraycopy(values, 0, last, 0, fields);
+        lastTime = time;
+        count++;
+    }
+
+    /**
+     * Walks the ring from the oldest sample and, for every cutoff, copies the values of the newest
+     * sample taken at or before it into {@code atCutoff[k]}; {@code found[k]} tells whether such a sample exists.
+     * The newest sample is copied into {@code latest}.
+     *
+     * @return {@code false} if the ring is empty
+     */
+    boolean valuesAt(long[] cutoffs, long[][] atCutoff, boolean[] found, long[] latest) {
+        for (int k = 0; k < cutoffs.length; k++) {
+            found[k] = false;
+        }
+        if (count == 0) {
+            return false;
+        }
+        long time = buffer.getLong(baseTimeOffset(slot));
+        for (int f = 0; f < fields; f++) {
+            cursor[f] = buffer.getLong(baseOffset(slot, f));
+        }
+        long position = tail;
+        for (int i = 0; i < count; i++) {
+            time += unzigzag(getVarint(position));
+            position = varintEnd;
+            for (int f = 0; f < fields; f++) {
+                cursor[f] += unzigzag(getVarint(position));
+                position = varintEnd;
+            }
+            for (int k = 0; k < cutoffs.length; k++) {
+                if (time <= cutoffs[k]) {
+                    System.arraycopy(cursor, 0, atCutoff[k], 0, fields);
+                    found[k] = true;
+                }
+            }
+        }
+        System.arraycopy(cursor, 0, latest, 0, fields);
+        return true;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void dropOldest() {
+        // Новый base пишется в неактивный слот; действующий остается целым до публикации хвоста
+        int next = slot ^ 1;
+        long position = tail;
+        buffer.putLong(baseTimeOffset(next), buffer.getLong(baseTimeOffset(slot)) + unzigzag(getVarint(position)));
+        position = varintEnd;
+        for (int f = 0; f < fields; f++) {
+            buffer.putLong(baseOffset(next, f), buffer.getLong(baseOffset(slot, f)) + unzigzag(getVarint(position)));
+            position = varintEnd;
+        }
+        // Хвост и номер слота публикуются одной записью
+        buffer.putLong(OFF_TAIL, position << 1 | next);
+        tail = position;
+        slot = next;
+        count--;
+    }
+
+    /**
+     * Derives the tail, the base slot, the record count and {@code last} from the header and a walk
+     * of the committed records.
+     *
+     * @return {@code false} if the records do not end exactly at the head
+     */
+    private boolean recover() {
+        long head = buffer.getLong(OFF_HEAD);
+        long tailAndSlot = buffer.getLong(OFF_TAIL);
+        tail = tailAndSlot >>> 1;
+        slot = (int) (tailAndSlot & 1);
+        count = 0;
+        lastTime = buffer.getLong(baseTimeOffset(slot));
+        for (int f = 0; f < fields; f++) {
+            last[f] = buffer.getLong(baseOffset(slot, f));
+        }
+        // Запись занимает не меньше fields + 1 байт, так что обход конечен
+        long position = tail;
+        while (position < head) {
+            lastTime += unzigzag(getVarint(position));
+            position = varintEnd;
+            for (int f = 0; f < fields; f++) {
+                last[f] += unzigzag(getVarint(position));
+                position = varintEnd;
+            }
+            count++;
+        }
+        return position == head;
+    }
+
+    private boolean valid(int layout) {
+        if (buffer.getInt(OFF_MAGIC) != MAGIC || buffer.getInt(OFF_VERSION) != VERSION
+                || buffer.getInt(OFF_FIELDS) != fields || buffer.getInt(OFF_LAYOUT) != layout
+                || buffer.getInt(OFF_DATA_SIZE) != dataSize) {
+            return false;
+        }
+        long head = buffer.getLong(OFF_HEAD);
+        long tail = buffer.getLong(OFF_TAIL) >>> 1;
+        return head >= tail && head - tail <= dataSize;
+    }
+
+    private void clear(int layout) {
+        for (int i = 0; i < dataOffset; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.putInt(OFF_VERSION, VERSION);
+        buffer.putInt(OFF_FIELDS, fields);
+        buffer.putInt(OFF_LAYOUT, layout);
+        buffer.putInt(OFF_DATA_SIZE, dataSize);
+        // Магия пишется последней: недописанный заголовок не будет принят при следующем открытии
+        buffer.putInt(OFF_MAGIC, MAGIC);
+    }
+
+    private int baseTimeOffset(int slot) {
+        return OFF_BASE + 8 * (fields + 1) * slot;
+    }
+
+    private int baseOffset(int slot, int field) {
+        return baseTimeOffset(slot) + 8 * (field + 1);
+    }
+
+    private int index(long position) {
+        return dataOffset + (int) (position % dataSize);
+    }
+
+    private long putVarint(long position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put(index(position++), (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(index(position++), (byte) value);
+        return position;
+    }
+
+    private long getVarint(long position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(index(position++));
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 64);
+        varintEnd = position;
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,257 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.hwmon;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.DeviceEntry;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.DeviceTopologyRegistry;
+import io.prometheus.metrics.model.registry.MultiCollector;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples disk temperatures from Linux hwmon sysfs ({@code drivetemp}, {@code nvme}) without starting processes.
+ * <p>
+ * Every hwmon sensor under {@code <sysfsRoot>/class/hwmon} is mapped to the block or NVMe device it belongs to
+ * and matched against the devices of the {@link DeviceTopologyRegistry}; the mapping is rebuilt whenever the
+ * topology generation changes. {@code temp1_input} of each matched sensor is sampled into a ring buffer, and each
+ * scrape exports min/max/avg/last over the window.
+ * <p>
+ * Disks behind a MegaRAID controller have no hwmon sensor of their own and are not sampled.
+ */
+public class HwmonTemperatureSampler implements MultiCollector, AutoCloseable {
+    private final static Logger logger = LoggerFactory.getLogger(HwmonTemperatureSampler.class);
+
+    private static final String[] LABEL_NAMES = {"device", "driver", "sensor"};
+    // Индекс массива — поле TemperatureRing (MIN, MAX, AVG, LAST)
+    private static final String[][] FAMILIES = {
+            {"hwmon_temperature_celsius_min", "Minimum hwmon disk temperature over the sampling window"},
+            {"hwmon_temperature_celsius_max", "Maximum hwmon disk temperature over the sampling window"},
+            {"hwmon_temperature_celsius_avg", "Average hwmon disk temperature over the sampling window"},
+            {"hwmon_temperature_celsius", "Last hwmon disk temperature sample"}
+    };
+
+    private final Path hwmonRoot;
+    private final DeviceTopologyRegistry topology;
+    private final Duration sampleInterval;
+    private final int windowSamples;
+
+    private volatile List<Sensor> sensors = List.of();
+    private long mappedGeneration = -1;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param sysfsRoot      sysfs mount point, normally {@code /sys}
+     * @param sampleInterval time between two samples of every sensor
+     * @param window         length of the min/max/avg window
+     */
+    public HwmonTemperatureSampler(Path sysfsRoot, DeviceTopologyRegistry topology, Duration sampleInterval, Duration window) {
+        this.hwmonRoot = sysfsRoot.resolve("class").resolve("hwmon");
+        this.topology = topology;
+        this.sampleInterval = sampleInterval;
+        this.windowSamples = (int) Math.max(1, window.toMillis() / Math.max(1, sampleInterval.toMillis()));
+    }
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hwmon-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::sampleSafely, 0, sampleInterval.toMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Sampling hwmon temperatures under {} every {} ms ({} samples per window)",
+                hwmonRoot, sampleInterval.toMillis(), windowSamples);
+    }
+
+    private void sampleSafely() {
+        try {
+            sampleOnce();
+        } catch (Exception e) {
+            // Исключение отменило бы периодическую задачу
+            logger.warn("hwmon sampling failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Takes one sample of every mapped sensor, remapping first if the device topology changed.
+     */
+    void sampleOnce() throws CollectorException {
+        long generation = topology.getGeneration();
+        if (generation != mappedGeneration || generation == 0) {
+            remap(topology.getDevices());
+            mappedGeneration = topology.getGeneration();
+        }
+        for (Sensor sensor : sensors) {
+            try {
+                String text = Files.readString(sensor.input, StandardCharsets.US_ASCII).trim();
+                sensor.ring.add(Integer.parseInt(text));
+            } catch (IOException | NumberFormatException e) {
+                // Диск уснул или исчез: пропускаем отсчет
+                logger.debug("Cannot read {}: {}", sensor.input, e.getMessage());
+            }
+        }
+    }
+
+    private void remap(List<DeviceEntry> devices) {
+        Map<String, DeviceEntry> byDev = new HashMap<>();
+        for (DeviceEntry device : devices) {
+            byDev.putIfAbsent(device.dev, device);
+        }
+        // Сохраняем накопленные окна для сенсоров, которые не изменились
+        Map<Path, Sensor> previous = new HashMap<>();
+        for (Sensor sensor : sensors) {
+            previous.put(sensor.input, sensor);
+        }
+
+        List<Sensor> mapped = new ArrayList<>();
+        // Один сенсор на устройство: одинаковые наборы меток в снимке недопустимы
+        Map<DeviceEntry, Boolean> seen = new HashMap<>();
+        if (Files.isDirectory(hwmonRoot)) {
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(hwmonRoot)) {
+                for (Path hwmon : dirs) {
+                    Path input = hwmon.resolve("temp1_input");
+                    if (!Files.exists(input)) {
+                        continue;
+                    }
+                    String dev = blockDevice(hwmon);
+                    DeviceEntry device = dev == null ? null : byDev.get(dev);
+                    if (device == null || seen.putIfAbsent(device, Boolean.TRUE) != null) {
+                        continue;
+                    }
+                    Sensor old = previous.get(input);
+                    if (old != null && old.device.equals(device)) {
+                        mapped.add(old);
+                    } else {
+                        mapped.add(new Sensor(device, readName(hwmon), input, new TemperatureRing(windowSamples)));
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Cannot list {}: {}", hwmonRoot, e.getMessage());
+            }
+        }
+        sensors = List.copyOf(mapped);
+        logger.info("hwmon: {} of {} devices have a temperature sensor", mapped.size(), devices.size());
+    }
+
+    /**
+     * Device node for a hwmon directory: {@code device/block/sdX} (drivetemp), {@code device/nvme/nvmeN}
+     * (NVMe, older kernels) or a {@code device} link pointing at {@code nvmeN} itself.
+     */
+    static String blockDevice(Path hwmon) {
+        Path device = hwmon.resolve("device");
+        if (!Files.isDirectory(device)) {
+            return null;
+        }
+        String child = firstChild(device.resolve("block"));
+        if (child == null) {
+            child = firstChild(device.resolve("nvme"));
+        }
+        if (child == null) {
+            try {
+                String name = device.toRealPath().getFileName().toString();
+                if (name.startsWith("nvme")) {
+                    child = name;
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return child == null ? null : "/dev/" + child;
+    }
+
+    private static String firstChild(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return null;
+        }
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                return child.getFileName().toString();
+            }
+        } catch (IOException ignored) {
+        }
+        return null;
+    }
+
+    private static String readName(Path hwmon) {
+        try {
+            return Files.readString(hwmon.resolve("name"), StandardCharsets.US_ASCII).trim();
+        } catch (IOException e) {
+            return hwmon.getFileName().toString();
+        }
+    }
+
+    @Override
+    public MetricSnapshots collect() {
+        List<Sensor> current = sensors;
+        GaugeSnapshot.Builder[] builders = new GaugeSnapshot.Builder[FAMILIES.length];
+        for (int i = 0; i < FAMILIES.length; i++) {
+            builders[i] = GaugeSnapshot.builder().name(FAMILIES[i][0]).help(FAMILIES[i][1]);
+        }
+        double[] summary = new double[FAMILIES.length];
+        for (Sensor sensor : current) {
+            if (!sensor.ring.summarize(summary)) {
+                continue;
+            }
+            for (int i = 0; i < FAMILIES.length; i++) {
+                builders[i].dataPoint(GaugeSnapshot.GaugeDataPointSnapshot.builder()
+                        .labels(sensor.labels)
+                        .value(summary[i])
+                        .build());
+            }
+        }
+        MetricSnapshots.Builder result = MetricSnapshots.builder();
+        for (GaugeSnapshot.Builder builder : builders) {
+            result.metricSnapshot(builder.build());
+        }
+        return result.build();
+    }
+
+    @Override
+    public List<String> getPrometheusNames() {
+        List<String> names = new ArrayList<>(FAMILIES.length);
+        for (String[] family : FAMILIES) {
+            names.add(family[0]);
+        }
+        return names;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static final class Sensor {
+        final DeviceEntry device;
+        final Path input;
+        final TemperatureRing ring;
+        final Labels labels;
+
+        Sensor(DeviceEntry device, String name, Path input, TemperatureRing ring) {
+            this.device = device;
+            this.input = input;
+            this.ring = ring;
+            this.labels = Labels.of(LABEL_NAMES, new String[]{device.dev, device.driver, name});
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.hwmon;
+
+/**
+ * Fixed-size ring of temperature samples in millidegrees Celsius.
+ */
+final class TemperatureRing {
+    static final int MIN = 0;
+    static final int MAX = 1;
+    static final int AVG = 2;
+    static final int LAST = 3;
+
+    private final int[] samples;
+    private int next;
+    private int size;
+
+    TemperatureRing(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1, got " + capacity);
+        }
+        this.samples = new int[capacity];
+    }
+
+    synchronized void add(int milliCelsius) {
+        samples[next] = milliCelsius;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Writes min, max, average and last sample (in degrees Celsius) into {@code out}.
+     * Returns {@code false} if the ring is empty.
+     */
+    synchronized boolean summarize(double[] out) {
+        if (size == 0) {
+            return false;
+        }
+        int start = (next - size + samples.length) % samples.length;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            int v = samples[(start + i) % samples.length];
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+            sum += v;
+        }
+        out[MIN] = min / 1000.0;
+        out[MAX] = max / 1000.0;
+        out[AVG] = sum / (double) size / 1000.0;
+        out[LAST] = samples[(next - 1 + samples.length) % samples.length] / 1000.0;
+        return true;
+    }
+}
@@ -0,0 +1,196 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.risk;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Incremental per-disk failure risk score.
+ * <p>
+ * State is a handful of numbers per disk in primitive arrays indexed by a slot, updated once per
+ * collection cycle in O(1): for each error counter the last value and an EWMA of its growth rate
+ * (time-aware, so irregular cycles weigh correctly), an EWMA of temperature above the limit, and
+ * the power-on hours.
+ * <p>
+ * The score (0-100) combines independent risk components with a noisy-OR,
+ * {@code 100 * (1 - prod(1 - weight * component))}, each component in [0, 1]:
+ * <ul>
+ *     <li>current level of pending / offline uncorrectable / reallocated sectors and CRC errors,</li>
+ *     <li>smoothed growth per day of those counters,</li>
+ *     <li>smoothed temperature excess over {@link #TEMPERATURE_LIMIT},</li>
+ *     <li>age beyond {@link #AGE_ONSET_HOURS} power-on hours.</li>
+ * </ul>
+ * The weights and scales are heuristics in the spirit of the published drive-failure studies (pending
+ * and uncorrectable sectors matter most, CRC errors mostly indicate cabling); the score ranks disks for
+ * attention, it is not a calibrated probability.
+ */
+public final class DiskRiskScorer {
+    static final int REALLOCATED = 0;
+    static final int PENDING = 1;
+    static final int OFFLINE_UNCORRECTABLE = 2;
+    static final int UDMA_CRC = 3;
+    static final int COUNTERS = 4;
+
+    // Вес и масштаб уровня счетчика, вес и масштаб роста в сутки; индекс — счетчик
+    private static final double[] LEVEL_WEIGHT = {0.35, 0.5, 0.5, 0.1};
+    private static final double[] LEVEL_SCALE = {10, 1, 1, 50};
+    private static final double[] GROWTH_WEIGHT = {0.5, 0.5, 0.5, 0.1};
+    private static final double[] GROWTH_SCALE = {1, 1, 1, 10};
+
+    static final double TEMPERATURE_LIMIT = 50;
+    private static final double TEMPERATURE_WEIGHT = 0.2;
+    private static final double TEMPERATURE_SCALE = 10;
+    static final double AGE_ONSET_HOURS = 35_000;
+    private static final double AGE_WEIGHT = 0.15;
+    private static final double AGE_SCALE = 35_000;
+
+    private static final double HOUR_MILLIS = 3_600_000d;
+
+    private final double slopeTauHours;
+    private final double temperatureTauHours;
+    private final long sectorThreshold;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private int size = 0;
+
+    private long[] lastTime = new long[16];
+    private double[] lastValue = new double[16 * COUNTERS];
+    // Сглаженный рост счетчика в час
+    private double[] slope = new double[16 * COUNTERS];
+    private double[] temperatureExcess = new double[16];
+    private int[] powerOnHours = new int[16];
+
+    /**
+     * @param slopeTauHours       time constant of the growth-rate EWMA
+     * @param temperatureTauHours time constant of the temperature excess EWMA
+     * @param sectorThreshold     reallocated + pending sectors whose crossing is projected by {@link #hoursToThreshold}
+     */
+    public DiskRiskScorer(double slopeTauHours, double temperatureTauHours, long sectorThreshold) {
+        this.slopeTauHours = slopeTauHours;
+        this.temperatureTauHours = temperatureTauHours;
+        this.sectorThreshold = sectorThreshold;
+    }
+
+    /**
+     * Slot of the disk's state; a new one is allocated the first time a serial is seen.
+     */
+    public int slot(String serial) {
+        Integer slot = slots.get(serial);
+        if (slot != null) {
+            return slot;
+        }
+        if (size == lastTime.length) {
+            int capacity = size * 2;
+            lastTime = Arrays.copyOf(lastTime, capacity);
+            lastValue = Arrays.copyOf(lastValue, capacity * COUNTERS);
+            slope = Arrays.copyOf(slope, capacity * COUNTERS);
+            temperatureExcess = Arrays.copyOf(temperatureExcess, capacity);
+            powerOnHours = Arrays.copyOf(powerOnHours, capacity);
+        }
+        slots.put(serial, size);
+        powerOnHours[size] = -1;
+        for (int c = 0; c < COUNTERS; c++) {
+            lastValue[size * COUNTERS + c] = -1;
+        }
+        return size++;
+    }
+
+    /**
+     * Folds one reading into the state. Readings not newer than the previous one (e.g. cached values of
+     * a sleeping disk) are ignored. Missing values ({@code -1}) leave their part of the state unchanged.
+     */
+    public void update(int slot, MegaRAIDDiskInfo disk, long epochMillis) {
+        long previous = lastTime[slot];
+        if (previous != 0 && epochMillis <= previous) {
+            return;
+        }
+        double dtHours = previous == 0 ? 0 : (epochMillis - previous) / HOUR_MILLIS;
+        lastTime[slot] = epochMillis;
+
+        updateCounter(slot, REALLOCATED, disk.reallocatedSectors, dtHours);
+        updateCounter(slot, PENDING, disk.currentPendingSectors, dtHours);
+        updateCounter(slot, OFFLINE_UNCORRECTABLE, disk.offlineUncorrectable, dtHours);
+        updateCounter(slot, UDMA_CRC, disk.udmaCrcErrors, dtHours);
+
+        if (disk.temperatureCelsius >= 0) {
+            double excess = Math.max(0, disk.temperatureCelsius - TEMPERATURE_LIMIT);
+            // Первый отсчет берем как есть
+            temperatureExcess[slot] = dtHours == 0 ? excess
+                    : temperatureExcess[slot] + alpha(dtHours, temperatureTauHours) * (excess - temperatureExcess[slot]);
+        }
+        if (disk.powerOnHours >= 0) {
+            powerOnHours[slot] = disk.powerOnHours;
+        }
+    }
+
+    private void updateCounter(int slot, int counter, long value, double dtHours) {
+        if (value < 0) {
+            return;
+        }
+        int i = slot * COUNTERS + counter;
+        double last = lastValue[i];
+        lastValue[i] = value;
+        if (last < 0 || dtHours == 0) {
+            return;
+        }
+        // Сброс счетчика (замена диска с тем же серийным, сброс SMART) не считаем отрицательным ростом
+        double rate = Math.max(0, value - last) / dtHours;
+        slope[i] += alpha(dtHours, slopeTauHours) * (rate - slope[i]);
+    }
+
+    /**
+     * Risk score 0-100; {@code 0} for a disk without any reading.
+     */
+    public double score(int slot) {
+        double survive = 1;
+        for (int c = 0; c < COUNTERS; c++) {
+            int i = slot * COUNTERS + c;
+            if (lastValue[i] >= 0) {
+                survive *= 1 - LEVEL_WEIGHT[c] * saturate(lastValue[i] / LEVEL_SCALE[c]);
+            }
+            survive *= 1 - GROWTH_WEIGHT[c] * saturate(slope[i] * 24 / GROWTH_SCALE[c]);
+        }
+        survive *= 1 - TEMPERATURE_WEIGHT * saturate(temperatureExcess[slot] / TEMPERATURE_SCALE);
+        if (powerOnHours[slot] > AGE_ONSET_HOURS) {
+            survive *= 1 - AGE_WEIGHT * saturate((powerOnHours[slot] - AGE_ONSET_HOURS) / AGE_SCALE);
+        }
+        return 100 * (1 - survive);
+    }
+
+    /**
+     * Hours until reallocated + pending sectors reach the threshold at the smoothed growth rate:
+     * {@code 0} if already reached, {@code NaN} if they are unknown or not growing.
+     */
+    public double hoursToThreshold(int slot) {
+        double reallocated = lastValue[slot * COUNTERS + REALLOCATED];
+        double pending = lastValue[slot * COUNTERS + PENDING];
+        if (reallocated < 0 && pending < 0) {
+            return Double.NaN;
+        }
+        double bad = Math.max(0, reallocated) + Math.max(0, pending);
+        if (bad >= sectorThreshold) {
+            return 0;
+        }
+        double rate = slope[slot * COUNTERS + REALLOCATED] + slope[slot * COUNTERS + PENDING];
+        // Меньше одного сектора за 100 лет — роста нет
+        if (rate < 1e-6) {
+            return Double.NaN;
+        }
+        return (sectorThreshold - bad) / rate;
+    }
+
+    double slopePerHour(int slot, int counter) {
+        return slope[slot * COUNTERS + counter];
+    }
+
+    private static double alpha(double dtHours, double tauHours) {
+        return 1 - Math.exp(-dtHours / tauHours);
+    }
+
+    // 1 - e^-x: 0 при x = 0, ~0.63 при x = 1, стремится к 1
+    private static double saturate(double x) {
+        return x <= 0 ? 0 : 1 - Math.exp(-x);
+    }
+}
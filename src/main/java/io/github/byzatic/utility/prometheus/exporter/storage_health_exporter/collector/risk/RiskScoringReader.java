@@ -0,0 +1,88 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.risk;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.DiskReaderInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.prometheus.metrics.model.registry.MultiCollector;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reader decorator that feeds every cycle into a {@link DiskRiskScorer} and publishes
+ * {@code disk_risk_score} and {@code disk_risk_time_to_threshold_seconds}, so dashboards and alerts
+ * do not need {@code deriv()} / {@code predict_linear()} over the raw counters.
+ * The disks themselves are passed through unchanged.
+ */
+public class RiskScoringReader implements DiskReaderInterface, MultiCollector {
+    private static final String SCORE_NAME = "disk_risk_score";
+    private static final String TIME_NAME = "disk_risk_time_to_threshold_seconds";
+    private static final String[] LABEL_NAMES = {"disk_id", "model", "serial", "mount_point"};
+
+    private final DiskReaderInterface delegate;
+    private final DiskRiskScorer scorer;
+
+    private volatile MetricSnapshots snapshot = MetricSnapshots.of();
+
+    public RiskScoringReader(DiskReaderInterface delegate, DiskRiskScorer scorer) {
+        this.delegate = delegate;
+        this.scorer = scorer;
+    }
+
+    @Override
+    public SmartAttributeTable getAttributeTable() {
+        return delegate.getAttributeTable();
+    }
+
+    @Override
+    public synchronized List<MegaRAIDDiskInfo> readDisks() throws CollectorException {
+        List<MegaRAIDDiskInfo> disks = delegate.readDisks();
+        long now = System.currentTimeMillis();
+
+        GaugeSnapshot.Builder scores = GaugeSnapshot.builder()
+                .name(SCORE_NAME)
+                .help("Heuristic disk failure risk 0-100 from sector/CRC counters, their growth, temperature and age");
+        GaugeSnapshot.Builder times = GaugeSnapshot.builder()
+                .name(TIME_NAME)
+                .help("Projected seconds until reallocated + pending sectors reach the threshold at the smoothed growth rate; absent while not growing");
+        Set<String> seen = new HashSet<>();
+        for (MegaRAIDDiskInfo disk : disks) {
+            // Состояние привязано к серийному номеру: без него нет истории
+            if (disk.serial == null || disk.serial.isEmpty() || !seen.add(disk.serial)) {
+                continue;
+            }
+            int slot = scorer.slot(disk.serial);
+            scorer.update(slot, disk, disk.lastReadEpochMillis > 0 ? disk.lastReadEpochMillis : now);
+
+            Labels labels = Labels.of(LABEL_NAMES, new String[]{
+                    String.valueOf(disk.diskId),
+                    disk.model != null ? disk.model : "unknown",
+                    disk.serial,
+                    disk.deviceName != null ? disk.deviceName : "<not mounted>"});
+            scores.dataPoint(GaugeSnapshot.GaugeDataPointSnapshot.builder()
+                    .labels(labels).value(scorer.score(slot)).build());
+            double hours = scorer.hoursToThreshold(slot);
+            if (!Double.isNaN(hours)) {
+                times.dataPoint(GaugeSnapshot.GaugeDataPointSnapshot.builder()
+                        .labels(labels).value(hours * 3600).build());
+            }
+        }
+        snapshot = new MetricSnapshots(scores.build(), times.build());
+        return disks;
+    }
+
+    @Override
+    public MetricSnapshots collect() {
+        return snapshot;
+    }
+
+    @Override
+    public List<String> getPrometheusNames() {
+        return List.of(SCORE_NAME, TIME_NAME);
+    }
+}
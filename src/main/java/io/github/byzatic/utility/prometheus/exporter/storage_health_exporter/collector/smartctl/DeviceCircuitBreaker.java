@@ -0,0 +1,92 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+/**
+ * Per-device circuit breaker.
+ * <p>
+ * After {@code failureThreshold} consecutive failures (errors or timeouts) the device is quarantined
+ * ({@link State#OPEN}) for a backoff that doubles with every quarantine, from {@code baseBackoffNanos}
+ * up to {@code maxBackoffNanos}. When the backoff expires one probe read is let through
+ * ({@link State#HALF_OPEN}): success closes the breaker, failure quarantines the device again.
+ * <p>
+ * Not thread-safe; a device is polled by at most one thread at a time.
+ */
+class DeviceCircuitBreaker {
+
+    enum State {
+        CLOSED(0), HALF_OPEN(1), OPEN(2);
+
+        final int value;
+
+        State(int value) {
+            this.value = value;
+        }
+    }
+
+    private final int failureThreshold;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    // Количество карантинов подряд (без успешного чтения между ними)
+    private int trips;
+    private long openUntilNanos;
+
+    /**
+     * @param failureThreshold consecutive failures that open the breaker; 0 disables the breaker
+     */
+    DeviceCircuitBreaker(int failureThreshold, long baseBackoffNanos, long maxBackoffNanos) {
+        this.failureThreshold = failureThreshold;
+        this.baseBackoffNanos = baseBackoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
+    }
+
+    /**
+     * Returns {@code true} if the device may be read now. An expired quarantine turns into a probe.
+     */
+    boolean allowRequest(long nowNanos) {
+        if (state == State.OPEN) {
+            if (nowNanos - openUntilNanos < 0) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+        }
+        return true;
+    }
+
+    void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trips = 0;
+    }
+
+    /**
+     * Records a failed read. Returns {@code true} if this failure quarantined the device.
+     */
+    boolean recordFailure(long nowNanos) {
+        if (failureThreshold <= 0) {
+            return false;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            trips++;
+            state = State.OPEN;
+            openUntilNanos = nowNanos + backoffNanos(trips);
+            return true;
+        }
+        return false;
+    }
+
+    State state() {
+        return state;
+    }
+
+    long backoffNanos(int trip) {
+        // base * 2^(trip-1) без переполнения
+        long backoff = baseBackoffNanos;
+        for (int i = 1; i < trip && backoff < maxBackoffNanos; i++) {
+            backoff = backoff > maxBackoffNanos / 2 ? maxBackoffNanos : backoff * 2;
+        }
+        return Math.min(backoff, maxBackoffNanos);
+    }
+}
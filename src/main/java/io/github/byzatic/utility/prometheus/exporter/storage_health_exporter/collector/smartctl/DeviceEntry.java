@@ -0,0 +1,37 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import java.util.Objects;
+
+/**
+ * A device as reported by {@code smartctl --scan -j}: the device path and the {@code -d} type.
+ */
+public final class DeviceEntry {
+    public final String dev;
+    public final String driver;
+
+    public DeviceEntry(String dev, String driver) {
+        this.dev = dev;
+        this.driver = driver;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DeviceEntry)) return false;
+        DeviceEntry that = (DeviceEntry) o;
+        return Objects.equals(dev, that.dev) && Objects.equals(driver, that.driver);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dev, driver);
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceEntry{" +
+                "dev='" + dev + '\'' +
+                ", driver='" + driver + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,10 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+
+import java.util.List;
+
+public interface DeviceScannerInterface {
+    // Полный опрос топологии устройств
+    List<DeviceEntry> scanDevices() throws CollectorException;
+}
@@ -0,0 +1,221 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.prometheus.metrics.core.metrics.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caches the result of {@code smartctl --scan} between collection cycles.
+ * <p>
+ * The cached topology is refreshed when it is older than {@code rescanInterval}, or right away
+ * when the directory watcher sees a device node appear or disappear under one of {@code watchPaths}.
+ * <p>
+ * The watcher only speeds up what the periodic rescan guarantees: it sees nodes that udev creates
+ * in {@code /dev}, but not changes in pseudo file systems (sysfs and procfs send no inotify events)
+ * nor disks behind a RAID controller, which have no node of their own.
+ */
+public class DeviceTopologyRegistry implements AutoCloseable {
+    private final static Logger logger = LoggerFactory.getLogger(DeviceTopologyRegistry.class);
+
+    // Горячее подключение порождает пачку событий (sdb, sdb1, ...): ждем, пока они закончатся
+    private static final long WATCH_DEBOUNCE_MILLIS = 500;
+
+    private static final Gauge topologyGeneration = Gauge.builder()
+            .name("smartctl_topology_generation")
+            .help("Number of device topology scans performed since start")
+            .register();
+
+    private static final Gauge topologyLastRescan = Gauge.builder()
+            .name("smartctl_topology_last_rescan_timestamp_seconds")
+            .help("Unix time of the last successful device topology scan")
+            .register();
+
+    private static final Gauge topologyDevices = Gauge.builder()
+            .name("smartctl_topology_devices")
+            .help("Number of devices in the cached topology")
+            .register();
+
+    private final DeviceScannerInterface scanner;
+    private final long rescanIntervalNanos;
+    private final List<Path> watchPaths;
+
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private final Object scanLock = new Object();
+
+    private volatile Topology topology;
+    private volatile WatchService watchService;
+    private volatile Thread watchThread;
+
+    public DeviceTopologyRegistry(DeviceScannerInterface scanner, Duration rescanInterval, List<Path> watchPaths) {
+        this.scanner = scanner;
+        this.rescanIntervalNanos = rescanInterval.toNanos();
+        this.watchPaths = List.copyOf(watchPaths);
+    }
+
+    /**
+     * Starts watching {@code watchPaths}. Paths that do not exist or cannot be watched are skipped.
+     */
+    public synchronized void start() {
+        if (watchThread != null || watchPaths.isEmpty()) {
+            return;
+        }
+        try {
+            WatchService ws = FileSystems.getDefault().newWatchService();
+            int registered = 0;
+            for (Path path : watchPaths) {
+                if (!Files.isDirectory(path)) {
+                    logger.warn("Topology watch path {} is not a directory, skipped", path);
+                    continue;
+                }
+                if (path.toAbsolutePath().startsWith("/sys") || path.toAbsolutePath().startsWith("/proc")) {
+                    // inotify на sysfs/procfs зарегистрируется, но событий не будет никогда
+                    logger.warn("Topology watch path {} is a pseudo file system without change events, skipped", path);
+                    continue;
+                }
+                try {
+                    path.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+                    registered++;
+                } catch (IOException e) {
+                    logger.warn("Cannot watch {}: {}", path, e.getMessage());
+                }
+            }
+            if (registered == 0) {
+                ws.close();
+                return;
+            }
+            this.watchService = ws;
+            Thread t = new Thread(this::watchLoop, "topology-watcher");
+            t.setDaemon(true);
+            t.start();
+            this.watchThread = t;
+            logger.info("Watching {} for device changes", watchPaths);
+        } catch (IOException e) {
+            logger.warn("Device topology watcher is not available: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the cached devices, rescanning first if the topology is missing, stale or invalidated.
+     */
+    public List<DeviceEntry> getDevices() throws CollectorException {
+        Topology current = topology;
+        if (current != null && !dirty.get() && System.nanoTime() - current.scannedAtNanos < rescanIntervalNanos) {
+            return current.devices;
+        }
+        return rescan().devices;
+    }
+
+    /**
+     * Marks the cached topology as outdated; the next {@link #getDevices()} performs a scan.
+     */
+    public void invalidate() {
+        dirty.set(true);
+    }
+
+    public long getGeneration() {
+        Topology current = topology;
+        return current == null ? 0 : current.generation;
+    }
+
+    private Topology rescan() throws CollectorException {
+        synchronized (scanLock) {
+            Topology current = topology;
+            // Пока ждали блокировку, топологию мог уже обновить другой поток
+            if (current != null && !dirty.get() && System.nanoTime() - current.scannedAtNanos < rescanIntervalNanos) {
+                return current;
+            }
+            dirty.set(false);
+            List<DeviceEntry> devices;
+            try {
+                devices = List.copyOf(scanner.scanDevices());
+            } catch (CollectorException | RuntimeException e) {
+                dirty.set(true);
+                throw e;
+            }
+            long generation = current == null ? 1 : current.generation + 1;
+            Topology next = new Topology(generation, System.nanoTime(), devices);
+            topology = next;
+
+            topologyGeneration.set(generation);
+            topologyLastRescan.set(System.currentTimeMillis() / 1000.0);
+            topologyDevices.set(devices.size());
+            logger.info("Device topology generation {} has {} devices", generation, devices.size());
+            return next;
+        }
+    }
+
+    private void watchLoop() {
+        WatchService ws = this.watchService;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = ws.take();
+                drain(key);
+                // Собираем остальные события пачки
+                WatchKey more;
+                while ((more = ws.poll(WATCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    drain(more);
+                }
+                logger.debug("Device change detected, rescanning topology");
+                invalidate();
+                try {
+                    rescan();
+                } catch (CollectorException e) {
+                    logger.warn("Topology rescan after device change failed: {}", e.getMessage());
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+            // close()
+        }
+    }
+
+    private static void drain(WatchKey key) {
+        key.pollEvents();
+        key.reset();
+    }
+
+    @Override
+    public synchronized void close() {
+        Thread t = watchThread;
+        watchThread = null;
+        if (t != null) {
+            t.interrupt();
+        }
+        WatchService ws = watchService;
+        watchService = null;
+        if (ws != null) {
+            try {
+                ws.close();
+            } catch (IOException e) {
+                logger.warn("Error while closing topology watcher", e);
+            }
+        }
+    }
+
+    private static final class Topology {
+        final long generation;
+        final long scannedAtNanos;
+        final List<DeviceEntry> devices;
+
+        Topology(long generation, long scannedAtNanos, List<DeviceEntry> devices) {
+            this.generation = generation;
+            this.scannedAtNanos = scannedAtNanos;
+            this.devices = devices;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+/**
+ * How much smartctl is asked to read from a device in one invocation.
+ */
+public enum PollingTier {
+    // Только атрибуты: температура, наработка, счетчики секторов
+    FAST("fast", "-A"),
+    // Полный дамп: идентификация, SMART health, атрибуты, журналы
+    FULL("full", "-a");
+
+    public final String label;
+    public final String smartctlFlag;
+
+    PollingTier(String label, String smartctlFlag) {
+        this.label = label;
+        this.smartctlFlag = smartctlFlag;
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import java.util.Objects;
+
+/**
+ * One configured SMART attribute: matched by ATA attribute ID when {@code id >= 0}, otherwise by name.
+ * The name is also the {@code attribute_name} label of the exported series.
+ */
+public final class SmartAttributeSpec {
+    public static final int NO_ID = -1;
+
+    public final int id;
+    public final String name;
+
+    public SmartAttributeSpec(int id, String name) {
+        if (id < NO_ID || id > SmartAttributeTable.MAX_ID) {
+            throw new IllegalArgumentException("SMART attribute id must be 0.." + SmartAttributeTable.MAX_ID + ", got " + id);
+        }
+        if (id == NO_ID && (name == null || name.isEmpty())) {
+            throw new IllegalArgumentException("SMART attribute needs an id or a name");
+        }
+        this.id = id;
+        this.name = name == null || name.isEmpty() ? "attribute_" + id : name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SmartAttributeSpec)) return false;
+        SmartAttributeSpec that = (SmartAttributeSpec) o;
+        return id == that.id && name.equals(that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name);
+    }
+
+    @Override
+    public String toString() {
+        return id == NO_ID ? name : id + ":" + name;
+    }
+}
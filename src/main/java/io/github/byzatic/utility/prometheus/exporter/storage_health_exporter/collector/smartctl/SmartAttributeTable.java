@@ -0,0 +1,128 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJson;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJsonTypeAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configured SMART attributes compiled into an ID-indexed lookup table.
+ * <p>
+ * A {@link SmartctlDiskJsonTypeAdapter} built for the table streams the rows of a smartctl response
+ * straight into a flat {@code long[]} with {@link #FIELDS} values per configured attribute (slot):
+ * {@code values[slot * FIELDS + RAW | NORMALIZED | WORST | THRESHOLD]}; {@code -1} marks a value that is missing.
+ * <p>
+ * Immutable and thread-safe.
+ */
+public final class SmartAttributeTable {
+    // ID атрибута ATA — один байт
+    public static final int MAX_ID = 255;
+
+    public static final int RAW = 0;
+    public static final int NORMALIZED = 1;
+    public static final int WORST = 2;
+    public static final int THRESHOLD = 3;
+    public static final int FIELDS = 4;
+
+    public static final int NO_SLOT = -1;
+
+    private final SmartAttributeSpec[] specs;
+    private final int[] slotById = new int[MAX_ID + 1];
+    // Только для атрибутов, заданных без ID
+    private final Map<String, Integer> slotByName = new HashMap<>();
+
+    private SmartAttributeTable(List<SmartAttributeSpec> specs) {
+        this.specs = specs.toArray(new SmartAttributeSpec[0]);
+        Arrays.fill(slotById, NO_SLOT);
+        for (int slot = 0; slot < this.specs.length; slot++) {
+            SmartAttributeSpec spec = this.specs[slot];
+            if (spec.id != SmartAttributeSpec.NO_ID) {
+                slotById[spec.id] = slot;
+            } else {
+                slotByName.put(spec.name, slot);
+            }
+        }
+    }
+
+    /**
+     * Compiles the attributes in order; later duplicates of an ID (or of a name without ID) are ignored.
+     */
+    public static SmartAttributeTable compile(List<SmartAttributeSpec> specs) {
+        List<SmartAttributeSpec> unique = new ArrayList<>(specs.size());
+        boolean[] seenIds = new boolean[MAX_ID + 1];
+        List<String> seenNames = new ArrayList<>();
+        for (SmartAttributeSpec spec : specs) {
+            if (spec.id != SmartAttributeSpec.NO_ID) {
+                if (seenIds[spec.id]) continue;
+                seenIds[spec.id] = true;
+            } else {
+                if (seenNames.contains(spec.name)) continue;
+                seenNames.add(spec.name);
+            }
+            unique.add(spec);
+        }
+        return new SmartAttributeTable(unique);
+    }
+
+    public int size() {
+        return specs.length;
+    }
+
+    public SmartAttributeSpec spec(int slot) {
+        return specs[slot];
+    }
+
+    /**
+     * Slot of the attribute with this ID, or {@code -1} if it is not configured by ID.
+     */
+    public int slotOf(int id) {
+        return id >= 0 && id <= MAX_ID ? slotById[id] : NO_SLOT;
+    }
+
+    /**
+     * Slot of the attribute configured by this name without an ID, or {@code -1}.
+     */
+    public int slotOfName(String name) {
+        return slotByName.getOrDefault(name, NO_SLOT);
+    }
+
+    /**
+     * Whether any attribute is configured by name only; otherwise row names need not be read at all.
+     */
+    public boolean hasNamedSlots() {
+        return !slotByName.isEmpty();
+    }
+
+    /**
+     * Values array for this table with every value missing.
+     */
+    public long[] newValues() {
+        long[] values = new long[specs.length * FIELDS];
+        Arrays.fill(values, -1L);
+        return values;
+    }
+
+    public static int index(int slot, int field) {
+        return slot * FIELDS + field;
+    }
+
+    /**
+     * Value of one field of a slot in an array returned by {@link #extract}; {@code -1} if absent.
+     */
+    public static long value(long[] values, int slot, int field) {
+        return values == null || slot < 0 ? -1L : values[index(slot, field)];
+    }
+
+    /**
+     * Attribute values of a document read with a {@link SmartctlDiskJsonTypeAdapter} for this table;
+     * all missing if the document has no {@code ata_smart_attributes}.
+     */
+    public long[] extract(SmartctlDiskJson json) {
+        long[] values = json.smart_attribute_values;
+        return values != null && values.length == specs.length * FIELDS ? values : newValues();
+    }
+}
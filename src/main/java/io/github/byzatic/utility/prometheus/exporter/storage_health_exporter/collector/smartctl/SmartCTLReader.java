@@ -1,173 +1,700 @@
 package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.ConcurrencyControlInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.DiskReaderInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.CommandExecutionInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.CommandRunnerInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.ProcessCommandRunner;
 import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.DeviceOpenException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.DeviceTimeoutException;
 import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJson;
-import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.scan.SmartctlDevice;
-import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.scan.SmartctlScanResult;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJsonTypeAdapter;
 import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.util.DaemonThreadFactory;
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.core.metrics.Histogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-public class SmartCTLReader {
+public class SmartCTLReader implements DiskReaderInterface, ConcurrencyControlInterface {
     private final static Logger logger = LoggerFactory.getLogger(SmartCTLReader.class);
 
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    /**
+     * Attributes behind the fixed {@link MegaRAIDDiskInfo} fields; always part of the attribute table.
+     */
+    public static final List<SmartAttributeSpec> BUILT_IN_ATTRIBUTES = List.of(
+            new SmartAttributeSpec(5, "Reallocated_Sector_Ct"),
+            new SmartAttributeSpec(197, "Current_Pending_Sector"),
+            new SmartAttributeSpec(198, "Offline_Uncorrectable"),
+            new SmartAttributeSpec(199, "UDMA_CRC_Error_Count"));
+
+    // Сообщение smartctl -n о пропуске устройства: "Device is in STANDBY mode, exit(2)" (SLEEP, IDLE ...)
+    private static final String POWER_MODE_SKIP_PREFIX = "Device is in ";
+    private static final String POWER_MODE_SKIP_MARKER = " mode, exit(";
+    // Биты 0-1 кода smartctl: командная строка не разобрана или устройство не открылось
+    private static final int EXIT_OPEN_FAILED_BITS = 0b11;
+
+    private static final Gauge readWallSeconds = Gauge.builder()
+            .name("smartctl_read_wall_seconds")
+            .help("Wall-clock duration of the last readDisks() cycle")
+            .register();
+
+    private static final Gauge readDeviceSecondsSum = Gauge.builder()
+            .name("smartctl_read_device_seconds_sum")
+            .help("Sum of per-device smartctl read durations of the last readDisks() cycle")
+            .register();
+
+    private static final Gauge readConcurrency = Gauge.builder()
+            .name("smartctl_read_concurrency")
+            .help("Current maximum number of concurrent smartctl device reads")
+            .register();
+
+    private static final Counter invocations = Counter.builder()
+            .name("smartctl_invocations_total")
+            .help("smartctl device reads by polling tier (cached = served from the per-disk state without a process, standby = skipped sleeping disk, quarantined = skipped by the circuit breaker)")
+            .labelNames("tier")
+            .register();
+
+    private static final Histogram execDuration = Histogram.builder()
+            .name("smartctl_exec_duration_seconds")
+            .help("Wall-clock duration of one smartctl device process, from start to exit")
+            .labelNames("driver_type")
+            .classicOnly()
+            .classicUpperBounds(0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60)
+            .register();
+
+    private static final Histogram parseDuration = Histogram.builder()
+            .name("smartctl_parse_duration_seconds")
+            .help("CPU time spent decoding the smartctl JSON output of one device and mapping it to disk values")
+            .labelNames("driver_type")
+            .classicOnly()
+            .classicUpperBounds(0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05)
+            .register();
+
+    private static final Counter readFailures = Counter.builder()
+            .name("smartctl_read_failures_total")
+            .help("Failed smartctl device reads (reason: timeout, io, parse, invalid_output, interrupted, error)")
+            .labelNames("driver_type", "reason")
+            .register();
+
+    private static final Gauge breakerState = Gauge.builder()
+            .name("smartctl_device_breaker_state")
+            .help("Circuit breaker state per device (0=CLOSED, 1=HALF_OPEN probing, 2=OPEN quarantined)")
+            .labelNames("device", "driver")
+            .register();
+
+    private static final Counter quarantines = Counter.builder()
+            .name("smartctl_device_quarantines_total")
+            .help("Number of times a device was quarantined by its circuit breaker")
+            .labelNames("device", "driver")
+            .register();
+
+    // JSON разбирается потоково, пока smartctl пишет в stdout, поэтому настенное время разбора
+    // включает ожидание процесса: меряем процессорное время потока
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean threadCpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+
+    private final int maxConcurrency;
+    private final ThreadPoolExecutor executor;
+    private final DeviceTopologyRegistry topology;
+    private final long fastTierIntervalNanos;
+    private final long fullTierIntervalNanos;
+    private final boolean standbyAware;
+    private final long standbyMaxAgeNanos;
+    private final int standbyExitStatus;
+    private final Duration deviceTimeout;
+    private final int breakerFailureThreshold;
+    private final long breakerBaseBackoffNanos;
+    private final long breakerMaxBackoffNanos;
+    private final SmartAttributeTable attributeTable;
+    private final SmartctlDiskMapper mapper;
+    private final SmartctlDiskJsonTypeAdapter jsonAdapter;
+    private final CommandRunnerInterface commandRunner;
+
+    // Объединенное состояние диска по результатам обоих уровней опроса
+    private final Map<DeviceEntry, DiskState> diskStates = new ConcurrentHashMap<>();
+
+    public SmartCTLReader() {
+        this(DEFAULT_MAX_CONCURRENCY);
+    }
+
+    public SmartCTLReader(int maxConcurrency) {
+        this(new Builder().maxConcurrency(maxConcurrency));
+    }
+
+    private SmartCTLReader(Builder builder) {
+        if (builder.maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be >= 1, got " + builder.maxConcurrency);
+        }
+        this.maxConcurrency = builder.maxConcurrency;
+        // Потоки-демоны: пул живет столько же, сколько и сам экспортер
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new DaemonThreadFactory("smartctl-reader"));
+        readConcurrency.set(maxConcurrency);
+        // Без кеша: --scan на каждом цикле, как раньше
+        this.topology = builder.topology != null ? builder.topology
+                : new DeviceTopologyRegistry(new SmartctlDeviceScanner(Duration.ZERO, builder.commandRunner), Duration.ZERO, List.of());
+        this.fastTierIntervalNanos = builder.fastTierInterval.toNanos();
+        this.fullTierIntervalNanos = builder.fullTierInterval.toNanos();
+        this.standbyAware = builder.standbyAware;
+        this.standbyMaxAgeNanos = builder.standbyMaxAge.toNanos();
+        this.standbyExitStatus = builder.standbyExitStatus;
+        this.deviceTimeout = builder.deviceTimeout;
+        this.commandRunner = builder.commandRunner;
+        this.breakerFailureThreshold = builder.breakerFailureThreshold;
+        this.breakerBaseBackoffNanos = builder.breakerBaseBackoff.toNanos();
+        this.breakerMaxBackoffNanos = builder.breakerMaxBackoff.toNanos();
+
+        List<SmartAttributeSpec> attributes = new ArrayList<>(BUILT_IN_ATTRIBUTES);
+        attributes.addAll(builder.smartAttributes);
+        this.attributeTable = SmartAttributeTable.compile(attributes);
+        this.mapper = new SmartctlDiskMapper(attributeTable);
+        this.jsonAdapter = new SmartctlDiskJsonTypeAdapter(attributeTable);
+        logger.debug("SMART attribute table: {}", attributes);
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public int getConcurrency() {
+        return executor.getMaximumPoolSize();
+    }
+
+    @Override
+    public synchronized void setConcurrency(int concurrency) {
+        int n = Math.max(1, Math.min(concurrency, maxConcurrency));
+        int current = executor.getMaximumPoolSize();
+        if (n == current) {
+            return;
+        }
+        // Пул не допускает core > max ни на одном шаге: растим сначала max, уменьшаем сначала core
+        if (n > current) {
+            executor.setMaximumPoolSize(n);
+            executor.setCorePoolSize(n);
+        } else {
+            executor.setCorePoolSize(n);
+            executor.setMaximumPoolSize(n);
+        }
+        readConcurrency.set(n);
+        logger.debug("smartctl read concurrency set to {} (max {})", n, maxConcurrency);
+    }
+
+    /**
+     * Layout of {@link MegaRAIDDiskInfo#smartAttributes} for every disk returned by this reader.
+     */
+    @Override
+    public SmartAttributeTable getAttributeTable() {
+        return attributeTable;
+    }
+
+    @Override
     public List<MegaRAIDDiskInfo> readDisks() throws CollectorException {
-        List<MegaRAIDDiskInfo> disks = new ArrayList<>();
-        List<DeviceEntry> allDevices = scanDevices();
+        List<DeviceEntry> allDevices = topology.getDevices();
 
         boolean hasMegaRAID = allDevices.stream().anyMatch(dev -> dev.driver.startsWith("megaraid"));
         logger.debug("hasMegaRAID is {}", hasMegaRAID);
 
+        List<DeviceEntry> devices = new ArrayList<>(allDevices.size());
         for (DeviceEntry device : allDevices) {
-            logger.debug("process device: {}", device);
             if (hasMegaRAID && !device.driver.startsWith("megaraid")) {
-                logger.debug("Skip regular device");
+                logger.debug("Skip regular device {}", device);
                 continue;
             }
+            devices.add(device);
+        }
 
-            try {
-                List<String> cmd = new ArrayList<>();
-                cmd.add("smartctl");
-                cmd.add("-a");
-                cmd.add("-j");
-                if (device.driver.startsWith("megaraid")) {
-                    cmd.add("-d");
-                    cmd.add(device.driver);
-                }
-                cmd.add(device.dev);
-
-                logger.debug("try to run {}", cmd);
-                Process process = new ProcessBuilder(cmd).start();
-                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                StringBuilder jsonBuilder = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    jsonBuilder.append(line);
-                }
-                process.waitFor();
+        // Забываем состояние устройств, которых больше нет в топологии
+        Set<DeviceEntry> present = new HashSet<>(devices);
+        for (DeviceEntry gone : diskStates.keySet()) {
+            if (!present.contains(gone)) {
+                diskStates.remove(gone);
+                breakerState.remove(gone.dev, gone.driver);
+                quarantines.remove(gone.dev, gone.driver);
+            }
+        }
 
-                SmartctlDiskJson json = new Gson().fromJson(jsonBuilder.toString(), SmartctlDiskJson.class);
+        long cycleStart = System.nanoTime();
 
-                // проверка формата
-                if (json.json_format_version == null || json.json_format_version.size() != 2 ||
-                        json.json_format_version.get(0) != 1 || json.json_format_version.get(1) != 0) {
-                    throw new CollectorException("Unsupported smartctl json_format_version");
-                }
+        // Запускаем чтение всех устройств параллельно (не более maxConcurrency одновременно)
+        List<Future<DeviceReadResult>> futures = new ArrayList<>(devices.size());
+        for (DeviceEntry device : devices) {
+            futures.add(executor.submit(() -> pollDevice(device)));
+        }
 
-                MegaRAIDDiskInfo disk = new MegaRAIDDiskInfo();
-                disk.diskId = extractMegaRAIDIndex(device.driver);
-                disk.deviceName = device.dev;
-                disk.model = json.model_name;
-                disk.serial = json.serial_number;
-                disk.smartStatus = json.smart_status != null && json.smart_status.passed ? "PASSED" : "FAILED";
-                disk.temperatureCelsius = json.temperature != null ? json.temperature.current : -1;
-                disk.powerOnHours = json.power_on_time != null ? json.power_on_time.hours : -1;
-                disk.reallocatedSectors = getRawValue(json, "Reallocated_Sector_Ct");
-                disk.currentPendingSectors = getRawValue(json, "Current_Pending_Sector");
-                disk.offlineUncorrectable = getRawValue(json, "Offline_Uncorrectable");
-                disk.udmaCrcErrors = getRawValue(json, "UDMA_CRC_Error_Count");
-
-                disks.add(disk);
-                logger.debug("Device {} parsed successfully", device);
-
-            } catch (Exception e) {
-                logger.warn("Failed to parse device {}: {}", device, e.getMessage());
+        // Собираем результаты в порядке устройств
+        List<MegaRAIDDiskInfo> disks = new ArrayList<>(devices.size());
+        long deviceNanosSum = 0L;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                DeviceReadResult result = futures.get(i).get();
+                deviceNanosSum += result.elapsedNanos;
+                if (result.disk != null) {
+                    disks.add(result.disk);
+                }
             }
+        } catch (InterruptedException ie) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CollectorException("Interrupted while reading devices", ie);
+        } catch (ExecutionException ee) {
+            futures.forEach(f -> f.cancel(true));
+            throw new CollectorException("Unexpected failure while reading devices", ee.getCause());
         }
 
+        long wallNanos = System.nanoTime() - cycleStart;
+        readWallSeconds.set(wallNanos / 1e9);
+        readDeviceSecondsSum.set(deviceNanosSum / 1e9);
+        logger.debug("Read {} of {} devices in {} ms (sum of device reads {} ms, concurrency {})",
+                disks.size(), devices.size(), wallNanos / 1_000_000, deviceNanosSum / 1_000_000, executor.getMaximumPoolSize());
+
         return disks;
     }
 
-    private long getRawValue(SmartctlDiskJson json, String name) {
-        if (json.ata_smart_attributes != null && json.ata_smart_attributes.table != null) {
-            return json.ata_smart_attributes.table.stream()
-                    .filter(attr -> name.equals(attr.name))
-                    .findFirst()
-                    .map(attr -> attr.raw != null ? attr.raw.value : -1)
-                    .orElse(-1L);
+    /**
+     * Chooses the polling tier for the device and merges the result into its state.
+     * Returns a copy of the merged state, so collectors never observe a later update.
+     */
+    private DeviceReadResult pollDevice(DeviceEntry device) {
+        long start = System.nanoTime();
+        DiskState state = diskStates.computeIfAbsent(device, d -> new DiskState(start,
+                new DeviceCircuitBreaker(breakerFailureThreshold, breakerBaseBackoffNanos, breakerMaxBackoffNanos)));
+
+        PollingTier tier;
+        if (state.disk == null || start - state.lastFullNanos >= fullTierIntervalNanos) {
+            tier = PollingTier.FULL;
+        } else if (start - state.lastFastNanos >= fastTierIntervalNanos) {
+            tier = PollingTier.FAST;
+        } else {
+            invocations.labelValues("cached").inc();
+            return new DeviceReadResult(state.publish(device), System.nanoTime() - start);
         }
-        return -1L;
-    }
 
-    private List<DeviceEntry> scanDevices() throws CollectorException {
-        logger.debug("Starts scan devices");
-        List<DeviceEntry> devices = new ArrayList<>();
+        // Устройство в карантине: не запускаем smartctl до истечения backoff
+        if (!state.breaker.allowRequest(start)) {
+            invocations.labelValues("quarantined").inc();
+            return new DeviceReadResult(null, System.nanoTime() - start);
+        }
+        if (state.breaker.state() == DeviceCircuitBreaker.State.HALF_OPEN) {
+            logger.info("Probing quarantined device {}", device);
+            breakerState.labelValues(device.dev, device.driver).set(DeviceCircuitBreaker.State.HALF_OPEN.value);
+        }
 
-        try {
-            Process process = new ProcessBuilder("smartctl", "--scan", "-j").start();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-
-            // Чтение всего JSON в строку
-            StringBuilder jsonBuilder = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                jsonBuilder.append(line);
+        // Не будим спящий диск, пока последнее значение моложе standbyMaxAge
+        boolean skipIfStandby = standbyAware && start - state.lastReadNanos < standbyMaxAgeNanos;
+        ReadOutcome outcome = readDevice(device, tier, skipIfStandby);
+
+        if (outcome.standby) {
+            // Диск ответил (пусть и "сплю"): это успешное обращение
+            recordSuccess(device, state);
+            invocations.labelValues("standby").inc();
+            logger.debug("Device {} is in standby, serving cached values", device);
+            state.standby = true;
+            return new DeviceReadResult(state.publish(device), System.nanoTime() - start);
+        }
+
+        invocations.labelValues(tier.label).inc();
+        if (outcome.disk == null) {
+            if (state.breaker.recordFailure(System.nanoTime())) {
+                quarantines.labelValues(device.dev, device.driver).inc();
+                logger.warn("Device {} quarantined after repeated failures", device);
             }
+            breakerState.labelValues(device.dev, device.driver).set(state.breaker.state().value);
+            // Последнее известное состояние не публикуем: устройство не ответило
+            return new DeviceReadResult(null, System.nanoTime() - start);
+        }
+        recordSuccess(device, state);
 
-            process.waitFor();
+        if (tier == PollingTier.FULL) {
+            state.disk = outcome.disk;
+            state.lastFullNanos = start;
+        } else {
+            mergeFast(state.disk, outcome.disk);
+        }
+        state.lastFastNanos = start;
+        state.lastReadNanos = start;
+        state.standby = false;
+        state.disk.lastReadEpochMillis = System.currentTimeMillis();
 
-            String json = jsonBuilder.toString();
-            Gson gson = new Gson();
+        return new DeviceReadResult(state.publish(device), System.nanoTime() - start);
+    }
 
-            SmartctlScanResult result = gson.fromJson(json, SmartctlScanResult.class);
+    private static void recordSuccess(DeviceEntry device, DiskState state) {
+        if (state.breaker.state() != DeviceCircuitBreaker.State.CLOSED) {
+            logger.info("Device {} responded, leaving quarantine", device);
+        }
+        state.breaker.recordSuccess();
+        breakerState.labelValues(device.dev, device.driver).set(DeviceCircuitBreaker.State.CLOSED.value);
+    }
 
-            // Валидация версии JSON
-            if (result.json_format_version == null || result.json_format_version.size() != 2 ||
-                    result.json_format_version.get(0) != 1 || result.json_format_version.get(1) != 0) {
-                throw new CollectorException("Unsupported or missing json_format_version: " + result.json_format_version);
+    // FAST (-A) не содержит идентификации и SMART health: берем только изменчивые значения,
+    // отсутствующие в выводе (-1) не затирают результат полного опроса
+    private static void mergeFast(MegaRAIDDiskInfo target, MegaRAIDDiskInfo fast) {
+        if (fast.temperatureCelsius >= 0) target.temperatureCelsius = fast.temperatureCelsius;
+        if (fast.powerOnHours >= 0) target.powerOnHours = fast.powerOnHours;
+        if (fast.reallocatedSectors >= 0) target.reallocatedSectors = fast.reallocatedSectors;
+        if (fast.currentPendingSectors >= 0) target.currentPendingSectors = fast.currentPendingSectors;
+        if (fast.offlineUncorrectable >= 0) target.offlineUncorrectable = fast.offlineUncorrectable;
+        if (fast.udmaCrcErrors >= 0) target.udmaCrcErrors = fast.udmaCrcErrors;
+        if (target.smartAttributes != null && fast.smartAttributes != null) {
+            for (int i = 0; i < target.smartAttributes.length; i++) {
+                if (fast.smartAttributes[i] >= 0) target.smartAttributes[i] = fast.smartAttributes[i];
             }
+        }
+    }
 
-            // Валидация устройств
-            if (result.devices == null || result.devices.isEmpty()) {
-                throw new CollectorException("No devices found in smartctl JSON output");
+    private ReadOutcome readDevice(DeviceEntry device, PollingTier tier, boolean skipIfStandby) {
+        logger.debug("process device: {} ({} tier)", device, tier.label);
+        String driverType = driverType(device.driver);
+        try {
+            List<String> cmd = new ArrayList<>();
+            cmd.add("smartctl");
+            cmd.add(tier.smartctlFlag);
+            cmd.add("-j");
+            if (skipIfStandby) {
+                // smartctl завершится с кодом standbyExitStatus, не раскручивая диск
+                cmd.add("-n");
+                cmd.add("standby," + standbyExitStatus);
+            }
+            if (device.driver.startsWith("megaraid")) {
+                cmd.add("-d");
+                cmd.add(device.driver);
             }
+            cmd.add(device.dev);
 
-            for (SmartctlDevice device : result.devices) {
-                if (device.name == null || device.type == null) {
-                    throw new CollectorException("Invalid device entry: " + device);
+            logger.debug("try to run {}", cmd);
+            SmartctlDiskJson json;
+            int exitStatus;
+            long parseCpuNanos;
+            long execStart = System.nanoTime();
+            try (CommandExecutionInterface process = commandRunner.start(cmd, deviceTimeout)) {
+                long cpuStart = threadCpuNanos();
+                try {
+                    json = SmartctlJson.read(process.stdout(), jsonAdapter);
+                    parseCpuNanos = threadCpuNanos() - cpuStart;
+                    exitStatus = process.waitFor();
+                } catch (RuntimeException | IOException e) {
+                    // Обрезанный убитым процессом вывод — это таймаут, а не ошибка разбора
+                    if (process.timedOut()) {
+                        throw timeout(execStart);
+                    }
+                    throw e;
                 }
-                devices.add(new DeviceEntry(device.name, device.type));
+                if (process.timedOut()) {
+                    throw timeout(execStart);
+                }
+                execDuration.labelValues(driverType).observe((System.nanoTime() - execStart) / 1e9);
+                if (json == null) {
+                    throw new CollectorException("Empty smartctl output (exit status " + exitStatus + "): " + process.stderrTail());
+                }
+            }
+
+            // Код standbyExitStatus совпадает и с ошибками самого smartctl (2 — устройство не открылось):
+            // пропуск подтверждается его сообщением о режиме питания
+            if (skipIfStandby && exitStatus == standbyExitStatus && reportsPowerModeSkip(json)) {
+                return ReadOutcome.STANDBY;
+            }
+            if ((exitStatus & EXIT_OPEN_FAILED_BITS) != 0 && !hasDeviceData(json)) {
+                throw new DeviceOpenException("smartctl exit status " + exitStatus + ": " + firstMessage(json));
+            }
+
+            // проверка формата
+            if (!SmartctlDiskMapper.isSupportedFormat(json)) {
+                throw new CollectorException("Unsupported smartctl json_format_version");
             }
 
+            long mapCpuStart = threadCpuNanos();
+            MegaRAIDDiskInfo disk = mapper.map(json, SmartctlDiskMapper.megaRAIDIndex(device.driver), device.dev);
+            parseCpuNanos += threadCpuNanos() - mapCpuStart;
+            if (threadCpuTimeSupported) {
+                parseDuration.labelValues(driverType).observe(parseCpuNanos / 1e9);
+            }
+
+            logger.debug("Device {} parsed successfully", device);
+            return new ReadOutcome(disk, false);
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            readFailures.labelValues(driverType, "interrupted").inc();
+            logger.warn("Interrupted while reading device {}", device);
         } catch (Exception e) {
-            throw new CollectorException("Failed to parse smartctl --scan -j output", e);
+            readFailures.labelValues(driverType, failureReason(e)).inc();
+            logger.warn("Failed to parse device {}: {}", device, e.getMessage());
+        }
+        return ReadOutcome.FAILED;
+    }
+
+    /**
+     * Whether smartctl says it skipped the device because of its power mode
+     * ({@code "Device is in STANDBY mode, exit(2)"}) and returned no device data.
+     */
+    static boolean reportsPowerModeSkip(SmartctlDiskJson json) {
+        if (hasDeviceData(json) || json.smartctl == null || json.smartctl.messages == null) {
+            return false;
+        }
+        for (SmartctlDiskJson.Message message : json.smartctl.messages) {
+            if (message.string != null && message.string.startsWith(POWER_MODE_SKIP_PREFIX)
+                    && message.string.contains(POWER_MODE_SKIP_MARKER)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasDeviceData(SmartctlDiskJson json) {
+        return json.model_name != null || json.temperature != null || json.smart_attribute_values != null;
+    }
+
+    private static String firstMessage(SmartctlDiskJson json) {
+        if (json.smartctl == null || json.smartctl.messages == null || json.smartctl.messages.isEmpty()) {
+            return "no message";
+        }
+        return json.smartctl.messages.get(0).string;
+    }
+
+    private DeviceTimeoutException timeout(long execStart) {
+        return new DeviceTimeoutException("smartctl killed after " + (System.nanoTime() - execStart) / 1_000_000
+                + " ms (deadline " + deviceTimeout.toMillis() + " ms)");
+    }
+
+    private static String failureReason(Exception e) {
+        if (e instanceof DeviceTimeoutException) {
+            return "timeout";
+        } else if (e instanceof DeviceOpenException) {
+            return "open_failed";
+        } else if (e instanceof IOException || e instanceof JsonIOException) {
+            return "io";
+        } else if (e instanceof JsonParseException || e instanceof IllegalStateException) {
+            // Gson сообщает о синтаксических ошибках и о несовпадении типов токенов
+            return "parse";
+        } else if (e instanceof CollectorException) {
+            return "invalid_output";
         }
+        return "error";
+    }
+
+    /**
+     * Driver type without the device index: {@code megaraid,4} becomes {@code megaraid}.
+     */
+    static String driverType(String driver) {
+        int comma = driver.indexOf(',');
+        return comma < 0 ? driver : driver.substring(0, comma);
+    }
+
+    private static long threadCpuNanos() {
+        return threadCpuTimeSupported ? threads.getCurrentThreadCpuTime() : 0L;
+    }
+
+    private static class DeviceReadResult {
+        final MegaRAIDDiskInfo disk;
+        final long elapsedNanos;
 
-        logger.debug("Scan devices result: {}", devices);
-        return devices;
+        DeviceReadResult(MegaRAIDDiskInfo disk, long elapsedNanos) {
+            this.disk = disk;
+            this.elapsedNanos = elapsedNanos;
+        }
     }
 
-    private int extractMegaRAIDIndex(String driver) {
-        if (driver.startsWith("megaraid,")) {
-            try {
-                return Integer.parseInt(driver.substring("megaraid,".length()));
-            } catch (NumberFormatException ignored) {
+    private static class ReadOutcome {
+        static final ReadOutcome FAILED = new ReadOutcome(null, false);
+        static final ReadOutcome STANDBY = new ReadOutcome(null, true);
+
+        final MegaRAIDDiskInfo disk;
+        final boolean standby;
+
+        ReadOutcome(MegaRAIDDiskInfo disk, boolean standby) {
+            this.disk = disk;
+            this.standby = standby;
+        }
+    }
+
+    private static class DiskState {
+        // null, пока диск ни разу не был прочитан (например, спал с самого старта)
+        volatile MegaRAIDDiskInfo disk;
+        volatile long lastFullNanos;
+        volatile long lastFastNanos;
+        // Время последнего реального чтения (или появления в топологии)
+        volatile long lastReadNanos;
+        volatile boolean standby;
+        final DeviceCircuitBreaker breaker;
+
+        DiskState(long createdNanos, DeviceCircuitBreaker breaker) {
+            this.lastReadNanos = createdNanos;
+            this.breaker = breaker;
+        }
+
+        MegaRAIDDiskInfo publish(DeviceEntry device) {
+            MegaRAIDDiskInfo current = disk;
+            if (current == null) {
+                // Спал с самого старта: публикуем только устройство и состояние питания
+                return standby ? standbyPlaceholder(device) : null;
             }
+            MegaRAIDDiskInfo copy = current.copy();
+            copy.powerState = standby ? MegaRAIDDiskInfo.POWER_STATE_STANDBY : MegaRAIDDiskInfo.POWER_STATE_ACTIVE;
+            return copy;
         }
-        return -1;
     }
 
-    private static class DeviceEntry {
-        String dev;
-        String driver;
+    /**
+     * Entry of a disk that has been asleep since it was first seen: no identity and no values,
+     * only the device and {@link MegaRAIDDiskInfo#POWER_STATE_STANDBY}.
+     */
+    static MegaRAIDDiskInfo standbyPlaceholder(DeviceEntry device) {
+        MegaRAIDDiskInfo disk = new MegaRAIDDiskInfo();
+        disk.diskId = SmartctlDiskMapper.megaRAIDIndex(device.driver);
+        disk.deviceName = device.dev;
+        disk.reallocatedSectors = -1;
+        disk.powerOnHours = -1;
+        disk.temperatureCelsius = -1;
+        disk.currentPendingSectors = -1;
+        disk.offlineUncorrectable = -1;
+        disk.udmaCrcErrors = -1;
+        disk.powerState = MegaRAIDDiskInfo.POWER_STATE_STANDBY;
+        return disk;
+    }
+
+    public static class Builder {
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private DeviceTopologyRegistry topology;
+        private Duration fastTierInterval = Duration.ZERO;
+        private Duration fullTierInterval = Duration.ZERO;
+        private boolean standbyAware = false;
+        private Duration standbyMaxAge = Duration.ofHours(1);
+        private int standbyExitStatus = 2;
+        private Duration deviceTimeout = Duration.ofSeconds(30);
+        private int breakerFailureThreshold = 3;
+        private Duration breakerBaseBackoff = Duration.ofMinutes(1);
+        private Duration breakerMaxBackoff = Duration.ofHours(1);
+        private List<SmartAttributeSpec> smartAttributes = List.of();
+        private CommandRunnerInterface commandRunner = new ProcessCommandRunner();
+
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public Builder topology(DeviceTopologyRegistry topology) {
+            this.topology = topology;
+            return this;
+        }
+
+        /**
+         * Minimum time between two lightweight ({@code smartctl -A}) reads of the same device.
+         */
+        public Builder fastTierInterval(Duration fastTierInterval) {
+            this.fastTierInterval = fastTierInterval;
+            return this;
+        }
+
+        /**
+         * Minimum time between two full ({@code smartctl -a}) reads of the same device.
+         * {@link Duration#ZERO} performs a full read on every cycle.
+         */
+        public Builder fullTierInterval(Duration fullTierInterval) {
+            this.fullTierInterval = fullTierInterval;
+            return this;
+        }
+
+        /**
+         * Reads devices with {@code smartctl -n standby}: a sleeping disk is not spun up and its
+         * last known values are served until they are older than {@code standbyMaxAge}.
+         */
+        public Builder standbyAware(boolean standbyAware) {
+            this.standbyAware = standbyAware;
+            return this;
+        }
+
+        /**
+         * Age of the cached values after which a sleeping disk is read anyway.
+         */
+        public Builder standbyMaxAge(Duration standbyMaxAge) {
+            this.standbyMaxAge = standbyMaxAge;
+            return this;
+        }
+
+        /**
+         * Exit status smartctl is asked to return when it skips a device in standby. smartctl sets
+         * the same bits for its own errors, so a skip is also confirmed by its power-mode message.
+         */
+        public Builder standbyExitStatus(int standbyExitStatus) {
+            this.standbyExitStatus = standbyExitStatus;
+            return this;
+        }
+
+        /**
+         * Deadline of one smartctl device process; on expiry the process tree is killed.
+         * {@link Duration#ZERO} waits indefinitely.
+         */
+        public Builder deviceTimeout(Duration deviceTimeout) {
+            this.deviceTimeout = deviceTimeout;
+            return this;
+        }
+
+        /**
+         * Consecutive failures (errors or timeouts) after which a device is quarantined; 0 disables quarantine.
+         */
+        public Builder breakerFailureThreshold(int breakerFailureThreshold) {
+            this.breakerFailureThreshold = breakerFailureThreshold;
+            return this;
+        }
+
+        /**
+         * Quarantine length after the first trip; doubles with every further trip up to {@code breakerMaxBackoff}.
+         */
+        public Builder breakerBaseBackoff(Duration breakerBaseBackoff) {
+            this.breakerBaseBackoff = breakerBaseBackoff;
+            return this;
+        }
+
+        public Builder breakerMaxBackoff(Duration breakerMaxBackoff) {
+            this.breakerMaxBackoff = breakerMaxBackoff;
+            return this;
+        }
+
+        /**
+         * Additional SMART attributes exported through the generic {@code smart_attribute_*} families,
+         * on top of {@link #BUILT_IN_ATTRIBUTES}.
+         */
+        public Builder smartAttributes(List<SmartAttributeSpec> smartAttributes) {
+            this.smartAttributes = List.copyOf(smartAttributes);
+            return this;
+        }
 
-        DeviceEntry(String dev, String driver) {
-            this.dev = dev;
-            this.driver = driver;
+        /**
+         * Runs the smartctl commands; a recording, replaying or simulated runner replaces the real processes.
+         * Without an explicit topology the {@code --scan} runs through it as well.
+         */
+        public Builder commandRunner(CommandRunnerInterface commandRunner) {
+            this.commandRunner = commandRunner;
+            return this;
         }
 
-        @Override
-        public String toString() {
-            return "DeviceEntry{" +
-                    "dev='" + dev + '\'' +
-                    ", driver='" + driver + '\'' +
-                    '}';
+        public SmartCTLReader build() {
+            return new SmartCTLReader(this);
         }
     }
-}
\ No newline at end of file
+}
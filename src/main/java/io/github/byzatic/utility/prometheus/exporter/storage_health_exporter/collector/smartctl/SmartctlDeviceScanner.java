@@ -0,0 +1,99 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.CommandExecutionInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.CommandRunnerInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.ProcessCommandRunner;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.scan.SmartctlDevice;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.scan.SmartctlScanResult;
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SmartctlDeviceScanner implements DeviceScannerInterface {
+    private final static Logger logger = LoggerFactory.getLogger(SmartctlDeviceScanner.class);
+
+    private static final Histogram scanDuration = Histogram.builder()
+            .name("smartctl_scan_duration_seconds")
+            .help("Duration of smartctl --scan -j including JSON parsing")
+            .classicOnly()
+            .classicUpperBounds(0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30)
+            .register();
+
+    private static final Counter scanFailures = Counter.builder()
+            .name("smartctl_scan_failures_total")
+            .help("Failed smartctl --scan -j runs")
+            .register();
+
+    private final Duration timeout;
+    private final CommandRunnerInterface commandRunner;
+
+    public SmartctlDeviceScanner() {
+        this(Duration.ZERO);
+    }
+
+    /**
+     * @param timeout deadline of the {@code smartctl --scan} process; {@link Duration#ZERO} waits indefinitely
+     */
+    public SmartctlDeviceScanner(Duration timeout) {
+        this(timeout, new ProcessCommandRunner());
+    }
+
+    public SmartctlDeviceScanner(Duration timeout, CommandRunnerInterface commandRunner) {
+        this.timeout = timeout;
+        this.commandRunner = commandRunner;
+    }
+
+    @Override
+    public List<DeviceEntry> scanDevices() throws CollectorException {
+        logger.debug("Starts scan devices");
+        List<DeviceEntry> devices = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try {
+            SmartctlScanResult result;
+            try (CommandExecutionInterface process = commandRunner.start(List.of("smartctl", "--scan", "-j"), timeout)) {
+                result = SmartctlJson.read(process.stdout(), SmartctlScanResult.class);
+                int exitStatus = process.waitFor();
+                if (process.timedOut()) {
+                    throw new CollectorException("smartctl --scan killed after " + timeout.toMillis() + " ms");
+                }
+                if (result == null) {
+                    throw new CollectorException("Empty smartctl --scan output (exit status " + exitStatus + "): " + process.stderrTail());
+                }
+            }
+
+            // Валидация версии JSON
+            if (result.json_format_version == null || result.json_format_version.size() != 2 ||
+                    result.json_format_version.get(0) != 1 || result.json_format_version.get(1) != 0) {
+                throw new CollectorException("Unsupported or missing json_format_version: " + result.json_format_version);
+            }
+
+            // Валидация устройств
+            if (result.devices == null || result.devices.isEmpty()) {
+                throw new CollectorException("No devices found in smartctl JSON output");
+            }
+
+            for (SmartctlDevice device : result.devices) {
+                if (device.name == null || device.type == null) {
+                    throw new CollectorException("Invalid device entry: " + device);
+                }
+                devices.add(new DeviceEntry(device.name, device.type));
+            }
+
+        } catch (Exception e) {
+            scanFailures.inc();
+            throw new CollectorException("Failed to parse smartctl --scan -j output", e);
+        } finally {
+            scanDuration.observe((System.nanoTime() - start) / 1e9);
+        }
+
+        logger.debug("Scan devices result: {}", devices);
+        return devices;
+    }
+}
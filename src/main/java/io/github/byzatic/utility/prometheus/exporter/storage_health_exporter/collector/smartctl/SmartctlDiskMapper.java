@@ -0,0 +1,71 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJson;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+
+/**
+ * Maps one parsed {@code smartctl -a -j} document to {@link MegaRAIDDiskInfo},
+ * laying out SMART attributes by the given {@link SmartAttributeTable}.
+ * Shared by the local reader and by ingestion of documents pushed from other hosts.
+ */
+public final class SmartctlDiskMapper {
+    private final SmartAttributeTable attributeTable;
+    private final int reallocatedSlot;
+    private final int pendingSlot;
+    private final int offlineUncorrectableSlot;
+    private final int udmaCrcSlot;
+
+    public SmartctlDiskMapper(SmartAttributeTable attributeTable) {
+        this.attributeTable = attributeTable;
+        this.reallocatedSlot = attributeTable.slotOf(5);
+        this.pendingSlot = attributeTable.slotOf(197);
+        this.offlineUncorrectableSlot = attributeTable.slotOf(198);
+        this.udmaCrcSlot = attributeTable.slotOf(199);
+    }
+
+    public SmartAttributeTable getAttributeTable() {
+        return attributeTable;
+    }
+
+    /**
+     * Only {@code json_format_version} 1.0 is understood.
+     */
+    public static boolean isSupportedFormat(SmartctlDiskJson json) {
+        return json.json_format_version != null && json.json_format_version.size() == 2 &&
+                json.json_format_version.get(0) == 1 && json.json_format_version.get(1) == 0;
+    }
+
+    public MegaRAIDDiskInfo map(SmartctlDiskJson json, int diskId, String deviceName) {
+        MegaRAIDDiskInfo disk = new MegaRAIDDiskInfo();
+        disk.diskId = diskId;
+        disk.deviceName = deviceName;
+        disk.model = json.model_name;
+        disk.serial = json.serial_number;
+        disk.smartStatus = json.smart_status != null && json.smart_status.passed ? "PASSED" : "FAILED";
+        disk.temperatureCelsius = json.temperature != null ? json.temperature.current : -1;
+        disk.powerOnHours = json.power_on_time != null ? json.power_on_time.hours : -1;
+        // Один проход по таблице атрибутов
+        long[] attributes = attributeTable.extract(json);
+        disk.smartAttributes = attributes;
+        disk.reallocatedSectors = SmartAttributeTable.value(attributes, reallocatedSlot, SmartAttributeTable.RAW);
+        disk.currentPendingSectors = SmartAttributeTable.value(attributes, pendingSlot, SmartAttributeTable.RAW);
+        disk.offlineUncorrectable = SmartAttributeTable.value(attributes, offlineUncorrectableSlot, SmartAttributeTable.RAW);
+        disk.udmaCrcErrors = SmartAttributeTable.value(attributes, udmaCrcSlot, SmartAttributeTable.RAW);
+        return disk;
+    }
+
+    /**
+     * Controller index of a {@code megaraid,N} device type (also {@code sat+megaraid,N} as reported
+     * in {@code device.type}); {@code -1} for any other type.
+     */
+    public static int megaRAIDIndex(String driver) {
+        int at = driver != null ? driver.indexOf("megaraid,") : -1;
+        if (at >= 0) {
+            try {
+                return Integer.parseInt(driver.substring(at + "megaraid,".length()));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJson;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJsonTypeAdapter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shared, thread-safe Gson instance for smartctl JSON output.
+ * Documents are parsed straight from the process stream, never buffered into a String.
+ * <p>
+ * {@code smartctl -a -j} documents are read with a {@link SmartctlDiskJsonTypeAdapter} of the caller's
+ * attribute table: {@link #read(InputStream, SmartctlDiskJsonTypeAdapter)}.
+ */
+public final class SmartctlJson {
+    public static final Gson GSON = new Gson();
+
+    private SmartctlJson() {
+    }
+
+    public static <T> T read(InputStream in, Class<T> type) {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return GSON.fromJson(reader, type);
+    }
+
+    /**
+     * Same contract as {@link Gson#fromJson}: {@code null} for empty input, {@link JsonSyntaxException}
+     * for malformed or truncated JSON, {@link JsonIOException} if the stream fails.
+     */
+    public static SmartctlDiskJson read(InputStream in, SmartctlDiskJsonTypeAdapter adapter) {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        boolean empty = true;
+        try {
+            reader.peek();
+            empty = false;
+            return adapter.read(reader);
+        } catch (EOFException e) {
+            if (empty) {
+                return null;
+            }
+            throw new JsonSyntaxException(e);
+        } catch (MalformedJsonException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+}
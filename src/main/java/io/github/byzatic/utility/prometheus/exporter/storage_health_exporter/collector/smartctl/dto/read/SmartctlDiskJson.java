@@ -4,36 +4,43 @@ import java.util.List;
 
 public class SmartctlDiskJson {
     public List<Integer> json_format_version;
+    public Smartctl smartctl;
+    public Device device;
     public String model_name;
     public String serial_number;
     public SmartStatus smart_status;
     public Temperature temperature;
     public PowerOnTime power_on_time;
-    public SmartAttributes ata_smart_attributes;
+    // Значения настроенных атрибутов из ata_smart_attributes.table, разложенные по SmartAttributeTable
+    // адаптера (см. SmartAttributeTable#value); null — раздела ata_smart_attributes в выводе нет
+    public long[] smart_attribute_values;
 
-    public static class SmartStatus {
-        public boolean passed;
+    public static class Smartctl {
+        // Сообщения самого smartctl: ошибка открытия устройства, пропуск спящего диска (-n) ...
+        public List<Message> messages;
     }
 
-    public static class Temperature {
-        public int current;
+    public static class Message {
+        public String string;
+        // information, warning, error
+        public String severity;
     }
 
-    public static class PowerOnTime {
-        public int hours;
+    public static class Device {
+        public String name;
+        // sat, nvme, megaraid,N ...
+        public String type;
     }
 
-    public static class SmartAttributes {
-        public List<Attribute> table;
+    public static class SmartStatus {
+        public boolean passed;
     }
 
-    public static class Attribute {
-        public int id;
-        public String name;
-        public RawValue raw;
+    public static class Temperature {
+        public int current;
     }
 
-    public static class RawValue {
-        public long value;
+    public static class PowerOnTime {
+        public int hours;
     }
 }
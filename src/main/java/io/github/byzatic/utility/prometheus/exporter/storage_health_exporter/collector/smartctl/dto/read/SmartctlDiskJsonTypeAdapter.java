@@ -0,0 +1,355 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Field-selective streaming reader for {@code smartctl -a -j} output.
+ * <p>
+ * Only the fields declared in {@link SmartctlDiskJson} are materialized; every other
+ * value (capabilities, logs, attribute flags, ...) is skipped with {@link JsonReader#skipValue()}
+ * without building an intermediate tree. Rows of {@code ata_smart_attributes.table} go straight
+ * into {@link SmartctlDiskJson#smart_attribute_values} laid out by the given {@link SmartAttributeTable};
+ * rows of attributes that are not configured are skipped without allocating anything.
+ * <p>
+ * {@link #write} emits the same subset, so a written document reads back to equal values.
+ */
+public class SmartctlDiskJsonTypeAdapter extends TypeAdapter<SmartctlDiskJson> {
+    private final SmartAttributeTable table;
+
+    public SmartctlDiskJsonTypeAdapter(SmartAttributeTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public SmartctlDiskJson read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        SmartctlDiskJson json = new SmartctlDiskJson();
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "json_format_version":
+                    json.json_format_version = readIntList(in);
+                    break;
+                case "smartctl":
+                    json.smartctl = readSmartctl(in);
+                    break;
+                case "device":
+                    json.device = readDevice(in);
+                    break;
+                case "model_name":
+                    json.model_name = in.nextString();
+                    break;
+                case "serial_number":
+                    json.serial_number = in.nextString();
+                    break;
+                case "smart_status":
+                    json.smart_status = readSmartStatus(in);
+                    break;
+                case "temperature":
+                    json.temperature = readTemperature(in);
+                    break;
+                case "power_on_time":
+                    json.power_on_time = readPowerOnTime(in);
+                    break;
+                case "ata_smart_attributes":
+                    json.smart_attribute_values = readSmartAttributes(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return json;
+    }
+
+    @Override
+    public void write(JsonWriter out, SmartctlDiskJson value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (value.json_format_version != null) {
+            out.name("json_format_version").beginArray();
+            for (Integer v : value.json_format_version) {
+                out.value(v);
+            }
+            out.endArray();
+        }
+        if (value.smartctl != null) {
+            out.name("smartctl").beginObject();
+            if (value.smartctl.messages != null) {
+                out.name("messages").beginArray();
+                for (SmartctlDiskJson.Message message : value.smartctl.messages) {
+                    out.beginObject();
+                    writeString(out, "string", message.string);
+                    writeString(out, "severity", message.severity);
+                    out.endObject();
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+        if (value.device != null) {
+            out.name("device").beginObject();
+            writeString(out, "name", value.device.name);
+            writeString(out, "type", value.device.type);
+            out.endObject();
+        }
+        writeString(out, "model_name", value.model_name);
+        writeString(out, "serial_number", value.serial_number);
+        if (value.smart_status != null) {
+            out.name("smart_status").beginObject().name("passed").value(value.smart_status.passed).endObject();
+        }
+        if (value.temperature != null) {
+            out.name("temperature").beginObject().name("current").value(value.temperature.current).endObject();
+        }
+        if (value.power_on_time != null) {
+            out.name("power_on_time").beginObject().name("hours").value(value.power_on_time.hours).endObject();
+        }
+        if (value.smart_attribute_values != null) {
+            writeSmartAttributes(out, table.extract(value));
+        }
+        out.endObject();
+    }
+
+    private void writeSmartAttributes(JsonWriter out, long[] values) throws IOException {
+        out.name("ata_smart_attributes").beginObject().name("table").beginArray();
+        for (int slot = 0; slot < table.size(); slot++) {
+            int base = SmartAttributeTable.index(slot, 0);
+            long raw = values[base + SmartAttributeTable.RAW];
+            long normalized = values[base + SmartAttributeTable.NORMALIZED];
+            long worst = values[base + SmartAttributeTable.WORST];
+            long threshold = values[base + SmartAttributeTable.THRESHOLD];
+            // Атрибута не было в исходном выводе
+            if (raw == -1 && normalized == -1 && worst == -1 && threshold == -1) {
+                continue;
+            }
+            SmartAttributeSpec spec = table.spec(slot);
+            out.beginObject();
+            if (spec.id != SmartAttributeSpec.NO_ID) {
+                out.name("id").value(spec.id);
+            }
+            out.name("name").value(spec.name);
+            writeNumber(out, "value", normalized);
+            writeNumber(out, "worst", worst);
+            writeNumber(out, "thresh", threshold);
+            if (raw != -1) {
+                out.name("raw").beginObject().name("value").value(raw).endObject();
+            }
+            out.endObject();
+        }
+        out.endArray().endObject();
+    }
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    // -1 — значения нет
+    private static void writeNumber(JsonWriter out, String name, long value) throws IOException {
+        if (value != -1) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static ArrayList<Integer> readIntList(JsonReader in) throws IOException {
+        ArrayList<Integer> list = new ArrayList<>(2);
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(in.nextInt());
+        }
+        in.endArray();
+        return list;
+    }
+
+    private static SmartctlDiskJson.Smartctl readSmartctl(JsonReader in) throws IOException {
+        SmartctlDiskJson.Smartctl smartctl = new SmartctlDiskJson.Smartctl();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("messages".equals(in.nextName()) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                smartctl.messages = new ArrayList<>(1);
+                in.beginArray();
+                while (in.hasNext()) {
+                    smartctl.messages.add(readMessage(in));
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return smartctl;
+    }
+
+    private static SmartctlDiskJson.Message readMessage(JsonReader in) throws IOException {
+        SmartctlDiskJson.Message message = new SmartctlDiskJson.Message();
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if ("string".equals(field) && in.peek() == JsonToken.STRING) {
+                message.string = in.nextString();
+            } else if ("severity".equals(field) && in.peek() == JsonToken.STRING) {
+                message.severity = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return message;
+    }
+
+    private static SmartctlDiskJson.Device readDevice(JsonReader in) throws IOException {
+        SmartctlDiskJson.Device device = new SmartctlDiskJson.Device();
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if ("name".equals(field) && in.peek() == JsonToken.STRING) {
+                device.name = in.nextString();
+            } else if ("type".equals(field) && in.peek() == JsonToken.STRING) {
+                device.type = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return device;
+    }
+
+    private static SmartctlDiskJson.SmartStatus readSmartStatus(JsonReader in) throws IOException {
+        SmartctlDiskJson.SmartStatus status = new SmartctlDiskJson.SmartStatus();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("passed".equals(in.nextName()) && in.peek() == JsonToken.BOOLEAN) {
+                status.passed = in.nextBoolean();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return status;
+    }
+
+    private static SmartctlDiskJson.Temperature readTemperature(JsonReader in) throws IOException {
+        SmartctlDiskJson.Temperature temperature = new SmartctlDiskJson.Temperature();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("current".equals(in.nextName()) && in.peek() == JsonToken.NUMBER) {
+                temperature.current = in.nextInt();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return temperature;
+    }
+
+    private static SmartctlDiskJson.PowerOnTime readPowerOnTime(JsonReader in) throws IOException {
+        SmartctlDiskJson.PowerOnTime powerOnTime = new SmartctlDiskJson.PowerOnTime();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("hours".equals(in.nextName()) && in.peek() == JsonToken.NUMBER) {
+                powerOnTime.hours = in.nextInt();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return powerOnTime;
+    }
+
+    private long[] readSmartAttributes(JsonReader in) throws IOException {
+        long[] values = table.newValues();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("table".equals(in.nextName()) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    readAttribute(in, values);
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return values;
+    }
+
+    // Поля строки читаются в локальные переменные и копируются в values, только если атрибут настроен
+    private void readAttribute(JsonReader in, long[] values) throws IOException {
+        int id = -1;
+        int namedSlot = SmartAttributeTable.NO_SLOT;
+        long normalized = -1;
+        long worst = -1;
+        long threshold = -1;
+        long raw = -1;
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if ("id".equals(field) && in.peek() == JsonToken.NUMBER) {
+                id = in.nextInt();
+            } else if ("name".equals(field) && in.peek() == JsonToken.STRING
+                    && table.hasNamedSlots() && table.slotOf(id) == SmartAttributeTable.NO_SLOT) {
+                // Имя нужно только для атрибутов, заданных без ID
+                namedSlot = table.slotOfName(in.nextString());
+            } else if ("value".equals(field) && in.peek() == JsonToken.NUMBER) {
+                normalized = in.nextInt();
+            } else if ("worst".equals(field) && in.peek() == JsonToken.NUMBER) {
+                worst = in.nextInt();
+            } else if ("thresh".equals(field) && in.peek() == JsonToken.NUMBER) {
+                threshold = in.nextInt();
+            } else if ("raw".equals(field) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                raw = readRawValue(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        int slot = table.slotOf(id);
+        if (slot == SmartAttributeTable.NO_SLOT) {
+            slot = namedSlot;
+        }
+        if (slot == SmartAttributeTable.NO_SLOT) {
+            return;
+        }
+        int base = SmartAttributeTable.index(slot, 0);
+        values[base + SmartAttributeTable.RAW] = raw;
+        values[base + SmartAttributeTable.NORMALIZED] = normalized;
+        values[base + SmartAttributeTable.WORST] = worst;
+        values[base + SmartAttributeTable.THRESHOLD] = threshold;
+    }
+
+    private static long readRawValue(JsonReader in) throws IOException {
+        long raw = -1;
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("value".equals(in.nextName()) && in.peek() == JsonToken.NUMBER) {
+                raw = in.nextLong();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return raw;
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/**
+ * Incremental reader of one append-only smartd log file.
+ * <p>
+ * Remembers the byte offset after the last complete line and reads only what was appended since.
+ * A file that shrank (truncation) or was replaced (rotation, detected by its file key) is read again
+ * from the start. An incomplete trailing line is left for the next call.
+ */
+final class AttrlogTail {
+    // Историю за годы разбирать незачем: не больше этого за один вызов
+    static final int MAX_READ_BYTES = 64 * 1024;
+
+    private final Path path;
+    private long offset = -1;
+    private Object fileKey;
+    private String lastLine;
+
+    AttrlogTail(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Reads the appended part of the file and returns the last complete line seen so far
+     * (possibly from an earlier call), or {@code null} if there is none yet.
+     */
+    String poll() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        Object key = attributes.fileKey();
+
+        if (offset < 0) {
+            offset = 0;
+        } else if (size < offset || !Objects.equals(key, fileKey)) {
+            // Файл усечен или заменен при ротации
+            offset = 0;
+            lastLine = null;
+        }
+        fileKey = key;
+        if (size == offset) {
+            return lastLine;
+        }
+
+        // Нужна только последняя строка: длинный прирост (первое открытие, ротация) читаем с хвоста
+        long start = Math.max(offset, size - MAX_READ_BYTES);
+        boolean fromMiddle = start > offset;
+        int length = (int) (size - start);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+                // читаем до текущего конца
+            }
+        }
+        byte[] bytes = buffer.array();
+        int read = buffer.position();
+
+        int end = lastIndexOf(bytes, read, (byte) '\n');
+        if (end < 0) {
+            // Целой строки еще нет
+            return lastLine;
+        }
+        int lineStart = lastIndexOf(bytes, end, (byte) '\n') + 1;
+        // Если чтение началось с середины файла, первый фрагмент может быть обрывком строки
+        if (!(fromMiddle && lineStart == 0)) {
+            String line = new String(bytes, lineStart, end - lineStart, StandardCharsets.UTF_8).trim();
+            if (!line.isEmpty()) {
+                lastLine = line;
+            }
+        }
+        offset = start + end + 1;
+        return lastLine;
+    }
+
+    long offset() {
+        return offset;
+    }
+
+    private static int lastIndexOf(byte[] bytes, int before, byte b) {
+        for (int i = before - 1; i >= 0; i--) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
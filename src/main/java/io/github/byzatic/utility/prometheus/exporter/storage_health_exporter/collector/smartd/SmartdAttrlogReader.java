@@ -0,0 +1,183 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartd;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.DiskReaderInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads disk values from the attribute logs {@code smartd -A} already writes
+ * ({@code attrlog.<model>-<serial>.ata.csv}), without starting any process.
+ * <p>
+ * Each file is tailed incrementally ({@link AttrlogTail}); only the newest record of every disk is used.
+ * A record is {@code "yyyy-MM-dd HH:mm:ss;\tID;normalized;raw;\tID;normalized;raw;..."}.
+ * The attribute log carries neither the SMART health status nor the device path, so {@code smartStatus}
+ * stays {@code null} (no {@code smart_passed} series) and worst/threshold values are missing.
+ */
+public class SmartdAttrlogReader implements DiskReaderInterface {
+    private final static Logger logger = LoggerFactory.getLogger(SmartdAttrlogReader.class);
+
+    private static final String PREFIX = "attrlog.";
+    private static final String SUFFIX = ".ata.csv";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Path directory;
+    private final SmartAttributeTable attributeTable;
+    private final int reallocatedSlot;
+    private final int pendingSlot;
+    private final int offlineUncorrectableSlot;
+    private final int udmaCrcSlot;
+
+    private final Map<Path, AttrlogTail> tails = new HashMap<>();
+
+    /**
+     * @param directory       smartd state directory, normally {@code /var/lib/smartmontools}
+     * @param smartAttributes attributes exported in addition to {@link SmartCTLReader#BUILT_IN_ATTRIBUTES};
+     *                        the attribute log has no names, so only entries with an ID can match
+     */
+    public SmartdAttrlogReader(Path directory, List<SmartAttributeSpec> smartAttributes) {
+        this.directory = directory;
+        List<SmartAttributeSpec> attributes = new ArrayList<>(SmartCTLReader.BUILT_IN_ATTRIBUTES);
+        attributes.addAll(smartAttributes);
+        this.attributeTable = SmartAttributeTable.compile(attributes);
+        this.reallocatedSlot = attributeTable.slotOf(5);
+        this.pendingSlot = attributeTable.slotOf(197);
+        this.offlineUncorrectableSlot = attributeTable.slotOf(198);
+        this.udmaCrcSlot = attributeTable.slotOf(199);
+    }
+
+    @Override
+    public SmartAttributeTable getAttributeTable() {
+        return attributeTable;
+    }
+
+    @Override
+    public synchronized List<MegaRAIDDiskInfo> readDisks() throws CollectorException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            throw new CollectorException("Cannot list smartd attribute logs in " + directory, e);
+        }
+        Collections.sort(files);
+
+        // Забываем смещения файлов, которых больше нет
+        tails.keySet().retainAll(files);
+
+        List<MegaRAIDDiskInfo> disks = new ArrayList<>(files.size());
+        for (Path file : files) {
+            AttrlogTail tail = tails.computeIfAbsent(file, AttrlogTail::new);
+            try {
+                String record = tail.poll();
+                if (record == null) {
+                    continue;
+                }
+                MegaRAIDDiskInfo disk = parseRecord(identifier(file), record);
+                if (disk != null) {
+                    disks.add(disk);
+                }
+            } catch (IOException e) {
+                logger.warn("Cannot read {}: {}", file, e.getMessage());
+            }
+        }
+        logger.debug("Read {} disks from {} smartd attribute logs", disks.size(), files.size());
+        return disks;
+    }
+
+    MegaRAIDDiskInfo parseRecord(String identifier, String record) {
+        String[] fields = record.split(";");
+        if (fields.length < 4) {
+            logger.warn("Malformed smartd attribute log record for {}: {}", identifier, record);
+            return null;
+        }
+
+        MegaRAIDDiskInfo disk = new MegaRAIDDiskInfo();
+        String[] modelSerial = splitIdentifier(identifier);
+        disk.diskId = -1;
+        disk.model = modelSerial[0];
+        disk.serial = modelSerial[1];
+        disk.powerState = MegaRAIDDiskInfo.POWER_STATE_ACTIVE;
+        disk.temperatureCelsius = -1;
+        disk.powerOnHours = -1;
+        try {
+            disk.lastReadEpochMillis = LocalDateTime.parse(fields[0].trim(), TIMESTAMP)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            disk.lastReadEpochMillis = 0;
+        }
+
+        long[] values = new long[attributeTable.size() * SmartAttributeTable.FIELDS];
+        Arrays.fill(values, -1L);
+        for (int i = 1; i + 2 < fields.length; i += 3) {
+            int id;
+            long normalized;
+            long raw;
+            try {
+                id = Integer.parseInt(fields[i].trim());
+                normalized = Long.parseLong(fields[i + 1].trim());
+                raw = Long.parseLong(fields[i + 2].trim());
+            } catch (NumberFormatException e) {
+                logger.debug("Skip malformed attribute triplet at {} for {}", i, identifier);
+                continue;
+            }
+            // Температура и наработка упакованы в raw вместе с min/max и минутами
+            if (id == 194 || (id == 190 && disk.temperatureCelsius < 0)) {
+                disk.temperatureCelsius = (int) (raw & 0xFF);
+            } else if (id == 9) {
+                disk.powerOnHours = (int) (raw & 0xFFFFFFFFL);
+            }
+            int slot = attributeTable.slotOf(id);
+            if (slot >= 0) {
+                values[SmartAttributeTable.index(slot, SmartAttributeTable.RAW)] = raw;
+                values[SmartAttributeTable.index(slot, SmartAttributeTable.NORMALIZED)] = normalized;
+            }
+        }
+        disk.smartAttributes = values;
+        disk.reallocatedSectors = SmartAttributeTable.value(values, reallocatedSlot, SmartAttributeTable.RAW);
+        disk.currentPendingSectors = SmartAttributeTable.value(values, pendingSlot, SmartAttributeTable.RAW);
+        disk.offlineUncorrectable = SmartAttributeTable.value(values, offlineUncorrectableSlot, SmartAttributeTable.RAW);
+        disk.udmaCrcErrors = SmartAttributeTable.value(values, udmaCrcSlot, SmartAttributeTable.RAW);
+        return disk;
+    }
+
+    private static String identifier(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(PREFIX.length(), name.length() - SUFFIX.length());
+    }
+
+    /**
+     * Splits smartd's {@code <model>-<serial>} (spaces replaced by underscores) at the last dash.
+     * A one-to-three letter segment in front of it is treated as a serial prefix ({@code WD-WX62D71C524S}).
+     */
+    static String[] splitIdentifier(String identifier) {
+        int dash = identifier.lastIndexOf('-');
+        if (dash <= 0) {
+            return new String[]{"unknown", identifier};
+        }
+        int previous = identifier.lastIndexOf('-', dash - 1);
+        String prefix = identifier.substring(previous + 1, dash);
+        if (previous > 0 && prefix.length() <= 3 && prefix.chars().allMatch(Character::isLetter)) {
+            dash = previous;
+        }
+        return new String[]{identifier.substring(0, dash).replace('_', ' '), identifier.substring(dash + 1)};
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.stale;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.DiskReaderInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reader decorator that keeps serving the last known values of disks the source failed to return.
+ * <p>
+ * Every disk returned by the delegate is stamped with {@link MegaRAIDDiskInfo#lastSuccessEpochMillis}.
+ * A disk seen before but missing from the current cycle (its read failed, or the whole source failed)
+ * is returned as a copy of its last known state with {@link MegaRAIDDiskInfo#stale} set, until
+ * {@code maxAge} has passed since it was last returned; after that it is dropped and its series
+ * disappear. A failure of the whole source is therefore not a failed cycle: the collectors publish the
+ * disks that are still fresh enough. Only when nothing has ever been read is the failure passed on.
+ * <p>
+ * The decorator cannot tell a failed read from a disk that was removed, so a removed disk stays
+ * visible as stale for up to {@code maxAge}. {@link Duration#ZERO} disables serving stale values.
+ */
+public class StaleWhileErrorReader implements DiskReaderInterface {
+    private final static Logger logger = LoggerFactory.getLogger(StaleWhileErrorReader.class);
+
+    private static final Gauge staleDisks = Gauge.builder()
+            .name("stale_disks")
+            .help("Disks served with their last known values because the source did not return them in the last cycle")
+            .register();
+
+    private static final Counter sourceFailures = Counter.builder()
+            .name("disk_source_failures_total")
+            .help("Cycles in which the disk source failed as a whole and only last known values were served")
+            .register();
+
+    private final DiskReaderInterface delegate;
+    private final long maxAgeMillis;
+
+    // Последнее известное состояние по ключу диска; только под this
+    private final Map<String, MegaRAIDDiskInfo> lastKnown = new LinkedHashMap<>();
+    private boolean succeeded = false;
+
+    public StaleWhileErrorReader(DiskReaderInterface delegate, Duration maxAge) {
+        this.delegate = delegate;
+        this.maxAgeMillis = maxAge.toMillis();
+    }
+
+    @Override
+    public SmartAttributeTable getAttributeTable() {
+        return delegate.getAttributeTable();
+    }
+
+    @Override
+    public synchronized List<MegaRAIDDiskInfo> readDisks() throws CollectorException {
+        long now = System.currentTimeMillis();
+        List<MegaRAIDDiskInfo> fresh;
+        try {
+            fresh = delegate.readDisks();
+            succeeded = true;
+        } catch (CollectorException | RuntimeException e) {
+            if (!succeeded) {
+                throw e;
+            }
+            sourceFailures.inc();
+            logger.error("Disk source failed, serving last known values: {}", e.toString());
+            fresh = List.of();
+        }
+
+        List<MegaRAIDDiskInfo> disks = new ArrayList<>(Math.max(fresh.size(), lastKnown.size()));
+        Set<String> seen = new HashSet<>();
+        for (MegaRAIDDiskInfo disk : fresh) {
+            disk.lastSuccessEpochMillis = now;
+            disk.stale = false;
+            String key = key(disk);
+            seen.add(key);
+            lastKnown.put(key, disk);
+            disks.add(disk);
+        }
+
+        int stale = 0;
+        for (Iterator<Map.Entry<String, MegaRAIDDiskInfo>> it = lastKnown.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, MegaRAIDDiskInfo> entry = it.next();
+            if (seen.contains(entry.getKey())) {
+                continue;
+            }
+            MegaRAIDDiskInfo known = entry.getValue();
+            if (now - known.lastSuccessEpochMillis >= maxAgeMillis) {
+                logger.info("Disk {} ({}) not returned for {} ms, dropping it", known.diskId, known.serial,
+                        now - known.lastSuccessEpochMillis);
+                it.remove();
+                continue;
+            }
+            // Копия: коллектор и следующий цикл не должны делить один объект
+            MegaRAIDDiskInfo copy = known.copy();
+            copy.stale = true;
+            disks.add(copy);
+            stale++;
+        }
+        staleDisks.set(stale);
+        if (stale > 0) {
+            logger.warn("{} of {} disks served with last known values", stale, disks.size());
+        }
+        return disks;
+    }
+
+    // Серийный номер, иначе номер на контроллере и устройство
+    private static String key(MegaRAIDDiskInfo disk) {
+        if (disk.serial != null && !disk.serial.isEmpty()) {
+            return disk.serial;
+        }
+        return "#" + disk.diskId + "@" + disk.deviceName;
+    }
+}
@@ -0,0 +1,541 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.storcli;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.DiskReaderInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.CommandExecutionInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.CommandRunnerInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.ProcessCommandRunner;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.DeviceTimeoutException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.prometheus.metrics.model.registry.MultiCollector;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads every MegaRAID controller with two storcli processes per cycle instead of one
+ * {@code smartctl -d megaraid,N} passthrough per physical disk:
+ * <ul>
+ *     <li>{@code storcli /call show all J}: controller status, virtual drives and BBU/CacheVault;</li>
+ *     <li>{@code storcli /call/eall/sall show all J}: every physical drive with its error counters,
+ *     temperature, SMART alert flag and serial number.</li>
+ * </ul>
+ * Only while a drive is rebuilding, {@code storcli /cN/eall/sall show rebuild J} adds the progress.
+ * <p>
+ * storcli reports no SMART attributes, so the sector counters of the disks stay {@code -1}. With a
+ * {@code smartctl} delegate the disks are joined by serial number: the smartctl record is used
+ * and storcli fills the values it lacks; drives only one side knows are returned as they are.
+ * Controller, virtual drive and battery state is published through {@link #collect()}.
+ */
+public class StorcliReader implements DiskReaderInterface, MultiCollector {
+    private final static Logger logger = LoggerFactory.getLogger(StorcliReader.class);
+
+    private static final String CONTROLLER_OPTIMAL = "storcli_controller_optimal";
+    private static final String VD_OPTIMAL = "storcli_virtual_drive_optimal";
+    private static final String PD_HEALTHY = "storcli_physical_drive_healthy";
+    private static final String PD_MEDIA_ERRORS = "storcli_physical_drive_media_errors";
+    private static final String PD_OTHER_ERRORS = "storcli_physical_drive_other_errors";
+    private static final String PD_PREDICTIVE_FAILURES = "storcli_physical_drive_predictive_failures";
+    private static final String PD_REBUILD_PROGRESS = "storcli_physical_drive_rebuild_progress_ratio";
+    private static final String BATTERY_OPTIMAL = "storcli_battery_optimal";
+    private static final String BATTERY_TEMPERATURE = "storcli_battery_temperature_celsius";
+    private static final String READ_DURATION = "storcli_read_duration_seconds";
+
+    private static final String[] PD_LABELS = {"controller", "slot", "serial"};
+    // Состояния, в которых диск исправен и на своем месте; Rbld, Offln, UBad, Failed, Msng — нет
+    private static final Set<String> HEALTHY_PD_STATES = Set.of("Onln", "JBOD", "UGood", "GHS", "DHS", "Cpybck");
+    private static final Pattern DRIVE_KEY = Pattern.compile("^Drive (/c(\\d+)(?:/e(\\d+))?/s(\\d+))$");
+    private static final Pattern CELSIUS = Pattern.compile("(-?\\d+)\\s*C");
+
+    private final String storcliPath;
+    private final Duration timeout;
+    private final CommandRunnerInterface commandRunner;
+    private final DiskReaderInterface smartctl;
+    private final SmartAttributeTable attributeTable;
+
+    private volatile MetricSnapshots snapshot = MetricSnapshots.of();
+
+    StorcliReader(Builder builder) {
+        this.storcliPath = builder.storcliPath;
+        this.timeout = builder.timeout;
+        this.commandRunner = builder.commandRunner;
+        this.smartctl = builder.smartctl;
+        if (smartctl != null) {
+            this.attributeTable = smartctl.getAttributeTable();
+        } else {
+            List<SmartAttributeSpec> attributes = new ArrayList<>(SmartCTLReader.BUILT_IN_ATTRIBUTES);
+            attributes.addAll(builder.smartAttributes);
+            this.attributeTable = SmartAttributeTable.compile(attributes);
+        }
+    }
+
+    @Override
+    public SmartAttributeTable getAttributeTable() {
+        return attributeTable;
+    }
+
+    @Override
+    public synchronized List<MegaRAIDDiskInfo> readDisks() throws CollectorException {
+        long start = System.nanoTime();
+        Metrics metrics = new Metrics();
+
+        for (ControllerResponse controller : controllers(execute("/call", "show", "all", "J"))) {
+            readController(controller, metrics);
+        }
+
+        List<Drive> drives = new ArrayList<>();
+        for (ControllerResponse controller : controllers(execute("/call/eall/sall", "show", "all", "J"))) {
+            drives.addAll(parseDrives(controller.data));
+        }
+        readRebuildProgress(drives);
+
+        List<MegaRAIDDiskInfo> disks = new ArrayList<>(drives.size());
+        long now = System.currentTimeMillis();
+        for (Drive drive : drives) {
+            Labels labels = Labels.of(PD_LABELS, new String[]{drive.controller, drive.slot, nonNull(drive.disk.serial)});
+            metrics.pdHealthy.dataPoint(point(labels, HEALTHY_PD_STATES.contains(drive.state) ? 1 : 0));
+            if (drive.mediaErrors >= 0) metrics.pdMediaErrors.dataPoint(point(labels, drive.mediaErrors));
+            if (drive.otherErrors >= 0) metrics.pdOtherErrors.dataPoint(point(labels, drive.otherErrors));
+            if (drive.predictiveFailures >= 0) metrics.pdPredictiveFailures.dataPoint(point(labels, drive.predictiveFailures));
+            if (drive.rebuildProgress >= 0) metrics.pdRebuildProgress.dataPoint(point(labels, drive.rebuildProgress));
+            drive.disk.lastReadEpochMillis = now;
+            disks.add(drive.disk);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        metrics.readDuration.dataPoint(point(Labels.EMPTY, elapsed / 1e9));
+        snapshot = metrics.build();
+        logger.debug("storcli reported {} physical drives in {} ms", drives.size(), elapsed / 1_000_000);
+
+        if (smartctl != null) {
+            disks = joinBySerial(disks, smartctl.readDisks());
+        }
+        return disks;
+    }
+
+    @Override
+    public MetricSnapshots collect() {
+        return snapshot;
+    }
+
+    @Override
+    public List<String> getPrometheusNames() {
+        return List.of(CONTROLLER_OPTIMAL, VD_OPTIMAL, PD_HEALTHY, PD_MEDIA_ERRORS, PD_OTHER_ERRORS,
+                PD_PREDICTIVE_FAILURES, PD_REBUILD_PROGRESS, BATTERY_OPTIMAL, BATTERY_TEMPERATURE, READ_DURATION);
+    }
+
+    /**
+     * Runs storcli with the given arguments and returns the parsed document.
+     */
+    JsonObject execute(String... args) throws CollectorException {
+        List<String> cmd = new ArrayList<>(args.length + 1);
+        cmd.add(storcliPath);
+        cmd.addAll(Arrays.asList(args));
+        logger.debug("try to run {}", cmd);
+        try (CommandExecutionInterface process = commandRunner.start(cmd, timeout)) {
+            JsonElement json;
+            try {
+                json = JsonParser.parseReader(new InputStreamReader(process.stdout(), StandardCharsets.UTF_8));
+                process.waitFor();
+            } catch (RuntimeException | IOException e) {
+                if (process.timedOut()) {
+                    throw new DeviceTimeoutException("storcli killed after " + timeout.toMillis() + " ms");
+                }
+                throw e;
+            }
+            if (!json.isJsonObject()) {
+                throw new CollectorException("Unexpected storcli output for " + cmd + ": " + process.stderrTail());
+            }
+            return json.getAsJsonObject();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CollectorException("Interrupted while running " + cmd, e);
+        } catch (IOException | JsonParseException e) {
+            throw new CollectorException("Cannot run " + cmd, e);
+        }
+    }
+
+    // Ответы контроллеров; контроллер без дисков отвечает Failure ("No drive found!") — это не ошибка
+    static List<ControllerResponse> controllers(JsonObject document) throws CollectorException {
+        JsonArray controllers = array(document, "Controllers");
+        if (controllers == null) {
+            throw new CollectorException("storcli output has no Controllers array");
+        }
+        List<ControllerResponse> responses = new ArrayList<>(controllers.size());
+        for (JsonElement element : controllers) {
+            JsonObject controller = element.getAsJsonObject();
+            JsonObject status = object(controller, "Command Status");
+            JsonObject data = object(controller, "Response Data");
+            if (status == null || data == null || !"Success".equalsIgnoreCase(string(status, "Status"))) {
+                logger.debug("storcli controller {}: {}", status != null ? string(status, "Controller") : "?",
+                        status != null ? string(status, "Description") : "no status");
+                continue;
+            }
+            responses.add(new ControllerResponse(nonNull(string(status, "Controller")), data));
+        }
+        return responses;
+    }
+
+    private static void readController(ControllerResponse response, Metrics metrics) {
+        String controller = response.controller;
+        JsonObject data = response.data;
+        JsonObject basics = object(data, "Basics");
+        JsonObject status = object(data, "Status");
+        if (status != null) {
+            metrics.controllerOptimal.dataPoint(point(Labels.of(
+                    "controller", controller,
+                    "model", basics != null ? nonNull(string(basics, "Model")) : "unknown",
+                    "serial", basics != null ? nonNull(string(basics, "Serial Number")) : "unknown"),
+                    "Optimal".equalsIgnoreCase(string(status, "Controller Status")) ? 1 : 0));
+        }
+
+        JsonArray vds = array(data, "VD LIST");
+        if (vds != null) {
+            for (JsonElement element : vds) {
+                JsonObject vd = element.getAsJsonObject();
+                String state = nonNull(string(vd, "State"));
+                metrics.vdOptimal.dataPoint(point(Labels.of(
+                        "controller", controller,
+                        "vd", nonNull(string(vd, "DG/VD")),
+                        "raid_level", nonNull(string(vd, "TYPE")),
+                        "name", nonNull(string(vd, "Name")),
+                        "state", state), "Optl".equals(state) ? 1 : 0));
+            }
+        }
+
+        readBatteries(data, controller, "BBU_Info", "bbu", metrics);
+        readBatteries(data, controller, "Cachevault_Info", "cachevault", metrics);
+    }
+
+    private static void readBatteries(JsonObject data, String controller, String key, String type, Metrics metrics) {
+        JsonArray batteries = array(data, key);
+        if (batteries == null) {
+            return;
+        }
+        for (JsonElement element : batteries) {
+            JsonObject battery = element.getAsJsonObject();
+            String model = nonNull(string(battery, "Model"));
+            String state = nonNull(string(battery, "State"));
+            metrics.batteryOptimal.dataPoint(point(Labels.of(
+                    "controller", controller, "type", type, "model", model, "state", state),
+                    "Optimal".equalsIgnoreCase(state) ? 1 : 0));
+            int temperature = celsius(string(battery, "Temp"));
+            if (temperature != Integer.MIN_VALUE) {
+                metrics.batteryTemperature.dataPoint(point(Labels.of(
+                        "controller", controller, "type", type, "model", model), temperature));
+            }
+        }
+    }
+
+    List<Drive> parseDrives(JsonObject data) {
+        List<Drive> drives = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> entry : data.entrySet()) {
+            Matcher m = DRIVE_KEY.matcher(entry.getKey());
+            if (!m.matches() || !entry.getValue().isJsonArray() || entry.getValue().getAsJsonArray().isEmpty()) {
+                continue;
+            }
+            String path = m.group(1);
+            JsonObject basic = entry.getValue().getAsJsonArray().get(0).getAsJsonObject();
+            JsonObject detail = object(data, entry.getKey() + " - Detailed Information");
+            JsonObject state = detail != null ? object(detail, entry.getKey() + " State") : null;
+            JsonObject attributes = detail != null ? object(detail, entry.getKey() + " Device attributes") : null;
+
+            Drive drive = new Drive();
+            drive.controller = m.group(2);
+            drive.slot = nonNull(string(basic, "EID:Slt"));
+            drive.state = nonNull(string(basic, "State"));
+            drive.mediaErrors = state != null ? number(state, "Media Error Count") : -1;
+            drive.otherErrors = state != null ? number(state, "Other Error Count") : -1;
+            drive.predictiveFailures = state != null ? number(state, "Predictive Failure Count") : -1;
+
+            MegaRAIDDiskInfo disk = new MegaRAIDDiskInfo();
+            disk.diskId = (int) number(basic, "DID");
+            disk.model = trimmed(attributes != null && string(attributes, "Model Number") != null
+                    ? string(attributes, "Model Number") : string(basic, "Model"));
+            disk.serial = attributes != null ? trimmed(string(attributes, "SN")) : null;
+            disk.deviceName = path;
+            String alert = state != null ? string(state, "S.M.A.R.T alert flagged by drive") : null;
+            disk.smartStatus = alert == null ? null : "No".equalsIgnoreCase(alert.trim()) ? "PASSED" : "FAILED";
+            int temperature = state != null ? celsius(string(state, "Drive Temperature")) : Integer.MIN_VALUE;
+            disk.temperatureCelsius = temperature != Integer.MIN_VALUE ? temperature : -1;
+            disk.powerOnHours = -1;
+            disk.reallocatedSectors = -1;
+            disk.currentPendingSectors = -1;
+            disk.offlineUncorrectable = -1;
+            disk.udmaCrcErrors = -1;
+            // storcli не сообщает о standby: диск за контроллером считаем активным
+            disk.powerState = MegaRAIDDiskInfo.POWER_STATE_ACTIVE;
+            disk.smartAttributes = emptyAttributes();
+            drive.disk = disk;
+            drives.add(drive);
+        }
+        return drives;
+    }
+
+    // Отдельный вызов на контроллер и только пока что-то перестраивается
+    private void readRebuildProgress(List<Drive> drives) {
+        Map<String, List<Drive>> rebuilding = new LinkedHashMap<>();
+        for (Drive drive : drives) {
+            if ("Rbld".equals(drive.state)) {
+                rebuilding.computeIfAbsent(drive.controller, c -> new ArrayList<>()).add(drive);
+            }
+        }
+        for (Map.Entry<String, List<Drive>> entry : rebuilding.entrySet()) {
+            try {
+                JsonObject document = execute("/c" + entry.getKey() + "/eall/sall", "show", "rebuild", "J");
+                JsonArray controllers = array(document, "Controllers");
+                if (controllers == null) {
+                    continue;
+                }
+                for (JsonElement controller : controllers) {
+                    applyRebuildProgress(array(controller.getAsJsonObject(), "Response Data"), entry.getValue());
+                }
+            } catch (CollectorException e) {
+                logger.warn("Cannot read rebuild progress of controller {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    static void applyRebuildProgress(JsonArray progress, List<Drive> drives) {
+        if (progress == null) {
+            return;
+        }
+        for (JsonElement element : progress) {
+            JsonObject row = element.getAsJsonObject();
+            String id = string(row, "Drive-ID");
+            long percent = number(row, "Progress%");
+            if (id == null || percent < 0) {
+                continue;
+            }
+            for (Drive drive : drives) {
+                if (id.equals(drive.disk.deviceName)) {
+                    drive.rebuildProgress = percent / 100.0;
+                }
+            }
+        }
+    }
+
+    /**
+     * smartctl record where the serial matches, completed with what storcli knows; unmatched
+     * drives of both sides are kept.
+     */
+    static List<MegaRAIDDiskInfo> joinBySerial(List<MegaRAIDDiskInfo> storcli, List<MegaRAIDDiskInfo> smartctl) {
+        Map<String, MegaRAIDDiskInfo> bySerial = new HashMap<>();
+        for (MegaRAIDDiskInfo disk : smartctl) {
+            String key = serialKey(disk.serial);
+            if (key != null) {
+                bySerial.putIfAbsent(key, disk);
+            }
+        }
+        List<MegaRAIDDiskInfo> joined = new ArrayList<>(Math.max(storcli.size(), smartctl.size()));
+        Set<MegaRAIDDiskInfo> used = new HashSet<>();
+        for (MegaRAIDDiskInfo disk : storcli) {
+            MegaRAIDDiskInfo smart = bySerial.get(serialKey(disk.serial));
+            if (smart == null || !used.add(smart)) {
+                joined.add(disk);
+                continue;
+            }
+            MegaRAIDDiskInfo merged = smart.copy();
+            if (merged.temperatureCelsius < 0) merged.temperatureCelsius = disk.temperatureCelsius;
+            if (merged.smartStatus == null) merged.smartStatus = disk.smartStatus;
+            if (merged.model == null) merged.model = disk.model;
+            joined.add(merged);
+        }
+        for (MegaRAIDDiskInfo disk : smartctl) {
+            if (!used.contains(disk)) {
+                joined.add(disk);
+            }
+        }
+        return joined;
+    }
+
+    // Серийники SAS/SATA за контроллером бывают дополнены пробелами, регистр у утилит разный
+    private static String serialKey(String serial) {
+        if (serial == null) {
+            return null;
+        }
+        String key = serial.replaceAll("\\s+", "").toUpperCase(Locale.ROOT);
+        return key.isEmpty() ? null : key;
+    }
+
+    private long[] emptyAttributes() {
+        long[] values = new long[attributeTable.size() * SmartAttributeTable.FIELDS];
+        Arrays.fill(values, -1L);
+        return values;
+    }
+
+    private static GaugeSnapshot.GaugeDataPointSnapshot point(Labels labels, double value) {
+        return GaugeSnapshot.GaugeDataPointSnapshot.builder().labels(labels).value(value).build();
+    }
+
+    // "31C (87.80 F)", "28C"
+    static int celsius(String value) {
+        if (value == null) {
+            return Integer.MIN_VALUE;
+        }
+        Matcher m = CELSIUS.matcher(value);
+        return m.find() ? Integer.parseInt(m.group(1)) : Integer.MIN_VALUE;
+    }
+
+    private static JsonObject object(JsonObject parent, String key) {
+        JsonElement e = parent.get(key);
+        return e != null && e.isJsonObject() ? e.getAsJsonObject() : null;
+    }
+
+    private static JsonArray array(JsonObject parent, String key) {
+        JsonElement e = parent.get(key);
+        return e != null && e.isJsonArray() ? e.getAsJsonArray() : null;
+    }
+
+    private static String string(JsonObject parent, String key) {
+        JsonElement e = parent.get(key);
+        return e != null && e.isJsonPrimitive() ? e.getAsString() : null;
+    }
+
+    // Числа storcli пишет то числом, то строкой, а вместо отсутствующих — "-"
+    private static long number(JsonObject parent, String key) {
+        String value = string(parent, key);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String trimmed(String value) {
+        return value != null ? value.trim() : null;
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value.trim() : "";
+    }
+
+    static final class ControllerResponse {
+        final String controller;
+        final JsonObject data;
+
+        ControllerResponse(String controller, JsonObject data) {
+            this.controller = controller;
+            this.data = data;
+        }
+    }
+
+    static final class Drive {
+        String controller;
+        String slot;
+        String state;
+        long mediaErrors;
+        long otherErrors;
+        long predictiveFailures;
+        // 0..1, -1 — не перестраивается
+        double rebuildProgress = -1;
+        MegaRAIDDiskInfo disk;
+    }
+
+    private static final class Metrics {
+        final GaugeSnapshot.Builder controllerOptimal = GaugeSnapshot.builder().name(CONTROLLER_OPTIMAL)
+                .help("1 if storcli reports the controller status as Optimal");
+        final GaugeSnapshot.Builder vdOptimal = GaugeSnapshot.builder().name(VD_OPTIMAL)
+                .help("1 if the virtual drive state is Optl; the state label carries the reported state (Dgrd, Pdgd, OfLn, Rec, ...)");
+        final GaugeSnapshot.Builder pdHealthy = GaugeSnapshot.builder().name(PD_HEALTHY)
+                .help("1 if the physical drive is in a healthy state (Onln, JBOD, UGood, GHS, DHS, Cpybck); 0 while rebuilding, offline, failed or missing");
+        final GaugeSnapshot.Builder pdMediaErrors = GaugeSnapshot.builder().name(PD_MEDIA_ERRORS)
+                .help("Media error count kept by the controller firmware");
+        final GaugeSnapshot.Builder pdOtherErrors = GaugeSnapshot.builder().name(PD_OTHER_ERRORS)
+                .help("Other error count kept by the controller firmware");
+        final GaugeSnapshot.Builder pdPredictiveFailures = GaugeSnapshot.builder().name(PD_PREDICTIVE_FAILURES)
+                .help("Predictive failure count kept by the controller firmware");
+        final GaugeSnapshot.Builder pdRebuildProgress = GaugeSnapshot.builder().name(PD_REBUILD_PROGRESS)
+                .help("Rebuild progress 0-1 of a drive in the Rbld state");
+        final GaugeSnapshot.Builder batteryOptimal = GaugeSnapshot.builder().name(BATTERY_OPTIMAL)
+                .help("1 if the BBU or CacheVault state is Optimal");
+        final GaugeSnapshot.Builder batteryTemperature = GaugeSnapshot.builder().name(BATTERY_TEMPERATURE)
+                .help("BBU or CacheVault temperature");
+        final GaugeSnapshot.Builder readDuration = GaugeSnapshot.builder().name(READ_DURATION)
+                .help("Wall-clock duration of the storcli processes of the last read");
+
+        MetricSnapshots build() {
+            return new MetricSnapshots(controllerOptimal.build(), vdOptimal.build(), pdHealthy.build(),
+                    pdMediaErrors.build(), pdOtherErrors.build(), pdPredictiveFailures.build(),
+                    pdRebuildProgress.build(), batteryOptimal.build(), batteryTemperature.build(), readDuration.build());
+        }
+    }
+
+    public static class Builder {
+        private String storcliPath = "storcli";
+        private Duration timeout = Duration.ofSeconds(60);
+        private DiskReaderInterface smartctl;
+        private List<SmartAttributeSpec> smartAttributes = List.of();
+        private CommandRunnerInterface commandRunner = new ProcessCommandRunner();
+
+        /**
+         * storcli binary: {@code storcli}, {@code storcli64} or a vendor build such as {@code perccli64}.
+         */
+        public Builder storcliPath(String storcliPath) {
+            this.storcliPath = storcliPath;
+            return this;
+        }
+
+        /**
+         * Deadline of one storcli process; {@link Duration#ZERO} waits indefinitely.
+         */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Joins the storcli drives with this reader's disks by serial number; {@code null} for storcli only.
+         */
+        public Builder smartctl(DiskReaderInterface smartctl) {
+            this.smartctl = smartctl;
+            return this;
+        }
+
+        /**
+         * Attribute table layout without a smartctl delegate; storcli itself provides no attribute values.
+         */
+        public Builder smartAttributes(List<SmartAttributeSpec> smartAttributes) {
+            this.smartAttributes = List.copyOf(smartAttributes);
+            return this;
+        }
+
+        public Builder commandRunner(CommandRunnerInterface commandRunner) {
+            this.commandRunner = commandRunner;
+            return this;
+        }
+
+        public StorcliReader build() {
+            return new StorcliReader(this);
+        }
+    }
+}
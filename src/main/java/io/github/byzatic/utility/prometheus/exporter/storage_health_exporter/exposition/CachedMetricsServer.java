@@ -0,0 +1,138 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.exposition;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scrape endpoint that replaces the client library's {@code HTTPServer}: {@code /metrics} is
+ * answered from a {@link MetricsResponseCache} with a single write of the prepared bytes, so a
+ * scrape costs no serialization or compression. {@code ?name[]=} scrapes are rendered live.
+ */
+public class CachedMetricsServer implements Closeable {
+    private final static Logger logger = LoggerFactory.getLogger(CachedMetricsServer.class);
+
+    private static final byte[] HEALTHY = "Exporter is healthy.\n".getBytes(StandardCharsets.UTF_8);
+
+    private final MetricsResponseCache cache;
+    // Вызывается перед каждым scrape /metrics (сбор по запросу); null — нет
+    private final Runnable beforeScrape;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private CachedMetricsServer(InetSocketAddress address, String path, MetricsResponseCache cache, int threads,
+                                Runnable beforeScrape) throws IOException {
+        this.cache = cache;
+        this.beforeScrape = beforeScrape;
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "metrics-http-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(address, 0);
+        server.createContext(path, this::handleMetrics);
+        server.createContext("/-/healthy", exchange -> send(exchange, 200, "text/plain; charset=utf-8", null, HEALTHY));
+        server.setExecutor(executor);
+    }
+
+    public static CachedMetricsServer start(InetSocketAddress address, String path, MetricsResponseCache cache, int threads) throws IOException {
+        return start(address, path, cache, threads, null);
+    }
+
+    /**
+     * @param beforeScrape runs on the request thread before the response is looked up, e.g. to
+     *                     bring the collected data up to date; {@code null} for none
+     */
+    public static CachedMetricsServer start(InetSocketAddress address, String path, MetricsResponseCache cache, int threads,
+                                            Runnable beforeScrape) throws IOException {
+        CachedMetricsServer s = new CachedMetricsServer(address, path, cache, threads, beforeScrape);
+        s.server.start();
+        logger.info("Cached metrics endpoint listening on http://{}:{}{}",
+                s.getAddress().getHostString(), s.getAddress().getPort(), path);
+        return s;
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            send(exchange, 405, "text/plain; charset=utf-8", null, new byte[0]);
+            return;
+        }
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        MetricsResponseCache.Response response;
+        try {
+            if (beforeScrape != null && !"HEAD".equals(method)) {
+                beforeScrape.run();
+            }
+            List<String> names = nameFilter(exchange.getRequestURI().getRawQuery());
+            response = names.isEmpty()
+                    ? cache.get(accept, acceptEncoding)
+                    : cache.getFiltered(names, accept, acceptEncoding);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Cannot render /metrics", e);
+            send(exchange, 500, "text/plain; charset=utf-8", null,
+                    "cannot render metrics\n".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        send(exchange, 200, response.contentType, response.contentEncoding, response.body);
+        response.markServed();
+    }
+
+    private static void send(HttpExchange exchange, int code, String contentType, String contentEncoding, byte[] body) throws IOException {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            if (contentEncoding != null) {
+                exchange.getResponseHeaders().set("Content-Encoding", contentEncoding);
+            }
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            exchange.sendResponseHeaders(code, head || body.length == 0 ? -1 : body.length);
+            if (!head && body.length > 0) {
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Значения всех параметров name[] (как у HTTPServer клиентской библиотеки)
+    static List<String> nameFilter(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>();
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && "name[]".equals(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8))) {
+                names.add(URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
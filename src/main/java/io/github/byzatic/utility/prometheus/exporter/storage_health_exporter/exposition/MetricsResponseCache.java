@@ -0,0 +1,226 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.exposition;
+
+import io.prometheus.metrics.core.datapoints.CounterDataPoint;
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.core.metrics.Histogram;
+import io.prometheus.metrics.expositionformats.ExpositionFormatWriter;
+import io.prometheus.metrics.expositionformats.ExpositionFormats;
+import io.prometheus.metrics.model.registry.MetricNameFilter;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The {@code /metrics} response rendered ahead of time.
+ * <p>
+ * {@link #render()} scrapes the registry once and writes the result in every exposition format
+ * (Prometheus text, OpenMetrics, protobuf when available), each plain and gzip-compressed. A scrape
+ * then only picks the matching byte array: serialization and compression cost once per render, no
+ * matter how many Prometheus replicas and federation layers scrape.
+ * <p>
+ * The collection service renders after every cycle. Values that change between cycles (service
+ * histograms, hwmon temperatures, pushed aggregator batches) are refreshed by a scrape that finds the
+ * rendering older than {@code maxAge}; that scrape renders once and concurrent scrapes wait for it.
+ */
+public class MetricsResponseCache {
+    private final static Logger logger = LoggerFactory.getLogger(MetricsResponseCache.class);
+
+    private static final Histogram renderDuration = Histogram.builder()
+            .name("scrape_cache_render_duration_seconds")
+            .help("Time to scrape the registry and render every cached /metrics variant")
+            .classicOnly()
+            .classicUpperBounds(0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1)
+            .register();
+
+    private static final Gauge responseBytes = Gauge.builder()
+            .name("scrape_cache_bytes")
+            .help("Size of the cached /metrics response by format and encoding")
+            .labelNames("format", "encoding")
+            .register();
+
+    private static final Counter responses = Counter.builder()
+            .name("scrape_cache_responses_total")
+            .help("Scrapes answered from the cached /metrics response by format and encoding")
+            .labelNames("format", "encoding")
+            .register();
+
+    // Индексы форматов; порядок совпадает с FORMAT_NAMES
+    static final int TEXT = 0;
+    static final int OPENMETRICS = 1;
+    static final int PROTOBUF = 2;
+    private static final String[] FORMAT_NAMES = {"text", "openmetrics", "protobuf"};
+
+    private final PrometheusRegistry registry;
+    private final long maxAgeNanos;
+    private final ExpositionFormatWriter[] writers;
+    // Ручки счетчика ответов: [формат][0 — identity, 1 — gzip]
+    private final CounterDataPoint[][] responseCounters = new CounterDataPoint[FORMAT_NAMES.length][2];
+
+    private final Object renderLock = new Object();
+    private volatile Rendering current;
+
+    /**
+     * @param maxAge age after which a scrape renders again; {@link Duration#ZERO} to render only on {@link #render()}
+     */
+    public MetricsResponseCache(PrometheusRegistry registry, Duration maxAge) {
+        this.registry = registry;
+        this.maxAgeNanos = maxAge.toNanos();
+        ExpositionFormats formats = ExpositionFormats.init();
+        this.writers = new ExpositionFormatWriter[] {
+                formats.getPrometheusTextFormatWriter(),
+                formats.getOpenMetricsTextFormatWriter(),
+                // Без protobuf-java в classpath формат недоступен: такие запросы получат текст
+                formats.getPrometheusProtobufWriter().isAvailable() ? formats.getPrometheusProtobufWriter() : null
+        };
+        for (int format = 0; format < FORMAT_NAMES.length; format++) {
+            responseCounters[format][0] = responses.labelValues(FORMAT_NAMES[format], "identity");
+            responseCounters[format][1] = responses.labelValues(FORMAT_NAMES[format], "gzip");
+        }
+    }
+
+    /**
+     * Scrapes the registry and replaces every cached variant.
+     */
+    public void render() throws IOException {
+        synchronized (renderLock) {
+            long start = System.nanoTime();
+            try {
+                MetricSnapshots snapshots = registry.scrape();
+                Response[][] variants = new Response[writers.length][];
+                for (int format = 0; format < writers.length; format++) {
+                    ExpositionFormatWriter writer = writers[format];
+                    if (writer == null) {
+                        continue;
+                    }
+                    ByteArrayOutputStream plain = new ByteArrayOutputStream(64 * 1024);
+                    writer.write(plain, snapshots);
+                    byte[] body = plain.toByteArray();
+                    byte[] compressed = gzip(body);
+                    variants[format] = new Response[] {
+                            new Response(writer.getContentType(), null, body, responseCounters[format][0]),
+                            new Response(writer.getContentType(), "gzip", compressed, responseCounters[format][1])
+                    };
+                    responseBytes.labelValues(FORMAT_NAMES[format], "identity").set(body.length);
+                    responseBytes.labelValues(FORMAT_NAMES[format], "gzip").set(compressed.length);
+                }
+                current = new Rendering(System.nanoTime(), variants);
+            } finally {
+                renderDuration.observe((System.nanoTime() - start) / 1e9);
+            }
+        }
+    }
+
+    /**
+     * The cached response matching the request headers; renders first if nothing is cached yet or
+     * the cached rendering is older than the configured maximum age.
+     */
+    public Response get(String accept, String acceptEncoding) throws IOException {
+        Rendering rendering = fresh();
+        int format = format(accept);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        return rendering.variants[format][gzip ? 1 : 0];
+    }
+
+    /**
+     * Renders only the given metric families, bypassing the cache ({@code ?name[]=...} scrapes).
+     */
+    public Response getFiltered(Collection<String> names, String accept, String acceptEncoding) throws IOException {
+        int format = format(accept);
+        MetricSnapshots snapshots = registry.scrape(MetricNameFilter.builder().nameMustBeEqualTo(names).build());
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        writers[format].write(plain, snapshots);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        return gzip
+                ? new Response(writers[format].getContentType(), "gzip", gzip(plain.toByteArray()), null)
+                : new Response(writers[format].getContentType(), null, plain.toByteArray(), null);
+    }
+
+    private Rendering fresh() throws IOException {
+        Rendering rendering = current;
+        if (rendering != null && (maxAgeNanos <= 0 || System.nanoTime() - rendering.renderedNanos < maxAgeNanos)) {
+            return rendering;
+        }
+        synchronized (renderLock) {
+            // Пока ждали блокировку, другой запрос мог уже перерисовать
+            rendering = current;
+            if (rendering == null || (maxAgeNanos > 0 && System.nanoTime() - rendering.renderedNanos >= maxAgeNanos)) {
+                try {
+                    render();
+                } catch (IOException | RuntimeException e) {
+                    if (rendering == null) {
+                        throw e;
+                    }
+                    logger.warn("Re-rendering /metrics failed, serving the previous response", e);
+                    return rendering;
+                }
+                rendering = current;
+            }
+            return rendering;
+        }
+    }
+
+    // Тот же порядок выбора, что у ExpositionFormats.findWriter: protobuf, OpenMetrics, текст
+    private int format(String accept) {
+        if (accept == null) {
+            return TEXT;
+        }
+        if (writers[PROTOBUF] != null && writers[PROTOBUF].accepts(accept)) {
+            return PROTOBUF;
+        }
+        if (writers[OPENMETRICS].accepts(accept)) {
+            return OPENMETRICS;
+        }
+        return TEXT;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(512, body.length / 4));
+        try (GZIPOutputStream gz = new GZIPOutputStream(out, 8192)) {
+            gz.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static final class Rendering {
+        final long renderedNanos;
+        // [формат][0 — identity, 1 — gzip]; null — формат недоступен
+        final Response[][] variants;
+
+        Rendering(long renderedNanos, Response[][] variants) {
+            this.renderedNanos = renderedNanos;
+            this.variants = variants;
+        }
+    }
+
+    /**
+     * One ready-to-send response body. The array is never modified after rendering.
+     */
+    public static final class Response {
+        public final String contentType;
+        // null — без сжатия
+        public final String contentEncoding;
+        public final byte[] body;
+        private final CounterDataPoint served;
+
+        Response(String contentType, String contentEncoding, byte[] body, CounterDataPoint served) {
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+            this.body = body;
+            this.served = served;
+        }
+
+        void markServed() {
+            if (served != null) {
+                served.inc();
+            }
+        }
+    }
+}
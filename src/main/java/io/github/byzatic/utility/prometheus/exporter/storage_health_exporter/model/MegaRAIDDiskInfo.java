@@ -1,6 +1,9 @@
 package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model;
 
 public class MegaRAIDDiskInfo {
+    public static final String POWER_STATE_ACTIVE = "ACTIVE";
+    public static final String POWER_STATE_STANDBY = "STANDBY";
+
     public int diskId;
     public String model;
     public String serial;
@@ -12,4 +15,35 @@ public class MegaRAIDDiskInfo {
     public long currentPendingSectors;
     public long offlineUncorrectable;
     public long udmaCrcErrors;
+    // ACTIVE / STANDBY; в STANDBY значения взяты из кеша
+    public String powerState;
+    // Когда значения были прочитаны с устройства (0 — неизвестно)
+    public long lastReadEpochMillis;
+    // Когда источник последний раз вернул диск (0 — неизвестно)
+    public long lastSuccessEpochMillis;
+    // Источник не вернул диск в этом цикле; значения — последние известные
+    public boolean stale;
+    // Атрибуты SMART по слотам SmartAttributeTable ридера: [slot * 4 + raw/normalized/worst/threshold], -1 — нет в выводе
+    public long[] smartAttributes;
+
+    public MegaRAIDDiskInfo copy() {
+        MegaRAIDDiskInfo c = new MegaRAIDDiskInfo();
+        c.diskId = diskId;
+        c.model = model;
+        c.serial = serial;
+        c.deviceName = deviceName;
+        c.smartStatus = smartStatus;
+        c.reallocatedSectors = reallocatedSectors;
+        c.powerOnHours = powerOnHours;
+        c.temperatureCelsius = temperatureCelsius;
+        c.currentPendingSectors = currentPendingSectors;
+        c.offlineUncorrectable = offlineUncorrectable;
+        c.udmaCrcErrors = udmaCrcErrors;
+        c.powerState = powerState;
+        c.lastReadEpochMillis = lastReadEpochMillis;
+        c.lastSuccessEpochMillis = lastSuccessEpochMillis;
+        c.stale = stale;
+        c.smartAttributes = smartAttributes != null ? smartAttributes.clone() : null;
+        return c;
+    }
 }
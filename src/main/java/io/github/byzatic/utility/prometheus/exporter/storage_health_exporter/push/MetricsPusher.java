@@ -0,0 +1,318 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push;
+
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.core.metrics.Histogram;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pushes the registry to a remote receiver after every collection cycle, for hosts that cannot be
+ * scraped.
+ * <p>
+ * {@link #offer} only appends the cycle's snapshot to a bounded queue, so a slow or unreachable
+ * receiver never delays collection; when the queue is full the oldest batch is dropped. A single
+ * sender thread drains the queue. Batches that pile up while a request is retried are coalesced
+ * into the next attempt (up to {@code maxBatchesPerSend}, oldest dropped first), so after an
+ * outage the backlog goes out in one request instead of one per missed cycle.
+ * <p>
+ * {@code 2xx} is success; {@code 429}, {@code 5xx} and I/O errors are retried with exponential
+ * backoff and jitter (honouring {@code Retry-After}); other {@code 4xx} answers drop the batches,
+ * since resending the same payload cannot succeed. So does an exception while encoding or building
+ * the request: it is logged, the batches are dropped and the sender goes on with the next cycle.
+ */
+public class MetricsPusher implements MetricsPusherInterface {
+    private final static Logger logger = LoggerFactory.getLogger(MetricsPusher.class);
+
+    private static final Gauge queueDepth = Gauge.builder()
+            .name("push_queue_batches")
+            .help("Collection cycles waiting to be pushed, including those held for a retry")
+            .register();
+
+    private static final Histogram sendDuration = Histogram.builder()
+            .name("push_send_duration_seconds")
+            .help("Duration of one push request, successful or not")
+            .classicOnly()
+            .classicUpperBounds(0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30)
+            .register();
+
+    private static final Counter samplesSent = Counter.builder()
+            .name("push_samples_sent_total")
+            .help("Samples accepted by the push receiver")
+            .register();
+
+    private static final Counter samplesDropped = Counter.builder()
+            .name("push_samples_dropped_total")
+            .help("Samples that were never delivered, by reason (queue_full, rejected, error)")
+            .labelNames("reason")
+            .register();
+
+    private static final Counter retries = Counter.builder()
+            .name("push_send_retries_total")
+            .help("Push requests that failed with a retryable error")
+            .register();
+
+    private final URI endpoint;
+    private final PushEncoderInterface encoder;
+    private final int queueCapacity;
+    private final int maxBatchesPerSend;
+    private final Duration timeout;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final HttpClient client;
+
+    // Под this: очередь и пакеты текущей отправки вместе ограничены queueCapacity + maxBatchesPerSend
+    private final ArrayDeque<PushBatch> queue = new ArrayDeque<>();
+    private int inFlight;
+    private boolean running;
+    private Thread sender;
+
+    private MetricsPusher(Builder builder) {
+        if (builder.endpoint == null) {
+            throw new IllegalArgumentException("endpoint must be set");
+        }
+        if (builder.queueCapacity < 1 || builder.maxBatchesPerSend < 1) {
+            throw new IllegalArgumentException("queueCapacity and maxBatchesPerSend must be >= 1");
+        }
+        this.endpoint = builder.endpoint;
+        this.encoder = "otlp".equals(builder.protocol)
+                ? new OtlpJsonEncoder(builder.serviceName)
+                : new RemoteWriteEncoder();
+        this.queueCapacity = builder.queueCapacity;
+        this.maxBatchesPerSend = builder.maxBatchesPerSend;
+        this.timeout = builder.timeout;
+        this.baseBackoff = builder.baseBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        sender = new Thread(this::sendLoop, "metrics-push");
+        sender.setDaemon(true);
+        sender.start();
+        logger.info("Pushing metrics to {}", endpoint);
+    }
+
+    @Override
+    public synchronized void offer(MetricSnapshots snapshots, long timestampMillis) {
+        if (queue.size() >= queueCapacity) {
+            PushBatch dropped = queue.pollFirst();
+            samplesDropped.labelValues("queue_full").inc(dropped.samples);
+        }
+        queue.addLast(new PushBatch(timestampMillis, snapshots));
+        queueDepth.set(queue.size() + inFlight);
+        notifyAll();
+    }
+
+    private void sendLoop() {
+        List<PushBatch> pending = new ArrayList<>();
+        int attempt = 0;
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (running && queue.isEmpty() && pending.isEmpty()) {
+                        wait();
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    // Все, что накопилось к этой попытке, уходит одним запросом
+                    while (!queue.isEmpty()) {
+                        if (pending.size() >= maxBatchesPerSend) {
+                            samplesDropped.labelValues("queue_full").inc(pending.remove(0).samples);
+                        }
+                        pending.add(queue.pollFirst());
+                    }
+                    inFlight = pending.size();
+                    queueDepth.set(inFlight);
+                }
+
+                Duration retryAfter = send(pending);
+                if (retryAfter == null) {
+                    pending.clear();
+                    attempt = 0;
+                    synchronized (this) {
+                        inFlight = 0;
+                        queueDepth.set(queue.size());
+                    }
+                    continue;
+                }
+                retries.inc();
+                attempt++;
+                synchronized (this) {
+                    long deadline = System.nanoTime() + backoff(attempt, retryAfter).toNanos();
+                    long left;
+                    // Новые пакеты не будят отправитель: они присоединятся к следующей попытке
+                    while (running && (left = deadline - System.nanoTime()) > 0) {
+                        wait(Math.max(1, left / 1_000_000));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return {@code null} when the batches are done with (delivered or rejected), otherwise the
+     * minimum delay before retrying
+     */
+    private Duration send(List<PushBatch> batches) throws InterruptedException {
+        int samples = 0;
+        for (PushBatch batch : batches) {
+            samples += batch.samples;
+        }
+        long start = System.nanoTime();
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(endpoint)
+                    .timeout(timeout)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(encoder.encode(batches)));
+            for (Map.Entry<String, String> header : encoder.headers().entrySet()) {
+                request.header(header.getKey(), header.getValue());
+            }
+            HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            int code = response.statusCode();
+            if (code / 100 == 2) {
+                samplesSent.inc(samples);
+                logger.debug("Pushed {} batches ({} samples) to {}", batches.size(), samples, endpoint);
+                return null;
+            }
+            if (code == 429 || code / 100 == 5) {
+                logger.warn("Push to {} failed with HTTP {}, will retry", endpoint, code);
+                return retryAfter(response);
+            }
+            // Тот же запрос снова будет отвергнут
+            samplesDropped.labelValues("rejected").inc(samples);
+            logger.error("Push to {} rejected with HTTP {}: {}", endpoint, code, abbreviate(response.body()));
+            return null;
+        } catch (IOException e) {
+            logger.warn("Push to {} failed: {}, will retry", endpoint, e.toString());
+            return Duration.ZERO;
+        } catch (RuntimeException e) {
+            // Кодирование или сборка запроса: повтор с теми же пакетами упадет так же, а поток отправителя должен жить
+            samplesDropped.labelValues("error").inc(samples);
+            logger.error("Push to {} failed, {} samples dropped", endpoint, samples, e);
+            return null;
+        } finally {
+            sendDuration.observe((System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private Duration backoff(int attempt, Duration retryAfter) {
+        long base = baseBackoff.toMillis() << Math.min(attempt - 1, 20);
+        long capped = Math.min(base, maxBackoff.toMillis());
+        // ±20%: узлы за одним NAT не должны повторять в такт
+        long jittered = (long) (capped * (0.8 + 0.4 * ThreadLocalRandom.current().nextDouble()));
+        return Duration.ofMillis(Math.max(jittered, retryAfter.toMillis()));
+    }
+
+    private static Duration retryAfter(HttpResponse<?> response) {
+        String value = response.headers().firstValue("Retry-After").orElse(null);
+        if (value != null) {
+            try {
+                return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+            } catch (NumberFormatException ignored) {
+                // HTTP-дата: не разбираем, действует обычный backoff
+            }
+        }
+        return Duration.ZERO;
+    }
+
+    private static String abbreviate(String body) {
+        return body.length() > 256 ? body.substring(0, 256) + "..." : body;
+    }
+
+    @Override
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            running = false;
+            notifyAll();
+            t = sender;
+            sender = null;
+        }
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    public static class Builder {
+        private URI endpoint;
+        private String protocol = "remote_write";
+        private String serviceName = "storage-health-exporter";
+        private int queueCapacity = 32;
+        private int maxBatchesPerSend = 16;
+        private Duration timeout = Duration.ofSeconds(10);
+        private Duration baseBackoff = Duration.ofMillis(500);
+        private Duration maxBackoff = Duration.ofSeconds(60);
+
+        public Builder endpoint(URI endpoint) {
+            this.endpoint = endpoint;
+            return this;
+        }
+
+        /**
+         * @param protocol {@code remote_write} (snappy protobuf) or {@code otlp} (OTLP/HTTP JSON)
+         */
+        public Builder protocol(String protocol) {
+            if (!"remote_write".equals(protocol) && !"otlp".equals(protocol)) {
+                throw new IllegalArgumentException("protocol must be 'remote_write' or 'otlp', got " + protocol);
+            }
+            this.protocol = protocol;
+            return this;
+        }
+
+        // Для OTLP: атрибут ресурса service.name
+        public Builder serviceName(String serviceName) {
+            this.serviceName = serviceName;
+            return this;
+        }
+
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder maxBatchesPerSend(int maxBatchesPerSend) {
+            this.maxBatchesPerSend = maxBatchesPerSend;
+            return this;
+        }
+
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public Builder baseBackoff(Duration baseBackoff) {
+            this.baseBackoff = baseBackoff;
+            return this;
+        }
+
+        public Builder maxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        public MetricsPusher build() {
+            return new MetricsPusher(this);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push;
+
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+
+public interface MetricsPusherInterface extends AutoCloseable {
+    void start();
+
+    // Ставит снимок цикла в очередь отправки; не блокируется на получателе
+    void offer(MetricSnapshots snapshots, long timestampMillis);
+
+    @Override
+    void close();
+}
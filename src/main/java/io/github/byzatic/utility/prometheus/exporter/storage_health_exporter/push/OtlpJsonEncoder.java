@@ -0,0 +1,187 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push;
+
+import com.google.gson.stream.JsonWriter;
+import io.prometheus.metrics.model.snapshots.ClassicHistogramBuckets;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.DataPointSnapshot;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.HistogramSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import io.prometheus.metrics.model.snapshots.UnknownSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OTLP/HTTP metrics export request in the JSON encoding ({@code POST /v1/metrics}).
+ * <p>
+ * Gauges and unknown families become OTLP gauges, counters cumulative monotonic sums and classic
+ * histograms explicit-bucket histograms. Coalesced batches add one data point per batch to the same
+ * metric. Non-finite values are skipped (JSON has no representation for them); summaries, info and
+ * state-set families are not pushed.
+ */
+final class OtlpJsonEncoder implements PushEncoderInterface {
+
+    private static final Map<String, String> HEADERS = Map.of("Content-Type", "application/json");
+    // AGGREGATION_TEMPORALITY_CUMULATIVE
+    private static final int CUMULATIVE = 2;
+
+    private final String serviceName;
+
+    OtlpJsonEncoder(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public Map<String, String> headers() {
+        return HEADERS;
+    }
+
+    @Override
+    public byte[] encode(List<PushBatch> batches) throws IOException {
+        // Точки одной метрики из разных пакетов — в одну запись metrics[]
+        Map<String, List<Point>> byName = new LinkedHashMap<>();
+        Map<String, MetricSnapshot> families = new LinkedHashMap<>();
+        for (PushBatch batch : batches) {
+            for (MetricSnapshot snapshot : batch.snapshots) {
+                if (!(snapshot instanceof GaugeSnapshot || snapshot instanceof CounterSnapshot
+                        || snapshot instanceof UnknownSnapshot || snapshot instanceof HistogramSnapshot)) {
+                    continue;
+                }
+                String name = snapshot.getMetadata().getPrometheusName();
+                families.putIfAbsent(name, snapshot);
+                List<Point> points = byName.computeIfAbsent(name, k -> new ArrayList<>());
+                for (DataPointSnapshot point : snapshot.getDataPoints()) {
+                    points.add(new Point(point, point.hasScrapeTimestamp() ? point.getScrapeTimestampMillis() : batch.timestampMillis));
+                }
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        try (JsonWriter json = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            json.beginObject().name("resourceMetrics").beginArray().beginObject();
+            json.name("resource").beginObject().name("attributes").beginArray();
+            attribute(json, "service.name", serviceName);
+            json.endArray().endObject();
+            json.name("scopeMetrics").beginArray().beginObject();
+            json.name("scope").beginObject().name("name").value(serviceName).endObject();
+            json.name("metrics").beginArray();
+            for (Map.Entry<String, List<Point>> entry : byName.entrySet()) {
+                writeMetric(json, families.get(entry.getKey()), entry.getValue());
+            }
+            json.endArray();
+            json.endObject().endArray();
+            json.endObject().endArray().endObject();
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeMetric(JsonWriter json, MetricSnapshot family, List<Point> points) throws IOException {
+        json.beginObject();
+        json.name("name").value(family.getMetadata().getPrometheusName());
+        if (family.getMetadata().getHelp() != null) {
+            json.name("description").value(family.getMetadata().getHelp());
+        }
+        if (family instanceof HistogramSnapshot) {
+            json.name("histogram").beginObject();
+            json.name("aggregationTemporality").value(CUMULATIVE);
+            json.name("dataPoints").beginArray();
+            for (Point p : points) {
+                writeHistogramPoint(json, (HistogramSnapshot.HistogramDataPointSnapshot) p.point, p.timestampMillis);
+            }
+            json.endArray().endObject();
+        } else {
+            boolean sum = family instanceof CounterSnapshot;
+            json.name(sum ? "sum" : "gauge").beginObject();
+            if (sum) {
+                json.name("aggregationTemporality").value(CUMULATIVE);
+                json.name("isMonotonic").value(true);
+            }
+            json.name("dataPoints").beginArray();
+            for (Point p : points) {
+                double value = value(p.point);
+                if (!Double.isFinite(value)) {
+                    continue;
+                }
+                json.beginObject();
+                attributes(json, p.point.getLabels());
+                json.name("timeUnixNano").value(nanos(p.timestampMillis));
+                json.name("asDouble").value(value);
+                json.endObject();
+            }
+            json.endArray().endObject();
+        }
+        json.endObject();
+    }
+
+    private static void writeHistogramPoint(JsonWriter json, HistogramSnapshot.HistogramDataPointSnapshot point, long timestampMillis) throws IOException {
+        ClassicHistogramBuckets buckets = point.getClassicBuckets();
+        json.beginObject();
+        attributes(json, point.getLabels());
+        json.name("timeUnixNano").value(nanos(timestampMillis));
+        long total = 0;
+        json.name("bucketCounts").beginArray();
+        for (int i = 0; i < buckets.size(); i++) {
+            total += buckets.getCount(i);
+            // int64 в OTLP JSON передаются строками
+            json.value(Long.toString(buckets.getCount(i)));
+        }
+        json.endArray();
+        // Последняя классическая граница — +Inf, в OTLP она подразумевается
+        json.name("explicitBounds").beginArray();
+        for (int i = 0; i < buckets.size() - 1; i++) {
+            json.value(buckets.getUpperBound(i));
+        }
+        json.endArray();
+        json.name("count").value(Long.toString(point.hasCount() ? point.getCount() : total));
+        if (point.hasSum() && Double.isFinite(point.getSum())) {
+            json.name("sum").value(point.getSum());
+        }
+        json.endObject();
+    }
+
+    private static double value(DataPointSnapshot point) {
+        if (point instanceof GaugeSnapshot.GaugeDataPointSnapshot) {
+            return ((GaugeSnapshot.GaugeDataPointSnapshot) point).getValue();
+        }
+        if (point instanceof CounterSnapshot.CounterDataPointSnapshot) {
+            return ((CounterSnapshot.CounterDataPointSnapshot) point).getValue();
+        }
+        return ((UnknownSnapshot.UnknownDataPointSnapshot) point).getValue();
+    }
+
+    private static void attributes(JsonWriter json, Labels labels) throws IOException {
+        json.name("attributes").beginArray();
+        for (int i = 0; i < labels.size(); i++) {
+            attribute(json, labels.getName(i), labels.getValue(i));
+        }
+        json.endArray();
+    }
+
+    private static void attribute(JsonWriter json, String key, String value) throws IOException {
+        json.beginObject().name("key").value(key)
+                .name("value").beginObject().name("stringValue").value(value).endObject()
+                .endObject();
+    }
+
+    private static String nanos(long millis) {
+        return Long.toString(millis * 1_000_000L);
+    }
+
+    private static final class Point {
+        final DataPointSnapshot point;
+        final long timestampMillis;
+
+        Point(DataPointSnapshot point, long timestampMillis) {
+            this.point = point;
+            this.timestampMillis = timestampMillis;
+        }
+    }
+}
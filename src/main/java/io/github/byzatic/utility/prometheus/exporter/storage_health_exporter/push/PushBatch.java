@@ -0,0 +1,40 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push;
+
+import io.prometheus.metrics.model.snapshots.DataPointSnapshot;
+import io.prometheus.metrics.model.snapshots.HistogramSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import io.prometheus.metrics.model.snapshots.SummarySnapshot;
+
+/**
+ * The registry as it was at the end of one collection cycle, waiting to be pushed.
+ */
+final class PushBatch {
+    final long timestampMillis;
+    final MetricSnapshots snapshots;
+    // Число отсчетов в терминах remote-write: для счетчика push_samples_*
+    final int samples;
+
+    PushBatch(long timestampMillis, MetricSnapshots snapshots) {
+        this.timestampMillis = timestampMillis;
+        this.snapshots = snapshots;
+        this.samples = countSamples(snapshots);
+    }
+
+    private static int countSamples(MetricSnapshots snapshots) {
+        int samples = 0;
+        for (MetricSnapshot snapshot : snapshots) {
+            for (DataPointSnapshot point : snapshot.getDataPoints()) {
+                if (point instanceof HistogramSnapshot.HistogramDataPointSnapshot) {
+                    // _bucket по каждой границе, _sum и _count
+                    samples += ((HistogramSnapshot.HistogramDataPointSnapshot) point).getClassicBuckets().size() + 2;
+                } else if (point instanceof SummarySnapshot.SummaryDataPointSnapshot) {
+                    samples += ((SummarySnapshot.SummaryDataPointSnapshot) point).getQuantiles().size() + 2;
+                } else {
+                    samples++;
+                }
+            }
+        }
+        return samples;
+    }
+}
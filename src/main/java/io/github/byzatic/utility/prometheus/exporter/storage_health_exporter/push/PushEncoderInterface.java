@@ -0,0 +1,15 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wire format of a push request. One request may carry several coalesced batches.
+ */
+interface PushEncoderInterface {
+    byte[] encode(List<PushBatch> batches) throws IOException;
+
+    // Content-Type, Content-Encoding и служебные заголовки протокола
+    Map<String, String> headers();
+}
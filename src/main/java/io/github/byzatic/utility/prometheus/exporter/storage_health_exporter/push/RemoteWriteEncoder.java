@@ -0,0 +1,221 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push;
+
+import io.prometheus.metrics.model.snapshots.ClassicHistogramBuckets;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.DataPointSnapshot;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.HistogramSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import io.prometheus.metrics.model.snapshots.Quantiles;
+import io.prometheus.metrics.model.snapshots.SummarySnapshot;
+import io.prometheus.metrics.model.snapshots.UnknownSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prometheus remote-write 1.0: a snappy-compressed protobuf {@code WriteRequest}.
+ * <p>
+ * Coalesced batches are merged per series, so a series repeated across batches becomes one
+ * {@code TimeSeries} with several samples in time order. The message is small and fixed
+ * (labels and samples only), so it is encoded by hand instead of through generated classes.
+ * Info and state-set families are not pushed.
+ */
+final class RemoteWriteEncoder implements PushEncoderInterface {
+
+    private static final Map<String, String> HEADERS = Map.of(
+            "Content-Type", "application/x-protobuf",
+            "Content-Encoding", "snappy",
+            "X-Prometheus-Remote-Write-Version", "0.1.0");
+
+    @Override
+    public Map<String, String> headers() {
+        return HEADERS;
+    }
+
+    @Override
+    public byte[] encode(List<PushBatch> batches) {
+        Map<String, Series> series = new LinkedHashMap<>();
+        for (PushBatch batch : batches) {
+            for (MetricSnapshot snapshot : batch.snapshots) {
+                flatten(snapshot, batch.timestampMillis, series);
+            }
+        }
+
+        ProtoWriter request = new ProtoWriter(64 * 1024);
+        ProtoWriter timeSeries = new ProtoWriter(1024);
+        ProtoWriter nested = new ProtoWriter(256);
+        for (Series s : series.values()) {
+            timeSeries.reset();
+            for (int i = 0; i < s.labels.length; i += 2) {
+                nested.reset();
+                nested.string(1, s.labels[i]);
+                nested.string(2, s.labels[i + 1]);
+                timeSeries.message(1, nested);
+            }
+            for (int i = 0; i < s.size; i++) {
+                nested.reset();
+                nested.fixed64(1, Double.doubleToRawLongBits(s.values[i]));
+                nested.varint(2, s.timestamps[i]);
+                timeSeries.message(2, nested);
+            }
+            request.message(1, timeSeries);
+        }
+        return Snappy.compress(request.toByteArray());
+    }
+
+    private static void flatten(MetricSnapshot snapshot, long timestamp, Map<String, Series> series) {
+        String name = snapshot.getMetadata().getPrometheusName();
+        for (DataPointSnapshot point : snapshot.getDataPoints()) {
+            Labels labels = point.getLabels();
+            long ts = point.hasScrapeTimestamp() ? point.getScrapeTimestampMillis() : timestamp;
+            if (snapshot instanceof GaugeSnapshot) {
+                add(series, name, labels, null, null, ((GaugeSnapshot.GaugeDataPointSnapshot) point).getValue(), ts);
+            } else if (snapshot instanceof CounterSnapshot) {
+                add(series, name + "_total", labels, null, null, ((CounterSnapshot.CounterDataPointSnapshot) point).getValue(), ts);
+            } else if (snapshot instanceof UnknownSnapshot) {
+                add(series, name, labels, null, null, ((UnknownSnapshot.UnknownDataPointSnapshot) point).getValue(), ts);
+            } else if (snapshot instanceof HistogramSnapshot) {
+                HistogramSnapshot.HistogramDataPointSnapshot h = (HistogramSnapshot.HistogramDataPointSnapshot) point;
+                ClassicHistogramBuckets buckets = h.getClassicBuckets();
+                // В модели счетчики корзин не накопительные, в remote-write — накопительные
+                long cumulative = 0;
+                for (int i = 0; i < buckets.size(); i++) {
+                    cumulative += buckets.getCount(i);
+                    add(series, name + "_bucket", labels, "le", formatBound(buckets.getUpperBound(i)), cumulative, ts);
+                }
+                if (h.hasSum()) {
+                    add(series, name + "_sum", labels, null, null, h.getSum(), ts);
+                }
+                add(series, name + "_count", labels, null, null, h.hasCount() ? h.getCount() : cumulative, ts);
+            } else if (snapshot instanceof SummarySnapshot) {
+                SummarySnapshot.SummaryDataPointSnapshot s = (SummarySnapshot.SummaryDataPointSnapshot) point;
+                Quantiles quantiles = s.getQuantiles();
+                for (int i = 0; i < quantiles.size(); i++) {
+                    add(series, name, labels, "quantile", formatBound(quantiles.get(i).getQuantile()), quantiles.get(i).getValue(), ts);
+                }
+                if (s.hasSum()) {
+                    add(series, name + "_sum", labels, null, null, s.getSum(), ts);
+                }
+                if (s.hasCount()) {
+                    add(series, name + "_count", labels, null, null, s.getCount(), ts);
+                }
+            }
+        }
+    }
+
+    private static void add(Map<String, Series> series, String name, Labels labels,
+                            String extraName, String extraValue, double value, long timestamp) {
+        int count = labels.size() + 1 + (extraName != null ? 1 : 0);
+        String[] pairs = new String[count * 2];
+        int n = 0;
+        pairs[n++] = "__name__";
+        pairs[n++] = name;
+        for (int i = 0; i < labels.size(); i++) {
+            pairs[n++] = labels.getPrometheusName(i);
+            pairs[n++] = labels.getValue(i);
+        }
+        if (extraName != null) {
+            pairs[n++] = extraName;
+            pairs[n] = extraValue;
+        }
+        sortPairs(pairs);
+
+        String key = String.join("\u0000", pairs);
+        series.computeIfAbsent(key, k -> new Series(pairs)).add(value, timestamp);
+    }
+
+    // remote-write требует меток, отсортированных по имени; их единицы, сортировка вставками
+    private static void sortPairs(String[] pairs) {
+        for (int i = 2; i < pairs.length; i += 2) {
+            String name = pairs[i];
+            String value = pairs[i + 1];
+            int j = i - 2;
+            while (j >= 0 && pairs[j].compareTo(name) > 0) {
+                pairs[j + 2] = pairs[j];
+                pairs[j + 3] = pairs[j + 1];
+                j -= 2;
+            }
+            pairs[j + 2] = name;
+            pairs[j + 3] = value;
+        }
+    }
+
+    private static String formatBound(double bound) {
+        if (bound == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        }
+        if (bound == Math.rint(bound) && Math.abs(bound) < 1e15) {
+            return (long) bound + ".0";
+        }
+        return Double.toString(bound);
+    }
+
+    private static final class Series {
+        final String[] labels;
+        double[] values = new double[2];
+        long[] timestamps = new long[2];
+        int size;
+
+        Series(String[] labels) {
+            this.labels = labels;
+        }
+
+        void add(double value, long timestamp) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+            }
+            values[size] = value;
+            timestamps[size] = timestamp;
+            size++;
+        }
+    }
+
+    /**
+     * Minimal protobuf writer: varint, fixed64, string and nested message fields.
+     */
+    static final class ProtoWriter extends ByteArrayOutputStream {
+        ProtoWriter(int size) {
+            super(size);
+        }
+
+        void varint(int field, long value) {
+            rawVarint((long) field << 3);
+            rawVarint(value);
+        }
+
+        void fixed64(int field, long value) {
+            rawVarint(((long) field << 3) | 1);
+            for (int i = 0; i < 8; i++) {
+                write((int) (value >>> (8 * i)) & 0xFF);
+            }
+        }
+
+        void string(int field, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            rawVarint(((long) field << 3) | 2);
+            rawVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void message(int field, ProtoWriter message) {
+            rawVarint(((long) field << 3) | 2);
+            rawVarint(message.size());
+            write(message.buf, 0, message.count);
+        }
+
+        private void rawVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+    }
+}
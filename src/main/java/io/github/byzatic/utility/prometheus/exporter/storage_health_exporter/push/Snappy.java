@@ -0,0 +1,185 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Snappy block format (the framing-less variant remote-write expects), compression and decompression.
+ * <p>
+ * A greedy single-pass compressor over 64 KiB blocks with a 4-byte hash table, as in the reference
+ * implementation; it trades some ratio for speed and keeps the exporter free of native libraries.
+ */
+final class Snappy {
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int HASH_BITS = 14;
+
+    private Snappy() {
+    }
+
+    static byte[] compress(byte[] input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+        writeVarint(out, input.length);
+        int[] table = new int[1 << HASH_BITS];
+        for (int start = 0; start < input.length; start += BLOCK_SIZE) {
+            compressBlock(input, start, Math.min(start + BLOCK_SIZE, input.length), out, table);
+        }
+        return out.toByteArray();
+    }
+
+    private static void compressBlock(byte[] in, int start, int end, ByteArrayOutputStream out, int[] table) {
+        // -1: в таблице нет позиции из текущего блока
+        Arrays.fill(table, -1);
+        int ip = start;
+        int nextEmit = start;
+        while (ip <= end - 4) {
+            int current = load32(in, ip);
+            int hash = (current * 0x1e35a7bd) >>> (32 - HASH_BITS);
+            int candidate = table[hash];
+            table[hash] = ip;
+            if (candidate < start || load32(in, candidate) != current) {
+                ip++;
+                continue;
+            }
+            emitLiteral(in, nextEmit, ip, out);
+            int length = 4;
+            while (ip + length < end && in[candidate + length] == in[ip + length]) {
+                length++;
+            }
+            emitCopy(ip - candidate, length, out);
+            ip += length;
+            nextEmit = ip;
+        }
+        emitLiteral(in, nextEmit, end, out);
+    }
+
+    private static void emitLiteral(byte[] in, int from, int to, ByteArrayOutputStream out) {
+        int n = to - from;
+        if (n == 0) {
+            return;
+        }
+        // Длина внутри блока не больше 65536, поэтому хватает двух байтов
+        if (n - 1 < 60) {
+            out.write((n - 1) << 2);
+        } else if (n - 1 < 256) {
+            out.write(60 << 2);
+            out.write(n - 1);
+        } else {
+            out.write(61 << 2);
+            out.write((n - 1) & 0xFF);
+            out.write((n - 1) >>> 8);
+        }
+        out.write(in, from, n);
+    }
+
+    private static void emitCopy(int offset, int length, ByteArrayOutputStream out) {
+        // Копия с 2-байтовым смещением несет до 64 байт; хвост оставляем не короче 4
+        while (length >= 68) {
+            emitCopy2(offset, 64, out);
+            length -= 64;
+        }
+        if (length > 64) {
+            emitCopy2(offset, 60, out);
+            length -= 60;
+        }
+        if (length < 12 && offset < 2048) {
+            out.write(1 | ((length - 4) << 2) | ((offset >>> 8) << 5));
+            out.write(offset & 0xFF);
+        } else {
+            emitCopy2(offset, length, out);
+        }
+    }
+
+    private static void emitCopy2(int offset, int length, ByteArrayOutputStream out) {
+        out.write(2 | ((length - 1) << 2));
+        out.write(offset & 0xFF);
+        out.write(offset >>> 8);
+    }
+
+    static byte[] uncompress(byte[] in) throws IOException {
+        int[] pos = {0};
+        long length = readVarint(in, pos);
+        if (length < 0 || length > Integer.MAX_VALUE - 8) {
+            throw new IOException("invalid snappy length " + length);
+        }
+        byte[] out = new byte[(int) length];
+        int op = 0;
+        int ip = pos[0];
+        try {
+            while (ip < in.length) {
+                int tag = in[ip++] & 0xFF;
+                int type = tag & 3;
+                if (type == 0) {
+                    int n = tag >>> 2;
+                    if (n >= 60) {
+                        int bytes = n - 59;
+                        n = 0;
+                        for (int i = 0; i < bytes; i++) {
+                            n |= (in[ip++] & 0xFF) << (8 * i);
+                        }
+                    }
+                    n++;
+                    System.arraycopy(in, ip, out, op, n);
+                    ip += n;
+                    op += n;
+                    continue;
+                }
+                int n;
+                int offset;
+                if (type == 1) {
+                    n = ((tag >>> 2) & 7) + 4;
+                    offset = ((tag >>> 5) << 8) | (in[ip++] & 0xFF);
+                } else if (type == 2) {
+                    n = (tag >>> 2) + 1;
+                    offset = (in[ip] & 0xFF) | (in[ip + 1] & 0xFF) << 8;
+                    ip += 2;
+                } else {
+                    n = (tag >>> 2) + 1;
+                    offset = (in[ip] & 0xFF) | (in[ip + 1] & 0xFF) << 8 | (in[ip + 2] & 0xFF) << 16 | (in[ip + 3] & 0xFF) << 24;
+                    ip += 4;
+                }
+                if (offset <= 0 || offset > op) {
+                    throw new IOException("invalid snappy copy offset " + offset);
+                }
+                // Побайтно: источник и приемник могут перекрываться
+                for (int i = 0; i < n; i++) {
+                    out[op] = out[op - offset];
+                    op++;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("truncated or corrupt snappy block", e);
+        }
+        if (op != out.length) {
+            throw new IOException("snappy block decoded to " + op + " bytes, expected " + out.length);
+        }
+        return out;
+    }
+
+    private static int load32(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] in, int[] pos) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= in.length) {
+                throw new IOException("truncated snappy length");
+            }
+            int b = in[pos[0]++] & 0xFF;
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("snappy length varint too long");
+    }
+}
@@ -0,0 +1,234 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.service;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.ConcurrencyControlInterface;
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Duration;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Sizes the collection interval and the device read concurrency to a CPU budget.
+ * <p>
+ * The cron expression only sets the tick; {@link #due()} lets a tick through once the adaptive
+ * interval has passed since the previous cycle started. After every cycle the interval becomes the
+ * largest of {@code minInterval}, the cycle's CPU time divided by the budget (so collection uses at
+ * most {@code maxCpuPercent} of one core on average) and 1.25 times the cycle's wall time (so
+ * cycles do not run back to back), capped at {@code maxInterval}. A longer interval is applied at
+ * once; a shorter one by at most 20% per cycle, so one cheap cycle does not undo a back-off.
+ * <p>
+ * Concurrency, if the reader supports it, drops by one while the host is loaded (load average above
+ * the number of cores) and grows by one while the cycle's wall time, not its CPU, is what holds
+ * the interval up and the host is idle enough.
+ */
+public class AdaptiveScheduler {
+    private final static Logger logger = LoggerFactory.getLogger(AdaptiveScheduler.class);
+
+    private static final Gauge interval = Gauge.builder()
+            .name("adaptive_interval_seconds")
+            .help("Collection interval chosen by the adaptive scheduler")
+            .register();
+
+    private static final Gauge concurrencyGauge = Gauge.builder()
+            .name("adaptive_concurrency")
+            .help("Device read concurrency chosen by the adaptive scheduler")
+            .register();
+
+    private static final Gauge cycleCpu = Gauge.builder()
+            .name("adaptive_cycle_cpu_seconds")
+            .help("CPU time of the last collection cycle, including smartctl/storcli child processes")
+            .register();
+
+    private static final Counter deferredTicks = Counter.builder()
+            .name("adaptive_deferred_ticks_total")
+            .help("Cron ticks not used because the adaptive interval had not passed yet")
+            .register();
+
+    static final double BACK_OFF_WALL_FACTOR = 1.25;
+    static final double MAX_SPEED_UP = 0.8;
+    // Нагрузка на ядро, выше которой уменьшаем параллелизм, и ниже которой разрешаем увеличивать
+    static final double HIGH_LOAD_PER_CORE = 1.0;
+    static final double LOW_LOAD_PER_CORE = 0.7;
+
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final double cpuBudget;
+    // null — источник не умеет менять параллелизм (или еще не построен)
+    private volatile ConcurrencyControlInterface concurrency;
+    private final LongSupplier cpuClock;
+    private final LongSupplier nanoClock;
+    private final DoubleSupplier loadPerCore;
+
+    // Только из цикла (под singleFlight) и такта cron; такты не пересекаются с собой
+    private volatile long intervalNanos;
+    private volatile long lastStartNanos;
+    private volatile boolean started = false;
+    private volatile long lastTickNanos;
+    private volatile boolean ticked = false;
+    private volatile long cycleCpuStart;
+
+    private AdaptiveScheduler(Builder builder) {
+        if (builder.minInterval.isNegative() || builder.maxInterval.compareTo(builder.minInterval) < 0) {
+            throw new IllegalArgumentException("minInterval must be >= 0 and maxInterval >= minInterval");
+        }
+        if (!(builder.maxCpuPercent > 0)) {
+            throw new IllegalArgumentException("maxCpuPercent must be > 0, got " + builder.maxCpuPercent);
+        }
+        this.minIntervalNanos = builder.minInterval.toNanos();
+        this.maxIntervalNanos = builder.maxInterval.toNanos();
+        this.cpuBudget = builder.maxCpuPercent / 100.0;
+        this.concurrency = builder.concurrency;
+        this.cpuClock = builder.cpuClock != null ? builder.cpuClock : new ProcessCpuClock();
+        this.nanoClock = builder.nanoClock;
+        this.loadPerCore = builder.loadPerCore != null ? builder.loadPerCore : AdaptiveScheduler::systemLoadPerCore;
+        this.intervalNanos = minIntervalNanos;
+        interval.set(minIntervalNanos / 1e9);
+        if (concurrency != null) {
+            concurrencyGauge.set(concurrency.getConcurrency());
+        }
+    }
+
+    /**
+     * Called on every cron tick.
+     *
+     * @return {@code false} if the tick comes before the adaptive interval has passed
+     */
+    public boolean due() {
+        long now = nanoClock.getAsLong();
+        // Такты cron не точны: такт, опоздавший к интервалу меньше чем на половину периода, не откладываем
+        long slack = ticked ? (now - lastTickNanos) / 2 : 0L;
+        lastTickNanos = now;
+        ticked = true;
+        if (started && now - lastStartNanos + slack < intervalNanos) {
+            deferredTicks.inc();
+            return false;
+        }
+        return true;
+    }
+
+    void beforeCycle() {
+        lastStartNanos = nanoClock.getAsLong();
+        started = true;
+        cycleCpuStart = cpuClock.getAsLong();
+    }
+
+    void afterCycle() {
+        long wallNanos = nanoClock.getAsLong() - lastStartNanos;
+        long cpuNanos = Math.max(0L, cpuClock.getAsLong() - cycleCpuStart);
+        cycleCpu.set(cpuNanos / 1e9);
+
+        long byCpu = (long) (cpuNanos / cpuBudget);
+        long byWall = (long) (wallNanos * BACK_OFF_WALL_FACTOR);
+        long target = Math.min(maxIntervalNanos, Math.max(minIntervalNanos, Math.max(byCpu, byWall)));
+        long previous = intervalNanos;
+        long next = target >= previous ? target : Math.max(target, (long) (previous * MAX_SPEED_UP));
+        intervalNanos = next;
+        interval.set(next / 1e9);
+        if (next != previous) {
+            logger.debug("Collection interval {} ms -> {} ms (cycle cpu {} ms, wall {} ms)",
+                    previous / 1_000_000, next / 1_000_000, cpuNanos / 1_000_000, wallNanos / 1_000_000);
+        }
+
+        ConcurrencyControlInterface control = concurrency;
+        if (control != null) {
+            // Интервал держит настенное время цикла, а не его CPU: больше параллелизма сократит цикл
+            adjustConcurrency(control, byWall > byCpu && byWall > minIntervalNanos);
+        }
+    }
+
+    private void adjustConcurrency(ConcurrencyControlInterface concurrency, boolean wallBound) {
+        double load = loadPerCore.getAsDouble();
+        int current = concurrency.getConcurrency();
+        int next = current;
+        if (load > HIGH_LOAD_PER_CORE) {
+            next = current - 1;
+        } else if (wallBound && load < LOW_LOAD_PER_CORE) {
+            next = current + 1;
+        }
+        next = Math.max(1, Math.min(next, concurrency.getMaxConcurrency()));
+        if (next != current) {
+            concurrency.setConcurrency(next);
+            logger.debug("Read concurrency {} -> {} (load per core {})", current, concurrency.getConcurrency(), load);
+        }
+        concurrencyGauge.set(concurrency.getConcurrency());
+    }
+
+    /**
+     * Hands over the concurrency control of a reader built after this scheduler, e.g. in the first
+     * collection cycle; {@code null} stops adjusting it.
+     */
+    public void setConcurrencyControl(ConcurrencyControlInterface concurrency) {
+        this.concurrency = concurrency;
+        if (concurrency != null) {
+            concurrencyGauge.set(concurrency.getConcurrency());
+        }
+    }
+
+    Duration getInterval() {
+        return Duration.ofNanos(intervalNanos);
+    }
+
+    // Отрицательное значение (нет данных) — считаем, что хост не нагружен
+    private static double systemLoadPerCore() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        double load = os.getSystemLoadAverage();
+        return load < 0 ? 0.0 : load / os.getAvailableProcessors();
+    }
+
+    public static class Builder {
+        private Duration minInterval = Duration.ofSeconds(5);
+        private Duration maxInterval = Duration.ofMinutes(10);
+        private double maxCpuPercent = 2.0;
+        private ConcurrencyControlInterface concurrency;
+        private LongSupplier cpuClock;
+        private LongSupplier nanoClock = System::nanoTime;
+        private DoubleSupplier loadPerCore;
+
+        public Builder minInterval(Duration minInterval) {
+            this.minInterval = minInterval;
+            return this;
+        }
+
+        public Builder maxInterval(Duration maxInterval) {
+            this.maxInterval = maxInterval;
+            return this;
+        }
+
+        // Процент одного ядра в среднем за интервал
+        public Builder maxCpuPercent(double maxCpuPercent) {
+            this.maxCpuPercent = maxCpuPercent;
+            return this;
+        }
+
+        // null — параллелизм не трогаем
+        public Builder concurrency(ConcurrencyControlInterface concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        // Для тестов
+        Builder cpuClock(LongSupplier cpuClock) {
+            this.cpuClock = cpuClock;
+            return this;
+        }
+
+        Builder nanoClock(LongSupplier nanoClock) {
+            this.nanoClock = nanoClock;
+            return this;
+        }
+
+        Builder loadPerCore(DoubleSupplier loadPerCore) {
+            this.loadPerCore = loadPerCore;
+            return this;
+        }
+
+        public AdaptiveScheduler build() {
+            return new AdaptiveScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+
+/**
+ * CPU time used by the exporter, in nanoseconds, including the smartctl and storcli processes it
+ * has waited for.
+ * <p>
+ * On Linux this is {@code utime + stime + cutime + cstime} from {@code /proc/self/stat}: most of a
+ * cycle's CPU is spent in the child processes, which the JVM's own counters do not see. Elsewhere
+ * it falls back to {@code getProcessCpuTime()} of the JVM, which covers only the exporter itself.
+ */
+final class ProcessCpuClock implements LongSupplier {
+    private final static Logger logger = LoggerFactory.getLogger(ProcessCpuClock.class);
+
+    private static final Path STAT = Path.of("/proc/self/stat");
+    // USER_HZ: 100 на всех распространенных архитектурах Linux
+    private static final long NANOS_PER_TICK = 10_000_000L;
+
+    private final com.sun.management.OperatingSystemMXBean jvm;
+    private volatile boolean procAvailable = Files.isReadable(STAT);
+
+    ProcessCpuClock() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        this.jvm = os instanceof com.sun.management.OperatingSystemMXBean
+                ? (com.sun.management.OperatingSystemMXBean) os : null;
+    }
+
+    @Override
+    public long getAsLong() {
+        if (procAvailable) {
+            try {
+                return parse(Files.readString(STAT));
+            } catch (IOException | RuntimeException e) {
+                procAvailable = false;
+                logger.warn("Cannot read {}, CPU time of child processes is not counted: {}", STAT, e.toString());
+            }
+        }
+        if (jvm != null) {
+            long nanos = jvm.getProcessCpuTime();
+            if (nanos >= 0) {
+                return nanos;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * @param stat contents of {@code /proc/<pid>/stat}
+     */
+    static long parse(String stat) {
+        // Имя процесса в скобках может содержать пробелы: поля считаем после последней ')'
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+        // fields[0] — state (поле 3 в proc(5)); utime, stime, cutime, cstime — поля 14..17
+        long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12])
+                + Long.parseLong(fields[13]) + Long.parseLong(fields[14]);
+        return ticks * NANOS_PER_TICK;
+    }
+}
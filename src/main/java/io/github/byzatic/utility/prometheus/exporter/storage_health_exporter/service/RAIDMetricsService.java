@@ -4,52 +4,171 @@ import io.github.byzatic.commons.schedulers.cron.CronScheduler;
 import io.github.byzatic.commons.schedulers.cron.CronSchedulerInterface;
 import io.github.byzatic.commons.schedulers.cron.CronTask;
 import io.github.byzatic.commons.schedulers.cron.JobEventListener;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.ExporterConfiguration;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.aggregator.IngestServerInterface;
 import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.RAIDMetricsCollectorInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.exposition.CachedMetricsServer;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.exposition.MetricsResponseCache;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push.MetricsPusherInterface;
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.core.metrics.Histogram;
 import io.prometheus.metrics.exporter.httpserver.HTTPServer;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.URL;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 public class RAIDMetricsService implements RAIDMetricsServiceInterface {
 
     private static final Logger logger = LoggerFactory.getLogger(RAIDMetricsService.class);
 
+    private static final Histogram cycleDuration = Histogram.builder()
+            .name("collection_cycle_duration_seconds")
+            .help("Duration of one updateMetrics() collection cycle")
+            .classicOnly()
+            .classicUpperBounds(0.1, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300)
+            .register();
+
+    private static final Counter cycleFailures = Counter.builder()
+            .name("collection_cycle_failures_total")
+            .help("Collection cycles that ended with an error")
+            .register();
+
+    private static final Counter skippedTicks = Counter.builder()
+            .name("collection_skipped_ticks_total")
+            .help("Cron ticks skipped because the previous collection cycle was still running")
+            .register();
+
+    private static final Gauge consecutiveFailures = Gauge.builder()
+            .name("collection_consecutive_failures")
+            .help("Collection cycles that failed in a row; reset by the next successful cycle")
+            .register();
+
+    private static final Gauge warming = Gauge.builder()
+            .name("exporter_warming")
+            .help("1 until the first collection cycle has succeeded; disk metrics published before that are incomplete")
+            .register();
+
+    private static final Gauge startupSeconds = Gauge.builder()
+            .name("exporter_startup_seconds")
+            .help("Time from process start until the metrics endpoint was listening")
+            .register();
+
+    private static final Gauge lastSuccess = Gauge.builder()
+            .name("collection_last_success_timestamp_seconds")
+            .help("Unix time of the last successfully completed collection cycle")
+            .register();
+
     private final int port;
     private final String address;
-    private final String cronExpressionString;
-    private final RAIDMetricsCollectorInterface collector;
+    private final String path;
+    private volatile String cronExpressionString;
+    private final AtomicReference<RAIDMetricsCollectorInterface> collector;
+    // Коллектор, заказанный перечитанной конфигурацией; подменяется в начале следующего цикла
+    private final AtomicReference<Supplier<RAIDMetricsCollectorInterface>> pendingCollector = new AtomicReference<>(null);
+    // Прием JSON от других хостов (режим агрегатора); null — выключен
+    private final IngestServerInterface ingestServer;
+    // Заранее отрисованный ответ /metrics; null — обычный HTTPServer клиентской библиотеки
+    private final MetricsResponseCache responseCache;
+    // Отправка снимка каждого цикла получателю (remote-write/OTLP); null — выключена
+    private final MetricsPusherInterface pusher;
+    // Интервал и параллелизм под бюджет CPU; null — каждый такт cron запускает цикл
+    private final AdaptiveScheduler adaptive;
+
+    // Сбор по запросу scrape'а; при false /metrics только отдает результат последнего цикла
+    private final boolean onDemand;
+    // Фоновое обновление по cron; в режиме по запросу можно выключить
+    private final boolean backgroundRefresh;
 
     private final CountDownLatch stopLatch = new CountDownLatch(1);
+    // Запрет наложения запусков (cron и scrape): пропущенные такты видим и считаем сами
+    private final SingleFlightCollection singleFlight;
     private final AtomicReference<Throwable> fatalError = new AtomicReference<>(null);
+    // Только из цикла под singleFlight
+    private int failuresInRow = 0;
+    private volatile boolean warm = false;
+    // Один цикл и выход (обучающий прогон для архива AppCDS / агента native-image)
+    private final boolean singleCycle;
 
     private volatile boolean stopping = false;
     private volatile CronSchedulerInterface scheduler;
     private volatile UUID jobId;
+    private volatile CronTask updateTask;
 
     public RAIDMetricsService(URL prometheusEndpointURL,
                               String cronExpressionString,
                               RAIDMetricsCollectorInterface collector) {
-        this.port = prometheusEndpointURL.getPort();
-        this.address = prometheusEndpointURL.getHost();
-        this.cronExpressionString = cronExpressionString;
-        this.collector = collector;
+        this(new Builder().prometheusEndpointURL(prometheusEndpointURL).cronExpressionString(cronExpressionString)
+                .collector(collector));
+    }
+
+    public RAIDMetricsService(URL prometheusEndpointURL,
+                              String cronExpressionString,
+                              RAIDMetricsCollectorInterface collector,
+                              IngestServerInterface ingestServer) {
+        this(new Builder().prometheusEndpointURL(prometheusEndpointURL).cronExpressionString(cronExpressionString)
+                .collector(collector).ingestServer(ingestServer));
+    }
+
+    private RAIDMetricsService(Builder builder) {
+        if (builder.prometheusEndpointURL == null || builder.cronExpressionString == null
+                || (builder.collector == null) == (builder.collectorFactory == null)) {
+            throw new IllegalArgumentException(
+                    "prometheusEndpointURL, cronExpressionString and either collector or collectorFactory must be set");
+        }
+        this.port = builder.prometheusEndpointURL.getPort();
+        this.address = builder.prometheusEndpointURL.getHost();
+        this.path = builder.prometheusEndpointURL.getPath().isEmpty() ? "/metrics" : builder.prometheusEndpointURL.getPath();
+        this.responseCache = builder.responseCache;
+        this.cronExpressionString = builder.cronExpressionString;
+        this.collector = new AtomicReference<>(builder.collector);
+        // Коллектор строится первым циклом, когда endpoint уже слушает
+        this.pendingCollector.set(builder.collectorFactory);
+        this.ingestServer = builder.ingestServer;
+        this.pusher = builder.pusher;
+        this.adaptive = builder.adaptive;
+        this.onDemand = builder.onDemand;
+        this.backgroundRefresh = builder.backgroundRefresh;
+        this.singleCycle = builder.singleCycle;
+        if (onDemand && responseCache == null) {
+            throw new IllegalArgumentException("on-demand collection needs a response cache");
+        }
+        if (!onDemand && !backgroundRefresh) {
+            throw new IllegalArgumentException("background refresh can only be disabled with on-demand collection");
+        }
+        this.singleFlight = new SingleFlightCollection(this::collectCycle, builder.maxStaleness, builder.deadline,
+                this::backgroundCycleFailed);
     }
 
     @Override
     public void run() throws IOException {
+        warming.set(1);
+        boolean ingestStarted = false;
+        boolean pusherStarted = false;
         // HTTPServer автоматически закрывается по выходу из try-with-resources
-        try (HTTPServer ignored = HTTPServer.builder().hostname(address).port(port).buildAndStart();
+        try (Closeable ignored = startMetricsServer();
              CronScheduler cron = new CronScheduler.Builder().build()) {
 
-            logger.debug("HTTPServer listening on http://{}:{}{}", address, port, "/metrics");
-            logger.warn("HTTPServer using default location {}", "/metrics");
-
+            startIngestServer();
+            ingestStarted = ingestServer != null;
+            startPusher();
+            pusherStarted = pusher != null;
+            reportStartup();
+            if (singleCycle) {
+                runSingleCycle();
+                return;
+            }
             this.scheduler = cron;
 
             // Подпишемся на события заданий
@@ -64,6 +183,7 @@ public class RAIDMetricsService implements RAIDMetricsServiceInterface {
                     logger.debug("Metrics job {} completed", jobId);
                 }
 
+                // Сюда доходят только фатальные ошибки (см. updateTask)
                 @Override
                 public void onError(UUID jobId, Throwable error) {
                     logger.error("Metrics job {} failed", jobId, error);
@@ -94,21 +214,39 @@ public class RAIDMetricsService implements RAIDMetricsServiceInterface {
                 if (token.isStopRequested()) {
                     token.throwIfStopRequested();
                 }
+                if (adaptive != null && !adaptive.due()) {
+                    return;
+                }
                 try {
-                    collector.updateMetrics();
+                    if (!singleFlight.runNow()) {
+                        skippedTicks.inc();
+                        logger.warn("Previous metrics update is still running, tick skipped");
+                        return;
+                    }
                 } catch (Exception e) {
-                    // Пусть планировщик зафиксирует ошибку и вызовет onError
-                    throw e;
+                    // Фатальную ошибку пробрасываем: планировщик вызовет onError и сервис остановится.
+                    // Остальные уже учтены циклом; /metrics продолжает отдавать последние значения
+                    if (isFatal(e)) {
+                        throw e;
+                    }
                 }
                 // Еще раз проверим флаг остановки
                 token.throwIfStopRequested();
             };
 
             // Регистрируем задание:
-            // - запрещаем overlap (disallowOverlap = true)
+            // - overlap планировщику не запрещаем (disallowOverlap = false): наложение отсекает singleFlight,
+            //   чтобы пропущенные такты были видны в collection_skipped_ticks_total
             // - запускаем немедленно (runImmediately = true), затем по cron
-            this.jobId = cron.addJob(cronExpressionString, updateTask, true, true);
-            logger.info("Metrics job {} scheduled with cron '{}'", jobId, cronExpressionString);
+            synchronized (this) {
+                if (backgroundRefresh) {
+                    this.updateTask = updateTask;
+                    this.jobId = cron.addJob(cronExpressionString, updateTask, false, true);
+                    logger.info("Metrics job {} scheduled with cron '{}'", jobId, cronExpressionString);
+                } else {
+                    logger.info("No background refresh, metrics are collected when scraped");
+                }
+            }
 
             // Блокируем поток сервиса до остановки/ошибки
             stopLatch.await();
@@ -132,6 +270,210 @@ public class RAIDMetricsService implements RAIDMetricsServiceInterface {
                     logger.warn("Error while closing scheduler", e);
                 }
             }
+            // Остальное закрываем в обратном порядке запуска
+            singleFlight.close();
+            if (pusherStarted) {
+                pusher.close();
+            }
+            if (ingestStarted) {
+                ingestServer.close();
+            }
+        }
+    }
+
+    // Один цикл сбора; вызывается только через singleFlight, поэтому циклы не пересекаются
+    private void collectCycle() throws Exception {
+        long start = System.nanoTime();
+        if (adaptive != null) {
+            adaptive.beforeCycle();
+        }
+        try {
+            swapPendingCollector();
+            collector.get().updateMetrics();
+            lastSuccess.set(System.currentTimeMillis() / 1000.0);
+            failuresInRow = 0;
+            consecutiveFailures.set(0);
+            // Теплым считаемся только после успешного цикла: упавший ничего не опубликовал
+            if (!warm) {
+                warm = true;
+                warming.set(0);
+                logger.info("First successful collection cycle finished in {} ms, exporter is warm",
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (Exception | Error e) {
+            cycleFailures.inc();
+            consecutiveFailures.set(++failuresInRow);
+            if (!isFatal(e)) {
+                logger.error("Metrics collection failed ({} in a row), keeping the previous values{}", failuresInRow,
+                        warm ? "" : ", exporter is still warming", e);
+            }
+            throw e;
+        } finally {
+            cycleDuration.observe((System.nanoTime() - start) / 1e9);
+            if (adaptive != null) {
+                adaptive.afterCycle();
+            }
+            renderResponseCache();
+            pushCycle();
+        }
+    }
+
+    // Endpoint поднят до первого цикла: до первого успешного /metrics отдает exporter_warming = 1
+    private static void reportStartup() {
+        ProcessHandle.current().info().startInstant().ifPresent(started -> {
+            Duration sinceStart = Duration.between(started, Instant.now());
+            startupSeconds.set(sinceStart.toMillis() / 1000.0);
+            logger.info("Metrics endpoint listening {} ms after process start, warming until a collection cycle succeeds",
+                    sinceStart.toMillis());
+        });
+    }
+
+    private void runSingleCycle() {
+        try {
+            singleFlight.runNow();
+        } catch (Exception e) {
+            // Уже учтено и залогировано циклом; для обучающего прогона важен сам проход по коду
+        }
+        logger.info("Single collection cycle done, stopping");
+    }
+
+    // Цикл, запущенный scrape'ом, упал: ведем себя так же, как при ошибке задания cron
+    private void backgroundCycleFailed(Throwable error) {
+        if (!isFatal(error)) {
+            return;
+        }
+        logger.error("On-demand metrics collection failed", error);
+        fatalError.compareAndSet(null, error);
+        stopLatch.countDown();
+    }
+
+    /**
+     * Only JVM errors (out of memory, linkage errors, ...) stop the service. A failed cycle is
+     * counted and logged, and the next one tries again: a restart would only add a cold rescan and
+     * a gap in every series.
+     */
+    static boolean isFatal(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof Error) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the metrics job to a new cron expression. The job under the new expression is added
+     * before the old one is stopped, so an invalid expression leaves the current schedule in place
+     * and a cycle already in flight finishes normally.
+     */
+    @Override
+    public synchronized void reschedule(String cronExpressionString) {
+        CronSchedulerInterface s = this.scheduler;
+        if (s == null || updateTask == null) {
+            // Сервис еще не запущен: run() возьмет новое выражение
+            this.cronExpressionString = cronExpressionString;
+            return;
+        }
+        UUID previous = this.jobId;
+        UUID next = s.addJob(cronExpressionString, updateTask, false, false);
+        this.jobId = next;
+        this.cronExpressionString = cronExpressionString;
+        logger.info("Metrics job {} rescheduled with cron '{}'", next, cronExpressionString);
+        try {
+            s.stopJob(previous, Duration.ofSeconds(5));
+        } catch (Exception e) {
+            logger.warn("Error while stopping the previous metrics job {}", previous, e);
+        }
+    }
+
+    /**
+     * Replaces the collector at the start of the next cycle: the new collector is built, then the
+     * current one retires its series and the new one publishes them within the same cycle. If the
+     * build fails, the current collector keeps running and the next cycle tries again. The HTTP
+     * server, the schedule and all other registered metrics are not touched.
+     */
+    @Override
+    public void replaceCollector(Supplier<RAIDMetricsCollectorInterface> collectorFactory) {
+        pendingCollector.set(collectorFactory);
+    }
+
+    // Вызывается только из цикла под singleFlight, поэтому с updateMetrics() не пересекается
+    private void swapPendingCollector() {
+        Supplier<RAIDMetricsCollectorInterface> factory = pendingCollector.get();
+        if (factory == null) {
+            return;
+        }
+        RAIDMetricsCollectorInterface previous = collector.get();
+        if (previous == null) {
+            // Первый коллектор: если сборка упала, фабрика остается и следующий цикл попробует снова
+            RAIDMetricsCollectorInterface first = factory.get();
+            collector.set(first);
+            pendingCollector.compareAndSet(factory, null);
+            logger.info("Collector {} built", first.getClass().getSimpleName());
+            return;
+        }
+        RAIDMetricsCollectorInterface next;
+        try {
+            next = factory.get();
+        } catch (RuntimeException e) {
+            // Фабрика остается в очереди: следующий цикл попробует снова, а пока работает прежний коллектор
+            logger.error("Cannot build the replacement collector, keeping {}", previous.getClass().getSimpleName(), e);
+            return;
+        }
+        pendingCollector.compareAndSet(factory, null);
+        // Новый коллектор регистрирует семейства своим первым циклом, уже после retire():
+        // у кеширующего и snapshot-коллектора имена метрик совпадают
+        previous.retire();
+        collector.set(next);
+        logger.info("Collector {} replaced by {}", previous.getClass().getSimpleName(), next.getClass().getSimpleName());
+    }
+
+    private Closeable startMetricsServer() throws IOException {
+        if (responseCache == null) {
+            HTTPServer server = HTTPServer.builder().hostname(address).port(port).buildAndStart();
+            logger.debug("HTTPServer listening on http://{}:{}{}", address, port, "/metrics");
+            logger.warn("HTTPServer using default location {}", "/metrics");
+            return server;
+        }
+        // Первый ответ готов до первого цикла: scrape не ждет сбора
+        responseCache.render();
+        return CachedMetricsServer.start(new InetSocketAddress(address, port), path, responseCache, 4,
+                onDemand ? singleFlight::awaitFresh : null);
+    }
+
+    // Один раз на цикл, а не на каждый scrape
+    private void renderResponseCache() {
+        if (responseCache == null) {
+            return;
+        }
+        try {
+            responseCache.render();
+        } catch (Exception e) {
+            logger.error("Failed to render the cached /metrics response", e);
+        }
+    }
+
+    private void startPusher() {
+        if (pusher != null) {
+            pusher.start();
+        }
+    }
+
+    // Снимок реестра на конец цикла; отправка идет в потоке отправителя
+    private void pushCycle() {
+        if (pusher == null) {
+            return;
+        }
+        try {
+            pusher.offer(PrometheusRegistry.defaultRegistry.scrape(), System.currentTimeMillis());
+        } catch (Exception e) {
+            logger.error("Failed to queue metrics for push", e);
+        }
+    }
+
+    private void startIngestServer() throws IOException {
+        if (ingestServer != null) {
+            ingestServer.start();
         }
     }
 
@@ -139,7 +481,10 @@ public class RAIDMetricsService implements RAIDMetricsServiceInterface {
     public void terminate() {
         stopping = true;
         CronSchedulerInterface s = this.scheduler;
-        UUID id = this.jobId;
+        UUID id;
+        synchronized (this) {
+            id = this.jobId;
+        }
 
         // Мягкая остановка текущего запуска (если идет), даем 5 секунд на корректное завершение
         if (s != null && id != null) {
@@ -153,4 +498,119 @@ public class RAIDMetricsService implements RAIDMetricsServiceInterface {
         // Снимаем блокировку run()
         stopLatch.countDown();
     }
-}
\ No newline at end of file
+
+    public static class Builder {
+        private URL prometheusEndpointURL;
+        private String cronExpressionString;
+        private RAIDMetricsCollectorInterface collector;
+        private Supplier<RAIDMetricsCollectorInterface> collectorFactory;
+        private IngestServerInterface ingestServer;
+        private MetricsResponseCache responseCache;
+        private MetricsPusherInterface pusher;
+        private AdaptiveScheduler adaptive;
+        private boolean onDemand = false;
+        private Duration maxStaleness = Duration.ZERO;
+        private Duration deadline = Duration.ZERO;
+        private boolean backgroundRefresh = true;
+        private boolean singleCycle = false;
+
+        /**
+         * Takes the endpoint, the cron expression, on-demand collection and background refresh
+         * from the configuration; the components (collector, servers, cache) are set separately.
+         */
+        public Builder configuration(ExporterConfiguration configuration) {
+            this.prometheusEndpointURL = configuration.prometheusUrl;
+            this.cronExpressionString = configuration.cronExpressionString;
+            this.backgroundRefresh = configuration.backgroundRefreshEnabled;
+            if (configuration.onDemandEnabled) {
+                onDemand(configuration.onDemandMaxStaleness, configuration.onDemandDeadline);
+            }
+            return this;
+        }
+
+        public Builder prometheusEndpointURL(URL prometheusEndpointURL) {
+            this.prometheusEndpointURL = prometheusEndpointURL;
+            return this;
+        }
+
+        public Builder cronExpressionString(String cronExpressionString) {
+            this.cronExpressionString = cronExpressionString;
+            return this;
+        }
+
+        public Builder collector(RAIDMetricsCollectorInterface collector) {
+            this.collector = collector;
+            return this;
+        }
+
+        /**
+         * Builds the collector at the start of the first collection cycle instead of before
+         * {@link #run()}, so the metrics endpoint is up while the disk readers are set up. A factory
+         * that throws fails the cycle and is called again by the next one. Replaces {@link #collector}.
+         */
+        public Builder collectorFactory(Supplier<RAIDMetricsCollectorInterface> collectorFactory) {
+            this.collectorFactory = collectorFactory;
+            return this;
+        }
+
+        // Прием JSON от других хостов; null — выключен
+        public Builder ingestServer(IngestServerInterface ingestServer) {
+            this.ingestServer = ingestServer;
+            return this;
+        }
+
+        // Заранее отрисованный /metrics; null — HTTPServer клиентской библиотеки
+        public Builder responseCache(MetricsResponseCache responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
+        // Отправка после каждого цикла; null — выключена
+        public Builder pusher(MetricsPusherInterface pusher) {
+            this.pusher = pusher;
+            return this;
+        }
+
+        /**
+         * Runs a cycle on a cron tick only once the adaptive interval has passed; the cron
+         * expression then sets the granularity of the schedule, not the interval. {@code null} —
+         * every tick runs a cycle.
+         */
+        public Builder adaptive(AdaptiveScheduler adaptive) {
+            this.adaptive = adaptive;
+            return this;
+        }
+
+        /**
+         * Collects on scrape when the last cycle started more than {@code maxStaleness} ago; a
+         * scrape waits at most {@code deadline} before it gets the previous snapshot. Needs a
+         * {@link #responseCache}.
+         */
+        public Builder onDemand(Duration maxStaleness, Duration deadline) {
+            this.onDemand = true;
+            this.maxStaleness = maxStaleness;
+            this.deadline = deadline;
+            return this;
+        }
+
+        // false — задание cron не ставится, сбор только по scrape (только вместе с onDemand)
+        public Builder backgroundRefresh(boolean backgroundRefresh) {
+            this.backgroundRefresh = backgroundRefresh;
+            return this;
+        }
+
+        /**
+         * {@link #run()} starts the endpoints, runs one collection cycle and returns, without
+         * scheduling the cron job. Used for training runs (AppCDS archive, native-image agent)
+         * that should exercise the startup path and then exit.
+         */
+        public Builder singleCycle(boolean singleCycle) {
+            this.singleCycle = singleCycle;
+            return this;
+        }
+
+        public RAIDMetricsService build() {
+            return new RAIDMetricsService(this);
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.service;
 
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.RAIDMetricsCollectorInterface;
+
 import java.io.IOException;
+import java.util.function.Supplier;
 
 public interface RAIDMetricsServiceInterface {
     void run() throws IOException;
 
     void terminate();
+
+    // Перенос задания сбора на новое cron-выражение без остановки HTTP-сервера
+    void reschedule(String cronExpressionString);
+
+    // Замена коллектора на лету; фабрика вызывается после того, как текущий коллектор снял свои серии
+    void replaceCollector(Supplier<RAIDMetricsCollectorInterface> collectorFactory);
 }
@@ -0,0 +1,182 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.service;
+
+import io.prometheus.metrics.core.datapoints.CounterDataPoint;
+import io.prometheus.metrics.core.metrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * At most one collection cycle at a time, whether it was started by a cron tick or by a scrape.
+ * <p>
+ * A cron tick that finds a cycle in flight is skipped. A scrape that finds the last completed cycle
+ * older than {@code maxStaleness} starts a cycle on the collection thread, or joins the one in
+ * flight, and waits at most {@code deadline} for it; past the deadline it returns and the previous
+ * snapshot is served while the cycle runs on.
+ */
+final class SingleFlightCollection implements AutoCloseable {
+    private final static Logger logger = LoggerFactory.getLogger(SingleFlightCollection.class);
+
+    private static final Counter scrapes = Counter.builder()
+            .name("on_demand_scrapes_total")
+            .help("Scrapes in on-demand mode by result: hit (snapshot fresh enough), miss (started a collection), "
+                    + "coalesced (joined a collection in flight)")
+            .labelNames("result")
+            .register();
+
+    private static final Counter deadlineExceeded = Counter.builder()
+            .name("on_demand_deadline_exceeded_total")
+            .help("Scrapes that stopped waiting for a collection and got the previous snapshot")
+            .register();
+
+    private static final CounterDataPoint hit = scrapes.labelValues("hit");
+    private static final CounterDataPoint miss = scrapes.labelValues("miss");
+    private static final CounterDataPoint coalesced = scrapes.labelValues("coalesced");
+
+    /**
+     * One collection cycle.
+     */
+    interface Cycle {
+        void run() throws Exception;
+    }
+
+    private final Cycle cycle;
+    private final long maxStalenessNanos;
+    private final long deadlineNanos;
+    // Ошибка цикла, запущенного scrape'ом: в потоке сбора ее некому пробросить
+    private final Consumer<Throwable> onBackgroundFailure;
+
+    private final AtomicReference<CompletableFuture<Void>> inFlight = new AtomicReference<>(null);
+    // System.nanoTime() начала последнего успешного цикла; данные не новее этого момента
+    private volatile long lastStartNanos;
+    private volatile boolean collected = false;
+    private volatile ExecutorService executor;
+
+    SingleFlightCollection(Cycle cycle, Duration maxStaleness, Duration deadline, Consumer<Throwable> onBackgroundFailure) {
+        this.cycle = cycle;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+        this.deadlineNanos = deadline.toNanos();
+        this.onBackgroundFailure = onBackgroundFailure;
+    }
+
+    /**
+     * Runs a cycle on the calling thread unless one is already in flight.
+     *
+     * @return {@code false} if the cycle was skipped
+     */
+    boolean runNow() throws Exception {
+        CompletableFuture<Void> flight = new CompletableFuture<>();
+        if (!inFlight.compareAndSet(null, flight)) {
+            return false;
+        }
+        execute(flight);
+        return true;
+    }
+
+    /**
+     * Returns once a cycle that started within {@code maxStaleness} has completed, or when the
+     * deadline passes.
+     */
+    void awaitFresh() {
+        if (isFresh()) {
+            hit.inc();
+            return;
+        }
+        CompletableFuture<Void> flight = inFlight.get();
+        if (flight != null) {
+            coalesced.inc();
+        } else {
+            CompletableFuture<Void> started = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, started)) {
+                // Между проверкой и захватом мог завершиться чужой цикл
+                if (isFresh()) {
+                    inFlight.set(null);
+                    started.complete(null);
+                    hit.inc();
+                    return;
+                }
+                miss.inc();
+                flight = started;
+                executor().execute(() -> {
+                    try {
+                        execute(started);
+                    } catch (Throwable t) {
+                        // И Error тоже: иначе OOM в потоке сбора пропал бы в пуле без следа
+                        onBackgroundFailure.accept(t);
+                    }
+                });
+            } else {
+                // Проиграли гонку другому scrape'у или такту cron
+                flight = inFlight.get();
+                coalesced.inc();
+                if (flight == null) {
+                    return;
+                }
+            }
+        }
+        try {
+            flight.get(deadlineNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            deadlineExceeded.inc();
+            logger.warn("Collection did not finish within {} ms, serving the previous snapshot",
+                    TimeUnit.NANOSECONDS.toMillis(deadlineNanos));
+        } catch (ExecutionException e) {
+            // Ошибку уже обработал тот, кто запускал цикл; отдаем то, что есть
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isFresh() {
+        return collected && System.nanoTime() - lastStartNanos < maxStalenessNanos;
+    }
+
+    private void execute(CompletableFuture<Void> flight) throws Exception {
+        long start = System.nanoTime();
+        try {
+            cycle.run();
+            lastStartNanos = start;
+            collected = true;
+            flight.complete(null);
+        } catch (Exception | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.set(null);
+        }
+    }
+
+    private ExecutorService executor() {
+        ExecutorService e = executor;
+        if (e == null) {
+            synchronized (this) {
+                e = executor;
+                if (e == null) {
+                    e = Executors.newSingleThreadExecutor(r -> {
+                        Thread t = new Thread(r, "on-demand-collection");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    executor = e;
+                }
+            }
+        }
+        return e;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter;
+
+import io.prometheus.metrics.model.registry.MetricNameFilter;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConfigurationWatcherTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void changedFileIsApplied_invalidFileKeepsPreviousConfiguration() throws Exception {
+        Path file = dir.resolve("configuration.xml");
+        write(file, "*/5 * * * * *", false, 4);
+        ExporterConfiguration initial = ExporterConfiguration.load(file);
+
+        BlockingQueue<ExporterConfiguration> applied = new ArrayBlockingQueue<>(4);
+        try (ConfigurationWatcher watcher = new ConfigurationWatcher(file, initial, Duration.ofMillis(50),
+                (previous, next) -> applied.add(next))) {
+            watcher.start();
+
+            // Сохранение через временный файл и переименование, как у большинства редакторов
+            Path tmp = dir.resolve("configuration.xml.tmp");
+            write(tmp, "0 */1 * * * *", true, 4);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            ExporterConfiguration next = applied.poll(10, TimeUnit.SECONDS);
+            assertNotNull(next, "reload was not triggered");
+            assertEquals("0 */1 * * * *", next.cronExpressionString);
+            assertTrue(initial.collectorChanged(next));
+            assertEquals(List.of(), watcher.restartRequired());
+            // Слушатель вызывается до того, как конфигурация станет текущей
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (watcher.current() != next && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertSame(next, watcher.current());
+
+            // Невалидное значение: файл отвергается целиком
+            write(file, "*/10 * * * * *", false, 0);
+            assertFalse(watcher.reload());
+            assertEquals("0 */1 * * * *", watcher.current().cronExpressionString);
+
+        }
+    }
+
+    @Test
+    void restartOnlyChangeIsComparedWithTheRunningConfiguration() throws Exception {
+        Path file = dir.resolve("configuration.xml");
+        write(file, "*/5 * * * * *", false, 4);
+        ExporterConfiguration initial = ExporterConfiguration.load(file);
+        double restartRequired = reloads("restart_required");
+        double success = reloads("success");
+
+        try (ConfigurationWatcher watcher = new ConfigurationWatcher(file, initial, Duration.ZERO, (previous, next) -> {
+        })) {
+            // Параллелизм требует перезапуска, cron применяется сразу
+            write(file, "0 */1 * * * *", false, 8);
+            assertTrue(watcher.reload());
+            assertEquals("0 */1 * * * *", watcher.current().cronExpressionString);
+            assertEquals(List.of("smartctlMaxConcurrency"), watcher.restartRequired());
+            assertEquals(restartRequired + 1, reloads("restart_required"));
+
+            // Следующая правка сравнивается с запущенными 4, а не с принятыми из файла 8
+            write(file, "0 */2 * * * *", false, 8);
+            assertTrue(watcher.reload());
+            assertEquals(List.of("smartctlMaxConcurrency"), watcher.restartRequired());
+            assertEquals(restartRequired + 2, reloads("restart_required"));
+
+            // Возврат к запущенному значению
+            write(file, "0 */2 * * * *", false, 4);
+            assertTrue(watcher.reload());
+            assertEquals(List.of(), watcher.restartRequired());
+            assertEquals(success + 1, reloads("success"));
+        }
+    }
+
+    @Test
+    void listenerFailureRejectsReload() throws Exception {
+        Path file = dir.resolve("configuration.xml");
+        write(file, "*/5 * * * * *", false, 4);
+        ExporterConfiguration initial = ExporterConfiguration.load(file);
+
+        try (ConfigurationWatcher watcher = new ConfigurationWatcher(file, initial, Duration.ZERO,
+                (previous, next) -> {
+                    throw new IllegalArgumentException("bad cron");
+                })) {
+            write(file, "not a cron", false, 4);
+            assertFalse(watcher.reload());
+            assertSame(initial, watcher.current());
+        }
+    }
+
+    private static double reloads(String result) {
+        CounterSnapshot snapshot = (CounterSnapshot) PrometheusRegistry.defaultRegistry
+                .scrape(MetricNameFilter.builder().nameMustBeEqualTo("config_reloads_total").build())
+                .get(0);
+        for (CounterSnapshot.CounterDataPointSnapshot point : snapshot.getDataPoints()) {
+            if (result.equals(point.getLabels().get("result"))) {
+                return point.getValue();
+            }
+        }
+        return 0;
+    }
+
+    private static void write(Path file, String cron, boolean caching, int concurrency) throws Exception {
+        Files.writeString(file, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<Configuration>\n"
+                + "    <cronExpressionString>" + cron + "</cronExpressionString>\n"
+                + "    <prometheusEndpointURL>http://0.0.0.0:9100/metrics</prometheusEndpointURL>\n"
+                + "    <featureFlagCachingCollector>" + caching + "</featureFlagCachingCollector>\n"
+                + "    <smartctlMaxConcurrency>" + concurrency + "</smartctlMaxConcurrency>\n"
+                + "</Configuration>\n", StandardCharsets.UTF_8);
+    }
+}
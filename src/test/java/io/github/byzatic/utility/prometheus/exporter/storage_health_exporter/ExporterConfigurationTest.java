@@ -0,0 +1,69 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExporterConfigurationTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reloadableFieldsExist() {
+        List<String> fields = new ArrayList<>();
+        for (Field field : ExporterConfiguration.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                fields.add(field.getName());
+            }
+        }
+        // Переименованное поле иначе молча стало бы требовать перезапуска
+        assertTrue(fields.containsAll(ExporterConfiguration.RELOADABLE), () -> "fields: " + fields);
+    }
+
+    @Test
+    void onlyReloadableChangesAreAppliedWithoutRestart() throws Exception {
+        ExporterConfiguration base = load("");
+        assertEquals(List.of(), base.restartRequiredBy(load("")));
+
+        ExporterConfiguration reloadable = load("<featureFlagCachingCollector>true</featureFlagCachingCollector>"
+                + "<featureFlagSnapshotCollector>true</featureFlagSnapshotCollector>", "0 */1 * * * *");
+        assertEquals(List.of(), base.restartRequiredBy(reloadable));
+        assertTrue(base.collectorChanged(reloadable));
+
+        // Значения без явного места в списке сравнения тоже замечаются: списки, пути, URL
+        ExporterConfiguration restart = load("<smartAttributes><attribute><id>5</id></attribute></smartAttributes>"
+                + "<historyDir>/tmp/other-history</historyDir>"
+                + "<aggregatorIngestURL>http://0.0.0.0:9102/ingest</aggregatorIngestURL>"
+                + "<commandRecordFile>/tmp/commands.jsonl</commandRecordFile>");
+        // Порядок getDeclaredFields() не гарантирован
+        assertEquals(Set.of("smartAttributes", "commandRecordFile", "aggregatorIngestUrl", "historyDir"),
+                new HashSet<>(base.restartRequiredBy(restart)));
+    }
+
+    private ExporterConfiguration load(String extra) throws Exception {
+        return load(extra, "*/5 * * * * *");
+    }
+
+    private ExporterConfiguration load(String extra, String cron) throws Exception {
+        Path file = Files.createTempFile(dir, "configuration", ".xml");
+        Files.writeString(file, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<Configuration>\n"
+                + "    <cronExpressionString>" + cron + "</cronExpressionString>\n"
+                + "    <prometheusEndpointURL>http://0.0.0.0:9100/metrics</prometheusEndpointURL>\n"
+                + "    " + extra + "\n"
+                + "</Configuration>\n", StandardCharsets.UTF_8);
+        return ExporterConfiguration.load(file);
+    }
+}
@@ -0,0 +1,182 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.aggregator;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJson;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJsonTypeAdapter;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestServerTest {
+
+    private static final Path READ_EXAMPLE = Path.of(
+            "src/main/java/io/github/byzatic/utility/prometheus/exporter/storage_health_exporter/collector/smartctl/dto/read/response_example");
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private IngestServer server;
+
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void acceptsConcatenatedDocuments_andExpiresSilentHosts() throws Exception {
+        AggregatedDisksCollector store = new AggregatedDisksCollector(List.of(), Duration.ofMinutes(5));
+        server = start(store, 2, 4, 1024 * 1024);
+
+        String json = exampleJson();
+        String second = json.replace("WD-BS01LX5H", "WD-OTHER").replace("/dev/sda", "/dev/sdb");
+        assertEquals(204, post("node-1", json + "\n" + second).statusCode());
+        assertEquals(204, post("node-2", "[" + json + "]").statusCode());
+
+        GaugeSnapshot reallocated = gauge(store.collect(), "aggregated_reallocated_sectors");
+        assertEquals(3, reallocated.getDataPoints().size());
+        GaugeSnapshot.GaugeDataPointSnapshot point = reallocated.getDataPoints().get(0);
+        assertEquals("node-1", point.getLabels().get("host"));
+        assertEquals("14", point.getLabels().get("disk_id"));
+        assertEquals("/dev/sda", point.getLabels().get("mount_point"));
+
+        // Новый пакет заменяет прежний набор дисков хоста
+        assertEquals(204, post("node-1", json).statusCode());
+        assertEquals(2, gauge(store.collect(), "aggregated_reallocated_sectors").getDataPoints().size());
+
+        // node-1 молчит дольше TTL
+        store.accept("node-2", List.of(), System.nanoTime() + Duration.ofMinutes(10).toNanos());
+        MetricSnapshots later = store.collect(System.nanoTime() + Duration.ofMinutes(10).toNanos());
+        assertTrue(gauge(later, "aggregated_reallocated_sectors").getDataPoints().isEmpty());
+    }
+
+    @Test
+    void rejectsInvalidRequests() throws Exception {
+        AggregatedDisksCollector store = new AggregatedDisksCollector(List.of(), Duration.ofMinutes(5));
+        server = start(store, 1, 1, 64);
+
+        assertEquals(400, post("node-1", "{\"json_format_version\": [2, 0]}").statusCode());
+        assertEquals(400, post("node-1", "{\"model_name\": ").statusCode());
+        // Дробное значение в целом поле: адаптер бросает NumberFormatException
+        assertEquals(400, post("node-1", "{\"temperature\": {\"current\": 1.5}}").statusCode());
+        assertEquals(400, post("bad host!", "{}").statusCode());
+        assertEquals(413, post("node-1", " ".repeat(100) + "{}").statusCode());
+    }
+
+    @Test
+    void readDocuments_splitsConcatenatedValues_andParsesEachStrictly() throws Exception {
+        SmartctlDiskJsonTypeAdapter adapter = new SmartctlDiskJsonTypeAdapter(
+                SmartAttributeTable.compile(SmartCTLReader.BUILT_IN_ATTRIBUTES));
+
+        // Скобки внутри строк не считаются границами документов
+        List<SmartctlDiskJson> documents = IngestServer.readDocuments(stream(
+                "{\"model_name\": \"a}[\\\"\"}\n[{\"model_name\": \"b\"}, {\"model_name\": \"c\"}]  {\"model_name\": \"d\"}\n"),
+                adapter);
+        assertEquals(4, documents.size());
+        assertEquals("a}[\"", documents.get(0).model_name);
+        assertEquals("d", documents.get(3).model_name);
+
+        for (String lenient : List.of("{'model_name': 'x'}", "{model_name: \"x\"}", "{\"model_name\": \"x\"} // x",
+                "{\"temperature\": {\"current\": NaN}}", "\"x\"", "{\"model_name\": \"x\"};")) {
+            assertThrows(IOException.class, () -> IngestServer.readDocuments(stream(lenient), adapter), lenient);
+        }
+    }
+
+    @Test
+    void answers429WhenWorkersAndQueueAreFull() throws Exception {
+        AggregatedDisksCollector store = new AggregatedDisksCollector(List.of(), Duration.ofMinutes(5));
+        server = start(store, 1, 1, 1024 * 1024);
+        String json = exampleJson();
+
+        // Заголовки отправлены, тело нет: воркер и очередь заняты
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        try (Socket first = openRequest("slow-1", body.length); Socket second = openRequest("slow-2", body.length)) {
+            Thread.sleep(300);
+
+            HttpResponse<String> rejected = post("node-3", json);
+            assertEquals(429, rejected.statusCode());
+            assertEquals("1", rejected.headers().firstValue("Retry-After").orElse(null));
+
+            first.getOutputStream().write(body);
+            second.getOutputStream().write(body);
+            assertTrue(statusLine(first).contains(" 204 "));
+            assertTrue(statusLine(second).contains(" 204 "));
+        }
+    }
+
+    private static IngestServer start(AggregatedDisksCollector store, int workers, int queue, long maxBody) throws IOException {
+        IngestServer server = new IngestServer.Builder()
+                .address(new InetSocketAddress("127.0.0.1", 0))
+                .store(store)
+                .workers(workers)
+                .queueCapacity(queue)
+                .maxBodyBytes(maxBody)
+                .build();
+        server.start();
+        return server;
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HttpResponse<String> post(String host, String body) throws Exception {
+        return client.send(request(host, HttpRequest.BodyPublishers.ofString(body)), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest request(String host, HttpRequest.BodyPublisher body) {
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/ingest?host="
+                + host.replace(" ", "%20"));
+        return HttpRequest.newBuilder(uri).POST(body).build();
+    }
+
+    private Socket openRequest(String host, int contentLength) throws IOException {
+        Socket socket = new Socket("127.0.0.1", server.getAddress().getPort());
+        socket.setSoTimeout(10_000);
+        String head = "POST /ingest?host=" + host + " HTTP/1.1\r\nHost: 127.0.0.1\r\n"
+                + "Content-Length: " + contentLength + "\r\n\r\n";
+        socket.getOutputStream().write(head.getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+        return socket;
+    }
+
+    private static String statusLine(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII)).readLine();
+    }
+
+    private static GaugeSnapshot gauge(MetricSnapshots snapshots, String name) {
+        for (MetricSnapshot snapshot : snapshots) {
+            if (snapshot.getMetadata().getPrometheusName().equals(name)) {
+                return (GaugeSnapshot) snapshot;
+            }
+        }
+        throw new AssertionError("no " + name);
+    }
+
+    // Первая строка примера — команда smartctl, JSON начинается со второй
+    private static String exampleJson() throws IOException {
+        String text = Files.readString(READ_EXAMPLE, StandardCharsets.UTF_8);
+        return text.substring(text.indexOf('{'));
+    }
+}
@@ -3,16 +3,20 @@ package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.co
 import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
 import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
 import io.prometheus.metrics.exporter.httpserver.HTTPServer;
+import io.prometheus.metrics.expositionformats.PrometheusTextFormatWriter;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.net.ServerSocket;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -74,7 +78,7 @@ public class RAIDMetricsCollectorWithCachingTest {
         logger.info("Starting Prometheus HTTPServer on port {}", port);
 
         try (HTTPServer server = HTTPServer.builder().port(port).buildAndStart()) {
-            String url = "http://127.0.0.1:" + port + "/metrics";
+            String url = "http://127.0.0.1:" + server.getPort() + "/metrics";
             String body = httpGet(url);
             logger.info("Fetched /metrics ({} bytes) from {}", body.length(), url);
             logger.debug("First lines of exposition:\n{}", firstLines(body, 25));
@@ -109,6 +113,99 @@ public class RAIDMetricsCollectorWithCachingTest {
         }
     }
 
+    @Test
+    void vanishedDiskIsEvicted_andValuesAreUpdatedInPlace() throws Exception {
+        SmartCTLReader reader = Mockito.mock(SmartCTLReader.class);
+        MegaRAIDDiskInfo a1 = disk("EVICT-A", 30);
+        MegaRAIDDiskInfo b1 = disk("EVICT-B", 31);
+        MegaRAIDDiskInfo a2 = disk("EVICT-A", 45);
+        a2.smartStatus = null;
+        when(reader.readDisks())
+                .thenReturn(List.of(a1, b1))
+                .thenReturn(List.of(a2));
+
+        RAIDMetricsCollectorWithCaching collector = new RAIDMetricsCollectorWithCaching(reader);
+        collector.updateMetrics();
+        collector.updateMetrics();
+
+        String body = scrape();
+        assertTrue(Pattern.compile("^temperature_celsius\\{[^}]*serial=\"EVICT-A\"[^}]*} 45\\.0$", Pattern.MULTILINE).matcher(body).find(),
+                "temperature of EVICT-A should be updated in place");
+        assertFalse(body.contains("EVICT-B"), "series of the vanished disk must be removed");
+        assertFalse(Pattern.compile("^smart_passed\\{[^}]*EVICT-A", Pattern.MULTILINE).matcher(body).find(),
+                "smart_passed is dropped once the status becomes unknown");
+    }
+
+    @Test
+    void sleepingDisksWithoutSerialKeepTheirOwnSeries() throws Exception {
+        SmartCTLReader reader = Mockito.mock(SmartCTLReader.class);
+        // Так SmartCTLReader публикует SATA-диски, спящие с запуска: без серийника, diskId = -1
+        MegaRAIDDiskInfo sda = sleeping("/dev/sda");
+        MegaRAIDDiskInfo sdb = sleeping("/dev/sdb");
+        when(reader.readDisks()).thenReturn(List.of(sda, sdb));
+
+        RAIDMetricsCollectorWithCaching collector = new RAIDMetricsCollectorWithCaching(reader);
+        collector.updateMetrics();
+        collector.updateMetrics();
+
+        String body = scrape();
+        for (String device : List.of("/dev/sda", "/dev/sdb")) {
+            Pattern series = Pattern.compile("^power_state\\{[^}]*mount_point=\"" + Pattern.quote(device) + "\"[^}]*} 0\\.0$", Pattern.MULTILINE);
+            assertTrue(series.matcher(body).find(), () -> device + " must be published:\n" + body);
+        }
+        collector.retire();
+    }
+
+    @Test
+    void retiredCollectorHandsItsFamiliesOverToSnapshotCollector() throws Exception {
+        SmartCTLReader reader = Mockito.mock(SmartCTLReader.class);
+        when(reader.readDisks()).thenReturn(List.of(disk("HANDOVER-A", 40)));
+
+        RAIDMetricsCollectorWithCaching caching = new RAIDMetricsCollectorWithCaching(reader);
+        caching.updateMetrics();
+        assertTrue(scrape().contains("HANDOVER-A"));
+
+        // Те же имена метрик: регистрация snapshot-коллектора возможна только после retire()
+        caching.retire();
+        assertFalse(scrape().contains("HANDOVER-A"));
+        RAIDMetricsSnapshotCollector snapshot = new RAIDMetricsSnapshotCollector(reader);
+        snapshot.updateMetrics();
+        assertTrue(Pattern.compile("^temperature_celsius\\{[^}]*serial=\"HANDOVER-A\"[^}]*} 40\\.0$", Pattern.MULTILINE)
+                .matcher(scrape()).find());
+
+        // И обратно
+        snapshot.retire();
+        RAIDMetricsCollectorWithCaching again = new RAIDMetricsCollectorWithCaching(reader);
+        again.updateMetrics();
+        assertTrue(scrape().contains("HANDOVER-A"));
+    }
+
+    private static MegaRAIDDiskInfo disk(String serial, int temperature) {
+        MegaRAIDDiskInfo disk = new MegaRAIDDiskInfo();
+        disk.diskId = -1;
+        disk.model = "WDC";
+        disk.serial = serial;
+        disk.deviceName = "/dev/sdz";
+        disk.smartStatus = "PASSED";
+        disk.temperatureCelsius = temperature;
+        return disk;
+    }
+
+    private static MegaRAIDDiskInfo sleeping(String deviceName) {
+        MegaRAIDDiskInfo disk = new MegaRAIDDiskInfo();
+        disk.diskId = -1;
+        disk.deviceName = deviceName;
+        disk.temperatureCelsius = -1;
+        disk.powerState = MegaRAIDDiskInfo.POWER_STATE_STANDBY;
+        return disk;
+    }
+
+    private static String scrape() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrometheusTextFormatWriter.create().write(out, PrometheusRegistry.defaultRegistry.scrape());
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
     private static int freePort() throws Exception {
         try (ServerSocket ss = new ServerSocket(0)) {
             return ss.getLocalPort();
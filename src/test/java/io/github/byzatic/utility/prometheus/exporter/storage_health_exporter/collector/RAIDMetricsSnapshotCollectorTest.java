@@ -0,0 +1,65 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.prometheus.metrics.expositionformats.PrometheusTextFormatWriter;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+public class RAIDMetricsSnapshotCollectorTest {
+
+    @Test
+    void cycleIsPublishedAsWholeAndDroppedDisksDisappear() throws Exception {
+        SmartCTLReader reader = Mockito.mock(SmartCTLReader.class);
+        PrometheusRegistry registry = new PrometheusRegistry();
+        RAIDMetricsSnapshotCollector collector = new RAIDMetricsSnapshotCollector(reader, registry);
+
+        MegaRAIDDiskInfo a = disk(4, "Z9C0A00PFHRF", 31);
+        MegaRAIDDiskInfo b = disk(5, "Z9C0A00PFHRG", 35);
+
+        when(reader.readDisks()).thenReturn(List.of(a, b));
+        collector.updateMetrics();
+        MetricSnapshots first = collector.collect();
+
+        String text = scrape(registry);
+        assertTrue(text.contains("temperature_celsius{disk_id=\"4\",model=\"LENOVO AL15SEB120N\",mount_point=\"/dev/bus/0\",serial=\"Z9C0A00PFHRF\"} 31.0"), text);
+        assertTrue(text.contains("smart_passed{device_name=\"/dev/bus/0\",disk_id=\"5\""), text);
+
+        // Следующий цикл без диска 5: старый снимок не меняется, новый не содержит диск 5
+        when(reader.readDisks()).thenReturn(List.of(a));
+        collector.updateMetrics();
+
+        assertNotSame(first, collector.collect());
+        assertEquals(2, first.get(0).getDataPoints().size());
+        text = scrape(registry);
+        assertFalse(text.contains("Z9C0A00PFHRG"), text);
+        assertTrue(text.contains("serial=\"Z9C0A00PFHRF\""), text);
+    }
+
+    private static String scrape(PrometheusRegistry registry) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrometheusTextFormatWriter.create().write(out, registry.scrape());
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static MegaRAIDDiskInfo disk(int id, String serial, int temperature) {
+        MegaRAIDDiskInfo disk = new MegaRAIDDiskInfo();
+        disk.diskId = id;
+        disk.model = "LENOVO AL15SEB120N";
+        disk.serial = serial;
+        disk.deviceName = "/dev/bus/0";
+        disk.smartStatus = "PASSED";
+        disk.temperatureCelsius = temperature;
+        disk.currentPendingSectors = -1L;
+        return disk;
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.DeviceTopologyRegistry;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartctlDeviceScanner;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandRunnerTest {
+
+    private static final String EXAMPLES = "src/main/java/io/github/byzatic/utility/prometheus/exporter/storage_health_exporter/collector/smartctl/dto/";
+
+    private static SimulatedCommandRunner.Builder fleet(int devices) throws IOException {
+        return new SimulatedCommandRunner.Builder()
+                .scanTemplate(SimulatedCommandRunner.readExample(Path.of(EXAMPLES + "scan/response_example")))
+                .readTemplate(SimulatedCommandRunner.readExample(Path.of(EXAMPLES + "read/response_example")))
+                .devices(devices)
+                .latencyMedian(Duration.ZERO);
+    }
+
+    private static Set<String> readSerials(CommandRunnerInterface runner, Duration deviceTimeout) throws Exception {
+        SmartCTLReader reader = new SmartCTLReader.Builder()
+                .maxConcurrency(8)
+                .topology(new DeviceTopologyRegistry(new SmartctlDeviceScanner(Duration.ZERO, runner), Duration.ZERO, List.of()))
+                .deviceTimeout(deviceTimeout)
+                .commandRunner(runner)
+                .build();
+        Set<String> serials = new TreeSet<>();
+        for (MegaRAIDDiskInfo disk : reader.readDisks()) {
+            serials.add(disk.serial);
+        }
+        return serials;
+    }
+
+    @Test
+    void simulatedFleetLosesOnlyHungAndFailedDevices() throws Exception {
+        SimulatedCommandRunner runner = fleet(40)
+                .hangProbability(0.1)
+                .failureProbability(0.2)
+                .seed(7)
+                .build();
+
+        long start = System.nanoTime();
+        Set<String> serials = readSerials(runner, Duration.ofMillis(200));
+
+        assertTrue(serials.size() > 10 && serials.size() < 40, "read " + serials.size() + " of 40");
+        for (String serial : serials) {
+            assertTrue(serial.matches("SIM000[0-3]\\d"), serial);
+        }
+        // Зависшие чтения обрываются по дедлайну, а не ждут вечно
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+
+        // Устройства вне парка не существуют
+        try (CommandExecutionInterface missing = runner.start(
+                List.of("smartctl", "-a", "-j", "-d", "megaraid,40", "/dev/bus/0"), Duration.ZERO)) {
+            assertEquals(2, missing.waitFor());
+            assertTrue(missing.stderrTail().contains("No such device"));
+        }
+    }
+
+    @Test
+    void recordingReplaysTheSameFleet(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("commands.jsonl");
+        Set<String> recorded = readSerials(new RecordingCommandRunner(fleet(3).build(), file), Duration.ofSeconds(5));
+
+        // --scan и три чтения дисков
+        assertEquals(4, Files.readAllLines(file).size());
+        assertEquals(Set.of("SIM00000", "SIM00001", "SIM00002"), recorded);
+
+        ReplayCommandRunner replay = new ReplayCommandRunner(file, false);
+        assertEquals(recorded, readSerials(replay, Duration.ofSeconds(5)));
+        assertThrows(IOException.class, () -> replay.start(List.of("smartctl", "--version"), Duration.ZERO));
+    }
+}
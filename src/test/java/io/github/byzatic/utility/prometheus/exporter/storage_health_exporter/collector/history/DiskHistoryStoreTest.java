@@ -0,0 +1,171 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.history;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.DiskReaderInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiskHistoryStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void ringOverwritesOldestSamples_andSurvivesReopen() throws Exception {
+        Path file = dir.resolve("ring.hist");
+        long[] latest = new long[2];
+        long[][] atCutoff = new long[3][2];
+        boolean[] found = new boolean[3];
+
+        try (SampleRing ring = SampleRing.open(file, 2, 42, 512)) {
+            assertTrue(ring.wasReset());
+            // Время растет на 10 с, значения: i и -i (проверка zigzag), с редкими большими скачками
+            for (int i = 0; i < 5000; i++) {
+                ring.append(1_000_000 + 10L * i, new long[]{i % 1000 == 0 ? 1L << 40 : i, -i});
+            }
+            assertTrue(ring.count() > 10 && ring.count() < 5000);
+            assertEquals(1_000_000 + 10L * 4999, ring.lastTime());
+        }
+
+        try (SampleRing ring = SampleRing.open(file, 2, 42, 512)) {
+            assertFalse(ring.wasReset());
+            long last = 1_000_000 + 10L * 4999;
+            long[] cutoffs = {last, last - 105, 0};
+            assertTrue(ring.valuesAt(cutoffs, atCutoff, found, latest));
+            assertArrayEquals(new long[]{4999, -4999}, latest);
+            assertTrue(found[0]);
+            assertArrayEquals(new long[]{4999, -4999}, atCutoff[0]);
+            // Последний отсчет не позже last - 105 — это i = 4988
+            assertTrue(found[1]);
+            assertArrayEquals(new long[]{4988, -4988}, atCutoff[1]);
+            // Так далеко история уже перезаписана
+            assertFalse(found[2]);
+        }
+
+        // Другая раскладка полей — история начинается заново
+        try (SampleRing ring = SampleRing.open(file, 2, 43, 512)) {
+            assertTrue(ring.wasReset());
+            assertEquals(0, ring.count());
+        }
+    }
+
+    @Test
+    void ringCrashBeforeHeadIsPublishedLosesOnlyThatSample() throws Exception {
+        Path file = dir.resolve("ring.hist");
+        long committedHead;
+        try (SampleRing ring = SampleRing.open(file, 2, 42, 512)) {
+            // Достаточно отсчетов, чтобы ring перезаписывал самые старые
+            for (int i = 0; i < 100; i++) {
+                ring.append(1000 + 10L * i, new long[]{i, 10L * i});
+            }
+            committedHead = readHead(file);
+            ring.append(5000, new long[]{777, 7770});
+        }
+        // Процесс убит после байтов записи, но до публикации головы
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(SampleRing.OFF_HEAD);
+            raw.writeLong(committedHead);
+        }
+
+        try (SampleRing ring = SampleRing.open(file, 2, 42, 512)) {
+            assertFalse(ring.wasReset());
+            assertEquals(1000 + 10L * 99, ring.lastTime());
+            ring.append(6000, new long[]{100, 1000});
+
+            long[] latest = new long[2];
+            long[][] atCutoff = new long[1][2];
+            boolean[] found = new boolean[1];
+            assertTrue(ring.valuesAt(new long[]{5999}, atCutoff, found, latest));
+            // Потерян только недописанный отсчет; следующие значения не сдвинуты на его дельту
+            assertArrayEquals(new long[]{100, 1000}, latest);
+            assertArrayEquals(new long[]{99, 990}, atCutoff[0]);
+        }
+    }
+
+    private static long readHead(Path file) throws Exception {
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "r")) {
+            raw.seek(SampleRing.OFF_HEAD);
+            return raw.readLong();
+        }
+    }
+
+    @Test
+    void readerPublishesDeltasOnlyForCoveredWindows() throws Exception {
+        SmartAttributeTable table = SmartAttributeTable.compile(List.of(
+                new SmartAttributeSpec(5, "Reallocated_Sector_Ct"), new SmartAttributeSpec(197, "Current_Pending_Sector")));
+        long now = System.currentTimeMillis();
+        FakeReader delegate = new FakeReader(table);
+        DiskHistoryStore store = new DiskHistoryStore(dir, 4096, Duration.ofMinutes(1), table);
+        HistoryRecordingReader reader = new HistoryRecordingReader(delegate, store, HistoryRecordingReader.DEFAULT_WINDOWS);
+
+        delegate.next(now - Duration.ofHours(30).toMillis(), 1, 0);
+        reader.readDisks();
+        delegate.next(now - Duration.ofMinutes(30).toMillis(), 4, 2);
+        reader.readDisks();
+        // В пределах минимального интервала — отсчет не сохраняется
+        delegate.next(now - Duration.ofMinutes(30).toMillis() + 1000, 100, 100);
+        reader.readDisks();
+        delegate.next(now, 8, -1);
+        reader.readDisks();
+
+        GaugeSnapshot deltas = (GaugeSnapshot) reader.collect().get(0);
+        assertEquals("smart_attribute_raw_delta", deltas.getMetadata().getName());
+        // 5: 1h = 8 - 1, 24h = 8 - 1; 197 пропал в последнем отсчете; 7d не покрыто историей
+        assertEquals(2, deltas.getDataPoints().size());
+        for (GaugeSnapshot.GaugeDataPointSnapshot point : deltas.getDataPoints()) {
+            assertEquals("5", point.getLabels().get("attribute_id"));
+            assertEquals(7, point.getValue());
+        }
+        assertEquals(List.of("1h", "24h"), deltas.getDataPoints().stream().map(p -> p.getLabels().get("window")).toList());
+        store.close();
+    }
+
+    @Test
+    void windowLabels() {
+        assertEquals("1h", HistoryRecordingReader.windowLabel(3600));
+        assertEquals("24h", HistoryRecordingReader.windowLabel(86400));
+        assertEquals("7d", HistoryRecordingReader.windowLabel(604800));
+        assertEquals("90s", HistoryRecordingReader.windowLabel(90));
+    }
+
+    private static class FakeReader implements DiskReaderInterface {
+        private final SmartAttributeTable table;
+        private MegaRAIDDiskInfo disk;
+
+        FakeReader(SmartAttributeTable table) {
+            this.table = table;
+        }
+
+        void next(long epochMillis, long reallocated, long pending) {
+            disk = new MegaRAIDDiskInfo();
+            disk.serial = "WD-1";
+            disk.model = "WDC";
+            disk.lastReadEpochMillis = epochMillis;
+            disk.smartAttributes = new long[table.size() * SmartAttributeTable.FIELDS];
+            Arrays.fill(disk.smartAttributes, -1);
+            disk.smartAttributes[SmartAttributeTable.index(table.slotOf(5), SmartAttributeTable.RAW)] = reallocated;
+            disk.smartAttributes[SmartAttributeTable.index(table.slotOf(197), SmartAttributeTable.RAW)] = pending;
+        }
+
+        @Override
+        public List<MegaRAIDDiskInfo> readDisks() {
+            return List.of(disk);
+        }
+
+        @Override
+        public SmartAttributeTable getAttributeTable() {
+            return table;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.hwmon;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.DeviceEntry;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.DeviceTopologyRegistry;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HwmonTemperatureSamplerTest {
+
+    @TempDir
+    Path sys;
+
+    @Test
+    void mapsDrivetempAndNvmeSensors_andReportsWindowStatistics() throws Exception {
+        // drivetemp: hwmon0/device -> .../0:0:0:0, в котором block/sda
+        Path scsi = Files.createDirectories(sys.resolve("devices/pci0000:00/host0/target0:0:0/0:0:0:0"));
+        Files.createDirectories(scsi.resolve("block/sda"));
+        Path sda = hwmon("hwmon0", "drivetemp", scsi);
+        // NVMe: hwmon1/device -> .../nvme/nvme0
+        Path nvme = Files.createDirectories(sys.resolve("devices/pci0000:00/0000:01:00.0/nvme/nvme0"));
+        Path nvme0 = hwmon("hwmon1", "nvme", nvme);
+        // Сенсор устройства, которого нет в топологии
+        Path sdb = Files.createDirectories(sys.resolve("devices/pci0000:00/host1/target1:0:0/1:0:0:0"));
+        Files.createDirectories(sdb.resolve("block/sdb"));
+        hwmon("hwmon2", "drivetemp", sdb);
+
+        DeviceTopologyRegistry topology = new DeviceTopologyRegistry(
+                () -> List.of(new DeviceEntry("/dev/sda", "sat"), new DeviceEntry("/dev/nvme0", "nvme")),
+                Duration.ofHours(1), List.of());
+        // Окно из трех отсчетов
+        HwmonTemperatureSampler sampler = new HwmonTemperatureSampler(sys, topology, Duration.ofSeconds(1), Duration.ofSeconds(3));
+
+        int[] sdaSamples = {30000, 31000, 35000, 33000};
+        for (int i = 0; i < sdaSamples.length; i++) {
+            Files.writeString(sda, String.valueOf(sdaSamples[i]));
+            Files.writeString(nvme0, "41850\n");
+            sampler.sampleOnce();
+        }
+
+        MetricSnapshots snapshots = sampler.collect();
+        // Первый отсчет (30.0) уже вытеснен из окна
+        assertEquals(31.0, value(snapshots, "hwmon_temperature_celsius_min", "/dev/sda"));
+        assertEquals(35.0, value(snapshots, "hwmon_temperature_celsius_max", "/dev/sda"));
+        assertEquals(33.0, value(snapshots, "hwmon_temperature_celsius_avg", "/dev/sda"));
+        assertEquals(33.0, value(snapshots, "hwmon_temperature_celsius", "/dev/sda"));
+        assertEquals(41.85, value(snapshots, "hwmon_temperature_celsius", "/dev/nvme0"), 1e-9);
+        assertEquals(2, gauge(snapshots, "hwmon_temperature_celsius").getDataPoints().size());
+    }
+
+    private Path hwmon(String name, String driver, Path device) throws Exception {
+        Path dir = Files.createDirectories(sys.resolve("class/hwmon").resolve(name));
+        Files.writeString(dir.resolve("name"), driver + "\n");
+        Files.createSymbolicLink(dir.resolve("device"), device);
+        return Files.writeString(dir.resolve("temp1_input"), "0");
+    }
+
+    private static GaugeSnapshot gauge(MetricSnapshots snapshots, String name) {
+        for (MetricSnapshot snapshot : snapshots) {
+            if (snapshot.getMetadata().getName().equals(name)) {
+                return (GaugeSnapshot) snapshot;
+            }
+        }
+        throw new AssertionError("no metric " + name);
+    }
+
+    private static double value(MetricSnapshots snapshots, String name, String device) {
+        return gauge(snapshots, name).getDataPoints().stream()
+                .filter(p -> device.equals(p.getLabels().get("device")))
+                .findFirst()
+                .orElseThrow()
+                .getValue();
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.risk;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiskRiskScorerTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    void healthyDiskScoresNearZero_growingPendingSectorsRaiseScoreAndProjectThreshold() {
+        DiskRiskScorer scorer = new DiskRiskScorer(24, 1, 100);
+        int healthy = scorer.slot("HEALTHY");
+        int failing = scorer.slot("FAILING");
+        assertEquals(healthy, scorer.slot("HEALTHY"));
+
+        long t0 = 1_700_000_000_000L;
+        for (int h = 0; h <= 48; h++) {
+            scorer.update(healthy, disk(0, 0, 35, 1000), t0 + h * HOUR);
+            // +1 ожидающий сектор в час
+            scorer.update(failing, disk(0, h, 35, 1000), t0 + h * HOUR);
+        }
+
+        assertEquals(0, scorer.score(healthy), 1e-9);
+        assertTrue(Double.isNaN(scorer.hoursToThreshold(healthy)));
+
+        // Уровень и рост ожидающих секторов близки к насыщению: 100 * (1 - 0.5 * 0.5)
+        assertEquals(75, scorer.score(failing), 0.01);
+        // Сглаженная скорость сходится к 1 сектору в час
+        double slope = scorer.slopePerHour(failing, DiskRiskScorer.PENDING);
+        assertEquals(1, slope, 0.15);
+        assertEquals((100 - 48) / slope, scorer.hoursToThreshold(failing), 1e-9);
+    }
+
+    @Test
+    void ignoresRepeatedReadings_andMissingValues() {
+        DiskRiskScorer scorer = new DiskRiskScorer(24, 1, 10);
+        int slot = scorer.slot("S");
+        long t0 = 1_700_000_000_000L;
+
+        scorer.update(slot, disk(0, 0, 70, 1000), t0);
+        double hot = scorer.score(slot);
+        assertTrue(hot > 0, "temperature excess counts from the first reading");
+
+        // Закешированное значение спящего диска с той же отметкой времени
+        scorer.update(slot, disk(0, 50, 70, 1000), t0);
+        assertEquals(hot, scorer.score(slot), 1e-12);
+
+        MegaRAIDDiskInfo unknown = disk(-1, -1, -1, -1);
+        scorer.update(slot, unknown, t0 + HOUR);
+        assertEquals(0, scorer.slopePerHour(slot, DiskRiskScorer.PENDING), 1e-12);
+        assertTrue(Double.isNaN(scorer.hoursToThreshold(slot)));
+    }
+
+    private static MegaRAIDDiskInfo disk(long reallocated, long pending, int temperature, int powerOnHours) {
+        MegaRAIDDiskInfo disk = new MegaRAIDDiskInfo();
+        disk.reallocatedSectors = reallocated;
+        disk.currentPendingSectors = pending;
+        disk.offlineUncorrectable = pending < 0 ? -1 : 0;
+        disk.udmaCrcErrors = pending < 0 ? -1 : 0;
+        disk.temperatureCelsius = temperature;
+        disk.powerOnHours = powerOnHours;
+        return disk;
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.CommandExecutionInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.ProcessCommandRunner;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeviceCircuitBreakerTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void opensAfterThreshold_probesAfterBackoff_andDoublesBackoff() {
+        DeviceCircuitBreaker breaker = new DeviceCircuitBreaker(3, 60 * SECOND, 300 * SECOND);
+        long now = 0;
+
+        assertFalse(breaker.recordFailure(now));
+        assertFalse(breaker.recordFailure(now));
+        assertTrue(breaker.recordFailure(now));
+        assertEquals(DeviceCircuitBreaker.State.OPEN, breaker.state());
+
+        // Карантин 60 с
+        assertFalse(breaker.allowRequest(now + 59 * SECOND));
+        assertTrue(breaker.allowRequest(now + 60 * SECOND));
+        assertEquals(DeviceCircuitBreaker.State.HALF_OPEN, breaker.state());
+
+        // Неудачная проба сразу возвращает в карантин, уже на 120 с
+        now += 60 * SECOND;
+        assertTrue(breaker.recordFailure(now));
+        assertFalse(breaker.allowRequest(now + 119 * SECOND));
+        assertTrue(breaker.allowRequest(now + 120 * SECOND));
+
+        breaker.recordSuccess();
+        assertEquals(DeviceCircuitBreaker.State.CLOSED, breaker.state());
+        assertFalse(breaker.recordFailure(now));
+    }
+
+    @Test
+    void backoffIsCappedAndThresholdZeroDisablesBreaker() {
+        DeviceCircuitBreaker breaker = new DeviceCircuitBreaker(1, 60 * SECOND, 300 * SECOND);
+        assertEquals(60 * SECOND, breaker.backoffNanos(1));
+        assertEquals(240 * SECOND, breaker.backoffNanos(3));
+        assertEquals(300 * SECOND, breaker.backoffNanos(4));
+        assertEquals(300 * SECOND, breaker.backoffNanos(100));
+
+        DeviceCircuitBreaker disabled = new DeviceCircuitBreaker(0, 60 * SECOND, 300 * SECOND);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(disabled.recordFailure(0));
+        }
+        assertTrue(disabled.allowRequest(0));
+    }
+
+    @Test
+    void hungProcessIsKilledAtDeadline() throws Exception {
+        long start = System.nanoTime();
+        try (CommandExecutionInterface process = new ProcessCommandRunner().start(List.of("sleep", "30"), Duration.ofMillis(200))) {
+            process.waitFor();
+            assertTrue(process.timedOut());
+        }
+        assertTrue(System.nanoTime() - start < 10 * SECOND);
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeviceTopologyRegistryTest {
+
+    @Test
+    void cachedTopology_isReusedUntilRescanInterval() throws Exception {
+        AtomicInteger scans = new AtomicInteger();
+        DeviceScannerInterface scanner = () -> {
+            scans.incrementAndGet();
+            return List.of(new DeviceEntry("/dev/sda", "megaraid,0"));
+        };
+
+        try (DeviceTopologyRegistry registry = new DeviceTopologyRegistry(scanner, Duration.ofHours(1), List.of())) {
+            assertEquals(1, registry.getDevices().size());
+            registry.getDevices();
+            registry.getDevices();
+            assertEquals(1, scans.get());
+            assertEquals(1, registry.getGeneration());
+
+            registry.invalidate();
+            registry.getDevices();
+            assertEquals(2, scans.get());
+            assertEquals(2, registry.getGeneration());
+        }
+    }
+
+    @Test
+    void deviceNodeChange_triggersRescan(@TempDir Path devRoot) throws Exception {
+        AtomicInteger scans = new AtomicInteger();
+        DeviceScannerInterface scanner = () -> {
+            scans.incrementAndGet();
+            return List.of(new DeviceEntry("/dev/sda", "sat"));
+        };
+
+        try (DeviceTopologyRegistry registry = new DeviceTopologyRegistry(scanner, Duration.ofHours(1), List.of(devRoot))) {
+            registry.start();
+            registry.getDevices();
+            assertEquals(1, registry.getGeneration());
+
+            Files.createFile(devRoot.resolve("sdb"));
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+            while (registry.getGeneration() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(2, registry.getGeneration(), "hot-plug should trigger exactly one rescan");
+            assertEquals(2, scans.get());
+        }
+    }
+}
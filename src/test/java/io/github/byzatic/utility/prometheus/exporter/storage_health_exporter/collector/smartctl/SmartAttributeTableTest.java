@@ -0,0 +1,53 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJson;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJsonTypeAdapter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SmartAttributeTableTest {
+
+    private static final Path READ_EXAMPLE = Path.of(
+            "src/main/java/io/github/byzatic/utility/prometheus/exporter/storage_health_exporter/collector/smartctl/dto/read/response_example");
+
+    @Test
+    void extract_fillsAllFieldsByIdAndByName_andMarksMissingAttributes() throws Exception {
+        SmartAttributeTable table = SmartAttributeTable.compile(List.of(
+                new SmartAttributeSpec(5, "Reallocated_Sector_Ct"),
+                new SmartAttributeSpec(9, null),
+                new SmartAttributeSpec(SmartAttributeSpec.NO_ID, "Temperature_Celsius"),
+                new SmartAttributeSpec(254, "Free_Fall_Sensor"),
+                // Дубликат ID игнорируется
+                new SmartAttributeSpec(5, "Other_Name")));
+
+        assertEquals(4, table.size());
+        assertEquals("attribute_9", table.spec(1).name);
+
+        long[] values = table.extract(loadExample(table));
+
+        assertArrayEquals(new long[]{0, 200, 200, 140}, fields(values, 0));
+        assertArrayEquals(new long[]{2328, 97, 97, 0}, fields(values, 1));
+        assertArrayEquals(new long[]{28, 122, 117, 0}, fields(values, 2));
+        assertArrayEquals(new long[]{-1, -1, -1, -1}, fields(values, 3));
+    }
+
+    private static long[] fields(long[] values, int slot) {
+        return new long[]{
+                value(values, slot, RAW), value(values, slot, NORMALIZED),
+                value(values, slot, WORST), value(values, slot, THRESHOLD)};
+    }
+
+    private static SmartctlDiskJson loadExample(SmartAttributeTable table) throws Exception {
+        String text = Files.readString(READ_EXAMPLE, StandardCharsets.UTF_8);
+        byte[] json = text.substring(text.indexOf('{')).getBytes(StandardCharsets.UTF_8);
+        return SmartctlJson.read(new ByteArrayInputStream(json), new SmartctlDiskJsonTypeAdapter(table));
+    }
+}
@@ -0,0 +1,237 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.ReplayCommandRunner;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.command.SimulatedCommandRunner;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SmartCTLReaderTest {
+
+    private static final Path READ_EXAMPLE = Path.of(
+            "src/main/java/io/github/byzatic/utility/prometheus/exporter/storage_health_exporter/collector/smartctl/dto/read/response_example");
+
+    private static final List<String> SCAN = List.of("smartctl", "--scan", "-j");
+    private static final List<String> READ_STANDBY = List.of("smartctl", "-a", "-j", "-n", "standby,2", "/dev/sda");
+
+    // Так smartctl -n standby отвечает за спящий диск: только заголовок и устройство
+    private static final String STANDBY_OUTPUT = "{\"json_format_version\":[1,0],\"smartctl\":{\"messages\":"
+            + "[{\"string\":\"Device is in STANDBY mode, exit(2)\",\"severity\":\"information\"}],\"exit_status\":2},"
+            + "\"device\":{\"name\":\"/dev/sda\",\"type\":\"sat\",\"protocol\":\"ATA\"}}";
+
+    // Код 2 у smartctl означает и ошибку открытия устройства
+    private static final String OPEN_FAILED_OUTPUT = "{\"json_format_version\":[1,0],\"smartctl\":{\"messages\":"
+            + "[{\"string\":\"Smartctl open device: /dev/sda failed: No such device\",\"severity\":\"error\"}],"
+            + "\"exit_status\":2},\"device\":{\"name\":\"/dev/sda\",\"type\":\"sat\",\"protocol\":\"ATA\"}}";
+
+    @Test
+    void parallelReads_returnDisksInTopologyOrder(@TempDir Path dir) throws Exception {
+        // Первое устройство отвечает дольше всех: завершаются в обратном порядке
+        String[] devices = {"/dev/sda", "/dev/sdb", "/dev/sdc", "/dev/sdd"};
+        List<String> recordings = new ArrayList<>();
+        recordings.add(recording(SCAN, 0, scanOf("/dev/sda", "sat", "/dev/sdb", "sat", "/dev/sdc", "sat", "/dev/sdd", "sat")));
+        for (int i = 0; i < devices.length; i++) {
+            recordings.add(recording(List.of("smartctl", "-a", "-j", devices[i]), 0,
+                    withSerial(readExample(), "SERIAL" + i), 300 - 100 * i));
+        }
+        SmartCTLReader reader = new SmartCTLReader.Builder()
+                .maxConcurrency(devices.length)
+                .commandRunner(new ReplayCommandRunner(replay(dir, recordings.toArray(new String[0])), true))
+                .build();
+
+        long start = System.nanoTime();
+        List<MegaRAIDDiskInfo> disks = reader.readDisks();
+
+        List<String> serials = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (MegaRAIDDiskInfo disk : disks) {
+            serials.add(disk.serial);
+            names.add(disk.deviceName);
+        }
+        assertEquals(List.of("SERIAL0", "SERIAL1", "SERIAL2", "SERIAL3"), serials);
+        assertEquals(List.of(devices), names);
+        // Чтения шли параллельно: не сумма задержек (600 мс), а самая долгая
+        assertTrue(System.nanoTime() - start < 550_000_000L, "reads were not parallel");
+    }
+
+    @Test
+    void fastTier_mergesVolatileValuesIntoTheLastFullRead(@TempDir Path dir) throws Exception {
+        // -A: без идентификации, статуса SMART и наработки; температура и атрибут 5 изменились
+        JsonObject fast = JsonParser.parseString(readExample()).getAsJsonObject();
+        fast.remove("model_name");
+        fast.remove("serial_number");
+        fast.remove("smart_status");
+        fast.remove("power_on_time");
+        fast.getAsJsonObject("temperature").addProperty("current", 41);
+        for (JsonElement row : fast.getAsJsonObject("ata_smart_attributes").getAsJsonArray("table")) {
+            if (row.getAsJsonObject().get("id").getAsInt() == 5) {
+                row.getAsJsonObject().getAsJsonObject("raw").addProperty("value", 7);
+            }
+        }
+        Path file = replay(dir,
+                recording(SCAN, 0, scanOf("/dev/sda", "sat")),
+                recording(List.of("smartctl", "-a", "-j", "/dev/sda"), 0, readExample()),
+                recording(List.of("smartctl", "-A", "-j", "/dev/sda"), 0, fast.toString()));
+        SmartCTLReader reader = new SmartCTLReader.Builder()
+                .maxConcurrency(1)
+                .fullTierInterval(Duration.ofHours(1))
+                .fastTierInterval(Duration.ZERO)
+                .commandRunner(new ReplayCommandRunner(file, false))
+                .build();
+        int reallocatedSlot = reader.getAttributeTable().slotOf(5);
+
+        MegaRAIDDiskInfo full = reader.readDisks().get(0);
+        MegaRAIDDiskInfo merged = reader.readDisks().get(0);
+
+        assertEquals("WD-BS01LX5H", merged.serial);
+        assertEquals("WDC WD4005FFBX-68CAUN0", merged.model);
+        assertEquals("PASSED", merged.smartStatus);
+        assertEquals(2328, merged.powerOnHours, "missing in -A output, kept from the full read");
+        assertEquals(41, merged.temperatureCelsius);
+        assertEquals(7, merged.reallocatedSectors);
+        assertEquals(7, SmartAttributeTable.value(merged.smartAttributes, reallocatedSlot, SmartAttributeTable.RAW));
+        // Слияние идет по состоянию диска, а опубликованная ранее копия не меняется
+        assertEquals(28, full.temperatureCelsius);
+        assertEquals(0, full.reallocatedSectors);
+        assertEquals(0, SmartAttributeTable.value(full.smartAttributes, reallocatedSlot, SmartAttributeTable.RAW));
+    }
+
+    @Test
+    void standby_diskAsleepSinceStartIsPublishedWithoutValues(@TempDir Path dir) throws Exception {
+        Path file = replay(dir,
+                recording(SCAN, 0, scanOf("/dev/sda", "sat")),
+                recording(READ_STANDBY, 2, STANDBY_OUTPUT));
+
+        List<MegaRAIDDiskInfo> disks = standbyAwareReader(file).readDisks();
+
+        assertEquals(1, disks.size());
+        MegaRAIDDiskInfo disk = disks.get(0);
+        assertEquals(MegaRAIDDiskInfo.POWER_STATE_STANDBY, disk.powerState);
+        assertEquals("/dev/sda", disk.deviceName);
+        assertEquals(-1, disk.diskId);
+        assertNull(disk.serial);
+        assertNull(disk.smartStatus);
+        assertEquals(-1, disk.temperatureCelsius);
+        assertEquals(-1, disk.reallocatedSectors);
+        assertNull(disk.smartAttributes);
+    }
+
+    @Test
+    void standby_servesLastReadValuesWhileTheDiskSleeps(@TempDir Path dir) throws Exception {
+        // Одна и та же команда: сначала диск активен, затем спит
+        Path file = replay(dir,
+                recording(SCAN, 0, scanOf("/dev/sda", "sat")),
+                recording(READ_STANDBY, 0, readExample()),
+                recording(READ_STANDBY, 2, STANDBY_OUTPUT));
+        SmartCTLReader reader = standbyAwareReader(file);
+
+        MegaRAIDDiskInfo active = reader.readDisks().get(0);
+        MegaRAIDDiskInfo sleeping = reader.readDisks().get(0);
+
+        assertEquals(MegaRAIDDiskInfo.POWER_STATE_ACTIVE, active.powerState);
+        assertEquals(MegaRAIDDiskInfo.POWER_STATE_STANDBY, sleeping.powerState);
+        assertEquals("WD-BS01LX5H", sleeping.serial);
+        assertEquals(active.temperatureCelsius, sleeping.temperatureCelsius);
+        assertArrayEquals(active.smartAttributes, sleeping.smartAttributes);
+        assertEquals(active.lastReadEpochMillis, sleeping.lastReadEpochMillis);
+    }
+
+    @Test
+    void standby_exitStatusWithDataIsAnActiveRead(@TempDir Path dir) throws Exception {
+        // Код 2 с полными данными — не standby: smartctl сообщил о чем-то другом
+        Path file = replay(dir,
+                recording(SCAN, 0, scanOf("/dev/sda", "sat")),
+                recording(READ_STANDBY, 2, readExample()));
+
+        MegaRAIDDiskInfo disk = standbyAwareReader(file).readDisks().get(0);
+
+        assertEquals(MegaRAIDDiskInfo.POWER_STATE_ACTIVE, disk.powerState);
+        assertEquals("WD-BS01LX5H", disk.serial);
+    }
+
+    @Test
+    void standby_openFailureWithTheSameExitStatusIsAFailure(@TempDir Path dir) throws Exception {
+        Path file = replay(dir,
+                recording(SCAN, 0, scanOf("/dev/sda", "sat")),
+                recording(READ_STANDBY, 2, OPEN_FAILED_OUTPUT));
+
+        List<MegaRAIDDiskInfo> disks = standbyAwareReader(file).readDisks();
+
+        // Не спящий диск с пустыми значениями, а неудачное чтение
+        assertEquals(List.of(), disks);
+    }
+
+    private static SmartCTLReader standbyAwareReader(Path file) throws Exception {
+        ReplayCommandRunner runner = new ReplayCommandRunner(file, false);
+        return new SmartCTLReader.Builder()
+                .maxConcurrency(1)
+                .standbyAware(true)
+                .standbyMaxAge(Duration.ofHours(1))
+                .commandRunner(runner)
+                .build();
+    }
+
+    private static String readExample() throws Exception {
+        return SimulatedCommandRunner.readExample(READ_EXAMPLE);
+    }
+
+    private static String scanOf(String... nameTypePairs) {
+        JsonArray devices = new JsonArray();
+        for (int i = 0; i < nameTypePairs.length; i += 2) {
+            JsonObject device = new JsonObject();
+            device.addProperty("name", nameTypePairs[i]);
+            device.addProperty("type", nameTypePairs[i + 1]);
+            devices.add(device);
+        }
+        JsonObject scan = new JsonObject();
+        JsonArray version = new JsonArray();
+        version.add(1);
+        version.add(0);
+        scan.add("json_format_version", version);
+        scan.add("devices", devices);
+        return scan.toString();
+    }
+
+    private static String withSerial(String read, String serial) {
+        JsonObject json = JsonParser.parseString(read).getAsJsonObject();
+        json.addProperty("serial_number", serial);
+        return json.toString();
+    }
+
+    private static String recording(List<String> command, int exitStatus, String stdout) {
+        return recording(command, exitStatus, stdout, 0);
+    }
+
+    // Строка в формате RecordingCommandRunner
+    private static String recording(List<String> command, int exitStatus, String stdout, long latencyMillis) {
+        JsonObject json = new JsonObject();
+        JsonArray args = new JsonArray();
+        command.forEach(args::add);
+        json.add("command", args);
+        json.addProperty("exitStatus", exitStatus);
+        json.addProperty("latencyMillis", latencyMillis);
+        json.addProperty("timedOut", false);
+        json.addProperty("stdout", stdout);
+        json.addProperty("stderr", "");
+        return json.toString();
+    }
+
+    private static Path replay(Path dir, String... recordings) throws Exception {
+        Path file = dir.resolve("commands.jsonl");
+        Files.write(file, List.of(recordings), StandardCharsets.UTF_8);
+        return file;
+    }
+}
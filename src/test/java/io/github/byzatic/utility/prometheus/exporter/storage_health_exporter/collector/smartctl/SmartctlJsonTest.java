@@ -0,0 +1,115 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJson;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.dto.read.SmartctlDiskJsonTypeAdapter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SmartctlJsonTest {
+
+    private static final Path READ_EXAMPLE = Path.of(
+            "src/main/java/io/github/byzatic/utility/prometheus/exporter/storage_health_exporter/collector/smartctl/dto/read/response_example");
+
+    private static final SmartAttributeTable BUILT_IN = SmartAttributeTable.compile(SmartCTLReader.BUILT_IN_ATTRIBUTES);
+
+    @Test
+    void streamingParser_readsExportedFieldsFromBundledExample() throws Exception {
+        SmartctlDiskJson json = read(loadExampleJson(), BUILT_IN);
+
+        assertEquals(List.of(1, 0), json.json_format_version);
+        assertEquals("WDC WD4005FFBX-68CAUN0", json.model_name);
+        assertEquals("WD-BS01LX5H", json.serial_number);
+        assertEquals("/dev/sda", json.device.name);
+        assertEquals(14, SmartctlDiskMapper.megaRAIDIndex(json.device.type));
+        assertTrue(json.smart_status.passed);
+        assertEquals(28, json.temperature.current);
+        assertEquals(2328, json.power_on_time.hours);
+        assertNotNull(json.smart_attribute_values);
+        assertEquals(BUILT_IN.size() * SmartAttributeTable.FIELDS, json.smart_attribute_values.length);
+    }
+
+    @Test
+    void streamingParser_matchesTreeParseForEveryRow() throws Exception {
+        String body = loadExampleJson();
+        JsonArray rows = JsonParser.parseString(body).getAsJsonObject()
+                .getAsJsonObject("ata_smart_attributes").getAsJsonArray("table");
+        List<SmartAttributeSpec> specs = new ArrayList<>();
+        for (JsonElement row : rows) {
+            specs.add(new SmartAttributeSpec(row.getAsJsonObject().get("id").getAsInt(), null));
+        }
+        SmartAttributeTable table = SmartAttributeTable.compile(specs);
+
+        long[] values = read(body, table).smart_attribute_values;
+
+        for (JsonElement element : rows) {
+            JsonObject row = element.getAsJsonObject();
+            int slot = table.slotOf(row.get("id").getAsInt());
+            assertEquals(row.getAsJsonObject("raw").get("value").getAsLong(), SmartAttributeTable.value(values, slot, SmartAttributeTable.RAW));
+            assertEquals(row.get("value").getAsLong(), SmartAttributeTable.value(values, slot, SmartAttributeTable.NORMALIZED));
+            assertEquals(row.get("worst").getAsLong(), SmartAttributeTable.value(values, slot, SmartAttributeTable.WORST));
+            assertEquals(row.get("thresh").getAsLong(), SmartAttributeTable.value(values, slot, SmartAttributeTable.THRESHOLD));
+        }
+    }
+
+    @Test
+    void streamingParser_keepsOnlyConfiguredRows() throws Exception {
+        SmartAttributeTable table = SmartAttributeTable.compile(List.of(new SmartAttributeSpec(9, null)));
+
+        long[] values = read(loadExampleJson(), table).smart_attribute_values;
+
+        assertArrayEquals(new long[]{2328, 97, 97, 0}, values);
+    }
+
+    @Test
+    void write_roundTripsTheReadSubset() throws Exception {
+        SmartAttributeTable table = SmartAttributeTable.compile(List.of(
+                new SmartAttributeSpec(5, null),
+                new SmartAttributeSpec(SmartAttributeSpec.NO_ID, "Temperature_Celsius"),
+                new SmartAttributeSpec(254, "Free_Fall_Sensor")));
+        SmartctlDiskJsonTypeAdapter adapter = new SmartctlDiskJsonTypeAdapter(table);
+        SmartctlDiskJson original = read(loadExampleJson(), table);
+
+        SmartctlDiskJson copy = read(adapter.toJson(original), table);
+
+        assertEquals(original.json_format_version, copy.json_format_version);
+        assertEquals(original.device.name, copy.device.name);
+        assertEquals(original.device.type, copy.device.type);
+        assertEquals(original.model_name, copy.model_name);
+        assertEquals(original.serial_number, copy.serial_number);
+        assertEquals(original.smart_status.passed, copy.smart_status.passed);
+        assertEquals(original.temperature.current, copy.temperature.current);
+        assertEquals(original.power_on_time.hours, copy.power_on_time.hours);
+        assertArrayEquals(original.smart_attribute_values, copy.smart_attribute_values);
+        assertEquals("null", adapter.toJson(null));
+    }
+
+    @Test
+    void read_emptyInputIsNull_truncatedInputIsSyntaxError() {
+        assertNull(read("", BUILT_IN));
+        assertThrows(JsonSyntaxException.class, () -> read("{\"model_name\": \"x\"", BUILT_IN));
+    }
+
+    private static SmartctlDiskJson read(String body, SmartAttributeTable table) {
+        return SmartctlJson.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                new SmartctlDiskJsonTypeAdapter(table));
+    }
+
+    // Первая строка примера — команда smartctl, JSON начинается со второй
+    private static String loadExampleJson() throws Exception {
+        String text = Files.readString(READ_EXAMPLE, StandardCharsets.UTF_8);
+        return text.substring(text.indexOf('{'));
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartd;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeSpec;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SmartdAttrlogReaderTest {
+
+    private static final String RECORD_1 = "2024-05-01 10:00:00;\t5;100;0;\t9;90;12000;\t194;64;36;\t197;100;0;\t1;200;0;\n";
+    private static final String RECORD_2 = "2024-05-01 10:30:00;\t5;99;8;\t9;90;12001;\t194;63;37;\t197;100;2;\t1;200;0;\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsLatestRecord_andOnlyAppendedBytesAfterwards() throws Exception {
+        Path log = dir.resolve("attrlog.WDC_WD40EFRX_68N32N0-WD-WCC7K1234567.ata.csv");
+        Files.writeString(log, RECORD_1);
+        SmartdAttrlogReader reader = new SmartdAttrlogReader(dir, List.of(new SmartAttributeSpec(1, "Raw_Read_Error_Rate")));
+
+        MegaRAIDDiskInfo disk = single(reader.readDisks());
+        assertEquals("WDC WD40EFRX 68N32N0", disk.model);
+        assertEquals("WD-WCC7K1234567", disk.serial);
+        assertNull(disk.smartStatus);
+        assertEquals(0, disk.reallocatedSectors);
+        assertEquals(12000, disk.powerOnHours);
+        assertEquals(36, disk.temperatureCelsius);
+
+        // Дописана целая строка и обрывок следующей
+        Files.writeString(log, RECORD_2 + "2024-05-01 11:00:00;\t5;99;", StandardOpenOption.APPEND);
+        disk = single(reader.readDisks());
+        assertEquals(8, disk.reallocatedSectors);
+        assertEquals(2, disk.currentPendingSectors);
+        assertEquals(37, disk.temperatureCelsius);
+
+        SmartAttributeTable table = reader.getAttributeTable();
+        int slot = table.slotOf(1);
+        assertEquals(0, SmartAttributeTable.value(disk.smartAttributes, slot, SmartAttributeTable.RAW));
+        assertEquals(200, SmartAttributeTable.value(disk.smartAttributes, slot, SmartAttributeTable.NORMALIZED));
+        assertEquals(-1, SmartAttributeTable.value(disk.smartAttributes, slot, SmartAttributeTable.WORST));
+
+        // Обрывок дописан до конца строки
+        Files.writeString(log, "9;\t9;90;12002;\t194;64;36;\t197;100;2;\n", StandardOpenOption.APPEND);
+        disk = single(reader.readDisks());
+        assertEquals(9, disk.reallocatedSectors);
+        assertEquals(12002, disk.powerOnHours);
+    }
+
+    @Test
+    void rereadsTruncatedAndRotatedFiles_andForgetsRemovedOnes() throws Exception {
+        Path log = dir.resolve("attrlog.ST4000DM004_2CV104-ZFN0ABCD.ata.csv");
+        Files.writeString(log, RECORD_1 + RECORD_2);
+        SmartdAttrlogReader reader = new SmartdAttrlogReader(dir, List.of());
+        assertEquals(8, single(reader.readDisks()).reallocatedSectors);
+
+        // Усечение: файл начат заново
+        Files.writeString(log, RECORD_1, StandardOpenOption.TRUNCATE_EXISTING);
+        MegaRAIDDiskInfo disk = single(reader.readDisks());
+        assertEquals(0, disk.reallocatedSectors);
+        assertEquals("ST4000DM004 2CV104", disk.model);
+        assertEquals("ZFN0ABCD", disk.serial);
+
+        // Ротация: новый файл того же размера подменяет старый
+        Path rotated = dir.resolve("rotated.tmp");
+        Files.writeString(rotated, RECORD_2);
+        Files.move(rotated, log, StandardCopyOption.REPLACE_EXISTING);
+        assertEquals(8, single(reader.readDisks()).reallocatedSectors);
+
+        Files.delete(log);
+        assertTrue(reader.readDisks().isEmpty());
+    }
+
+    @Test
+    void splitsIdentifierAtLastDash() {
+        assertArrayEquals(new String[]{"Samsung SSD 860 EVO 1TB", "S3Z9NB0K123456X"},
+                SmartdAttrlogReader.splitIdentifier("Samsung_SSD_860_EVO_1TB-S3Z9NB0K123456X"));
+        assertArrayEquals(new String[]{"WDC WD40EFRX 68N32N0", "WD-WCC7K1234567"},
+                SmartdAttrlogReader.splitIdentifier("WDC_WD40EFRX_68N32N0-WD-WCC7K1234567"));
+        assertArrayEquals(new String[]{"unknown", "NOSERIAL"},
+                SmartdAttrlogReader.splitIdentifier("NOSERIAL"));
+    }
+
+    private static MegaRAIDDiskInfo single(List<MegaRAIDDiskInfo> disks) {
+        assertEquals(1, disks.size());
+        return disks.get(0);
+    }
+}
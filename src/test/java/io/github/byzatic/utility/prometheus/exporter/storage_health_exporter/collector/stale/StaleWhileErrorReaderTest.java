@@ -0,0 +1,103 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.stale;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.DiskReaderInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.exceptions.CollectorException;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StaleWhileErrorReaderTest {
+
+    /**
+     * Returns the disks set for the next cycle, or fails when none are set.
+     */
+    private static final class ScriptedReader implements DiskReaderInterface {
+        List<MegaRAIDDiskInfo> next;
+
+        @Override
+        public List<MegaRAIDDiskInfo> readDisks() throws CollectorException {
+            if (next == null) {
+                throw new CollectorException("smartctl --scan failed");
+            }
+            List<MegaRAIDDiskInfo> result = new ArrayList<>();
+            for (MegaRAIDDiskInfo disk : next) {
+                result.add(disk.copy());
+            }
+            return result;
+        }
+
+        @Override
+        public SmartAttributeTable getAttributeTable() {
+            return null;
+        }
+    }
+
+    private static MegaRAIDDiskInfo disk(String serial, int temperature) {
+        MegaRAIDDiskInfo disk = new MegaRAIDDiskInfo();
+        disk.serial = serial;
+        disk.temperatureCelsius = temperature;
+        return disk;
+    }
+
+    private static MegaRAIDDiskInfo find(List<MegaRAIDDiskInfo> disks, String serial) {
+        return disks.stream().filter(d -> serial.equals(d.serial)).findFirst().orElse(null);
+    }
+
+    @Test
+    void failedDisksKeepLastKnownValuesUntilTheyExpire() throws Exception {
+        ScriptedReader source = new ScriptedReader();
+        StaleWhileErrorReader reader = new StaleWhileErrorReader(source, Duration.ofMillis(300));
+
+        // Пока ничего не прочитано, отдавать нечего: ошибка проходит дальше
+        assertThrows(CollectorException.class, reader::readDisks);
+
+        source.next = List.of(disk("A", 30), disk("B", 40));
+        List<MegaRAIDDiskInfo> first = reader.readDisks();
+        assertEquals(2, first.size());
+        assertFalse(find(first, "B").stale);
+        long bSuccess = find(first, "B").lastSuccessEpochMillis;
+        assertTrue(bSuccess > 0);
+
+        // B не ответил: последние значения, помеченные stale
+        source.next = List.of(disk("A", 31));
+        List<MegaRAIDDiskInfo> partial = reader.readDisks();
+        assertEquals(2, partial.size());
+        assertFalse(find(partial, "A").stale);
+        assertEquals(31, find(partial, "A").temperatureCelsius);
+        assertTrue(find(partial, "B").stale);
+        assertEquals(40, find(partial, "B").temperatureCelsius);
+        assertEquals(bSuccess, find(partial, "B").lastSuccessEpochMillis);
+
+        // Отказ всего источника — не ошибка цикла
+        source.next = null;
+        List<MegaRAIDDiskInfo> failed = reader.readDisks();
+        assertEquals(2, failed.size());
+        assertTrue(failed.stream().allMatch(d -> d.stale));
+
+        Thread.sleep(350);
+        assertTrue(reader.readDisks().isEmpty());
+    }
+
+    @Test
+    void zeroMaxAgeDropsFailedDisksImmediately() throws Exception {
+        ScriptedReader source = new ScriptedReader();
+        StaleWhileErrorReader reader = new StaleWhileErrorReader(source, Duration.ZERO);
+
+        source.next = List.of(disk("A", 30), disk("B", 40));
+        assertEquals(2, reader.readDisks().size());
+
+        source.next = List.of(disk("A", 30));
+        List<MegaRAIDDiskInfo> disks = reader.readDisks();
+        assertEquals(1, disks.size());
+        assertEquals("A", disks.get(0).serial);
+
+        source.next = null;
+        assertTrue(reader.readDisks().isEmpty());
+    }
+}
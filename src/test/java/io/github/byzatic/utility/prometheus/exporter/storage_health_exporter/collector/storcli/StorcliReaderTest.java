@@ -0,0 +1,134 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.storcli;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.DiskReaderInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartAttributeTable;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.smartctl.SmartCTLReader;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.model.MegaRAIDDiskInfo;
+import io.prometheus.metrics.model.snapshots.DataPointSnapshot;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StorcliReaderTest {
+    private static final Path EXAMPLES = Path.of(
+            "src/main/java/io/github/byzatic/utility/prometheus/exporter/storage_health_exporter/collector/storcli");
+
+    @Test
+    void oneShotReadProducesDisksAndControllerMetrics() throws Exception {
+        List<String> commands = new ArrayList<>();
+        StorcliReader reader = replaying(new StorcliReader.Builder(), commands);
+
+        List<MegaRAIDDiskInfo> disks = reader.readDisks();
+
+        assertEquals(List.of("/call show all J", "/call/eall/sall show all J", "/c0/eall/sall show rebuild J"), commands);
+        assertEquals(4, disks.size());
+        MegaRAIDDiskInfo failing = disks.stream().filter(d -> d.diskId == 10).findFirst().orElseThrow();
+        assertEquals("VBG4XL2F", failing.serial);
+        assertEquals("WDC WD4003FRYZ-01F0DB0", failing.model);
+        assertEquals("/c0/e252/s2", failing.deviceName);
+        assertEquals("FAILED", failing.smartStatus);
+        assertEquals(41, failing.temperatureCelsius);
+        assertEquals(-1, failing.reallocatedSectors);
+        assertEquals(reader.getAttributeTable().size() * SmartAttributeTable.FIELDS, failing.smartAttributes.length);
+        assertEquals("PASSED", disks.get(0).smartStatus);
+
+        MetricSnapshots metrics = reader.collect();
+        assertEquals(1.0, value(metrics, "storcli_controller_optimal", "controller=0"));
+        assertEquals(0.0, value(metrics, "storcli_virtual_drive_optimal", "state=Dgrd"));
+        assertEquals(1.0, value(metrics, "storcli_virtual_drive_optimal", "vd=0/0"));
+        assertEquals(0.0, value(metrics, "storcli_physical_drive_healthy", "slot=252:3"));
+        assertEquals(1.0, value(metrics, "storcli_physical_drive_healthy", "slot=252:2"));
+        assertEquals(12.0, value(metrics, "storcli_physical_drive_media_errors", "slot=252:2"));
+        assertEquals(0.37, value(metrics, "storcli_physical_drive_rebuild_progress_ratio", "slot=252:3"), 1e-9);
+        assertEquals(1, series(metrics, "storcli_physical_drive_rebuild_progress_ratio"));
+        assertEquals(27.0, value(metrics, "storcli_battery_temperature_celsius", "type=cachevault"));
+    }
+
+    @Test
+    void smartctlRecordsAreJoinedBySerial() throws Exception {
+        MegaRAIDDiskInfo joined = new MegaRAIDDiskInfo();
+        joined.diskId = 10;
+        joined.serial = "vbg4xl2f ";
+        joined.model = "WDC WD4003FRYZ-01F0DB0";
+        joined.smartStatus = "PASSED";
+        joined.reallocatedSectors = 5;
+        joined.temperatureCelsius = -1;
+        MegaRAIDDiskInfo direct = new MegaRAIDDiskInfo();
+        direct.serial = "S3Z9NB0K123456";
+        direct.temperatureCelsius = 35;
+
+        DiskReaderInterface smartctl = new DiskReaderInterface() {
+            @Override
+            public List<MegaRAIDDiskInfo> readDisks() {
+                return List.of(joined, direct);
+            }
+
+            @Override
+            public SmartAttributeTable getAttributeTable() {
+                return SmartAttributeTable.compile(SmartCTLReader.BUILT_IN_ATTRIBUTES);
+            }
+        };
+        List<MegaRAIDDiskInfo> disks = replaying(new StorcliReader.Builder().smartctl(smartctl), new ArrayList<>()).readDisks();
+
+        assertEquals(5, disks.size());
+        MegaRAIDDiskInfo merged = disks.stream().filter(d -> d.reallocatedSectors == 5).findFirst().orElseThrow();
+        // Запись smartctl, температура — от storcli
+        assertEquals("PASSED", merged.smartStatus);
+        assertEquals(41, merged.temperatureCelsius);
+        assertEquals(1, disks.stream().filter(d -> d.serial != null && d.serial.trim().equalsIgnoreCase("VBG4XL2F")).count());
+        assertTrue(disks.contains(direct));
+    }
+
+    // Вместо запуска storcli отдает записанные ответы
+    private static StorcliReader replaying(StorcliReader.Builder builder, List<String> commands) {
+        return new StorcliReader(builder) {
+            @Override
+            JsonObject execute(String... args) {
+                String command = String.join(" ", args);
+                commands.add(command);
+                String file = command.contains("rebuild") ? "rebuild_response_example"
+                        : command.startsWith("/call/eall/sall") ? "drives_response_example"
+                        : "controllers_response_example";
+                try {
+                    return JsonParser.parseString(Files.readString(EXAMPLES.resolve(file), StandardCharsets.UTF_8)).getAsJsonObject();
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        };
+    }
+
+    private static double value(MetricSnapshots metrics, String name, String label) {
+        List<DataPointSnapshot> points = points(metrics, name).stream()
+                .filter(p -> p.getLabels().toString().contains(label.replace("=", "=\"") + "\""))
+                .collect(Collectors.toList());
+        assertEquals(1, points.size(), name + "{" + label + "}");
+        return ((GaugeSnapshot.GaugeDataPointSnapshot) points.get(0)).getValue();
+    }
+
+    private static int series(MetricSnapshots metrics, String name) {
+        return points(metrics, name).size();
+    }
+
+    private static List<DataPointSnapshot> points(MetricSnapshots metrics, String name) {
+        for (MetricSnapshot snapshot : metrics) {
+            if (snapshot.getMetadata().getName().equals(name)) {
+                return new ArrayList<>(snapshot.getDataPoints());
+            }
+        }
+        throw new AssertionError("no " + name);
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.exposition;
+
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.expositionformats.generated.com_google_protobuf_4_31_0.Metrics;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachedMetricsServerTest {
+
+    @Test
+    void scrapesAreServedFromTheRenderedResponseUntilNextRender() throws Exception {
+        PrometheusRegistry registry = new PrometheusRegistry();
+        Gauge temperature = Gauge.builder().name("cache_test_temperature").help("test").register(registry);
+        Gauge other = Gauge.builder().name("cache_test_other").help("test").register(registry);
+        temperature.set(40);
+        other.set(1);
+
+        // maxAge = 0: перерисовка только по render()
+        MetricsResponseCache cache = new MetricsResponseCache(registry, Duration.ZERO);
+        cache.render();
+        try (CachedMetricsServer server = CachedMetricsServer.start(
+                new InetSocketAddress("127.0.0.1", 0), "/metrics", cache, 2)) {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/metrics";
+            HttpClient client = HttpClient.newHttpClient();
+
+            HttpResponse<String> plain = client.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, plain.statusCode());
+            assertTrue(plain.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+            assertTrue(plain.body().contains("cache_test_temperature 40.0"));
+
+            // Значение изменилось, но до следующего render() отдается прежний ответ
+            temperature.set(45);
+            assertSame(cache.get(null, null), cache.get(null, null));
+            assertTrue(client.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                    HttpResponse.BodyHandlers.ofString()).body().contains("cache_test_temperature 40.0"));
+            cache.render();
+
+            HttpResponse<byte[]> gzip = client.send(HttpRequest.newBuilder(URI.create(url))
+                            .header("Accept", "application/openmetrics-text; version=1.0.0")
+                            .header("Accept-Encoding", "gzip").build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElse(""));
+            assertTrue(gzip.headers().firstValue("Content-Type").orElse("").startsWith("application/openmetrics-text"));
+            String body = new String(new GZIPInputStream(new ByteArrayInputStream(gzip.body())).readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(body.contains("cache_test_temperature 45.0"));
+            assertTrue(body.endsWith("# EOF\n"));
+
+            HttpResponse<String> filtered = client.send(HttpRequest.newBuilder(
+                            URI.create(url + "?name[]=cache_test_other")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertTrue(filtered.body().contains("cache_test_other 1.0"));
+            assertFalse(filtered.body().contains("cache_test_temperature"));
+        }
+    }
+
+    @Test
+    void protobufIsNegotiatedAndEveryVariantDecodesToTheSameMetrics() throws Exception {
+        PrometheusRegistry registry = new PrometheusRegistry();
+        Gauge temperature = Gauge.builder().name("cache_test_temperature").help("test").register(registry);
+        Gauge other = Gauge.builder().name("cache_test_other").help("test").register(registry);
+        temperature.set(40);
+        other.set(1);
+
+        MetricsResponseCache cache = new MetricsResponseCache(registry, Duration.ZERO);
+        cache.render();
+
+        MetricsResponseCache.Response plain = cache.get(PROTOBUF_ACCEPT, null);
+        MetricsResponseCache.Response gzip = cache.get(PROTOBUF_ACCEPT, "deflate, gzip;q=1.0");
+        assertTrue(plain.contentType.startsWith("application/vnd.google.protobuf"));
+        assertEquals(plain.contentType, gzip.contentType);
+        assertNull(plain.contentEncoding);
+        assertEquals("gzip", gzip.contentEncoding);
+
+        List<Metrics.MetricFamily> families = parseDelimited(new ByteArrayInputStream(plain.body));
+        assertEquals(families, parseDelimited(new GZIPInputStream(new ByteArrayInputStream(gzip.body))));
+        assertEquals(40.0, gaugeValue(families, "cache_test_temperature"));
+        assertEquals(1.0, gaugeValue(families, "cache_test_other"));
+
+        // Текстовые варианты после распаковки совпадают с несжатыми
+        MetricsResponseCache.Response text = cache.get("text/plain", null);
+        MetricsResponseCache.Response textGzip = cache.get("text/plain", "gzip");
+        assertTrue(text.contentType.startsWith("text/plain"));
+        assertArrayEquals(text.body, new GZIPInputStream(new ByteArrayInputStream(textGzip.body)).readAllBytes());
+
+        try (CachedMetricsServer server = CachedMetricsServer.start(
+                new InetSocketAddress("127.0.0.1", 0), "/metrics", cache, 2)) {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/metrics";
+            HttpClient client = HttpClient.newHttpClient();
+
+            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(url))
+                            .header("Accept", PROTOBUF_ACCEPT)
+                            .header("Accept-Encoding", "gzip").build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, response.statusCode());
+            assertEquals(plain.contentType, response.headers().firstValue("Content-Type").orElse(""));
+            assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(""));
+            assertEquals(families, parseDelimited(new GZIPInputStream(new ByteArrayInputStream(response.body()))));
+
+            // Отфильтрованный запрос рендерится мимо кеша, но согласуется так же
+            HttpResponse<byte[]> filtered = client.send(HttpRequest.newBuilder(
+                            URI.create(url + "?name[]=cache_test_other"))
+                            .header("Accept", PROTOBUF_ACCEPT)
+                            .header("Accept-Encoding", "gzip").build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals("gzip", filtered.headers().firstValue("Content-Encoding").orElse(""));
+            List<Metrics.MetricFamily> only = parseDelimited(new GZIPInputStream(new ByteArrayInputStream(filtered.body())));
+            assertEquals(1, only.size());
+            assertEquals(1.0, gaugeValue(only, "cache_test_other"));
+        }
+    }
+
+    @Test
+    void nameFilterReadsRepeatedParameters() {
+        assertEquals(List.of("a", "b_c"), CachedMetricsServer.nameFilter("name%5B%5D=a&x=1&name[]=b_c"));
+        assertEquals(List.of(), CachedMetricsServer.nameFilter(null));
+    }
+
+    private static final String PROTOBUF_ACCEPT =
+            "application/vnd.google.protobuf; proto=io.prometheus.client.MetricFamily; encoding=delimited";
+
+    private static List<Metrics.MetricFamily> parseDelimited(InputStream in) throws IOException {
+        List<Metrics.MetricFamily> families = new ArrayList<>();
+        try (in) {
+            Metrics.MetricFamily family;
+            while ((family = Metrics.MetricFamily.parseDelimitedFrom(in)) != null) {
+                families.add(family);
+            }
+        }
+        return families;
+    }
+
+    private static double gaugeValue(List<Metrics.MetricFamily> families, String name) {
+        Metrics.MetricFamily family = families.stream()
+                .filter(f -> f.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no metric family " + name));
+        assertEquals(Metrics.MetricType.GAUGE, family.getType());
+        assertEquals(1, family.getMetricCount());
+        return family.getMetric(0).getGauge().getValue();
+    }
+}
@@ -0,0 +1,250 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.prometheus.metrics.core.metrics.Counter;
+import io.prometheus.metrics.core.metrics.Gauge;
+import io.prometheus.metrics.model.registry.MetricNameFilter;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsPusherTest {
+
+    @Test
+    void remoteWriteRetriesAndCoalescesBatchesQueuedDuringBackoff() throws Exception {
+        Gauge temperature = Gauge.builder().name("push_test_temperature").labelNames("disk").build();
+        Counter errors = Counter.builder().name("push_test_errors").build();
+
+        // Первый запрос — 503, дальше 204
+        AtomicInteger requests = new AtomicInteger();
+        BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+        HttpServer server = receiver(exchange -> requests.getAndIncrement() == 0 ? 503 : 204, received);
+        try (MetricsPusher pusher = new MetricsPusher.Builder()
+                .endpoint(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/write"))
+                .baseBackoff(Duration.ofMillis(300))
+                .build()) {
+            pusher.start();
+
+            temperature.labelValues("sda").set(40);
+            errors.inc();
+            pusher.offer(new MetricSnapshots(temperature.collect(), errors.collect()), 1_000L);
+            Received first = received.poll(10, TimeUnit.SECONDS);
+            assertNotNull(first);
+            assertEquals("snappy", first.contentEncoding);
+
+            // Пока отправитель ждет повтора, приходит следующий цикл
+            temperature.labelValues("sda").set(41);
+            pusher.offer(new MetricSnapshots(temperature.collect(), errors.collect()), 2_000L);
+
+            Received second = received.poll(10, TimeUnit.SECONDS);
+            assertNotNull(second);
+            Map<String, List<double[]>> series = decodeWriteRequest(Snappy.uncompress(second.body));
+            assertEquals(List.of("__name__=push_test_errors_total", "__name__=push_test_temperature,disk=sda"),
+                    new ArrayList<>(series.keySet()));
+            List<double[]> samples = series.get("__name__=push_test_temperature,disk=sda");
+            assertEquals(2, samples.size());
+            assertArrayEquals(new double[]{40, 1_000}, samples.get(0));
+            assertArrayEquals(new double[]{41, 2_000}, samples.get(1));
+            assertNull(received.poll(300, TimeUnit.MILLISECONDS), "delivered batches must not be sent again");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void otlpRejectedRequestIsNotRetried() throws Exception {
+        Gauge temperature = Gauge.builder().name("push_test_otlp_temperature").labelNames("disk").build();
+        temperature.labelValues("sdb").set(37.5);
+
+        BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+        HttpServer server = receiver(exchange -> 400, received);
+        try (MetricsPusher pusher = new MetricsPusher.Builder()
+                .endpoint(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/metrics"))
+                .protocol("otlp")
+                .serviceName("test-host")
+                .baseBackoff(Duration.ofMillis(10))
+                .build()) {
+            pusher.start();
+            pusher.offer(new MetricSnapshots(temperature.collect()), 1_500L);
+
+            Received request = received.poll(10, TimeUnit.SECONDS);
+            assertNotNull(request);
+            assertTrue(request.contentType.startsWith("application/json"));
+            JsonObject resource = JsonParser.parseString(new String(request.body, StandardCharsets.UTF_8))
+                    .getAsJsonObject().getAsJsonArray("resourceMetrics").get(0).getAsJsonObject();
+            assertEquals("test-host", resource.getAsJsonObject("resource").getAsJsonArray("attributes")
+                    .get(0).getAsJsonObject().getAsJsonObject("value").get("stringValue").getAsString());
+            JsonObject metric = resource.getAsJsonArray("scopeMetrics").get(0).getAsJsonObject()
+                    .getAsJsonArray("metrics").get(0).getAsJsonObject();
+            assertEquals("push_test_otlp_temperature", metric.get("name").getAsString());
+            JsonArray points = metric.getAsJsonObject("gauge").getAsJsonArray("dataPoints");
+            assertEquals(37.5, points.get(0).getAsJsonObject().get("asDouble").getAsDouble());
+            assertEquals("1500000000", points.get(0).getAsJsonObject().get("timeUnixNano").getAsString());
+
+            assertNull(received.poll(300, TimeUnit.MILLISECONDS), "a 4xx answer must not be retried");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void requestThatCannotBeBuiltIsDroppedAndTheSenderKeepsRunning() throws Exception {
+        Gauge temperature = Gauge.builder().name("push_test_error_temperature").build();
+        temperature.set(35);
+        double dropped = dropped("error");
+
+        // HttpRequest не строится для схемы ftp: IllegalArgumentException в потоке отправителя
+        try (MetricsPusher pusher = new MetricsPusher.Builder()
+                .endpoint(URI.create("ftp://127.0.0.1/api/v1/write"))
+                .baseBackoff(Duration.ofMillis(10))
+                .build()) {
+            pusher.start();
+            pusher.offer(new MetricSnapshots(temperature.collect()), 1_000L);
+            awaitDropped("error", dropped + 1);
+            // Следующий цикл тоже обрабатывается: поток не умер
+            pusher.offer(new MetricSnapshots(temperature.collect()), 2_000L);
+            awaitDropped("error", dropped + 2);
+        }
+    }
+
+    private static void awaitDropped(String reason, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (dropped(reason) < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, dropped(reason));
+    }
+
+    private static double dropped(String reason) {
+        CounterSnapshot snapshot = (CounterSnapshot) PrometheusRegistry.defaultRegistry
+                .scrape(MetricNameFilter.builder().nameMustBeEqualTo("push_samples_dropped_total").build())
+                .get(0);
+        for (CounterSnapshot.CounterDataPointSnapshot point : snapshot.getDataPoints()) {
+            if (reason.equals(point.getLabels().get("reason"))) {
+                return point.getValue();
+            }
+        }
+        return 0;
+    }
+
+    private interface Status {
+        int of(HttpExchange exchange);
+    }
+
+    private static final class Received {
+        final String contentType;
+        final String contentEncoding;
+        final byte[] body;
+
+        Received(HttpExchange exchange) throws IOException {
+            this.contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            this.contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            this.body = exchange.getRequestBody().readAllBytes();
+        }
+    }
+
+    private static HttpServer receiver(Status status, BlockingQueue<Received> received) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            received.add(new Received(exchange));
+            exchange.sendResponseHeaders(status.of(exchange), -1);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    // WriteRequest → "имя=значение,..." → [значение, время] по порядку
+    private static Map<String, List<double[]>> decodeWriteRequest(byte[] message) {
+        Map<String, List<double[]>> series = new TreeMap<>();
+        ProtoReader request = new ProtoReader(message);
+        while (request.hasMore()) {
+            assertEquals(1, request.field());
+            ProtoReader timeSeries = new ProtoReader(request.bytes());
+            StringBuilder labels = new StringBuilder();
+            List<double[]> samples = new ArrayList<>();
+            while (timeSeries.hasMore()) {
+                int field = timeSeries.field();
+                ProtoReader nested = new ProtoReader(timeSeries.bytes());
+                if (field == 1) {
+                    nested.field();
+                    String name = new String(nested.bytes(), StandardCharsets.UTF_8);
+                    nested.field();
+                    String value = new String(nested.bytes(), StandardCharsets.UTF_8);
+                    labels.append(labels.length() == 0 ? "" : ",").append(name).append('=').append(value);
+                } else {
+                    nested.field();
+                    double value = Double.longBitsToDouble(nested.fixed64());
+                    nested.field();
+                    samples.add(new double[]{value, nested.varint()});
+                }
+            }
+            series.put(labels.toString(), samples);
+        }
+        return series;
+    }
+
+    private static final class ProtoReader {
+        private final byte[] buf;
+        private int pos;
+
+        ProtoReader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        boolean hasMore() {
+            return pos < buf.length;
+        }
+
+        int field() {
+            return (int) (varint() >>> 3);
+        }
+
+        long varint() {
+            long result = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = buf[pos++] & 0xFF;
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+        }
+
+        long fixed64() {
+            long result = 0;
+            for (int i = 0; i < 8; i++) {
+                result |= (long) (buf[pos++] & 0xFF) << (8 * i);
+            }
+            return result;
+        }
+
+        byte[] bytes() {
+            int length = (int) varint();
+            byte[] out = java.util.Arrays.copyOfRange(buf, pos, pos + length);
+            pos += length;
+            return out;
+        }
+    }
+}
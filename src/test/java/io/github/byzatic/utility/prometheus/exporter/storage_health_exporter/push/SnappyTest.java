@@ -0,0 +1,32 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.push;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnappyTest {
+
+    @Test
+    void roundTripAcrossBlocksAndLongMatches() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append("smartctl_disk_temperature_celsius{disk=\"sd").append((char) ('a' + i % 26)).append("\"} ").append(i % 70).append('\n');
+        }
+        byte[] repetitive = text.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = Snappy.compress(repetitive);
+        assertTrue(compressed.length < repetitive.length / 4, "repetitive input should compress well");
+        assertArrayEquals(repetitive, Snappy.uncompress(compressed));
+
+        // Случайные данные: только литералы, в том числе длинные
+        byte[] random = new byte[200_000];
+        new Random(42).nextBytes(random);
+        assertArrayEquals(random, Snappy.uncompress(Snappy.compress(random)));
+
+        byte[] zeros = new byte[70_000];
+        assertArrayEquals(zeros, Snappy.uncompress(Snappy.compress(zeros)));
+        assertArrayEquals(new byte[0], Snappy.uncompress(Snappy.compress(new byte[0])));
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.service;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.ConcurrencyControlInterface;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveSchedulerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void backsOffToTheCpuBudgetAndSpeedsUpGradually() {
+        AtomicLong now = new AtomicLong(0);
+        AtomicLong cpu = new AtomicLong(0);
+        AdaptiveScheduler scheduler = new AdaptiveScheduler.Builder()
+                .minInterval(Duration.ofSeconds(5))
+                .maxInterval(Duration.ofMinutes(10))
+                .maxCpuPercent(2.0)
+                .cpuClock(cpu::get)
+                .nanoClock(now::get)
+                .loadPerCore(() -> 0.0)
+                .build();
+
+        // 1 с CPU при бюджете 2% — не чаще раза в 50 с
+        assertTrue(scheduler.due());
+        cycle(scheduler, now, cpu, SECOND, SECOND);
+        assertEquals(Duration.ofSeconds(50), scheduler.getInterval());
+
+        // Такты cron каждые 5 с: до 50 с от начала цикла они откладываются
+        for (int t = 5; t < 45; t += 5) {
+            now.set(t * SECOND);
+            assertFalse(scheduler.due(), "tick at " + t + " s");
+        }
+        now.set(50 * SECOND);
+        assertTrue(scheduler.due());
+
+        // Дешевые циклы сокращают интервал не более чем на 20% за раз
+        cycle(scheduler, now, cpu, SECOND / 10, 0);
+        assertEquals(Duration.ofSeconds(40), scheduler.getInterval());
+        for (int i = 0; i < 20; i++) {
+            cycle(scheduler, now, cpu, SECOND / 10, 0);
+        }
+        assertEquals(Duration.ofSeconds(5), scheduler.getInterval());
+    }
+
+    @Test
+    void concurrencyFollowsWallTimeAndHostLoad() {
+        AtomicLong now = new AtomicLong(0);
+        AtomicLong cpu = new AtomicLong(0);
+        double[] load = {0.1};
+        FakeConcurrency concurrency = new FakeConcurrency(4, 2);
+        AdaptiveScheduler scheduler = new AdaptiveScheduler.Builder()
+                .minInterval(Duration.ofSeconds(5))
+                .maxInterval(Duration.ofMinutes(10))
+                .maxCpuPercent(2.0)
+                .concurrency(concurrency)
+                .cpuClock(cpu::get)
+                .nanoClock(now::get)
+                .loadPerCore(() -> load[0])
+                .build();
+
+        // Цикл долгий, но почти без CPU: упираемся в ожидание устройств
+        cycle(scheduler, now, cpu, 20 * SECOND, SECOND / 100);
+        assertEquals(Duration.ofSeconds(25), scheduler.getInterval());
+        assertEquals(3, concurrency.getConcurrency());
+        cycle(scheduler, now, cpu, 20 * SECOND, SECOND / 100);
+        cycle(scheduler, now, cpu, 20 * SECOND, SECOND / 100);
+        assertEquals(4, concurrency.getConcurrency(), "never above the configured maximum");
+
+        // Хост нагружен: уменьшаем по одному, но не ниже 1
+        load[0] = 3.0;
+        for (int i = 0; i < 10; i++) {
+            cycle(scheduler, now, cpu, 20 * SECOND, SECOND / 100);
+        }
+        assertEquals(1, concurrency.getConcurrency());
+    }
+
+    @Test
+    void parsesChildCpuFromProcStat() {
+        // Имя процесса с пробелом и скобкой; utime=100 stime=50 cutime=300 cstime=25 тиков
+        String stat = "4242 (java (main)) S 1 4242 4242 0 -1 4194560 5000 0 0 0 100 50 300 25 20 0 30 0 100 0 0";
+        assertEquals(475 * 10_000_000L, ProcessCpuClock.parse(stat));
+    }
+
+    private static void cycle(AdaptiveScheduler scheduler, AtomicLong now, AtomicLong cpu, long wallNanos, long cpuNanos) {
+        scheduler.beforeCycle();
+        now.addAndGet(wallNanos);
+        cpu.addAndGet(cpuNanos);
+        scheduler.afterCycle();
+    }
+
+    private static final class FakeConcurrency implements ConcurrencyControlInterface {
+        private final int max;
+        private int current;
+
+        FakeConcurrency(int max, int current) {
+            this.max = max;
+            this.current = current;
+        }
+
+        @Override
+        public int getMaxConcurrency() {
+            return max;
+        }
+
+        @Override
+        public int getConcurrency() {
+            return current;
+        }
+
+        @Override
+        public void setConcurrency(int concurrency) {
+            current = Math.max(1, Math.min(concurrency, max));
+        }
+    }
+}
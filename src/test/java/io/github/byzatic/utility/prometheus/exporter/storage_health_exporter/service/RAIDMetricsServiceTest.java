@@ -0,0 +1,155 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.service;
+
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.collector.RAIDMetricsCollectorInterface;
+import io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.exposition.MetricsResponseCache;
+import io.prometheus.metrics.model.registry.MetricNameFilter;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import io.prometheus.metrics.model.snapshots.GaugeSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RAIDMetricsServiceTest {
+
+    @Test
+    void staysWarmingUntilACycleSucceeds() throws Exception {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        RAIDMetricsCollectorInterface collector = () -> {
+            if (fail.get()) {
+                throw new IllegalStateException("smartctl not found");
+            }
+        };
+
+        singleCycle(collector);
+        assertEquals(1.0, warming(), "a failed first cycle must not report warm");
+
+        fail.set(false);
+        singleCycle(collector);
+        assertEquals(0.0, warming());
+    }
+
+    @Test
+    void collectorFactoryRunsInTheCyclesUntilItSucceeds() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        AtomicInteger collected = new AtomicInteger();
+        String url = freeEndpoint();
+        RAIDMetricsService service = onDemand(url)
+                .collectorFactory(() -> {
+                    if (builds.incrementAndGet() == 1) {
+                        throw new IllegalStateException("history directory is not writable");
+                    }
+                    return collected::incrementAndGet;
+                })
+                .build();
+        assertEquals(0, builds.get(), "nothing is built before the service runs");
+
+        // Первая сборка падает, но endpoint отвечает; следующий scrape строит коллектор заново
+        scrapeUntil(service, url, () -> collected.get() > 0);
+        assertEquals(2, builds.get());
+        assertEquals(1, collected.get());
+    }
+
+    @Test
+    void failedReplacementKeepsTheCurrentCollectorAndIsRetried() throws Exception {
+        AtomicInteger previousCycles = new AtomicInteger();
+        AtomicBoolean previousRetired = new AtomicBoolean();
+        AtomicInteger builds = new AtomicInteger();
+        AtomicInteger nextCycles = new AtomicInteger();
+        RAIDMetricsCollectorInterface previous = new RAIDMetricsCollectorInterface() {
+            @Override
+            public void updateMetrics() {
+                previousCycles.incrementAndGet();
+            }
+
+            @Override
+            public void retire() {
+                previousRetired.set(true);
+            }
+        };
+        String url = freeEndpoint();
+        RAIDMetricsService service = onDemand(url).collector(previous).build();
+        service.replaceCollector(() -> {
+            if (builds.incrementAndGet() == 1) {
+                throw new IllegalStateException("history directory is not writable");
+            }
+            return nextCycles::incrementAndGet;
+        });
+
+        // Неудачная сборка не снимает прежний коллектор: он отрабатывает цикл, замена — следующим
+        scrapeUntil(service, url, () -> nextCycles.get() > 0);
+        assertEquals(2, builds.get());
+        assertEquals(1, previousCycles.get());
+        assertTrue(previousRetired.get());
+    }
+
+    private static String freeEndpoint() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return "http://127.0.0.1:" + socket.getLocalPort() + "/metrics";
+        }
+    }
+
+    // Циклы запускаются scrape'ами: сбор по запросу без фонового задания
+    private static RAIDMetricsService.Builder onDemand(String url) throws Exception {
+        return new RAIDMetricsService.Builder()
+                .prometheusEndpointURL(URI.create(url).toURL())
+                .cronExpressionString("*/10 * * * * *")
+                .responseCache(new MetricsResponseCache(new PrometheusRegistry(), Duration.ZERO))
+                .onDemand(Duration.ZERO, Duration.ofSeconds(5))
+                .backgroundRefresh(false);
+    }
+
+    private static void scrapeUntil(RAIDMetricsService service, String url, BooleanSupplier done) throws Exception {
+        Thread runner = new Thread(() -> {
+            try {
+                service.run();
+            } catch (Exception e) {
+                // terminate()
+            }
+        });
+        runner.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest scrape = HttpRequest.newBuilder(URI.create(url)).build();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!done.getAsBoolean() && System.nanoTime() < deadline) {
+                try {
+                    assertEquals(200, client.send(scrape, HttpResponse.BodyHandlers.discarding()).statusCode());
+                } catch (ConnectException e) {
+                    Thread.sleep(20);
+                }
+            }
+        } finally {
+            service.terminate();
+            runner.join(10_000);
+        }
+    }
+
+    private static void singleCycle(RAIDMetricsCollectorInterface collector) throws Exception {
+        new RAIDMetricsService.Builder()
+                .prometheusEndpointURL(URI.create("http://127.0.0.1:0/metrics").toURL())
+                .cronExpressionString("*/10 * * * * *")
+                .collector(collector)
+                .singleCycle(true)
+                .build()
+                .run();
+    }
+
+    private static double warming() {
+        GaugeSnapshot snapshot = (GaugeSnapshot) PrometheusRegistry.defaultRegistry
+                .scrape(MetricNameFilter.builder().nameMustBeEqualTo("exporter_warming").build())
+                .get(0);
+        return snapshot.getDataPoints().get(0).getValue();
+    }
+}
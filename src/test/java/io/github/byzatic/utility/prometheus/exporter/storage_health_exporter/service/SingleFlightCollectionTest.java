@@ -0,0 +1,91 @@
+package io.github.byzatic.utility.prometheus.exporter.storage_health_exporter.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightCollectionTest {
+
+    @Test
+    void concurrentScrapesShareOneCycleAndThenHitTheFreshSnapshot() throws Exception {
+        AtomicInteger cycles = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (SingleFlightCollection flight = new SingleFlightCollection(() -> {
+            cycles.incrementAndGet();
+            started.countDown();
+            release.await();
+        }, Duration.ofMinutes(1), Duration.ofSeconds(10), e -> fail(e))) {
+
+            List<Thread> scrapes = new ArrayList<>();
+            CountDownLatch done = new CountDownLatch(5);
+            for (int i = 0; i < 5; i++) {
+                Thread t = new Thread(() -> {
+                    flight.awaitFresh();
+                    done.countDown();
+                });
+                t.start();
+                scrapes.add(t);
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // Такт cron, пришедший во время цикла, пропускается
+            assertFalse(flight.runNow());
+            assertEquals(5, done.getCount(), "scrapes must wait for the cycle in flight");
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(1, cycles.get());
+            assertTrue(flight.isFresh());
+
+            flight.awaitFresh();
+            assertEquals(1, cycles.get(), "a fresh snapshot must not trigger a collection");
+        }
+    }
+
+    @Test
+    void scrapeGivesUpAtTheDeadlineWhileTheCycleRunsOn() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        try (SingleFlightCollection flight = new SingleFlightCollection(() -> {
+            release.await();
+            finished.countDown();
+        }, Duration.ZERO, Duration.ofMillis(100), e -> fail(e))) {
+
+            long start = System.nanoTime();
+            flight.awaitFresh();
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertEquals(1, finished.getCount(), "the cycle must keep running after the deadline");
+
+            release.countDown();
+            assertTrue(finished.await(5, TimeUnit.SECONDS));
+            // maxStaleness = 0: каждый scrape снова собирает
+            assertFalse(flight.isFresh());
+        }
+    }
+
+    @Test
+    void errorOfABackgroundCycleReachesTheFailureHandler() throws Exception {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch reported = new CountDownLatch(1);
+        try (SingleFlightCollection flight = new SingleFlightCollection(() -> {
+            throw new OutOfMemoryError("simulated");
+        }, Duration.ZERO, Duration.ofSeconds(5), e -> {
+            failure.set(e);
+            reported.countDown();
+        })) {
+
+            flight.awaitFresh();
+
+            assertTrue(reported.await(5, TimeUnit.SECONDS));
+            assertInstanceOf(OutOfMemoryError.class, failure.get());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+#!/usr/bin/env bash
+# Время старта и RSS для каждого варианта сборки.
+#
+# ./startup-benchmark.sh [runs]
+#
+# Варианты, для которых есть артефакты в target/:
+#   jvm     — java -jar target/storage-health-exporter-*-jar-with-dependencies.jar
+#   appcds  — то же с -XX:SharedArchiveFile=target/storage-health-exporter.jsa (mvn -Pappcds package)
+#   native  — target/storage-health-exporter (mvn -Pnative package)
+#
+# Для каждого запуска: миллисекунды от запуска процесса до первого ответа 200 на /metrics,
+# RSS в этот момент и RSS через SETTLE_SECONDS секунд (после первого цикла сбора).
+# Печатается медиана по запускам. Экспортер запускается с configuration/default.configuration.xml
+# на 127.0.0.1:${PORT}; JAVA_OPTS передаются JVM-вариантам.
+set -e
+set -u
+
+RUNS="${1:-5}"
+PORT="${PORT:-19180}"
+SETTLE_SECONDS="${SETTLE_SECONDS:-5}"
+JAVA_OPTS="${JAVA_OPTS:-}"
+
+ROOT="$(cd "$(dirname "$0")" && pwd)"
+JAR="$(ls "$ROOT"/target/storage-health-exporter-*-jar-with-dependencies.jar 2>/dev/null | head -n 1 || true)"
+JSA="$ROOT/target/storage-health-exporter.jsa"
+NATIVE="$ROOT/target/storage-health-exporter"
+
+WORKDIR="$(mktemp -d)"
+trap 'rm -rf "$WORKDIR"' EXIT
+mkdir -p "$WORKDIR/configuration"
+sed "s#<prometheusEndpointURL>.*</prometheusEndpointURL>#<prometheusEndpointURL>http://127.0.0.1:${PORT}/metrics</prometheusEndpointURL>#" \
+  "$ROOT/configuration/default.configuration.xml" > "$WORKDIR/configuration/configuration.xml"
+
+now_ms() {
+  echo $(( $(date +%s%N) / 1000000 ))
+}
+
+rss_kb() {
+  awk '/^VmRSS:/ { print $2 }' "/proc/$1/status" 2>/dev/null || echo 0
+}
+
+median() {
+  sort -n | awk '{ v[NR] = $1 } END { if (NR == 0) { print "-" } else { print v[int((NR + 1) / 2)] } }'
+}
+
+# run_once <команда...>: печатает "startup_ms rss_up_kb rss_settled_kb"
+run_once() {
+  local start pid up_ms rss_up rss_settled
+  start="$(now_ms)"
+  (cd "$WORKDIR" && exec "$@" > "$WORKDIR/exporter.log" 2>&1) &
+  pid=$!
+  up_ms=""
+  for _ in $(seq 1 3000); do
+    if curl -fs -o /dev/null "http://127.0.0.1:${PORT}/metrics"; then
+      up_ms=$(( $(now_ms) - start ))
+      break
+    fi
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "[ERROR] exporter exited, see log:" >&2
+      tail -n 20 "$WORKDIR/exporter.log" >&2
+      return 1
+    fi
+    sleep 0.005
+  done
+  rss_up="$(rss_kb "$pid")"
+  sleep "$SETTLE_SECONDS"
+  rss_settled="$(rss_kb "$pid")"
+  kill "$pid" 2>/dev/null || true
+  wait "$pid" 2>/dev/null || true
+  echo "${up_ms:-timeout} $rss_up $rss_settled"
+}
+
+bench() {
+  local name="$1"
+  shift
+  local results=()
+  for _ in $(seq 1 "$RUNS"); do
+    results+=("$(run_once "$@")")
+  done
+  local startup rss_up rss_settled
+  startup="$(printf '%s\n' "${results[@]}" | awk '{ print $1 }' | median)"
+  rss_up="$(printf '%s\n' "${results[@]}" | awk '{ print int($2 / 1024) }' | median)"
+  rss_settled="$(printf '%s\n' "${results[@]}" | awk '{ print int($3 / 1024) }' | median)"
+  printf '%-8s %12s %12s %16s\n' "$name" "$startup" "$rss_up" "$rss_settled"
+}
+
+printf '%-8s %12s %12s %16s\n' "variant" "startup_ms" "rss_up_mb" "rss_settled_mb"
+if [[ -n "$JAR" ]]; then
+  # shellcheck disable=SC2086
+  bench jvm java $JAVA_OPTS -Xshare:auto -jar "$JAR"
+  if [[ -f "$JSA" ]]; then
+    # shellcheck disable=SC2086
+    bench appcds java $JAVA_OPTS -XX:SharedArchiveFile="$JSA" -jar "$JAR"
+  fi
+else
+  echo "[WARN] no jar-with-dependencies in target/, run mvn package first" >&2
+fi
+if [[ -x "$NATIVE" ]]; then
+  bench native "$NATIVE"
+fi